@@ -0,0 +1,50 @@
+package com.truenorth.backend.service;
+
+import com.truenorth.backend.model.ChatResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.converter.BeanOutputConverter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing the model's structured output into a {@link ChatResponse}, as {@code entity(ChatResponse.class)}
+ * does. The converter, and the JSON schema it generates, is built once per call in the real path,
+ * so both are measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EntityParsingBenchmark {
+
+    private String modelJson;
+    private BeanOutputConverter<ChatResponse> converter;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        modelJson = SyntheticResults.modelJson();
+        converter = new BeanOutputConverter<>(ChatResponse.class);
+    }
+
+    @Benchmark
+    public ChatResponse parseEntity() {
+        return converter.convert(modelJson);
+    }
+
+    @Benchmark
+    public ChatResponse createConverterAndParse() {
+        return new BeanOutputConverter<>(ChatResponse.class).convert(modelJson);
+    }
+}
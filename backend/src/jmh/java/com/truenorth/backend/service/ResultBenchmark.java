@@ -0,0 +1,89 @@
+package com.truenorth.backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.truenorth.backend.chart.ChartDownsampler;
+import com.truenorth.backend.dto.ChatResponseDTO;
+import com.truenorth.backend.model.ChatResponse;
+import com.truenorth.backend.summary.DataSummaryAccumulator;
+import io.micrometer.observation.ObservationRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building and serializing a response once the query has returned its rows. {@code convertToDTO}
+ * feeds every row to the summary the way the executor does and then runs the same
+ * {@link ChatResponseAssembler} that {@link ChatServiceImpl} uses, so a {@code line} chart includes
+ * the downsampling. Run with
+ * {@code mvn -Pbenchmark compile exec:exec}; allocation rates come from the GC profiler.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ResultBenchmark {
+
+    @Param({"10", "500", "10000", "100000"})
+    public int rows;
+
+    @Param({"bar", "line"})
+    public String visualization;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final ChatResponseAssembler assembler = new ChatResponseAssembler(new ChartDownsampler(true, 1000));
+    private List<Map<String, Object>> data;
+    private ChatResponse aiResponse;
+    private ChatResponseDTO dto;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        data = SyntheticResults.autoinsuranceRows(rows);
+        aiResponse = SyntheticResults.chatResponse();
+        if ("line".equals(visualization)) {
+            aiResponse.setVisualizationType("line");
+            aiResponse.getChartConfig().setXAxisField("individual_id");
+        }
+        dto = convertToDTO();
+    }
+
+    @Benchmark
+    public ChatResponseDTO convertToDTO() {
+        DataSummaryAccumulator summaryAccumulator = new DataSummaryAccumulator();
+        summaryAccumulator.acceptRows(data);
+        return assembler.assemble(aiResponse, data, null, summaryAccumulator,
+                new ChatStageTimings(ObservationRegistry.NOOP));
+    }
+
+    @Benchmark
+    public ChatResponseDTO.DataSummary calculateDataSummary() {
+        DataSummaryAccumulator summaryAccumulator = new DataSummaryAccumulator();
+        summaryAccumulator.acceptRows(data);
+        return summaryAccumulator.toSummary(aiResponse.getChartConfig());
+    }
+
+    @Benchmark
+    public ChatResponseDTO.ChartConfigDTO convertChartConfig() {
+        return ChatResponseAssembler.convertChartConfig(aiResponse.getChartConfig());
+    }
+
+    @Benchmark
+    public byte[] serializeResponse() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(dto);
+    }
+}
@@ -0,0 +1,132 @@
+package com.truenorth.backend.service;
+
+import com.truenorth.backend.model.ChatResponse;
+import org.springframework.util.LinkedCaseInsensitiveMap;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Deterministic result sets shaped like {@code SELECT * FROM autoinsurance}, built the way
+ * {@code ColumnMapRowMapper} builds rows.
+ */
+final class SyntheticResults {
+
+    private static final String[] STATES = {"TX", "CA", "FL", "NY", "IL", "PA", "OH", "GA", "NC", "MI"};
+    private static final String[] CITIES = {"Dallas", "Houston", "Austin", "Los Angeles", "San Diego", "Miami",
+            "Tampa", "New York", "Buffalo", "Chicago", "Philadelphia", "Columbus", "Atlanta", "Charlotte", "Detroit"};
+    private static final String[] COUNTIES = {"Dallas", "Harris", "Travis", "Los Angeles", "San Diego", "Miami-Dade",
+            "Hillsborough", "Kings", "Erie", "Cook", "Philadelphia", "Franklin", "Fulton", "Mecklenburg", "Wayne"};
+    private static final String[] MARITAL_STATUSES = {"Married", "Single"};
+    private static final String[] HOME_MARKET_VALUES = {"1000 - 24999", "25000 - 49999", "50000 - 74999",
+            "75000 - 99999", "100000 - 124999", "125000 - 149999", "150000 - 174999", "175000 - 199999"};
+
+    private SyntheticResults() {
+    }
+
+    static List<Map<String, Object>> autoinsuranceRows(int count) {
+        Random random = new Random(42);
+        LocalDate origin = LocalDate.of(1998, 1, 1);
+        List<Map<String, Object>> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int city = random.nextInt(CITIES.length);
+            int age = 18 + random.nextInt(70);
+            int homeValue = random.nextInt(HOME_MARKET_VALUES.length);
+            LocalDate customerSince = origin.plusDays(random.nextInt(9000));
+
+            Map<String, Object> row = new LinkedCaseInsensitiveMap<>(25);
+            row.put("individual_id", 221300000000L + i);
+            row.put("address_id", 521300000000L + random.nextInt(1_000_000));
+            row.put("curr_ann_amt", Math.round((1000 + random.nextGaussian() * 150) * 100) / 100.0);
+            row.put("days_tenure", random.nextInt(6000));
+            row.put("cust_orig_date", customerSince.toString());
+            row.put("age_in_years", age);
+            row.put("date_of_birth", LocalDate.of(2024 - age, 1 + random.nextInt(12), 1 + random.nextInt(28)).toString());
+            row.put("latitude", 25 + random.nextDouble() * 20);
+            row.put("longitude", -120 + random.nextDouble() * 40);
+            row.put("city", CITIES[city]);
+            row.put("state", STATES[city % STATES.length]);
+            row.put("county", COUNTIES[city]);
+            row.put("income", 20000 + random.nextInt(20) * 5000.0);
+            row.put("has_children", random.nextInt(2));
+            row.put("length_of_residence", (double) random.nextInt(30));
+            row.put("marital_status", MARITAL_STATUSES[random.nextInt(MARITAL_STATUSES.length)]);
+            row.put("home_market_value", HOME_MARKET_VALUES[homeValue]);
+            row.put("home_owner", random.nextInt(2));
+            row.put("college_degree", random.nextInt(2));
+            row.put("good_credit", random.nextInt(2));
+            row.put("acct_suspd_date", random.nextInt(10) == 0 ? customerSince.plusDays(400).toString() : null);
+            row.put("churn", random.nextInt(10) == 0 ? 1 : 0);
+            row.put("home_value_min", (homeValue * 25000) + 1000.0);
+            row.put("home_value_max", (homeValue * 25000) + 24999.0);
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    static ChatResponse chatResponse() {
+        ChatResponse.ChartConfig config = new ChatResponse.ChartConfig();
+        config.setTitle("Average annual premium by state");
+        config.setSubtitle("Current customers");
+        config.setColumns(new String[]{"state", "curr_ann_amt", "age_in_years", "income"});
+        config.setColumnLabels(Map.of("state", "State", "curr_ann_amt", "Annual premium",
+                "age_in_years", "Age", "income", "Income"));
+        config.setXAxisLabel("State");
+        config.setYAxisLabel("Annual premium");
+        config.setXAxisField("state");
+        config.setYAxisField("curr_ann_amt");
+        config.setSeriesFields(new String[]{"curr_ann_amt"});
+        config.setShowLegend(true);
+        config.setLegendPosition("top");
+        config.setAdditionalOptions(Map.of("stacked", false));
+
+        ChatResponse response = new ChatResponse();
+        response.setQuery("SELECT * FROM autoinsurance LIMIT 100");
+        response.setVisualizationType("bar");
+        response.setChartConfig(config);
+        response.setExplanation("Annual premium and demographics for current customers.");
+        response.setValid(true);
+        return response;
+    }
+
+    /**
+     * A structured response as the model returns it, including the code fence it often adds.
+     */
+    static String modelJson() {
+        return """
+                ```json
+                {
+                  "sqlQuery": "SELECT state, AVG(curr_ann_amt)::numeric(10,2) AS avg_premium, COUNT(*) AS customers FROM autoinsurance WHERE churn = 0 GROUP BY state ORDER BY avg_premium DESC LIMIT 20",
+                  "visualizationType": "bar",
+                  "chartConfig": {
+                    "title": "Average annual premium by state",
+                    "subtitle": "Active customers only",
+                    "columns": ["state", "avg_premium", "customers"],
+                    "columnLabels": {"state": "State", "avg_premium": "Average premium", "customers": "Customers"},
+                    "xAxisLabel": "State",
+                    "yAxisLabel": "Average premium ($)",
+                    "xAxisField": "state",
+                    "yAxisField": "avg_premium",
+                    "seriesFields": ["avg_premium"],
+                    "labelField": null,
+                    "valueField": null,
+                    "xField": null,
+                    "yField": null,
+                    "sizeField": null,
+                    "categoryField": null,
+                    "showLegend": false,
+                    "showDataLabels": true,
+                    "legendPosition": "top",
+                    "additionalOptions": {"indexAxis": "x", "beginAtZero": true}
+                  },
+                  "explanation": "Average current annual premium for customers who have not churned, by state.",
+                  "isValid": true,
+                  "errorMessage": null
+                }
+                ```
+                """;
+    }
+}
@@ -0,0 +1,186 @@
+package com.truenorth.backend.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.truenorth.backend.model.ChatResponse;
+import com.truenorth.backend.model.ChatResponseCacheEntry;
+import com.truenorth.backend.model.StoredChatResponse;
+import com.truenorth.backend.repository.ChatResponseCacheRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
+
+@Slf4j
+@Component
+public class ChatResponseCache {
+
+    private final LruTtlCache<String, String> cache;
+    private final ChatResponseCacheRepository chatResponseCacheRepository;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final boolean sharedEnabled;
+    private final Duration ttl;
+    private final int historyWindow;
+
+    public ChatResponseCache(@Value("${chat.cache.response.enabled:true}") boolean enabled,
+                             @Value("${chat.cache.response.max-entries:1000}") long maxEntries,
+                             @Value("${chat.cache.response.max-bytes:16777216}") long maxBytes,
+                             @Value("${chat.cache.response.ttl:PT6H}") Duration ttl,
+                             @Value("${chat.cache.response.history-window:4}") int historyWindow,
+                             @Value("${chat.cache.response.shared.enabled:false}") boolean sharedEnabled,
+                             ChatResponseCacheRepository chatResponseCacheRepository,
+                             ObjectMapper objectMapper,
+                             MeterRegistry meterRegistry) {
+        this.cache = new LruTtlCache<>(maxEntries, maxBytes);
+        this.enabled = enabled;
+        this.ttl = ttl;
+        this.historyWindow = historyWindow;
+        this.sharedEnabled = sharedEnabled;
+        this.chatResponseCacheRepository = chatResponseCacheRepository;
+        this.objectMapper = objectMapper;
+        this.cache.bindTo(meterRegistry, "response");
+    }
+
+    /**
+     * Builds the key from the prompt version, the normalized last user message and the
+     * few messages preceding it, so follow-ups only hit when their recent context matches.
+     */
+    public String key(String promptVersion, List<Message> history) {
+        StringBuilder source = new StringBuilder(promptVersion).append('\n');
+
+        int last = history.size() - 1;
+        if (last >= 0) {
+            source.append(normalizeMessage(history.get(last).getText())).append('\n');
+        }
+
+        StringBuilder recent = new StringBuilder();
+        for (int i = Math.max(0, last - historyWindow); i < last; i++) {
+            Message message = history.get(i);
+            recent.append(message.getMessageType()).append(':').append(message.getText()).append('\n');
+        }
+        source.append(hash(recent.toString()));
+
+        return hash(source.toString());
+    }
+
+    public ChatResponse get(String key) {
+        if (!enabled) {
+            return null;
+        }
+
+        String json = cache.get(key);
+        if (json == null && sharedEnabled) {
+            json = findShared(key);
+            if (json != null) {
+                cache.put(key, json, 2L * json.length(), ttl);
+            }
+        }
+        if (json == null) {
+            return null;
+        }
+
+        try {
+            return objectMapper.readValue(json, StoredChatResponse.class).toChatResponse();
+        } catch (JsonProcessingException e) {
+            log.warn("Discarding unreadable cached response for key {}", key, e);
+            invalidate(key);
+            return null;
+        }
+    }
+
+    public void put(String key, ChatResponse response) {
+        if (!enabled || response == null || !response.isValid()) {
+            return;
+        }
+
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(StoredChatResponse.of(response));
+        } catch (JsonProcessingException e) {
+            log.warn("Unable to serialize response for caching", e);
+            return;
+        }
+
+        cache.put(key, json, 2L * json.length(), ttl);
+
+        if (sharedEnabled) {
+            LocalDateTime now = LocalDateTime.now();
+            try {
+                chatResponseCacheRepository.save(new ChatResponseCacheEntry(key, json, now, now.plus(ttl)));
+            } catch (DataAccessException e) {
+                log.warn("Unable to write shared response cache entry {}", key, e);
+            }
+        }
+    }
+
+    public void invalidate(String key) {
+        cache.invalidate(key);
+        if (sharedEnabled) {
+            try {
+                chatResponseCacheRepository.deleteById(key);
+            } catch (DataAccessException e) {
+                log.warn("Unable to delete shared response cache entry {}", key, e);
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+        if (sharedEnabled) {
+            chatResponseCacheRepository.deleteAllInBatch();
+        }
+    }
+
+    public LruTtlCache.Stats stats() {
+        return cache.stats();
+    }
+
+    @Scheduled(fixedDelayString = "${chat.cache.response.shared.cleanup-interval:PT15M}")
+    public void deleteExpiredSharedEntries() {
+        if (!enabled || !sharedEnabled) {
+            return;
+        }
+        try {
+            int deleted = chatResponseCacheRepository.deleteExpired(LocalDateTime.now());
+            log.debug("Deleted {} expired shared response cache entries", deleted);
+        } catch (DataAccessException e) {
+            log.warn("Unable to clean up shared response cache", e);
+        }
+    }
+
+    private String findShared(String key) {
+        try {
+            return chatResponseCacheRepository.findByCacheKeyAndExpiresAtAfter(key, LocalDateTime.now())
+                    .map(ChatResponseCacheEntry::getResponse)
+                    .orElse(null);
+        } catch (DataAccessException e) {
+            log.warn("Unable to read shared response cache entry {}", key, e);
+            return null;
+        }
+    }
+
+    static String normalizeMessage(String message) {
+        if (message == null) {
+            return "";
+        }
+        return message.strip()
+                .toLowerCase(Locale.ROOT)
+                .replaceAll("\\s+", " ")
+                .replaceAll("[\\s?!.]+$", "");
+    }
+
+    public static String hash(String value) {
+        return DigestUtils.md5DigestAsHex(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,136 @@
+package com.truenorth.backend.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+public class LruTtlCache<K, V> {
+
+    private record Entry<V>(V value, long weight, long expiresAtNanos) {
+    }
+
+    public record Stats(long entries, long maxEntries, long weightBytes, long maxWeightBytes,
+                        long hits, long misses, long evictions, long expirations) {
+    }
+
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final long maxEntries;
+    private final long maxWeightBytes;
+
+    private long weightBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+
+    public LruTtlCache(long maxEntries, long maxWeightBytes) {
+        if (maxEntries <= 0 || maxWeightBytes <= 0) {
+            throw new IllegalArgumentException("Cache bounds must be positive.");
+        }
+        this.maxEntries = maxEntries;
+        this.maxWeightBytes = maxWeightBytes;
+    }
+
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        if (entry.expiresAtNanos() - System.nanoTime() <= 0) {
+            removeEntry(key, entry);
+            expirations.incrementAndGet();
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.value();
+    }
+
+    public synchronized boolean put(K key, V value, long weightBytes, Duration ttl) {
+        if (weightBytes > maxWeightBytes || ttl.isZero() || ttl.isNegative()) {
+            return false;
+        }
+
+        Entry<V> previous = entries.remove(key);
+        if (previous != null) {
+            this.weightBytes -= previous.weight();
+        }
+
+        entries.put(key, new Entry<>(value, weightBytes, System.nanoTime() + ttl.toNanos()));
+        this.weightBytes += weightBytes;
+
+        Iterator<Map.Entry<K, Entry<V>>> eldest = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || this.weightBytes > maxWeightBytes) && eldest.hasNext()) {
+            Map.Entry<K, Entry<V>> candidate = eldest.next();
+            if (candidate.getKey().equals(key)) {
+                continue;
+            }
+            this.weightBytes -= candidate.getValue().weight();
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+        return true;
+    }
+
+    public synchronized boolean invalidate(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return false;
+        }
+        removeEntry(key, entry);
+        return true;
+    }
+
+    public synchronized int invalidateIf(Predicate<K> predicate) {
+        int removed = 0;
+        Iterator<Map.Entry<K, Entry<V>>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<K, Entry<V>> candidate = iterator.next();
+            if (predicate.test(candidate.getKey())) {
+                weightBytes -= candidate.getValue().weight();
+                iterator.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    public synchronized void invalidateAll() {
+        entries.clear();
+        weightBytes = 0;
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(entries.size(), maxEntries, weightBytes, maxWeightBytes,
+                hits.get(), misses.get(), evictions.get(), expirations.get());
+    }
+
+    public void bindTo(MeterRegistry registry, String cacheName) {
+        FunctionCounter.builder("chat.cache.hits", hits, AtomicLong::get)
+                .tag("cache", cacheName).register(registry);
+        FunctionCounter.builder("chat.cache.misses", misses, AtomicLong::get)
+                .tag("cache", cacheName).register(registry);
+        FunctionCounter.builder("chat.cache.evictions", evictions, AtomicLong::get)
+                .tag("cache", cacheName).register(registry);
+        FunctionCounter.builder("chat.cache.expirations", expirations, AtomicLong::get)
+                .tag("cache", cacheName).register(registry);
+        Gauge.builder("chat.cache.entries", this, cache -> cache.stats().entries())
+                .tag("cache", cacheName).register(registry);
+        Gauge.builder("chat.cache.weight", this, cache -> cache.stats().weightBytes())
+                .tag("cache", cacheName).baseUnit("bytes").register(registry);
+    }
+
+    private void removeEntry(K key, Entry<V> entry) {
+        entries.remove(key);
+        weightBytes -= entry.weight();
+    }
+}
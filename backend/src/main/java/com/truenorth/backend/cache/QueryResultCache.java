@@ -0,0 +1,157 @@
+package com.truenorth.backend.cache;
+
+import com.truenorth.backend.dto.ColumnarResultDTO;
+import com.truenorth.backend.sql.SqlFingerprint;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+@Slf4j
+@Component
+public class QueryResultCache {
+
+    private static final String COLUMNAR_PREFIX = "columnar:";
+
+    private final LruTtlCache<String, Object> cache;
+    private final String schema;
+    private final boolean enabled;
+    private final Duration defaultTtl;
+    private final Duration aggregateTtl;
+
+    public QueryResultCache(@Value("${chat.cache.query.enabled:true}") boolean enabled,
+                            @Value("${chat.cache.query.max-entries:500}") long maxEntries,
+                            @Value("${chat.cache.query.max-bytes:67108864}") long maxBytes,
+                            @Value("${chat.cache.query.ttl:PT5M}") Duration defaultTtl,
+                            @Value("${chat.cache.query.aggregate-ttl:PT30M}") Duration aggregateTtl,
+                            @Value("${db.schema.name}") String schema,
+                            MeterRegistry meterRegistry) {
+        this.cache = new LruTtlCache<>(maxEntries, maxBytes);
+        this.enabled = enabled;
+        this.defaultTtl = defaultTtl;
+        this.aggregateTtl = aggregateTtl;
+        this.schema = schema;
+        this.cache.bindTo(meterRegistry, "query");
+    }
+
+    public String key(String sql) {
+        return SqlFingerprint.normalize(sql, schema);
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<Map<String, Object>> get(String sql) {
+        if (!enabled) {
+            return null;
+        }
+        return (List<Map<String, Object>>) cache.get(key(sql));
+    }
+
+    public ColumnarResultDTO getColumnar(String sql) {
+        if (!enabled) {
+            return null;
+        }
+        return (ColumnarResultDTO) cache.get(COLUMNAR_PREFIX + key(sql));
+    }
+
+    public List<Map<String, Object>> put(String sql, List<Map<String, Object>> rows) {
+        List<Map<String, Object>> readOnlyRows = Collections.unmodifiableList(rows);
+        if (!enabled) {
+            return readOnlyRows;
+        }
+
+        String key = key(sql);
+        Duration ttl = isAggregate(key) ? aggregateTtl : defaultTtl;
+        if (!cache.put(key, readOnlyRows, estimateSize(key, rows), ttl)) {
+            log.debug("Query result too large to cache ({} rows): {}", rows.size(), sql);
+        }
+        return readOnlyRows;
+    }
+
+    public ColumnarResultDTO putColumnar(String sql, ColumnarResultDTO result) {
+        if (!enabled) {
+            return result;
+        }
+
+        String key = key(sql);
+        Duration ttl = isAggregate(key) ? aggregateTtl : defaultTtl;
+        if (!cache.put(COLUMNAR_PREFIX + key, result, estimateSize(key, result), ttl)) {
+            log.debug("Columnar query result too large to cache ({} rows): {}", result.getRowCount(), sql);
+        }
+        return result;
+    }
+
+    public boolean invalidate(String sql) {
+        String key = key(sql);
+        boolean removedRows = cache.invalidate(key);
+        boolean removedColumnar = cache.invalidate(COLUMNAR_PREFIX + key);
+        return removedRows || removedColumnar;
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public LruTtlCache.Stats stats() {
+        return cache.stats();
+    }
+
+    private boolean isAggregate(String normalizedSql) {
+        return normalizedSql.contains(" group by ");
+    }
+
+    static long estimateSize(String key, List<Map<String, Object>> rows) {
+        long size = 64 + 2L * key.length();
+        for (Map<String, Object> row : rows) {
+            size += 64;
+            for (Map.Entry<String, Object> column : row.entrySet()) {
+                size += 48 + estimateValueSize(column.getValue());
+            }
+        }
+        return size;
+    }
+
+    static long estimateSize(String key, ColumnarResultDTO result) {
+        long size = 64 + 2L * key.length();
+        for (ColumnarResultDTO.Column column : result.getColumns()) {
+            size += 96 + (column.getNulls() != null ? 4L * column.getNulls().length : 0);
+            Object values = column.getValues();
+            if (values instanceof long[] longs) {
+                size += 8L * longs.length;
+            } else if (values instanceof double[] doubles) {
+                size += 8L * doubles.length;
+            } else if (values instanceof int[] codes) {
+                size += 4L * codes.length;
+            } else if (values instanceof boolean[] booleans) {
+                size += booleans.length;
+            } else if (values instanceof Object[] objects) {
+                for (Object value : objects) {
+                    size += 8 + estimateValueSize(value);
+                }
+            }
+            if (column.getDictionary() != null) {
+                for (String entry : column.getDictionary()) {
+                    size += estimateValueSize(entry);
+                }
+            }
+        }
+        return size;
+    }
+
+    static long estimateValueSize(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof CharSequence text) {
+            return 40 + 2L * text.length();
+        }
+        if (value instanceof Number || value instanceof Boolean) {
+            return 24;
+        }
+        return 48;
+    }
+}
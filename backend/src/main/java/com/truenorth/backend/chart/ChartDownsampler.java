@@ -0,0 +1,342 @@
+package com.truenorth.backend.chart;
+
+import com.truenorth.backend.dto.ChatResponseDTO;
+import com.truenorth.backend.dto.ChatResponseDTO.ChartConfigDTO;
+import com.truenorth.backend.dto.ColumnarResultDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * Thins line and scatter results to at most {@code max-points} per series before they are
+ * sent: line series with {@link Lttb}, which keeps the shape of a curve ordered by x, and
+ * scatter plots with {@link GridSampler}, which keeps the spread of a point cloud that has no
+ * such order. Series come from the chart config: the x field plus
+ * {@code seriesFields} (or the y field), split by {@code categoryField} when there is one.
+ * A row is kept if any series keeps it, and rows keep their original order. The summary is
+ * computed before this runs, so it still describes the full result.
+ */
+@Slf4j
+@Component
+public class ChartDownsampler {
+
+    public static final String LINE_METHOD = "lttb";
+    public static final String SCATTER_METHOD = "grid";
+
+    private static final Set<String> REDUCIBLE_TYPES = Set.of("line", "scatter");
+
+    private final boolean enabled;
+    private final int maxPoints;
+
+    public ChartDownsampler(@Value("${chat.chart.downsample.enabled:true}") boolean enabled,
+                            @Value("${chat.chart.downsample.max-points:250}") int maxPoints) {
+        this.enabled = enabled;
+        this.maxPoints = maxPoints;
+    }
+
+    /**
+     * Replaces the response's rows or columns with the reduced set and records the reduction.
+     * Leaves the response untouched when the chart is not a line or scatter, the fields are
+     * missing from the result, or every series already fits the budget.
+     */
+    public void reduce(ChatResponseDTO dto) {
+        if (!enabled || dto.getVisualizationType() == null || dto.getChartConfig() == null
+                || !REDUCIBLE_TYPES.contains(dto.getVisualizationType().toLowerCase())) {
+            return;
+        }
+
+        Points points;
+        if (dto.getColumnar() != null) {
+            points = new ColumnarPoints(dto.getColumnar());
+        } else if (dto.getData() != null) {
+            points = new RowPoints(dto.getData());
+        } else {
+            return;
+        }
+        if (points.size() <= maxPoints) {
+            return;
+        }
+
+        boolean scatter = "scatter".equalsIgnoreCase(dto.getVisualizationType());
+        ChartConfigDTO config = dto.getChartConfig();
+        String xField = scatter ? firstPresent(points, config.getXField(), config.getXAxisField())
+                : firstPresent(points, config.getXAxisField(), config.getXField());
+        List<String> yFields = yFields(points, config, scatter);
+        if (xField == null || yFields.isEmpty()) {
+            return;
+        }
+        String categoryField = firstPresent(points, config.getCategoryField());
+
+        int[] kept = select(points, xField, yFields, categoryField, scatter);
+        if (kept.length == points.size() || kept.length == 0) {
+            return;
+        }
+
+        if (dto.getColumnar() != null) {
+            dto.setColumnar(select(dto.getColumnar(), kept));
+        } else {
+            List<Map<String, Object>> rows = new ArrayList<>(kept.length);
+            for (int row : kept) {
+                rows.add(dto.getData().get(row));
+            }
+            dto.setData(rows);
+        }
+        dto.setReduction(new ChatResponseDTO.Reduction(scatter ? SCATTER_METHOD : LINE_METHOD, points.size(),
+                kept.length, maxPoints));
+        log.info("Reduced {} chart from {} to {} rows", dto.getVisualizationType(), points.size(), kept.length);
+    }
+
+    private int[] select(Points points, String xField, List<String> yFields, String categoryField, boolean scatter) {
+        Map<Object, List<Integer>> partitions = new LinkedHashMap<>();
+        for (int row = 0; row < points.size(); row++) {
+            Object category = categoryField != null ? points.value(categoryField, row) : null;
+            partitions.computeIfAbsent(category, key -> new ArrayList<>()).add(row);
+        }
+
+        BitSet kept = new BitSet(points.size());
+        for (List<Integer> rows : partitions.values()) {
+            if (rows.size() <= maxPoints) {
+                rows.forEach(kept::set);
+                continue;
+            }
+            double[] xs = xValues(points, xField, rows);
+            for (String yField : yFields) {
+                keepSeries(points, rows, xs, yField, scatter, kept);
+            }
+        }
+        return kept.stream().toArray();
+    }
+
+    private void keepSeries(Points points, List<Integer> rows, double[] xs, String yField, boolean scatter,
+                            BitSet kept) {
+        List<Integer> plotted = new ArrayList<>(rows.size());
+        List<Double> ys = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            double y = toDouble(points.value(yField, rows.get(i)));
+            if (!Double.isNaN(y)) {
+                plotted.add(i);
+                ys.add(y);
+            }
+        }
+        if (plotted.size() <= maxPoints) {
+            plotted.forEach(i -> kept.set(rows.get(i)));
+            return;
+        }
+
+        if (scatter) {
+            double[] plottedX = new double[plotted.size()];
+            double[] plottedY = new double[plotted.size()];
+            for (int i = 0; i < plottedX.length; i++) {
+                plottedX[i] = xs[plotted.get(i)];
+                plottedY[i] = ys.get(i);
+            }
+            for (int position : GridSampler.select(plottedX, plottedY, maxPoints)) {
+                kept.set(rows.get(plotted.get(position)));
+            }
+            return;
+        }
+
+        Integer[] order = new Integer[plotted.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(xs[plotted.get(a)], xs[plotted.get(b)]));
+
+        double[] sortedX = new double[order.length];
+        double[] sortedY = new double[order.length];
+        for (int i = 0; i < order.length; i++) {
+            sortedX[i] = xs[plotted.get(order[i])];
+            sortedY[i] = ys.get(order[i]);
+        }
+        for (int position : Lttb.select(sortedX, sortedY, maxPoints)) {
+            kept.set(rows.get(plotted.get(order[position])));
+        }
+    }
+
+    /**
+     * Numeric and temporal x values as numbers; if any value in the partition is neither, the
+     * rows are plotted in result order and their position is used instead.
+     */
+    private static double[] xValues(Points points, String xField, List<Integer> rows) {
+        double[] xs = new double[rows.size()];
+        for (int i = 0; i < xs.length; i++) {
+            xs[i] = toDouble(points.value(xField, rows.get(i)));
+            if (Double.isNaN(xs[i])) {
+                for (int j = 0; j < xs.length; j++) {
+                    xs[j] = j;
+                }
+                return xs;
+            }
+        }
+        return xs;
+    }
+
+    private static List<String> yFields(Points points, ChartConfigDTO config, boolean scatter) {
+        List<String> candidates = new ArrayList<>();
+        if (scatter) {
+            candidates.add(firstPresent(points, config.getYField(), config.getYAxisField()));
+        } else if (config.getSeriesFields() != null && !config.getSeriesFields().isEmpty()) {
+            config.getSeriesFields().forEach(field -> candidates.add(firstPresent(points, field)));
+        } else {
+            candidates.add(firstPresent(points, config.getYAxisField(), config.getYField()));
+        }
+        return candidates.stream().filter(field -> field != null).distinct().toList();
+    }
+
+    private static String firstPresent(Points points, String... fields) {
+        for (String field : fields) {
+            if (field != null && !field.isBlank() && points.has(field)) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    private static double toDouble(Object value) {
+        if (value instanceof Number number) {
+            return number.doubleValue();
+        }
+        if (value instanceof Date date) {
+            return date.getTime();
+        }
+        if (value instanceof LocalDate date) {
+            return date.toEpochDay() * 86_400_000d;
+        }
+        if (value instanceof LocalDateTime dateTime) {
+            return dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+        }
+        if (value instanceof OffsetDateTime dateTime) {
+            return dateTime.toInstant().toEpochMilli();
+        }
+        if (value instanceof Instant instant) {
+            return instant.toEpochMilli();
+        }
+        // Dates stored as text, e.g. cust_orig_date
+        if (value instanceof String text && text.length() >= 10 && text.charAt(4) == '-' && text.charAt(7) == '-') {
+            try {
+                return LocalDate.parse(text.substring(0, 10)).toEpochDay() * 86_400_000d;
+            } catch (DateTimeParseException e) {
+                return Double.NaN;
+            }
+        }
+        return Double.NaN;
+    }
+
+    private static ColumnarResultDTO select(ColumnarResultDTO result, int[] rows) {
+        List<ColumnarResultDTO.Column> columns = new ArrayList<>(result.getColumns().size());
+        for (ColumnarResultDTO.Column column : result.getColumns()) {
+            columns.add(new ColumnarResultDTO.Column(column.getName(), column.getSqlType(), column.getEncoding(),
+                    selectValues(column.getValues(), rows), column.getDictionary(), selectNulls(column.getNulls(), rows)));
+        }
+        return new ColumnarResultDTO(rows.length, columns);
+    }
+
+    private static Object selectValues(Object values, int[] rows) {
+        return switch (values) {
+            case long[] longs -> Arrays.stream(rows).mapToLong(row -> longs[row]).toArray();
+            case double[] doubles -> Arrays.stream(rows).mapToDouble(row -> doubles[row]).toArray();
+            case int[] codes -> Arrays.stream(rows).map(row -> codes[row]).toArray();
+            case boolean[] booleans -> {
+                boolean[] selected = new boolean[rows.length];
+                for (int i = 0; i < rows.length; i++) {
+                    selected[i] = booleans[rows[i]];
+                }
+                yield selected;
+            }
+            case String[] strings -> Arrays.stream(rows).mapToObj(row -> strings[row]).toArray(String[]::new);
+            case Object[] objects -> Arrays.stream(rows).mapToObj(row -> objects[row]).toArray();
+            case null, default -> values;
+        };
+    }
+
+    private static int[] selectNulls(int[] nulls, int[] rows) {
+        if (nulls == null) {
+            return null;
+        }
+        // Both are ascending, so the new index of each surviving null is its position in rows
+        return IntStream.range(0, rows.length)
+                .filter(i -> Arrays.binarySearch(nulls, rows[i]) >= 0)
+                .toArray();
+    }
+
+    private interface Points {
+        int size();
+
+        boolean has(String field);
+
+        Object value(String field, int row);
+    }
+
+    private record RowPoints(List<Map<String, Object>> rows) implements Points {
+
+        @Override
+        public int size() {
+            return rows.size();
+        }
+
+        @Override
+        public boolean has(String field) {
+            return !rows.isEmpty() && rows.get(0).containsKey(field);
+        }
+
+        @Override
+        public Object value(String field, int row) {
+            return rows.get(row).get(field);
+        }
+    }
+
+    private static final class ColumnarPoints implements Points {
+
+        private final ColumnarResultDTO result;
+        private final Map<String, ColumnarResultDTO.Column> columns = new LinkedHashMap<>();
+
+        private ColumnarPoints(ColumnarResultDTO result) {
+            this.result = result;
+            for (ColumnarResultDTO.Column column : result.getColumns()) {
+                columns.putIfAbsent(column.getName().toLowerCase(), column);
+            }
+        }
+
+        @Override
+        public int size() {
+            return result.getRowCount();
+        }
+
+        @Override
+        public boolean has(String field) {
+            return columns.containsKey(field.toLowerCase());
+        }
+
+        @Override
+        public Object value(String field, int row) {
+            ColumnarResultDTO.Column column = columns.get(field.toLowerCase());
+            if (column.getNulls() != null && Arrays.binarySearch(column.getNulls(), row) >= 0) {
+                return null;
+            }
+            return switch (column.getValues()) {
+                case long[] longs -> longs[row];
+                case double[] doubles -> doubles[row];
+                case boolean[] booleans -> booleans[row];
+                case int[] codes -> codes[row] < 0 ? null : column.getDictionary().get(codes[row]);
+                case Object[] objects -> objects[row];
+                case null, default -> null;
+            };
+        }
+    }
+}
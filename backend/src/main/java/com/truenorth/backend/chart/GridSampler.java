@@ -0,0 +1,58 @@
+package com.truenorth.backend.chart;
+
+import java.util.Arrays;
+
+/**
+ * Thins a scatter plot by laying a square grid of at most {@code maxCells} cells over the
+ * points' bounding box and keeping the first point in each occupied cell. Unlike
+ * {@link Lttb}, which assumes a curve ordered by x, this keeps the spread of the cloud:
+ * outliers sit alone in their cells and survive, while dense regions collapse to one point
+ * per cell.
+ */
+final class GridSampler {
+
+    private GridSampler() {
+    }
+
+    /**
+     * @param xs x values, in any order
+     * @param ys y values, same length as {@code xs}
+     * @return positions into {@code xs}/{@code ys} to keep, ascending
+     */
+    static int[] select(double[] xs, double[] ys, int maxCells) {
+        int n = xs.length;
+        int side = (int) Math.sqrt(maxCells);
+        if (n <= maxCells || side < 1) {
+            int[] all = new int[n];
+            for (int i = 0; i < all.length; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+
+        double minX = Arrays.stream(xs).min().orElse(0);
+        double maxX = Arrays.stream(xs).max().orElse(0);
+        double minY = Arrays.stream(ys).min().orElse(0);
+        double maxY = Arrays.stream(ys).max().orElse(0);
+
+        boolean[] occupied = new boolean[side * side];
+        int[] selected = new int[Math.min(n, side * side)];
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            int cell = cell(ys[i], minY, maxY, side) * side + cell(xs[i], minX, maxX, side);
+            if (!occupied[cell]) {
+                occupied[cell] = true;
+                selected[count++] = i;
+            }
+        }
+        return Arrays.copyOf(selected, count);
+    }
+
+    private static int cell(double value, double min, double max, int side) {
+        if (max <= min) {
+            return 0;
+        }
+        // The maximum belongs in the last cell rather than one past it
+        return Math.min((int) ((value - min) / (max - min) * side), side - 1);
+    }
+}
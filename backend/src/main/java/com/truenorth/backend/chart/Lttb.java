@@ -0,0 +1,73 @@
+package com.truenorth.backend.chart;
+
+/**
+ * Largest-Triangle-Three-Buckets (Steinarsson, 2013). Keeps the first and last point and,
+ * from each of {@code threshold - 2} equal buckets in between, the point forming the largest
+ * triangle with the point kept from the previous bucket and the average of the next bucket.
+ * Peaks, troughs and the overall shape survive while the point count drops to the threshold.
+ */
+final class Lttb {
+
+    private Lttb() {
+    }
+
+    /**
+     * @param xs x values in ascending order
+     * @param ys y values, same length as {@code xs}
+     * @return positions into {@code xs}/{@code ys} to keep, ascending
+     */
+    static int[] select(double[] xs, double[] ys, int threshold) {
+        int n = xs.length;
+        if (threshold >= n || threshold < 3) {
+            int[] all = new int[n];
+            for (int i = 0; i < all.length; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+
+        int[] selected = new int[threshold];
+        int count = 0;
+        double bucketSize = (double) (n - 2) / (threshold - 2);
+
+        int a = 0;
+        selected[count++] = a;
+
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            // Average of the next bucket (or the last point, for the final bucket)
+            int nextStart = (int) Math.floor((bucket + 1) * bucketSize) + 1;
+            int nextEnd = Math.min((int) Math.floor((bucket + 2) * bucketSize) + 1, n);
+            double avgX = 0;
+            double avgY = 0;
+            for (int i = nextStart; i < nextEnd; i++) {
+                avgX += xs[i];
+                avgY += ys[i];
+            }
+            int nextLength = nextEnd - nextStart;
+            if (nextLength > 0) {
+                avgX /= nextLength;
+                avgY /= nextLength;
+            } else {
+                avgX = xs[n - 1];
+                avgY = ys[n - 1];
+            }
+
+            int start = (int) Math.floor(bucket * bucketSize) + 1;
+            int end = (int) Math.floor((bucket + 1) * bucketSize) + 1;
+            double maxArea = -1;
+            int chosen = start;
+            for (int i = start; i < end; i++) {
+                double area = Math.abs((xs[a] - avgX) * (ys[i] - ys[a]) - (xs[a] - xs[i]) * (avgY - ys[a]));
+                if (area > maxArea) {
+                    maxArea = area;
+                    chosen = i;
+                }
+            }
+            selected[count++] = chosen;
+            a = chosen;
+        }
+
+        selected[count] = n - 1;
+        return selected;
+    }
+}
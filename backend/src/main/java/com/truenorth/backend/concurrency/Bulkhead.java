@@ -0,0 +1,82 @@
+package com.truenorth.backend.concurrency;
+
+import com.truenorth.backend.exception.BulkheadFullException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Caps how many callers may be inside one stage of the pipeline at once. Callers wait up to
+ * {@code maxWait} for a permit and are then turned away, so a slow stage queues its own work
+ * instead of holding threads and connections that other stages need.
+ */
+public class Bulkhead {
+
+    private final String name;
+    private final int maxConcurrent;
+    private final Duration maxWait;
+    private final Semaphore permits;
+
+    public Bulkhead(String name, int maxConcurrent, Duration maxWait) {
+        if (maxConcurrent <= 0) {
+            throw new IllegalArgumentException("Bulkhead size must be positive.");
+        }
+        this.name = name;
+        this.maxConcurrent = maxConcurrent;
+        this.maxWait = maxWait;
+        this.permits = new Semaphore(maxConcurrent, true);
+    }
+
+    public <T> T call(Supplier<T> work) {
+        acquire();
+        try {
+            return work.get();
+        } finally {
+            permits.release();
+        }
+    }
+
+    public void run(Runnable work) {
+        acquire();
+        try {
+            work.run();
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void acquire() {
+        try {
+            if (!permits.tryAcquire(maxWait.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new BulkheadFullException("Too many concurrent " + name + " requests; try again shortly.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BulkheadFullException("Interrupted while waiting for a " + name + " slot.");
+        }
+    }
+
+    public int getActive() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    public int getWaiting() {
+        return permits.getQueueLength();
+    }
+
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("chat.bulkhead.active", this, Bulkhead::getActive)
+                .tag("bulkhead", name)
+                .register(registry);
+        Gauge.builder("chat.bulkhead.waiting", this, Bulkhead::getWaiting)
+                .tag("bulkhead", name)
+                .register(registry);
+        Gauge.builder("chat.bulkhead.limit", this, bulkhead -> bulkhead.maxConcurrent)
+                .tag("bulkhead", name)
+                .register(registry);
+    }
+}
@@ -0,0 +1,43 @@
+package com.truenorth.backend.config;
+
+import com.truenorth.backend.service.QueryCancellation;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Cancels the query behind a streaming response when the async request times out or the
+ * container reports the connection as broken, so the pooled connection is released immediately.
+ */
+@Configuration
+public class AsyncRequestConfig implements WebMvcConfigurer {
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.registerCallableInterceptors(new CallableProcessingInterceptor() {
+            @Override
+            public <T> Object handleTimeout(NativeWebRequest request, Callable<T> task) {
+                cancel(request, QueryCancellation.Reason.DEADLINE);
+                return RESULT_NONE;
+            }
+
+            @Override
+            public <T> Object handleError(NativeWebRequest request, Callable<T> task, Throwable t) {
+                cancel(request, QueryCancellation.Reason.CLIENT_GONE);
+                return RESULT_NONE;
+            }
+        });
+    }
+
+    private static void cancel(NativeWebRequest request, QueryCancellation.Reason reason) {
+        Object cancellation = request.getAttribute(QueryCancellation.REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (cancellation instanceof QueryCancellation queryCancellation) {
+            queryCancellation.cancel(reason);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.truenorth.backend.config;
+
+import com.truenorth.backend.concurrency.Bulkhead;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class BulkheadConfig {
+
+    @Bean
+    public Bulkhead modelBulkhead(MeterRegistry meterRegistry,
+                                  @Value("${chat.bulkhead.model.max-concurrent:32}") int maxConcurrent,
+                                  @Value("${chat.bulkhead.model.max-wait:20s}") Duration maxWait) {
+        Bulkhead bulkhead = new Bulkhead("model", maxConcurrent, maxWait);
+        bulkhead.bindTo(meterRegistry);
+        return bulkhead;
+    }
+
+    @Bean
+    public Bulkhead queryBulkhead(MeterRegistry meterRegistry,
+                                  @Value("${chat.bulkhead.query.max-concurrent:8}") int maxConcurrent,
+                                  @Value("${chat.bulkhead.query.max-wait:10s}") Duration maxWait) {
+        Bulkhead bulkhead = new Bulkhead("query", maxConcurrent, maxWait);
+        bulkhead.bindTo(meterRegistry);
+        return bulkhead;
+    }
+
+    @Bean
+    public Bulkhead exportBulkhead(MeterRegistry meterRegistry,
+                                   @Value("${chat.bulkhead.export.max-concurrent:2}") int maxConcurrent,
+                                   @Value("${chat.bulkhead.export.max-wait:5s}") Duration maxWait) {
+        Bulkhead bulkhead = new Bulkhead("export", maxConcurrent, maxWait);
+        bulkhead.bindTo(meterRegistry);
+        return bulkhead;
+    }
+}
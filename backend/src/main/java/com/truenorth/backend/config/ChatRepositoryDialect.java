@@ -18,14 +18,40 @@ public class ChatRepositoryDialect implements JdbcChatMemoryRepositoryDialect {
         return "SELECT content, type FROM " + this.schema + ".SPRING_AI_CHAT_MEMORY WHERE conversation_id = ? ORDER BY \"timestamp\"";
     }
 
+    public String getSelectMessagesWithTimestampSql() {
+        return "SELECT content, type, \"timestamp\" FROM " + this.schema + ".SPRING_AI_CHAT_MEMORY WHERE conversation_id = ? ORDER BY \"timestamp\"";
+    }
+
+    /**
+     * The newest {@code ?} messages, returned oldest first; a backward scan of the (conversation_id, timestamp) index.
+     */
+    public String getSelectRecentMessagesWithTimestampSql() {
+        return "SELECT content, type, \"timestamp\" FROM (SELECT content, type, \"timestamp\" FROM " + this.schema
+                + ".SPRING_AI_CHAT_MEMORY WHERE conversation_id = ? ORDER BY \"timestamp\" DESC LIMIT ?) recent ORDER BY \"timestamp\"";
+    }
+
     @Override
     public String getInsertMessageSql() {
         return "INSERT INTO " + this.schema + ".SPRING_AI_CHAT_MEMORY (conversation_id, content, type, \"timestamp\") VALUES (?, ?, ?, ?)";
     }
 
+    /**
+     * Insert that skips rows already written, for replaying the write-behind journal after a crash.
+     */
+    public String getInsertMessageIfAbsentSql() {
+        return "INSERT INTO " + this.schema + ".SPRING_AI_CHAT_MEMORY (conversation_id, content, type, \"timestamp\") "
+                + "SELECT ?, ?, ?, CAST(? AS TIMESTAMP) WHERE NOT EXISTS (SELECT 1 FROM " + this.schema + ".SPRING_AI_CHAT_MEMORY "
+                + "WHERE conversation_id = ? AND \"timestamp\" = ?)";
+    }
+
+    public String getInsertHistorySql() {
+        return "INSERT INTO " + this.schema + ".chat_history (conversation_id, title, created_at) VALUES (?, ?, ?) "
+                + "ON CONFLICT (conversation_id) DO NOTHING";
+    }
+
     @Override
     public String getSelectConversationIdsSql() {
-        return "SELECT DISTINCT conversation_id FROM " + this.schema + ".SPRING_AI_CHAT_MEMORY";
+        return "SELECT conversation_id FROM " + this.schema + ".chat_conversation ORDER BY last_message_at DESC";
     }
 
     @Override
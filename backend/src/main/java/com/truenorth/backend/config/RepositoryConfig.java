@@ -1,7 +1,12 @@
 package com.truenorth.backend.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.truenorth.backend.memory.ChatWriteBehindWriter;
+import com.truenorth.backend.memory.TokenBudgetChatMemory;
+import com.truenorth.backend.memory.WriteBehindChatMemoryRepository;
 import io.micrometer.observation.ObservationRegistry;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.memory.ChatMemory;
 import org.springframework.ai.chat.memory.repository.jdbc.JdbcChatMemoryRepository;
 import org.springframework.ai.mistralai.MistralAiChatModel;
 import org.springframework.ai.mistralai.MistralAiChatOptions;
@@ -13,6 +18,8 @@ import org.springframework.context.annotation.Primary;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.retry.support.RetryTemplate;
 
+import java.time.Duration;
+
 @Configuration
 public class RepositoryConfig {
 
@@ -20,7 +27,6 @@ public class RepositoryConfig {
     private String dbSchemaName;
 
     @Bean(name = "jdbcChatMemoryRepository")
-    @Primary
     public JdbcChatMemoryRepository jdbcChatMemoryRepository(JdbcTemplate jdbcTemplate) {
         var dialect = new ChatRepositoryDialect(dbSchemaName);
         return JdbcChatMemoryRepository.builder()
@@ -29,6 +35,28 @@ public class RepositoryConfig {
                 .build();
     }
 
+    @Bean
+    @Primary
+    public WriteBehindChatMemoryRepository writeBehindChatMemoryRepository(
+            JdbcChatMemoryRepository jdbcChatMemoryRepository, ChatWriteBehindWriter writer, JdbcTemplate jdbcTemplate,
+            @Value("${chat.memory.write-behind.tail-cache.max-entries:2000}") int maxCachedConversations,
+            @Value("${chat.memory.write-behind.tail-cache.max-bytes:67108864}") long maxCachedBytes,
+            @Value("${chat.memory.write-behind.tail-cache.ttl:PT30M}") Duration tailTtl) {
+        return new WriteBehindChatMemoryRepository(jdbcChatMemoryRepository, writer, jdbcTemplate,
+                new ChatRepositoryDialect(dbSchemaName), maxCachedConversations, maxCachedBytes, tailTtl);
+    }
+
+    @Bean
+    public ChatMemory chatMemory(WriteBehindChatMemoryRepository chatMemoryRepository, ObjectMapper objectMapper,
+                                 @Value("${chat.memory.verbatim-turns:3}") int verbatimTurns,
+                                 @Value("${chat.memory.token-budget:4000}") int tokenBudget,
+                                 @Value("${chat.memory.max-loaded-messages:200}") int maxLoadedMessages,
+                                 @Value("${chat.memory.summary-cache.max-entries:1000}") int maxCachedSummaries,
+                                 @Value("${chat.memory.summary-cache.ttl:PT1H}") Duration summaryTtl) {
+        return new TokenBudgetChatMemory(chatMemoryRepository, objectMapper, verbatimTurns, tokenBudget,
+                maxLoadedMessages, maxCachedSummaries, summaryTtl);
+    }
+
     @Bean
     @Primary
     public ChatClient chatClient(ChatClient.Builder builder) {
@@ -37,19 +65,21 @@ public class RepositoryConfig {
 
     @Bean
     public ChatClient fallbackChatClient(
+            @Value("${spring.ai.mistralai.base-url:https://api.mistral.ai}") String baseUrl,
             @Value("${spring.ai.mistralai.api-key}") String apiKey,
             @Value("${spring.ai.mistralai.chat.options.fallback-model}") String modelName,
             @Value("${spring.ai.mistralai.chat.options.temperature}") Double temperature,
-            RetryTemplate retryTemplate
+            RetryTemplate retryTemplate,
+            ObservationRegistry observationRegistry
     ) {
         MistralAiChatModel mistralAiChatModel = MistralAiChatModel.builder()
-                .mistralAiApi(new MistralAiApi(apiKey))
+                .mistralAiApi(new MistralAiApi(baseUrl, apiKey))
                 .defaultOptions(MistralAiChatOptions.builder().model(modelName).temperature(temperature).build())
                 .retryTemplate(retryTemplate)
-                .observationRegistry(ObservationRegistry.create())
+                .observationRegistry(observationRegistry)
                 .build();
 
-        return ChatClient.builder(mistralAiChatModel).build();
+        return ChatClient.builder(mistralAiChatModel, observationRegistry, null).build();
 
     }
 
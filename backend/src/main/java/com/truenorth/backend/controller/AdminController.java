@@ -0,0 +1,100 @@
+package com.truenorth.backend.controller;
+
+import com.truenorth.backend.cache.ChatResponseCache;
+import com.truenorth.backend.cache.LruTtlCache;
+import com.truenorth.backend.cache.QueryResultCache;
+import com.truenorth.backend.rollup.Rollup;
+import com.truenorth.backend.rollup.RollupManager;
+import com.truenorth.backend.schema.SchemaCatalog;
+import com.truenorth.backend.sql.SqlStatementStats;
+import lombok.AllArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.Locale;
+
+@RestController
+@RequestMapping("/api/v1/admin")
+@CrossOrigin(origins = "*")
+@AllArgsConstructor
+public class AdminController {
+
+    private final QueryResultCache queryResultCache;
+    private final ChatResponseCache chatResponseCache;
+    private final SchemaCatalog schemaCatalog;
+    private final RollupManager rollupManager;
+    private final SqlStatementStats sqlStatementStats;
+
+    @GetMapping("/cache/query")
+    public ResponseEntity<LruTtlCache.Stats> getQueryCacheStats() {
+        return ResponseEntity.ok(queryResultCache.stats());
+    }
+
+    @DeleteMapping("/cache/query")
+    public ResponseEntity<Void> invalidateQueryCache(@RequestParam(required = false) String sql) {
+        if (sql == null || sql.isBlank()) {
+            queryResultCache.invalidateAll();
+            return ResponseEntity.noContent().build();
+        }
+        return queryResultCache.invalidate(sql)
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.notFound().build();
+    }
+
+    @GetMapping("/cache/response")
+    public ResponseEntity<LruTtlCache.Stats> getResponseCacheStats() {
+        return ResponseEntity.ok(chatResponseCache.stats());
+    }
+
+    @DeleteMapping("/cache/response")
+    public ResponseEntity<Void> invalidateResponseCache() {
+        chatResponseCache.invalidateAll();
+        return ResponseEntity.noContent().build();
+    }
+
+    @PostMapping("/schema/refresh")
+    public ResponseEntity<SchemaCatalog.Snapshot> refreshSchema() {
+        schemaCatalog.refresh();
+        return ResponseEntity.ok(schemaCatalog.current());
+    }
+
+    @GetMapping("/rollups")
+    public ResponseEntity<List<Rollup>> getRollups() {
+        return ResponseEntity.ok(rollupManager.rollups());
+    }
+
+    @DeleteMapping("/rollups/{name}")
+    public ResponseEntity<Void> dropRollup(@PathVariable String name) {
+        return rollupManager.drop(name)
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.notFound().build();
+    }
+
+    @GetMapping("/sql/stats")
+    public ResponseEntity<List<SqlStatementStats.Snapshot>> getSqlStats(
+            @RequestParam(defaultValue = "total_time") String orderBy,
+            @RequestParam(defaultValue = "20") int limit) {
+        SqlStatementStats.Order order;
+        try {
+            order = SqlStatementStats.Order.valueOf(orderBy.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown orderBy: " + orderBy);
+        }
+        return ResponseEntity.ok(sqlStatementStats.top(order, Math.max(limit, 1)));
+    }
+
+    @GetMapping("/sql/stats/{fingerprint}")
+    public ResponseEntity<SqlStatementStats.Snapshot> getSqlStatement(@PathVariable String fingerprint) {
+        SqlStatementStats.Snapshot snapshot = sqlStatementStats.get(fingerprint);
+        return snapshot != null ? ResponseEntity.ok(snapshot) : ResponseEntity.notFound().build();
+    }
+
+    @DeleteMapping("/sql/stats")
+    public ResponseEntity<Void> resetSqlStats() {
+        sqlStatementStats.reset();
+        return ResponseEntity.noContent().build();
+    }
+}
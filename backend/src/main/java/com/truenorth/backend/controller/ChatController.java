@@ -1,29 +1,52 @@
 package com.truenorth.backend.controller;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.truenorth.backend.dto.ChatBatchRequestDTO;
 import com.truenorth.backend.dto.ChatHistoryDTO;
 import com.truenorth.backend.dto.ChatRequestDTO;
 import com.truenorth.backend.dto.ChatResponseDTO;
+import com.truenorth.backend.dto.CursorPage;
+import com.truenorth.backend.exception.SqlQueryRejectedException;
+import com.truenorth.backend.service.ChatBatchService;
 import com.truenorth.backend.service.ChatConversationService;
+import com.truenorth.backend.service.ChatExportService;
 import com.truenorth.backend.service.ChatHistoryService;
 import com.truenorth.backend.service.ChatService;
+import com.truenorth.backend.service.ChatStageTimings;
+import com.truenorth.backend.service.QueryCancellation;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.AllArgsConstructor;
 import org.springframework.ai.chat.messages.Message;
 import org.springframework.data.domain.Page;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 @RestController
 @RequestMapping("/api/v1/chat")
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = ChatStageTimings.SERVER_TIMING_HEADER)
 @AllArgsConstructor
 public class ChatController {
 
+    private static final int MAX_HISTORY_PAGE_SIZE = 100;
+    private static final MediaType TEXT_CSV = new MediaType("text", "csv", StandardCharsets.UTF_8);
+
     private final ChatConversationService chatConversationService;
     private final ChatService chatService;
+    private final ChatBatchService chatBatchService;
+    private final ChatExportService chatExportService;
     private final ChatHistoryService chatHistoryService;
 
     @PostMapping("/message")
@@ -31,9 +54,50 @@ public class ChatController {
 
         ChatResponseDTO response = chatService.processMessage(
                 request.getConversationId(),
-                request.getMessage());
+                request.getMessage(),
+                request.getResultFormat());
+
+        ResponseEntity.BodyBuilder ok = ResponseEntity.ok();
+        if (response.getTimings() != null) {
+            ok.header(ChatStageTimings.SERVER_TIMING_HEADER, ChatStageTimings.serverTiming(response.getTimings()));
+        }
+        return ok.body(response);
+    }
+
+    @PostMapping(value = "/message/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamChatMessage(@Valid @RequestBody ChatRequestDTO request,
+                                                                   HttpServletRequest servletRequest) {
+
+        QueryCancellation cancellation = QueryCancellation.create();
+        servletRequest.setAttribute(QueryCancellation.REQUEST_ATTRIBUTE, cancellation);
+
+        StreamingResponseBody body = outputStream -> chatService.streamMessage(
+                request.getConversationId(),
+                request.getMessage(),
+                outputStream,
+                cancellation);
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
 
-        return ResponseEntity.ok(response);
+    @PostMapping(value = "/message/batch", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> handleChatBatch(@Valid @RequestBody ChatBatchRequestDTO request,
+                                                                 HttpServletRequest servletRequest) {
+
+        QueryCancellation cancellation = QueryCancellation.create();
+        servletRequest.setAttribute(QueryCancellation.REQUEST_ATTRIBUTE, cancellation);
+
+        StreamingResponseBody body = outputStream -> chatBatchService.streamBatch(
+                request.getQuestions(),
+                request.getResultFormat(),
+                outputStream,
+                cancellation);
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 
     @GetMapping("/history")
@@ -41,8 +105,44 @@ public class ChatController {
         return chatHistoryService.getAllChatHistory(page, limit);
     }
 
+    @GetMapping("/history/cursor")
+    public CursorPage<ChatHistoryDTO> getConversationHistoryPage(@RequestParam(defaultValue = "20") Integer limit,
+                                                                 @RequestParam(required = false) String cursor) {
+        try {
+            return chatHistoryService.getChatHistory(cursor, Math.max(1, Math.min(limit, MAX_HISTORY_PAGE_SIZE)));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
     @GetMapping("history/{id}")
     public ResponseEntity<List<Message>> getConversationHistoryById(@PathVariable String id) {
         return ResponseEntity.ok(chatConversationService.getConversationHistoryById(id));
     }
+
+    /**
+     * Written on the request thread rather than as a {@link StreamingResponseBody}: an export may
+     * run far longer than the async request timeout and is bounded by its own deadline instead.
+     */
+    @GetMapping("history/{id}/export")
+    public void exportConversationResult(@PathVariable String id, @RequestParam(defaultValue = "csv") String format,
+                                         HttpServletResponse response) throws IOException {
+        if (!"csv".equalsIgnoreCase(format)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported export format: " + format + ". Supported: csv.");
+        }
+
+        String query;
+        try {
+            query = chatExportService.prepareQuery(id);
+        } catch (NoSuchElementException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
+        } catch (SqlQueryRejectedException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+
+        response.setContentType(TEXT_CSV.toString());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename("conversation-" + id + ".csv").build().toString());
+        chatExportService.exportCsv(query, response.getOutputStream(), QueryCancellation.create());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,224 @@
+package com.truenorth.backend.datasource;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+
+/**
+ * Connections for generated analytic SQL, kept apart from the {@code spring.datasource} pool
+ * that chat persistence uses, so a burst of slow queries cannot starve memory and history
+ * writes. Connections are read-only and come from a dedicated pool on the primary or, when
+ * {@code chat.datasource.analytics.replica.url} is set, from a pool on the replica. The
+ * replica's lag is checked periodically over a connection of its own, so a replica pool busy
+ * with queries does not look like a replica that is down; while it is unreachable or further
+ * behind than {@code max-lag}, queries go to the primary pool instead, unless failover is disabled.
+ * <p>
+ * Deliberately not a {@link DataSource} bean, so Boot keeps auto-configuring the primary pool,
+ * its JdbcTemplate and its transaction manager.
+ */
+@Slf4j
+@Component
+public class AnalyticsDatabase {
+
+    private static final String LAG_QUERY = """
+            SELECT CASE
+                       WHEN NOT pg_is_in_recovery() THEN 0
+                       WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                       ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()), 0)
+                   END""";
+    private static final int LAG_QUERY_TIMEOUT_SECONDS = 5;
+
+    private final HikariDataSource primaryPool;
+    private final HikariDataSource replicaPool;
+    private final HikariDataSource replicaProbePool;
+    private final JdbcTemplate replicaProbe;
+    private final boolean failover;
+    private final Duration maxLag;
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final Counter failovers;
+
+    private volatile boolean replicaHealthy = true;
+    private volatile double replicaLagSeconds = Double.NaN;
+
+    public AnalyticsDatabase(MeterRegistry meterRegistry,
+                             @Value("${spring.datasource.url}") String primaryUrl,
+                             @Value("${spring.datasource.username}") String primaryUsername,
+                             @Value("${spring.datasource.password}") String primaryPassword,
+                             @Value("${chat.datasource.analytics.maximum-pool-size:10}") int maximumPoolSize,
+                             @Value("${chat.datasource.analytics.minimum-idle:2}") int minimumIdle,
+                             @Value("${chat.datasource.analytics.connection-timeout:10s}") Duration connectionTimeout,
+                             @Value("${chat.datasource.analytics.replica.url:}") String replicaUrl,
+                             @Value("${chat.datasource.analytics.replica.username:${spring.datasource.username}}") String replicaUsername,
+                             @Value("${chat.datasource.analytics.replica.password:${spring.datasource.password}}") String replicaPassword,
+                             @Value("${chat.datasource.analytics.replica.failover:true}") boolean failover,
+                             @Value("${chat.datasource.analytics.replica.max-lag:30s}") Duration maxLag) {
+        MicrometerMetricsTrackerFactory metricsTrackerFactory = new MicrometerMetricsTrackerFactory(meterRegistry);
+        this.failover = failover;
+        this.maxLag = maxLag;
+
+        boolean hasReplica = replicaUrl != null && !replicaUrl.isBlank();
+        // With a healthy replica the primary pool only serves failover, so it keeps no idle connections
+        this.primaryPool = pool("chat-analytics", primaryUrl, primaryUsername, primaryPassword, maximumPoolSize,
+                hasReplica ? 0 : minimumIdle, connectionTimeout, metricsTrackerFactory);
+        if (hasReplica) {
+            this.replicaPool = pool("chat-analytics-replica", replicaUrl, replicaUsername, replicaPassword,
+                    maximumPoolSize, minimumIdle, connectionTimeout, metricsTrackerFactory);
+            this.replicaProbePool = pool("chat-analytics-replica-probe", replicaUrl, replicaUsername, replicaPassword,
+                    1, 1, Duration.ofSeconds(LAG_QUERY_TIMEOUT_SECONDS), metricsTrackerFactory);
+            this.replicaProbe = new JdbcTemplate(replicaProbePool);
+            this.replicaProbe.setQueryTimeout(LAG_QUERY_TIMEOUT_SECONDS);
+            log.info("Analytic queries use the replica at {} (failover to primary: {})", replicaUrl, failover);
+        } else {
+            this.replicaPool = null;
+            this.replicaProbePool = null;
+            this.replicaProbe = null;
+        }
+
+        this.dataSource = new RoutingDataSource();
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionManager = new DataSourceTransactionManager(dataSource);
+
+        this.failovers = Counter.builder("chat.datasource.analytics.failovers")
+                .description("Times analytic queries were moved from the replica to the primary")
+                .register(meterRegistry);
+        if (hasReplica) {
+            Gauge.builder("chat.datasource.analytics.replica.lag", this, database -> database.replicaLagSeconds)
+                    .baseUnit("seconds")
+                    .register(meterRegistry);
+            Gauge.builder("chat.datasource.analytics.replica.healthy", this, database -> database.replicaHealthy ? 1 : 0)
+                    .register(meterRegistry);
+        }
+    }
+
+    public JdbcTemplate getJdbcTemplate() {
+        return jdbcTemplate;
+    }
+
+    public PlatformTransactionManager getTransactionManager() {
+        return transactionManager;
+    }
+
+    public boolean isUsingReplica() {
+        return replicaPool != null && (replicaHealthy || !failover);
+    }
+
+    @Scheduled(fixedDelayString = "${chat.datasource.analytics.replica.check-interval:PT10S}")
+    public void checkReplica() {
+        if (replicaProbe == null) {
+            return;
+        }
+        try {
+            Double lag = replicaProbe.queryForObject(LAG_QUERY, Double.class);
+            replicaLagSeconds = lag != null ? lag : 0;
+            if (replicaLagSeconds * 1000 > maxLag.toMillis()) {
+                markReplica(false, String.format("lag of %.1fs exceeds %ds", replicaLagSeconds, maxLag.toSeconds()));
+            } else {
+                markReplica(true, "lag of " + replicaLagSeconds + "s");
+            }
+        } catch (RuntimeException e) {
+            replicaLagSeconds = Double.NaN;
+            markReplica(false, "unreachable: " + e.getMessage());
+        }
+    }
+
+    private synchronized void markReplica(boolean healthy, String reason) {
+        if (replicaHealthy == healthy) {
+            return;
+        }
+        replicaHealthy = healthy;
+        if (healthy) {
+            log.info("Replica is healthy again ({}); analytic queries return to it", reason);
+        } else if (failover) {
+            failovers.increment();
+            log.warn("Replica {}; analytic queries fail over to the primary", reason);
+        } else {
+            log.warn("Replica {}; failover is disabled, analytic queries keep using it", reason);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (replicaPool != null) {
+            replicaProbePool.close();
+            replicaPool.close();
+        }
+        primaryPool.close();
+    }
+
+    private static HikariDataSource pool(String name, String url, String username, String password, int maximumPoolSize,
+                                         int minimumIdle, Duration connectionTimeout,
+                                         MicrometerMetricsTrackerFactory metricsTrackerFactory) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName(name);
+        config.setJdbcUrl(url);
+        config.setUsername(username);
+        config.setPassword(password);
+        config.setMaximumPoolSize(maximumPoolSize);
+        config.setMinimumIdle(minimumIdle);
+        config.setConnectionTimeout(connectionTimeout.toMillis());
+        config.setReadOnly(true);
+        // Do not fail startup when the database is briefly unavailable; connections are made on demand
+        config.setInitializationFailTimeout(-1);
+        config.setMetricsTrackerFactory(metricsTrackerFactory);
+        return new HikariDataSource(config);
+    }
+
+    /**
+     * Hikari reports a connection it could not hand out in time as a
+     * {@link SQLTransientConnectionException}; only when it carries the last failed connect as
+     * its cause was the server unreachable rather than every connection in use.
+     */
+    private static boolean isPoolExhausted(SQLException e) {
+        return e instanceof SQLTransientConnectionException && e.getCause() == null;
+    }
+
+    /**
+     * Picks the pool per connection, so each query's transaction runs entirely on one server.
+     * A replica that refuses a connection is treated as down right away rather than at the
+     * next check. A replica pool that is merely saturated is not: the caller gets the pool's
+     * timeout, as with any busy pool, instead of the load moving onto the primary.
+     */
+    private final class RoutingDataSource extends AbstractDataSource {
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            if (!isUsingReplica()) {
+                return primaryPool.getConnection();
+            }
+            try {
+                return replicaPool.getConnection();
+            } catch (SQLException e) {
+                if (!failover || isPoolExhausted(e)) {
+                    throw e;
+                }
+                markReplica(false, "refused a connection: " + e.getMessage());
+                return primaryPool.getConnection();
+            }
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            throw new SQLException("Analytic connections use the configured credentials");
+        }
+    }
+}
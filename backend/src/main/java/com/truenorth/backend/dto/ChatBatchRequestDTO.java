@@ -0,0 +1,20 @@
+package com.truenorth.backend.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatBatchRequestDTO {
+    @NotEmpty(message = "Questions cannot be empty.")
+    @Size(max = 100, message = "A batch can contain at most 100 questions.")
+    private List<@NotBlank(message = "Question cannot be null or empty.") String> questions;
+    private ResultFormat resultFormat;
+}
@@ -4,10 +4,18 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.time.LocalDateTime;
+
 @AllArgsConstructor
 @NoArgsConstructor
 @Data
 public class ChatHistoryDTO {
     String conversationId;
     String title;
+    LocalDateTime createdAt;
+
+    public ChatHistoryDTO(String conversationId, String title) {
+        this.conversationId = conversationId;
+        this.title = title;
+    }
 }
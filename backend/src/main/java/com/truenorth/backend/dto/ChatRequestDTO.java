@@ -12,4 +12,5 @@ public class ChatRequestDTO {
     @NotBlank(message = "Message cannot be null or empty.")
     private String message;
     private String conversationId;
+    private ResultFormat resultFormat;
 }
\ No newline at end of file
@@ -1,5 +1,7 @@
 package com.truenorth.backend.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -16,12 +18,21 @@ public class ChatResponseDTO {
     private String explanation;
 
     private List<Map<String, Object>> data;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private ColumnarResultDTO columnar;
     private DataSummary summary;
+    // Set when a line or scatter result was thinned before sending
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Reduction reduction;
 
     private boolean isValid;
     private String errorMessage;
     private String conversationId;
 
+    // Milliseconds per pipeline stage; sent as a Server-Timing header or in the stream's end event
+    @JsonIgnore
+    private Map<String, Double> timings;
+
     @Data
     @NoArgsConstructor
     @AllArgsConstructor
@@ -63,4 +74,14 @@ public class ChatResponseDTO {
         private Double max;
         private Map<String, Object> additionalStats;
     }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Reduction {
+        private String method;
+        private long originalRows;
+        private long returnedRows;
+        private int maxPointsPerSeries;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,43 @@
+package com.truenorth.backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ColumnarResultDTO {
+    private int rowCount;
+    private List<Column> columns;
+
+    public enum Encoding {
+        INT64,
+        FLOAT64,
+        BOOL,
+        DICTIONARY,
+        DECIMAL,
+        STRING,
+        OBJECT
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Column {
+        private String name;
+        private String sqlType;
+        private Encoding encoding;
+
+        // long[], double[], boolean[], int[] dictionary codes (-1 = null), BigDecimal[], String[] or Object[]
+        private Object values;
+        private List<String> dictionary;
+
+        // Row indexes holding SQL NULL for primitive encodings
+        private int[] nulls;
+    }
+}
@@ -0,0 +1,10 @@
+package com.truenorth.backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public enum ResultFormat {
+    @JsonProperty("rows")
+    ROWS,
+    @JsonProperty("columnar")
+    COLUMNAR
+}
@@ -0,0 +1,8 @@
+package com.truenorth.backend.exception;
+
+public class BulkheadFullException extends RuntimeException {
+
+    public BulkheadFullException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package com.truenorth.backend.exception;
+
+/**
+ * The caller went away while its query was running. Not retried, since nobody is waiting for the answer.
+ */
+public class QueryCancelledException extends RuntimeException {
+
+    public QueryCancelledException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,13 @@
+package com.truenorth.backend.exception;
+
+import lombok.Getter;
+
+@Getter
+public class SqlQueryPlanRejectedException extends SqlQueryRejectedException {
+    private final String planOutline;
+
+    public SqlQueryPlanRejectedException(String message, String failedQuery, String planOutline) {
+        super(message, failedQuery);
+        this.planOutline = planOutline;
+    }
+}
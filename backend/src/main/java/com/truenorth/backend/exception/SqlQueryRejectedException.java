@@ -0,0 +1,8 @@
+package com.truenorth.backend.exception;
+
+public class SqlQueryRejectedException extends SqlQueryFailedException {
+
+    public SqlQueryRejectedException(String message, String failedQuery) {
+        super(message, null, failedQuery);
+    }
+}
@@ -0,0 +1,8 @@
+package com.truenorth.backend.exception;
+
+public class SqlQueryTimeoutException extends SqlQueryFailedException {
+
+    public SqlQueryTimeoutException(String message, Throwable cause, String failedQuery) {
+        super(message, cause, failedQuery);
+    }
+}
@@ -0,0 +1,12 @@
+package com.truenorth.backend.exception;
+
+/**
+ * A streamed response failed after rows had reached the client. The client has already been
+ * sent an error event, so the response is neither retried nor remembered.
+ */
+public class StreamAbortedException extends RuntimeException {
+
+    public StreamAbortedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
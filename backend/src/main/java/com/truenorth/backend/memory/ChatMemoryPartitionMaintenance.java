@@ -0,0 +1,50 @@
+package com.truenorth.backend.memory;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Creates the upcoming monthly chat memory partitions and drops those past retention,
+ * using the functions installed by the V1 migration.
+ */
+@Slf4j
+@Component
+public class ChatMemoryPartitionMaintenance {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String schema;
+    private final int monthsAhead;
+    private final int retentionMonths;
+
+    public ChatMemoryPartitionMaintenance(JdbcTemplate jdbcTemplate,
+                                          @Value("${db.schema.name}") String schema,
+                                          @Value("${chat.memory.partitions.months-ahead:2}") int monthsAhead,
+                                          @Value("${chat.memory.partitions.retention-months:12}") int retentionMonths) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.schema = schema;
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = retentionMonths;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${chat.memory.partitions.maintenance-cron:0 15 3 * * *}")
+    public void maintain() {
+        try {
+            jdbcTemplate.queryForList("SELECT " + schema + ".ensure_chat_memory_partitions(?)", monthsAhead);
+            if (retentionMonths > 0) {
+                Integer dropped = jdbcTemplate.queryForObject(
+                        "SELECT " + schema + ".drop_chat_memory_partitions(?)", Integer.class, retentionMonths);
+                if (dropped != null && dropped > 0) {
+                    log.info("Dropped {} chat memory partitions older than {} months", dropped, retentionMonths);
+                }
+            }
+        } catch (Exception e) {
+            log.error("Chat memory partition maintenance failed", e);
+        }
+    }
+}
@@ -0,0 +1,537 @@
+package com.truenorth.backend.memory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.truenorth.backend.config.ChatRepositoryDialect;
+import com.truenorth.backend.exception.BulkheadFullException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Takes chat memory messages and new chat_history rows off the request path. Every record is
+ * appended to a journal file before it is acknowledged, then written to the database in JDBC
+ * batches every {@code flush-interval}. Journal segments are deleted once their batch commits;
+ * any left over after a crash are replayed on startup with inserts that skip rows already written.
+ * <p>
+ * A batch the database rejects because of its data (SQLSTATE class 22 or 23, e.g. a NUL byte
+ * in a message) is retried row by row, and rows that still fail are moved to a dead-letter
+ * file so they cannot hold up everything queued behind them. Other failures retry the whole
+ * segment. Once {@code max-queued} records are waiting, new messages block for up to
+ * {@code enqueue-timeout} and are then refused.
+ */
+@Slf4j
+@Component
+public class ChatWriteBehindWriter {
+
+    private static final String ACTIVE_SEGMENT = "active.jsonl";
+    private static final String FLUSHING_PREFIX = "flushing-";
+    // Not .jsonl, so it is never replayed
+    private static final String DEAD_LETTER_FILE = "dead-letter.ndjson";
+    private static final int MAX_TITLE_LENGTH = 500;
+
+    public record PendingMessage(String conversationId, String type, String content, Instant timestamp) {
+    }
+
+    public record PendingHistory(String conversationId, String title, LocalDateTime createdAt) {
+    }
+
+    private record JournalEntry(PendingMessage message, PendingHistory history) {
+    }
+
+    private record DeadLetter(PendingMessage message, PendingHistory history, String error, Instant failedAt) {
+    }
+
+    private static final class Segment {
+        private final Path file;
+        private final List<PendingMessage> messages;
+        private final List<PendingHistory> histories;
+        // Skip rows already written; set for replayed segments and once a segment is written row by row
+        private volatile boolean replay;
+
+        Segment(Path file, List<PendingMessage> messages, List<PendingHistory> histories, boolean replay) {
+            this.file = file;
+            this.messages = messages;
+            this.histories = histories;
+            this.replay = replay;
+        }
+
+        Path file() {
+            return file;
+        }
+
+        List<PendingMessage> messages() {
+            return messages;
+        }
+
+        List<PendingHistory> histories() {
+            return histories;
+        }
+
+        int size() {
+            return messages.size() + histories.size();
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final ChatRepositoryDialect dialect;
+    private final Path journalDir;
+    private final Duration flushInterval;
+    private final int batchSize;
+    private final int maxQueued;
+    private final Duration enqueueTimeout;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition drained = lock.newCondition();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicLong lastTimestampMillis = new AtomicLong();
+    private final ScheduledThreadPoolExecutor flusher;
+
+    private BufferedWriter journal;
+    private List<PendingMessage> pendingMessages = new ArrayList<>();
+    private List<PendingHistory> pendingHistories = new ArrayList<>();
+    // Drained but not yet committed; still visible to readers
+    private final List<Segment> inFlight = new ArrayList<>();
+    private long segmentSequence;
+    // Records pending or in flight
+    private int queued;
+
+    public ChatWriteBehindWriter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                 ObjectMapper objectMapper,
+                                 @Value("${db.schema.name}") String schema,
+                                 @Value("${chat.memory.write-behind.journal-dir:data/chat-journal}") Path journalDir,
+                                 @Value("${chat.memory.write-behind.flush-interval:200ms}") Duration flushInterval,
+                                 @Value("${chat.memory.write-behind.batch-size:500}") int batchSize,
+                                 @Value("${chat.memory.write-behind.max-queued:50000}") int maxQueued,
+                                 @Value("${chat.memory.write-behind.enqueue-timeout:5s}") Duration enqueueTimeout) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.dialect = new ChatRepositoryDialect(schema);
+        this.journalDir = journalDir;
+        this.flushInterval = flushInterval;
+        this.batchSize = batchSize;
+        this.maxQueued = maxQueued;
+        this.enqueueTimeout = enqueueTimeout;
+        this.flusher = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "chat-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        Files.createDirectories(journalDir);
+        replayJournal();
+        journal = openActiveSegment();
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushInterval.toMillis(), flushInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+        log.info("Chat write-behind started, journal at {}", journalDir.toAbsolutePath());
+    }
+
+    @PreDestroy
+    public void stop() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(flushInterval.toMillis() * 10, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        lock.lock();
+        try {
+            journal.close();
+        } catch (IOException e) {
+            log.warn("Failed to close chat journal", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public List<PendingMessage> enqueueMessages(String conversationId, List<Message> messages) {
+        List<PendingMessage> records = new ArrayList<>(messages.size());
+        lock.lock();
+        try {
+            awaitCapacity();
+            for (Message message : messages) {
+                PendingMessage record = new PendingMessage(conversationId, message.getMessageType().name(),
+                        message.getText(), nextTimestamp());
+                appendToJournal(new JournalEntry(record, null));
+                records.add(record);
+            }
+            journal.flush();
+            pendingMessages.addAll(records);
+            queued += records.size();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to journal chat messages", e);
+        } finally {
+            lock.unlock();
+        }
+        return records;
+    }
+
+    public void enqueueHistory(String conversationId, String title) {
+        String trimmedTitle = title != null && title.length() > MAX_TITLE_LENGTH ? title.substring(0, MAX_TITLE_LENGTH) : title;
+        PendingHistory record = new PendingHistory(conversationId, trimmedTitle, LocalDateTime.now());
+        lock.lock();
+        try {
+            appendToJournal(new JournalEntry(null, record));
+            journal.flush();
+            // One per conversation, so never refused
+            pendingHistories.add(record);
+            queued++;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to journal chat history", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Messages for the conversation that may not be in the database yet, oldest first.
+     */
+    public List<PendingMessage> unflushedMessages(String conversationId) {
+        List<PendingMessage> result = new ArrayList<>();
+        lock.lock();
+        try {
+            for (Segment segment : inFlight) {
+                collect(segment.messages(), conversationId, result);
+            }
+            collect(pendingMessages, conversationId, result);
+        } finally {
+            lock.unlock();
+        }
+        return result;
+    }
+
+    public Set<String> unflushedConversationIds() {
+        lock.lock();
+        try {
+            return Stream.concat(inFlight.stream().flatMap(segment -> segment.messages().stream()), pendingMessages.stream())
+                    .map(PendingMessage::conversationId)
+                    .collect(Collectors.toSet());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes everything queued so far. Runs on the flusher thread, and inline before operations
+     * that rewrite or delete a conversation.
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            drainIntoSegment();
+            while (true) {
+                Segment segment;
+                lock.lock();
+                try {
+                    if (inFlight.isEmpty()) {
+                        return;
+                    }
+                    segment = inFlight.get(0);
+                } finally {
+                    lock.unlock();
+                }
+
+                writeSegment(segment);
+                Files.deleteIfExists(segment.file());
+
+                lock.lock();
+                try {
+                    inFlight.remove(0);
+                    queued -= segment.size();
+                    drained.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to rotate chat journal", e);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            // Segments stay in flight and on disk; the next run retries them
+            log.warn("Chat write-behind flush failed, will retry", e);
+        }
+    }
+
+    private void drainIntoSegment() throws IOException {
+        lock.lock();
+        try {
+            if (pendingMessages.isEmpty() && pendingHistories.isEmpty()) {
+                return;
+            }
+            journal.close();
+            Path flushing = journalDir.resolve(String.format("%s%013d-%06d.jsonl",
+                    FLUSHING_PREFIX, System.currentTimeMillis(), segmentSequence++));
+            Files.move(journalDir.resolve(ACTIVE_SEGMENT), flushing, StandardCopyOption.ATOMIC_MOVE);
+            journal = openActiveSegment();
+
+            inFlight.add(new Segment(flushing, pendingMessages, pendingHistories, false));
+            pendingMessages = new ArrayList<>();
+            pendingHistories = new ArrayList<>();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Blocks, with the lock released, while the queue is full. Called with the lock held.
+     */
+    private void awaitCapacity() {
+        long remaining = enqueueTimeout.toNanos();
+        while (queued >= maxQueued) {
+            if (remaining <= 0) {
+                throw new BulkheadFullException("Chat persistence is " + queued + " records behind");
+            }
+            try {
+                remaining = drained.awaitNanos(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new BulkheadFullException("Interrupted while waiting for chat persistence to catch up");
+            }
+        }
+    }
+
+    private void writeSegment(Segment segment) {
+        try {
+            write(segment);
+        } catch (DataAccessException e) {
+            if (!isRecordError(e)) {
+                throw e;
+            }
+            log.warn("Chat write-behind batch {} has rows the database rejects, writing it row by row: {}",
+                    segment.file().getFileName(), e.getMostSpecificCause().getMessage());
+            // The batch rolled back, but if this pass is interrupted the retry must not repeat its rows
+            segment.replay = true;
+            writeRowByRow(segment);
+        }
+    }
+
+    private void writeRowByRow(Segment segment) {
+        int deadLettered = 0;
+        for (PendingHistory history : segment.histories()) {
+            if (!writeRecord(new Segment(null, List.of(), List.of(history), true), new JournalEntry(null, history))) {
+                deadLettered++;
+            }
+        }
+        for (PendingMessage message : segment.messages()) {
+            if (!writeRecord(new Segment(null, List.of(message), List.of(), true), new JournalEntry(message, null))) {
+                deadLettered++;
+            }
+        }
+        log.warn("Wrote chat write-behind batch {} row by row, {} of {} records dead-lettered to {}",
+                segment.file().getFileName(), deadLettered, segment.size(), journalDir.resolve(DEAD_LETTER_FILE));
+    }
+
+    private boolean writeRecord(Segment single, JournalEntry record) {
+        try {
+            write(single);
+            return true;
+        } catch (DataAccessException e) {
+            if (!isRecordError(e)) {
+                throw e;
+            }
+            String error = e.getMostSpecificCause().getMessage();
+            log.error("Dead-lettering chat record for conversation {}: {}", record.message() != null
+                    ? record.message().conversationId() : record.history().conversationId(), error);
+            try (BufferedWriter deadLetters = Files.newBufferedWriter(journalDir.resolve(DEAD_LETTER_FILE),
+                    StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                deadLetters.write(objectMapper.writeValueAsString(
+                        new DeadLetter(record.message(), record.history(), error, Instant.now())));
+                deadLetters.newLine();
+            } catch (IOException io) {
+                throw new UncheckedIOException("Failed to dead-letter chat record", io);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * SQLSTATE classes 22 (data exception) and 23 (integrity constraint violation) come from
+     * the rows themselves and fail the same way on every retry.
+     */
+    private static boolean isRecordError(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLException sqlException) {
+                for (SQLException next = sqlException; next != null; next = next.getNextException()) {
+                    String state = next.getSQLState();
+                    if (state != null && (state.startsWith("22") || state.startsWith("23"))) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private void write(Segment segment) {
+        boolean replay = segment.replay;
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!segment.histories().isEmpty()) {
+                jdbcTemplate.batchUpdate(dialect.getInsertHistorySql(), segment.histories(), batchSize, (ps, history) -> {
+                    ps.setString(1, history.conversationId());
+                    ps.setString(2, history.title());
+                    ps.setTimestamp(3, Timestamp.valueOf(history.createdAt()));
+                });
+            }
+            if (!segment.messages().isEmpty()) {
+                String sql = replay ? dialect.getInsertMessageIfAbsentSql() : dialect.getInsertMessageSql();
+                jdbcTemplate.batchUpdate(sql, segment.messages(), batchSize, (ps, message) -> {
+                    Timestamp timestamp = Timestamp.from(message.timestamp());
+                    ps.setString(1, message.conversationId());
+                    ps.setString(2, message.content());
+                    ps.setString(3, message.type());
+                    ps.setTimestamp(4, timestamp);
+                    if (replay) {
+                        ps.setString(5, message.conversationId());
+                        ps.setTimestamp(6, timestamp);
+                    }
+                });
+            }
+        });
+        log.debug("Flushed {} chat messages and {} conversations", segment.messages().size(), segment.histories().size());
+    }
+
+    /**
+     * Writes segments left from the previous run. A segment that cannot be written now, e.g.
+     * because the database is still down, is queued for the flusher instead of failing startup;
+     * so is everything after it, to keep the order.
+     */
+    private void replayJournal() throws IOException {
+        List<Path> segments;
+        try (Stream<Path> files = Files.list(journalDir)) {
+            // Flushing segments in the order they were rotated, then whatever was still active
+            segments = files.filter(file -> file.getFileName().toString().endsWith(".jsonl"))
+                    .sorted(Comparator.comparing((Path file) -> file.getFileName().toString().equals(ACTIVE_SEGMENT))
+                            .thenComparing(file -> file.getFileName().toString()))
+                    .toList();
+        }
+
+        boolean deferred = false;
+        for (Path file : segments) {
+            List<String> lines;
+            try {
+                lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                Path unreadable = file.resolveSibling(file.getFileName() + ".unreadable");
+                log.error("Cannot read chat journal segment {}, moving it to {}", file, unreadable, e);
+                Files.move(file, unreadable, StandardCopyOption.REPLACE_EXISTING);
+                continue;
+            }
+
+            List<PendingMessage> messages = new ArrayList<>();
+            List<PendingHistory> histories = new ArrayList<>();
+            for (String line : lines) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    JournalEntry entry = objectMapper.readValue(line, JournalEntry.class);
+                    if (entry.message() != null) {
+                        messages.add(entry.message());
+                    }
+                    if (entry.history() != null) {
+                        histories.add(entry.history());
+                    }
+                } catch (IOException e) {
+                    // A torn last line from a crash mid-write; everything before it is intact
+                    log.warn("Skipping unreadable chat journal line in {}", file);
+                }
+            }
+
+            if (file.getFileName().toString().equals(ACTIVE_SEGMENT)) {
+                // The active segment is reopened for new records, so its old ones move out first
+                Path flushing = journalDir.resolve(String.format("%s%013d-%06d.jsonl",
+                        FLUSHING_PREFIX, System.currentTimeMillis(), segmentSequence++));
+                Files.move(file, flushing, StandardCopyOption.ATOMIC_MOVE);
+                file = flushing;
+            }
+
+            Segment segment = new Segment(file, messages, histories, true);
+            if (!deferred) {
+                try {
+                    writeSegment(segment);
+                    Files.delete(file);
+                    log.info("Replayed chat journal segment {} ({} messages, {} conversations)", file.getFileName(),
+                            messages.size(), histories.size());
+                    continue;
+                } catch (RuntimeException e) {
+                    log.error("Could not replay chat journal segment {}, leaving it and later segments to the flusher",
+                            file.getFileName(), e);
+                    deferred = true;
+                }
+            }
+            inFlight.add(segment);
+            queued += segment.size();
+        }
+    }
+
+    private BufferedWriter openActiveSegment() throws IOException {
+        return Files.newBufferedWriter(journalDir.resolve(ACTIVE_SEGMENT), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private void appendToJournal(JournalEntry entry) throws IOException {
+        journal.write(objectMapper.writeValueAsString(entry));
+        journal.newLine();
+    }
+
+    /**
+     * Strictly increasing, so messages keep their order when read back by timestamp.
+     */
+    private Instant nextTimestamp() {
+        long now = System.currentTimeMillis();
+        return Instant.ofEpochMilli(lastTimestampMillis.updateAndGet(last -> Math.max(now, last + 1)));
+    }
+
+    private static void collect(List<PendingMessage> source, String conversationId, List<PendingMessage> target) {
+        for (PendingMessage message : source) {
+            if (message.conversationId().equals(conversationId)) {
+                target.add(message);
+            }
+        }
+    }
+}
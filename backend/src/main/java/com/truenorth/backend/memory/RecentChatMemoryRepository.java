@@ -0,0 +1,20 @@
+package com.truenorth.backend.memory;
+
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.messages.Message;
+
+import java.util.List;
+
+/**
+ * A chat memory repository that can add to a conversation and read its newest messages without
+ * touching the rest of it.
+ */
+public interface RecentChatMemoryRepository extends ChatMemoryRepository {
+
+    void append(String conversationId, List<Message> messages);
+
+    /**
+     * The newest {@code limit} messages, oldest first.
+     */
+    List<Message> findRecentByConversationId(String conversationId, int limit);
+}
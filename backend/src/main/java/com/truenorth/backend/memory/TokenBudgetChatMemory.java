@@ -0,0 +1,202 @@
+package com.truenorth.backend.memory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.truenorth.backend.cache.LruTtlCache;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.SystemMessage;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Chat memory that stores every message but hands the model a bounded view of it:
+ * <ul>
+ *   <li>the last {@code verbatimTurns} turns exactly as they were sent,</li>
+ *   <li>older turns, newest first, with assistant replies reduced to their SQL and explanation,
+ *       for as long as they fit in {@code tokenBudget},</li>
+ *   <li>everything older than that folded into one summary message, cached per conversation.</li>
+ * </ul>
+ * Only the newest {@code maxLoadedMessages} are read, so a turn costs the same however long the conversation is.
+ * Tokens are estimated at four characters each, which is close enough for budgeting.
+ */
+public class TokenBudgetChatMemory implements ChatMemory {
+
+    private static final int CHARS_PER_TOKEN = 4;
+    private static final int MAX_SUMMARY_QUESTION_CHARS = 160;
+    private static final int MAX_COMPACT_TEXT_CHARS = 600;
+
+    private record Summary(String fingerprint, SystemMessage message) {
+    }
+
+    private final RecentChatMemoryRepository repository;
+    private final ObjectMapper objectMapper;
+    private final int verbatimTurns;
+    private final int tokenBudget;
+    private final int maxLoadedMessages;
+    private final Duration summaryTtl;
+    private final LruTtlCache<String, Summary> summaries;
+
+    public TokenBudgetChatMemory(RecentChatMemoryRepository repository, ObjectMapper objectMapper,
+                                 int verbatimTurns, int tokenBudget, int maxLoadedMessages,
+                                 int maxCachedSummaries, Duration summaryTtl) {
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+        this.verbatimTurns = verbatimTurns;
+        this.tokenBudget = tokenBudget;
+        this.maxLoadedMessages = maxLoadedMessages;
+        this.summaryTtl = summaryTtl;
+        this.summaries = new LruTtlCache<>(maxCachedSummaries, Long.MAX_VALUE);
+    }
+
+    @Override
+    public void add(String conversationId, List<Message> messages) {
+        repository.append(conversationId, messages);
+    }
+
+    /**
+     * Returns the budgeted view of the conversation, for prompting. Use the repository for the full history.
+     */
+    @Override
+    public List<Message> get(String conversationId) {
+        List<Message> all = repository.findRecentByConversationId(conversationId, maxLoadedMessages);
+        if (all.isEmpty()) {
+            return all;
+        }
+
+        int verbatimStart = turnStart(all, verbatimTurns);
+        int budget = tokenBudget - estimateTokens(all.subList(verbatimStart, all.size()));
+
+        // Walk older turns newest first, compacting them while they fit
+        List<Message> compacted = new ArrayList<>();
+        int keptFrom = verbatimStart;
+        while (keptFrom > 0) {
+            int previousTurnStart = turnStart(all.subList(0, keptFrom), 1);
+            List<Message> turn = compact(all.subList(previousTurnStart, keptFrom));
+            int cost = estimateTokens(turn);
+            if (cost > budget) {
+                break;
+            }
+            budget -= cost;
+            compacted.addAll(0, turn);
+            keptFrom = previousTurnStart;
+        }
+
+        List<Message> view = new ArrayList<>(all.size() - keptFrom + 1);
+        if (keptFrom > 0) {
+            view.add(summary(conversationId, all.subList(0, keptFrom)));
+        }
+        view.addAll(compacted);
+        view.addAll(all.subList(verbatimStart, all.size()));
+        return Collections.unmodifiableList(view);
+    }
+
+    @Override
+    public void clear(String conversationId) {
+        repository.deleteByConversationId(conversationId);
+        summaries.invalidate(conversationId);
+    }
+
+    /**
+     * Index of the user message that starts the {@code turns}-th turn from the end.
+     */
+    private static int turnStart(List<Message> messages, int turns) {
+        int seen = 0;
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            if (messages.get(i).getMessageType() == MessageType.USER && ++seen == turns) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    private List<Message> compact(List<Message> turn) {
+        List<Message> result = new ArrayList<>(turn.size());
+        for (Message message : turn) {
+            if (message.getMessageType() == MessageType.ASSISTANT) {
+                result.add(new AssistantMessage(compactAssistantText(message.getText())));
+            } else {
+                result.add(message);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Assistant turns are stored as the full ChatResponse JSON, most of which is chart configuration
+     * the model does not need to see again.
+     */
+    private String compactAssistantText(String text) {
+        try {
+            JsonNode response = objectMapper.readTree(text);
+            StringBuilder sb = new StringBuilder();
+            if (response.hasNonNull("sqlQuery")) {
+                sb.append("SQL: ").append(response.get("sqlQuery").asText()).append('\n');
+            }
+            if (response.hasNonNull("explanation")) {
+                sb.append("Explanation: ").append(response.get("explanation").asText());
+            }
+            if (sb.isEmpty() && response.hasNonNull("errorMessage")) {
+                sb.append("Error: ").append(response.get("errorMessage").asText());
+            }
+            return truncate(sb.toString(), MAX_COMPACT_TEXT_CHARS);
+        } catch (Exception e) {
+            return truncate(text, MAX_COMPACT_TEXT_CHARS);
+        }
+    }
+
+    /**
+     * Lists the earlier questions. Built without a model call so it is deterministic and free;
+     * cached because it only changes when another turn rolls out of the window.
+     */
+    private SystemMessage summary(String conversationId, List<Message> older) {
+        // The loaded window slides, so the size alone does not identify what was summarized
+        String fingerprint = older.size() + ":" + Objects.hashCode(older.get(0).getText()) + ":"
+                + Objects.hashCode(older.get(older.size() - 1).getText());
+        Summary cached = summaries.get(conversationId);
+        if (cached != null && cached.fingerprint().equals(fingerprint)) {
+            return cached.message();
+        }
+
+        StringBuilder sb = new StringBuilder("Summary of earlier turns in this conversation. The user previously asked:\n");
+        for (Message message : older) {
+            if (message.getMessageType() == MessageType.USER) {
+                sb.append("- ").append(truncate(message.getText().strip(), MAX_SUMMARY_QUESTION_CHARS)).append('\n');
+            }
+        }
+        SystemMessage message = new SystemMessage(sb.toString());
+
+        // Keep the summary itself inside the budget by dropping the oldest questions first
+        while (estimateTokens(message.getText()) > tokenBudget / 4 && sb.indexOf("\n- ") >= 0) {
+            int first = sb.indexOf("\n- ");
+            int next = sb.indexOf("\n", first + 1);
+            sb.delete(first, next < 0 ? sb.length() : next);
+            message = new SystemMessage(sb.toString());
+        }
+
+        summaries.put(conversationId, new Summary(fingerprint, message), message.getText().length(), summaryTtl);
+        return message;
+    }
+
+    private static int estimateTokens(List<Message> messages) {
+        int tokens = 0;
+        for (Message message : messages) {
+            tokens += estimateTokens(message.getText());
+        }
+        return tokens;
+    }
+
+    private static int estimateTokens(String text) {
+        return text == null ? 0 : (text.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+
+    private static String truncate(String text, int maxChars) {
+        return text.length() <= maxChars ? text : text.substring(0, maxChars) + "...";
+    }
+}
@@ -0,0 +1,200 @@
+package com.truenorth.backend.memory;
+
+import com.truenorth.backend.cache.LruTtlCache;
+import com.truenorth.backend.config.ChatRepositoryDialect;
+import org.springframework.ai.chat.memory.repository.jdbc.JdbcChatMemoryRepository;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Chat memory repository that appends through {@link ChatWriteBehindWriter} instead of
+ * rewriting the conversation on every turn, and serves reads from a per-conversation
+ * in-memory tail. Rewrites and deletes are flushed and handed to the JDBC repository.
+ * Loads, appends, rewrites and deletes of one conversation are serialized, so a load cannot
+ * cache a snapshot that misses an append made while it was reading.
+ */
+public class WriteBehindChatMemoryRepository implements RecentChatMemoryRepository {
+
+    /**
+     * The newest messages of a conversation; {@code complete} when nothing older exists.
+     */
+    private record Tail(List<Message> messages, boolean complete) {
+    }
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final JdbcChatMemoryRepository delegate;
+    private final ChatWriteBehindWriter writer;
+    private final JdbcTemplate jdbcTemplate;
+    private final ChatRepositoryDialect dialect;
+    private final LruTtlCache<String, Tail> tails;
+    private final Duration tailTtl;
+    private final ReentrantLock[] conversationLocks = new ReentrantLock[LOCK_STRIPES];
+
+    public WriteBehindChatMemoryRepository(JdbcChatMemoryRepository delegate, ChatWriteBehindWriter writer,
+                                           JdbcTemplate jdbcTemplate, ChatRepositoryDialect dialect,
+                                           int maxCachedConversations, long maxCachedBytes, Duration tailTtl) {
+        this.delegate = delegate;
+        this.writer = writer;
+        this.jdbcTemplate = jdbcTemplate;
+        this.dialect = dialect;
+        this.tails = new LruTtlCache<>(maxCachedConversations, maxCachedBytes);
+        this.tailTtl = tailTtl;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            conversationLocks[i] = new ReentrantLock();
+        }
+    }
+
+    @Override
+    public List<String> findConversationIds() {
+        Set<String> ids = new LinkedHashSet<>(writer.unflushedConversationIds());
+        ids.addAll(delegate.findConversationIds());
+        return new ArrayList<>(ids);
+    }
+
+    @Override
+    public List<Message> findByConversationId(String conversationId) {
+        Tail cached = tails.get(conversationId);
+        if (cached != null && cached.complete()) {
+            return cached.messages();
+        }
+
+        ReentrantLock lock = lockFor(conversationId);
+        lock.lock();
+        try {
+            cached = tails.get(conversationId);
+            if (cached != null && cached.complete()) {
+                return cached.messages();
+            }
+            List<Message> messages = load(conversationId, dialect.getSelectMessagesWithTimestampSql(), conversationId);
+            cacheTail(conversationId, new Tail(messages, true));
+            return messages;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<Message> findRecentByConversationId(String conversationId, int limit) {
+        Tail cached = tails.get(conversationId);
+        if (cached != null && (cached.complete() || cached.messages().size() >= limit)) {
+            return lastN(cached.messages(), limit);
+        }
+
+        ReentrantLock lock = lockFor(conversationId);
+        lock.lock();
+        try {
+            cached = tails.get(conversationId);
+            if (cached != null && (cached.complete() || cached.messages().size() >= limit)) {
+                return lastN(cached.messages(), limit);
+            }
+            List<Message> messages = load(conversationId, dialect.getSelectRecentMessagesWithTimestampSql(), conversationId, limit);
+            cacheTail(conversationId, new Tail(messages, messages.size() < limit));
+            return lastN(messages, limit);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void append(String conversationId, List<Message> messages) {
+        ReentrantLock lock = lockFor(conversationId);
+        lock.lock();
+        try {
+            writer.enqueueMessages(conversationId, messages);
+
+            Tail cached = tails.get(conversationId);
+            if (cached != null) {
+                List<Message> extended = new ArrayList<>(cached.messages().size() + messages.size());
+                extended.addAll(cached.messages());
+                extended.addAll(messages);
+                cacheTail(conversationId, new Tail(extended, cached.complete()));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void saveAll(String conversationId, List<Message> messages) {
+        ReentrantLock lock = lockFor(conversationId);
+        lock.lock();
+        try {
+            writer.flush();
+            tails.invalidate(conversationId);
+            delegate.saveAll(conversationId, messages);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void deleteByConversationId(String conversationId) {
+        ReentrantLock lock = lockFor(conversationId);
+        lock.lock();
+        try {
+            writer.flush();
+            tails.invalidate(conversationId);
+            delegate.deleteByConversationId(conversationId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ReentrantLock lockFor(String conversationId) {
+        return conversationLocks[Math.floorMod(conversationId.hashCode(), LOCK_STRIPES)];
+    }
+
+    /**
+     * Reads the unflushed messages before the table: a batch that commits in between is then
+     * seen twice rather than not at all, and duplicates collapse on their timestamp.
+     */
+    private List<Message> load(String conversationId, String sql, Object... args) {
+        List<ChatWriteBehindWriter.PendingMessage> unflushed = writer.unflushedMessages(conversationId);
+
+        TreeMap<Instant, Message> byTimestamp = new TreeMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            byTimestamp.put(rs.getTimestamp(3).toInstant(), toMessage(rs.getString(2), rs.getString(1)));
+        }, args);
+        for (ChatWriteBehindWriter.PendingMessage pending : unflushed) {
+            byTimestamp.putIfAbsent(pending.timestamp(), toMessage(pending.type(), pending.content()));
+        }
+        return Collections.unmodifiableList(new ArrayList<>(byTimestamp.values()));
+    }
+
+    private void cacheTail(String conversationId, Tail tail) {
+        long weight = 0;
+        for (Message message : tail.messages()) {
+            weight += message.getText() != null ? message.getText().length() * 2L : 0;
+        }
+        tails.put(conversationId, new Tail(Collections.unmodifiableList(tail.messages()), tail.complete()), weight, tailTtl);
+    }
+
+    private static List<Message> lastN(List<Message> messages, int limit) {
+        return messages.size() <= limit ? messages : messages.subList(messages.size() - limit, messages.size());
+    }
+
+    private static Message toMessage(String type, String content) {
+        return switch (MessageType.valueOf(type)) {
+            case USER -> new UserMessage(content);
+            case ASSISTANT -> new AssistantMessage(content);
+            case SYSTEM -> new SystemMessage(content);
+            case TOOL -> new ToolResponseMessage(List.of());
+        };
+    }
+}
@@ -1,5 +1,6 @@
 package com.truenorth.backend.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonPropertyDescription;
 import lombok.AllArgsConstructor;
@@ -36,6 +37,15 @@ public class ChatResponse {
     @JsonPropertyDescription("Error message if prompt is invalid")
     private String errorMessage;
 
+    // The model that produced this response; not part of the structured output
+    @JsonIgnore
+    private String model;
+
+    // The query as the model wrote it, before the guard's rewrites, so an export can lift the
+    // guard's LIMIT; not part of the structured output, stored alongside it by StoredChatResponse
+    @JsonIgnore
+    private String generatedQuery;
+
     @Data
     @NoArgsConstructor
     @AllArgsConstructor
@@ -0,0 +1,29 @@
+package com.truenorth.backend.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "chat_response_cache", schema = "klupica")
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class ChatResponseCacheEntry {
+
+    @Id
+    @Column(name = "cache_key", length = 64, nullable = false)
+    String cacheKey;
+
+    @Column(name = "response", columnDefinition = "text", nullable = false)
+    String response;
+
+    @Column(name = "created_at", nullable = false)
+    LocalDateTime createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    LocalDateTime expiresAt;
+}
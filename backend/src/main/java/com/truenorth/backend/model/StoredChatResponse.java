@@ -0,0 +1,30 @@
+package com.truenorth.backend.model;
+
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A {@link ChatResponse} as kept in chat memory and the response cache: the response's own
+ * fields plus the query the model generated, written side by side in one JSON object.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StoredChatResponse {
+
+    @JsonUnwrapped
+    private ChatResponse response;
+
+    private String generatedQuery;
+
+    public static StoredChatResponse of(ChatResponse response) {
+        return new StoredChatResponse(response, response.getGeneratedQuery());
+    }
+
+    public ChatResponse toChatResponse() {
+        response.setGeneratedQuery(generatedQuery);
+        return response;
+    }
+}
@@ -1,12 +1,33 @@
 package com.truenorth.backend.repository;
 
+import com.truenorth.backend.dto.ChatHistoryDTO;
 import com.truenorth.backend.model.ChatHistory;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
 
 public interface ChatHistoryRepository extends JpaRepository<ChatHistory, String> {
 
     Page<ChatHistory> findAll(Pageable pageable);
+
+    @Query("SELECT new com.truenorth.backend.dto.ChatHistoryDTO(h.conversationId, h.title, h.createdAt) " +
+            "FROM ChatHistory h ORDER BY h.createdAt DESC, h.conversationId DESC")
+    List<ChatHistoryDTO> findNewest(Limit limit);
+
+    // The leading createdAt <= bound gives the planner an index range; the OR settles ties on the same timestamp
+    @Query("SELECT new com.truenorth.backend.dto.ChatHistoryDTO(h.conversationId, h.title, h.createdAt) " +
+            "FROM ChatHistory h " +
+            "WHERE h.createdAt <= :createdAt " +
+            "AND (h.createdAt < :createdAt OR h.conversationId < :conversationId) " +
+            "ORDER BY h.createdAt DESC, h.conversationId DESC")
+    List<ChatHistoryDTO> findOlderThan(@Param("createdAt") LocalDateTime createdAt,
+                                       @Param("conversationId") String conversationId,
+                                       Limit limit);
 }
@@ -0,0 +1,20 @@
+package com.truenorth.backend.repository;
+
+import com.truenorth.backend.model.ChatResponseCacheEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+public interface ChatResponseCacheRepository extends JpaRepository<ChatResponseCacheEntry, String> {
+
+    Optional<ChatResponseCacheEntry> findByCacheKeyAndExpiresAtAfter(String cacheKey, LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("delete from ChatResponseCacheEntry e where e.expiresAt < :now")
+    int deleteExpired(LocalDateTime now);
+}
@@ -0,0 +1,253 @@
+package com.truenorth.backend.rollup;
+
+import com.truenorth.backend.sql.SqlTokenizer;
+import com.truenorth.backend.sql.SqlTokenizer.Token;
+import com.truenorth.backend.sql.SqlTokenizer.TokenType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Recognizes single-table aggregate queries whose aggregates can be recomputed from partial
+ * aggregates: one SELECT over one table, no joins, subqueries, set operations or window functions,
+ * and only COUNT/SUM/AVG/MIN/MAX. Every column used outside an aggregate, or inside an aggregate
+ * over an expression, is a dimension; a bare column inside an aggregate is a measure.
+ */
+public final class AggregateQueryAnalyzer {
+
+    public enum Kind {
+        COUNT_STAR,
+        MEASURE,
+        EXPRESSION
+    }
+
+    /**
+     * One aggregate call; {@code start}/{@code end} span the call in the SQL text, {@code argument}
+     * is the source text of the argument (without DISTINCT) and {@code cast} any widening {@code ::type} on a measure;
+     * a measure under any other cast is an expression.
+     */
+    public record AggregateCall(String function, Kind kind, String column, String argument, String cast,
+                                boolean distinct, int start, int end) {
+    }
+
+    public record AggregateQuery(String table, String alias, int tableStart, int tableEnd,
+                                 SortedSet<String> dimensions, SortedSet<String> measures, List<AggregateCall> calls) {
+    }
+
+    private static final Set<String> AGGREGATE_FUNCTIONS = Set.of("count", "sum", "avg", "min", "max");
+
+    private static final Set<String> UNSUPPORTED_WORDS = Set.of(
+            "with", "union", "intersect", "except", "join", "over", "filter", "within", "lateral", "window",
+            "grouping", "rollup", "cube", "tablesample", "stddev", "stddev_pop", "stddev_samp", "variance",
+            "var_pop", "var_samp", "percentile_cont", "percentile_disc", "mode", "string_agg", "array_agg",
+            "json_agg", "jsonb_agg", "bool_and", "bool_or", "every", "corr", "covar_pop", "covar_samp");
+
+    private static final Set<String> WIDENING_CASTS = Set.of("numeric", "decimal", "float8", "double precision");
+
+    private static final Set<String> CLAUSE_KEYWORDS = Set.of("where", "group", "having", "order", "limit", "offset", "fetch");
+
+    private AggregateQueryAnalyzer() {
+    }
+
+    public static Optional<AggregateQuery> analyze(String sql, String schema, Map<String, Set<String>> columnsByTable) {
+        List<Token> tokens = new ArrayList<>(SqlTokenizer.tokenize(sql));
+        while (!tokens.isEmpty() && tokens.get(tokens.size() - 1).isSymbol(";")) {
+            tokens.remove(tokens.size() - 1);
+        }
+        if (tokens.isEmpty() || !tokens.get(0).isWord("select")) {
+            return Optional.empty();
+        }
+
+        int[] depth = new int[tokens.size()];
+        int current = 0;
+        int selects = 0;
+        int from = -1;
+        for (int i = 0; i < tokens.size(); i++) {
+            Token token = tokens.get(i);
+            if (token.isSymbol(")")) {
+                current--;
+            }
+            depth[i] = current;
+            if (token.isSymbol("(")) {
+                current++;
+            }
+            if (token.type() == TokenType.WORD) {
+                String word = token.text().toLowerCase(Locale.ROOT);
+                if (UNSUPPORTED_WORDS.contains(word) || (word.equals("distinct") && !tokens.get(i - 1).isSymbol("("))) {
+                    return Optional.empty();
+                }
+                if (word.equals("select")) {
+                    selects++;
+                }
+                if (word.equals("from") && current == 0 && from < 0) {
+                    from = i;
+                }
+            }
+        }
+        if (current != 0 || selects != 1 || from < 0) {
+            return Optional.empty();
+        }
+
+        // FROM [schema.]table [[AS] alias], then a clause keyword or the end
+        int i = from + 1;
+        if (i + 2 < tokens.size() && tokens.get(i + 1).isSymbol(".")) {
+            if (schema == null || !tokens.get(i).isWord(schema)) {
+                return Optional.empty();
+            }
+            i += 2;
+        }
+        if (i >= tokens.size() || tokens.get(i).type() != TokenType.WORD) {
+            return Optional.empty();
+        }
+        String table = tokens.get(i).text().toLowerCase(Locale.ROOT);
+        Set<String> columns = columnsByTable.get(table);
+        if (columns == null) {
+            return Optional.empty();
+        }
+        int tableStart = tokens.get(from + 1).start();
+        int tableEnd = tokens.get(i).end();
+
+        String alias = null;
+        if (i + 1 < tokens.size() && tokens.get(i + 1).isWord("as")) {
+            i++;
+        }
+        if (i + 1 < tokens.size() && tokens.get(i + 1).type() == TokenType.WORD
+                && !CLAUSE_KEYWORDS.contains(tokens.get(i + 1).text().toLowerCase(Locale.ROOT))) {
+            alias = tokens.get(++i).text();
+        }
+        int fromEnd = i;
+        if (i + 1 < tokens.size() && !(tokens.get(i + 1).type() == TokenType.WORD
+                && CLAUSE_KEYWORDS.contains(tokens.get(i + 1).text().toLowerCase(Locale.ROOT)))) {
+            return Optional.empty();
+        }
+
+        SortedSet<String> dimensions = new TreeSet<>();
+        SortedSet<String> measureColumns = new TreeSet<>();
+        List<AggregateCall> calls = new ArrayList<>();
+        for (int t = 1; t < tokens.size(); t++) {
+            if (t >= from && t <= fromEnd) {
+                continue;
+            }
+            Token token = tokens.get(t);
+
+            if (token.isSymbol("*")) {
+                Token previous = tokens.get(t - 1);
+                if (previous.isWord("select") || previous.isSymbol(",") || previous.isSymbol(".")) {
+                    return Optional.empty();
+                }
+            }
+
+            if (token.type() == TokenType.WORD && AGGREGATE_FUNCTIONS.contains(token.text().toLowerCase(Locale.ROOT))
+                    && t + 1 < tokens.size() && tokens.get(t + 1).isSymbol("(")) {
+                int close = t + 2;
+                while (close < tokens.size() && !(tokens.get(close).isSymbol(")") && depth[close] == depth[t])) {
+                    close++;
+                }
+                AggregateCall call = aggregateCall(sql, tokens, t, close, columns, dimensions);
+                if (call == null) {
+                    return Optional.empty();
+                }
+                if (call.kind() == Kind.MEASURE) {
+                    measureColumns.add(call.column());
+                }
+                calls.add(call);
+                t = close;
+                continue;
+            }
+
+            String column = columnReference(tokens, t, columns);
+            if (column != null) {
+                dimensions.add(column);
+            }
+        }
+        if (calls.isEmpty()) {
+            return Optional.empty();
+        }
+
+        measureColumns.removeAll(dimensions);
+        return Optional.of(new AggregateQuery(table, alias, tableStart, tableEnd, dimensions, measureColumns, calls));
+    }
+
+    private static AggregateCall aggregateCall(String sql, List<Token> tokens, int nameIndex, int close,
+                                               Set<String> columns, Set<String> dimensions) {
+        String function = tokens.get(nameIndex).text().toLowerCase(Locale.ROOT);
+        int start = tokens.get(nameIndex).start();
+        int end = tokens.get(close).end();
+        int first = nameIndex + 2;
+        if (first >= close) {
+            return null;
+        }
+
+        boolean distinct = tokens.get(first).isWord("distinct");
+        if (distinct) {
+            if (!function.equals("count") || ++first >= close) {
+                return null;
+            }
+        }
+        String argument = sql.substring(tokens.get(first).start(), tokens.get(close - 1).end());
+
+        if (!distinct && function.equals("count") && close - first == 1 && tokens.get(first).isSymbol("*")) {
+            return new AggregateCall(function, Kind.COUNT_STAR, null, argument, null, false, start, end);
+        }
+
+        // A bare column, optionally qualified and optionally cast
+        int columnIndex = first + 2 < close && tokens.get(first + 1).isSymbol(".") ? first + 2 : first;
+        String column = columnReference(tokens, columnIndex, columns);
+        int afterColumn = columnIndex + 1;
+        if (!distinct && column != null && (afterColumn == close || tokens.get(afterColumn).isSymbol("::"))) {
+            String cast = afterColumn == close ? null
+                    : sql.substring(tokens.get(afterColumn + 1).start(), tokens.get(close - 1).end())
+                    .toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+            // A narrowing or rounding cast applies to each value, so it cannot be moved onto the re-aggregated partials
+            if (cast == null || WIDENING_CASTS.contains(cast)) {
+                return new AggregateCall(function, Kind.MEASURE, column, argument, cast, false, start, end);
+            }
+        }
+
+        // Anything else must be computable per group, so its columns become dimensions
+        for (int t = first; t < close; t++) {
+            Token token = tokens.get(t);
+            if (token.type() == TokenType.WORD && AGGREGATE_FUNCTIONS.contains(token.text().toLowerCase(Locale.ROOT))
+                    && tokens.get(t + 1).isSymbol("(")) {
+                return null;
+            }
+            String referenced = columnReference(tokens, t, columns);
+            if (referenced != null) {
+                dimensions.add(referenced);
+            }
+        }
+        return new AggregateCall(function, Kind.EXPRESSION, null, argument, null, distinct, start, end);
+    }
+
+    /**
+     * The column name if the token at {@code index} refers to a column of the table, rather than
+     * being a function name, an output alias, a type or a qualifier.
+     */
+    private static String columnReference(List<Token> tokens, int index, Set<String> columns) {
+        Token token = tokens.get(index);
+        String name;
+        if (token.type() == TokenType.WORD) {
+            name = token.text().toLowerCase(Locale.ROOT);
+        } else if (token.type() == TokenType.QUOTED_IDENTIFIER) {
+            name = token.text().substring(1, token.text().length() - 1);
+        } else {
+            return null;
+        }
+        if (!columns.contains(name)) {
+            return null;
+        }
+        if (index + 1 < tokens.size() && (tokens.get(index + 1).isSymbol("(") || tokens.get(index + 1).isSymbol("."))) {
+            return null;
+        }
+        if (index > 0 && (tokens.get(index - 1).isWord("as") || tokens.get(index - 1).isSymbol("::"))) {
+            return null;
+        }
+        return name;
+    }
+}
@@ -0,0 +1,28 @@
+package com.truenorth.backend.rollup;
+
+import java.time.Instant;
+import java.util.Set;
+import java.util.SortedSet;
+
+/**
+ * A materialized view holding one row per combination of {@code dimensions}, with the row count
+ * and the sum, count, min and max of each measure column.
+ */
+public record Rollup(String name, String table, SortedSet<String> dimensions, Set<String> measures, long rowCount,
+                     Instant refreshedAt) {
+
+    /**
+     * Whether every group and aggregate the query needs can be computed from this rollup.
+     */
+    public boolean covers(String table, Set<String> queryDimensions, Set<String> queryMeasures) {
+        if (!this.table.equals(table) || !dimensions.containsAll(queryDimensions)) {
+            return false;
+        }
+        for (String measure : queryMeasures) {
+            if (!measures.contains(measure) && !dimensions.contains(measure)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
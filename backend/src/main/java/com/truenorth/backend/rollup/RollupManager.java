@@ -0,0 +1,306 @@
+package com.truenorth.backend.rollup;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.truenorth.backend.schema.SchemaCatalog;
+import com.truenorth.backend.sql.SqlFingerprint;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Counts the aggregate shapes the router could not serve and, once a shape recurs, builds a
+ * materialized view for it. Views are kept small (their estimated and actual row counts are
+ * capped), refreshed on a schedule, and recorded in {@code chat_rollup} so they survive restarts.
+ */
+@Slf4j
+@Component
+public class RollupManager {
+
+    static final String ROWS_COLUMN = "rollup_rows";
+
+    private static final Set<String> NUMERIC_TYPES = Set.of("int2", "int4", "int8", "float4", "float8", "numeric");
+    private static final Pattern PLAIN_IDENTIFIER = Pattern.compile("[a-z_][a-z0-9_]*");
+    private static final String[] MEASURE_AGGREGATES = {"sum", "count", "min", "max"};
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final SchemaCatalog schemaCatalog;
+    private final String schema;
+    private final boolean enabled;
+    private final int minOccurrences;
+    private final int maxRollups;
+    private final int maxTrackedShapes;
+    private final long maxRows;
+    private final Duration refreshInterval;
+    private final Duration buildTimeout;
+
+    private final Map<RollupShape, Integer> observations = new ConcurrentHashMap<>();
+    private final Set<RollupShape> rejected = ConcurrentHashMap.newKeySet();
+    private volatile List<Rollup> rollups = List.of();
+
+    public RollupManager(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                         ObjectMapper objectMapper, SchemaCatalog schemaCatalog,
+                         @Value("${db.schema.name}") String schema,
+                         @Value("${chat.rollup.enabled:true}") boolean enabled,
+                         @Value("${chat.rollup.min-occurrences:3}") int minOccurrences,
+                         @Value("${chat.rollup.max-rollups:20}") int maxRollups,
+                         @Value("${chat.rollup.max-tracked-shapes:1000}") int maxTrackedShapes,
+                         @Value("${chat.rollup.max-rows:50000}") long maxRows,
+                         @Value("${chat.rollup.refresh-interval:PT1H}") Duration refreshInterval,
+                         @Value("${chat.rollup.build-timeout:5m}") Duration buildTimeout) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.schemaCatalog = schemaCatalog;
+        this.schema = schema;
+        this.enabled = enabled;
+        this.minOccurrences = minOccurrences;
+        this.maxRollups = maxRollups;
+        this.maxTrackedShapes = maxTrackedShapes;
+        this.maxRows = maxRows;
+        this.refreshInterval = refreshInterval;
+        this.buildTimeout = buildTimeout;
+    }
+
+    static String measureColumn(String aggregate, String column) {
+        return "rollup_" + aggregate + "_" + column;
+    }
+
+    static boolean isNumeric(String type) {
+        return NUMERIC_TYPES.contains(type);
+    }
+
+    public List<Rollup> rollups() {
+        return rollups;
+    }
+
+    /**
+     * The smallest rollup that can answer a query grouped by {@code dimensions} over {@code measures}.
+     */
+    public Optional<Rollup> find(String table, Set<String> dimensions, Set<String> measures) {
+        return rollups.stream()
+                .filter(rollup -> rollup.covers(table, dimensions, measures))
+                .min(Comparator.comparingLong(Rollup::rowCount));
+    }
+
+    public void observe(RollupShape shape) {
+        if (!enabled || rejected.contains(shape)) {
+            return;
+        }
+        if (observations.size() >= maxTrackedShapes && !observations.containsKey(shape)) {
+            return;
+        }
+        observations.merge(shape, 1, Integer::sum);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            this.rollups = List.copyOf(jdbcTemplate.query(
+                    "SELECT name, source_table, dimensions, measures, row_count, refreshed_at FROM " + schema + ".chat_rollup"
+                            + " WHERE to_regclass(format('%I.%I', ?::text, name)) IS NOT NULL",
+                    (rs, rowNum) -> new Rollup(rs.getString("name"), rs.getString("source_table"),
+                            split(rs.getString("dimensions")), split(rs.getString("measures")), rs.getLong("row_count"),
+                            rs.getTimestamp("refreshed_at").toInstant()),
+                    schema));
+            log.debug("Loaded {} rollups", rollups.size());
+        } catch (Exception e) {
+            log.error("Failed to load rollups", e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${chat.rollup.maintenance-interval:PT5M}", initialDelayString = "${chat.rollup.maintenance-interval:PT5M}")
+    public synchronized void maintain() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            for (Rollup rollup : rollups) {
+                if (rollup.refreshedAt().plus(refreshInterval).isBefore(Instant.now())) {
+                    refresh(rollup);
+                }
+            }
+            buildRecurringShapes();
+        } catch (Exception e) {
+            log.error("Rollup maintenance failed", e);
+        } finally {
+            // Halve the counts so only shapes that keep recurring reach the threshold
+            observations.replaceAll((shape, count) -> count / 2);
+            observations.values().removeIf(count -> count == 0);
+            load();
+        }
+    }
+
+    public synchronized boolean drop(String name) {
+        if (rollups.stream().noneMatch(rollup -> rollup.name().equals(name))) {
+            return false;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.execute("DROP MATERIALIZED VIEW IF EXISTS " + qualified(name));
+            jdbcTemplate.update("DELETE FROM " + schema + ".chat_rollup WHERE name = ?", name);
+        });
+        log.info("Dropped rollup {}", name);
+        load();
+        return true;
+    }
+
+    private void buildRecurringShapes() {
+        List<Map.Entry<RollupShape, Integer>> recurring = observations.entrySet().stream()
+                .filter(entry -> entry.getValue() >= minOccurrences)
+                .sorted(Map.Entry.<RollupShape, Integer>comparingByValue().reversed())
+                .toList();
+
+        int available = maxRollups - rollups.size();
+        for (Map.Entry<RollupShape, Integer> entry : recurring) {
+            if (available <= 0) {
+                break;
+            }
+            RollupShape shape = entry.getKey();
+            observations.remove(shape);
+            if (rejected.contains(shape) || find(shape.table(), shape.dimensions(), Set.of()).isPresent()) {
+                continue;
+            }
+            try {
+                if (build(shape)) {
+                    available--;
+                } else {
+                    rejected.add(shape);
+                }
+            } catch (Exception e) {
+                log.warn("Could not build rollup for {} by {}: {}", shape.table(), shape.dimensions(), e.getMessage());
+                rejected.add(shape);
+            }
+        }
+    }
+
+    private boolean build(RollupShape shape) {
+        SchemaCatalog.Table table = schemaCatalog.current().tables().stream()
+                .filter(candidate -> candidate.name().equals(shape.table()))
+                .findFirst()
+                .orElse(null);
+        if (table == null || !shape.dimensions().stream().allMatch(d -> PLAIN_IDENTIFIER.matcher(d).matches())) {
+            return false;
+        }
+
+        String source = schema + "." + shape.table();
+        String dimensionList = String.join(", ", shape.dimensions());
+        if (!shape.dimensions().isEmpty()) {
+            double estimated = estimateRows("SELECT " + dimensionList + " FROM " + source + " GROUP BY " + dimensionList);
+            if (estimated > maxRows) {
+                log.info("Not building rollup for {} by {}: about {} groups", shape.table(), shape.dimensions(), (long) estimated);
+                return false;
+            }
+        }
+
+        // Every numeric column gets partial aggregates, so one rollup serves any measure for its grouping
+        TreeSet<String> measures = new TreeSet<>();
+        StringBuilder select = new StringBuilder("SELECT ");
+        for (String dimension : shape.dimensions()) {
+            select.append(dimension).append(", ");
+        }
+        select.append("COUNT(*) AS ").append(ROWS_COLUMN);
+        for (SchemaCatalog.Column column : table.columns()) {
+            if (isNumeric(column.type()) && PLAIN_IDENTIFIER.matcher(column.name()).matches()
+                    && !shape.dimensions().contains(column.name())) {
+                measures.add(column.name());
+                for (String aggregate : MEASURE_AGGREGATES) {
+                    select.append(", ").append(aggregate).append('(').append(column.name()).append(") AS ")
+                            .append(measureColumn(aggregate, column.name()));
+                }
+            }
+        }
+        select.append(" FROM ").append(source);
+        if (!shape.dimensions().isEmpty()) {
+            select.append(" GROUP BY ").append(dimensionList);
+        }
+
+        String key = shape.table() + "|" + dimensionList;
+        String name = "rollup_" + shape.table().substring(0, Math.min(shape.table().length(), 30)) + "_" + SqlFingerprint.hash(key);
+        long rows = transactionTemplate.execute(status -> {
+            jdbcTemplate.execute("SET LOCAL statement_timeout = " + buildTimeout.toMillis());
+            jdbcTemplate.execute("CREATE MATERIALIZED VIEW " + qualified(name) + " AS " + select);
+            Long count = jdbcTemplate.queryForObject("SELECT count(*) FROM " + qualified(name), Long.class);
+            if (count == null || count > maxRows) {
+                status.setRollbackOnly();
+                return -1L;
+            }
+            if (!shape.dimensions().isEmpty()) {
+                // Required by REFRESH ... CONCURRENTLY; NULL groups never collide since NULLs are distinct
+                jdbcTemplate.execute("CREATE UNIQUE INDEX " + name + "_key ON " + qualified(name) + " (" + dimensionList + ")");
+            }
+            jdbcTemplate.update("INSERT INTO " + schema + ".chat_rollup (name, source_table, dimensions, measures, row_count)"
+                    + " VALUES (?, ?, ?, ?, ?)", name, shape.table(), dimensionList.replace(" ", ""), String.join(",", measures), count);
+            return count;
+        });
+        if (rows < 0) {
+            log.info("Discarded rollup for {} by {}: more than {} groups", shape.table(), shape.dimensions(), maxRows);
+            return false;
+        }
+
+        log.info("Built rollup {} for {} by {} ({} rows)", name, shape.table(), shape.dimensions(), rows);
+        return true;
+    }
+
+    private void refresh(Rollup rollup) {
+        try {
+            Long rows = transactionTemplate.execute(status -> {
+                jdbcTemplate.execute("SET LOCAL statement_timeout = " + buildTimeout.toMillis());
+                jdbcTemplate.execute("REFRESH MATERIALIZED VIEW " + (rollup.dimensions().isEmpty() ? "" : "CONCURRENTLY ")
+                        + qualified(rollup.name()));
+                Long count = jdbcTemplate.queryForObject("SELECT count(*) FROM " + qualified(rollup.name()), Long.class);
+                jdbcTemplate.update("UPDATE " + schema + ".chat_rollup SET row_count = ?, refreshed_at = now() WHERE name = ?",
+                        count, rollup.name());
+                return count;
+            });
+            log.info("Refreshed rollup {} ({} rows)", rollup.name(), rows);
+        } catch (Exception e) {
+            log.error("Failed to refresh rollup {}", rollup.name(), e);
+        }
+    }
+
+    private double estimateRows(String sql) {
+        String plan = jdbcTemplate.queryForObject("EXPLAIN (FORMAT JSON) " + sql, String.class);
+        try {
+            JsonNode root = objectMapper.readTree(plan);
+            return root.path(0).path("Plan").path("Plan Rows").asDouble(Double.MAX_VALUE);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable EXPLAIN output", e);
+        }
+    }
+
+    private String qualified(String name) {
+        return schema + "." + name;
+    }
+
+    private static TreeSet<String> split(String list) {
+        TreeSet<String> values = new TreeSet<>();
+        if (list != null && !list.isBlank()) {
+            values.addAll(Arrays.asList(list.split(",")));
+        }
+        return values;
+    }
+}
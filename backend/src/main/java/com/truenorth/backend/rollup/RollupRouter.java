@@ -0,0 +1,203 @@
+package com.truenorth.backend.rollup;
+
+import com.truenorth.backend.rollup.AggregateQueryAnalyzer.AggregateCall;
+import com.truenorth.backend.rollup.AggregateQueryAnalyzer.AggregateQuery;
+import com.truenorth.backend.schema.SchemaCatalog;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Rewrites aggregate queries that a rollup can answer so they read the rollup instead of the
+ * source table. The rollup is aliased as the original table, so every column reference outside
+ * the aggregates stays valid; only the FROM target and the aggregate calls change.
+ */
+@Slf4j
+@Component
+public class RollupRouter {
+
+    public record Route(String sql, String rollup) {
+        public boolean isRewritten() {
+            return rollup != null;
+        }
+    }
+
+    private record Edit(int start, int end, String replacement) {
+    }
+
+    private record SourceColumns(String snapshotVersion, Map<String, Set<String>> columns, Map<String, Set<String>> numeric) {
+    }
+
+    private final RollupManager rollupManager;
+    private final SchemaCatalog schemaCatalog;
+    private final String schema;
+    private final boolean enabled;
+    private final Set<String> sourceTables;
+    private final Counter routed;
+    private final Counter notCovered;
+    private final Counter unsupported;
+    private volatile SourceColumns sourceColumns;
+
+    public RollupRouter(RollupManager rollupManager, SchemaCatalog schemaCatalog, MeterRegistry meterRegistry,
+                        @Value("${db.schema.name}") String schema,
+                        @Value("${chat.rollup.enabled:true}") boolean enabled,
+                        @Value("${chat.rollup.source-tables:autoinsurance}") List<String> sourceTables) {
+        this.rollupManager = rollupManager;
+        this.schemaCatalog = schemaCatalog;
+        this.schema = schema;
+        this.enabled = enabled;
+        this.sourceTables = Set.copyOf(sourceTables);
+        this.routed = routeCounter(meterRegistry, "rollup");
+        this.notCovered = routeCounter(meterRegistry, "not_covered");
+        this.unsupported = routeCounter(meterRegistry, "unsupported");
+    }
+
+    private static Counter routeCounter(MeterRegistry registry, String outcome) {
+        return Counter.builder("chat.rollup.queries")
+                .description("Generated queries by whether a rollup answered them")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    /**
+     * Returns the query rewritten against the best covering rollup, or unchanged. Aggregate
+     * shapes no rollup covers yet are reported to the {@link RollupManager}.
+     */
+    public Route route(String sql) {
+        if (!enabled) {
+            return new Route(sql, null);
+        }
+        SourceColumns source = sourceColumns();
+        Optional<AggregateQuery> analyzed = AggregateQueryAnalyzer.analyze(sql, schema, source.columns());
+        if (analyzed.isEmpty()) {
+            unsupported.increment();
+            return new Route(sql, null);
+        }
+
+        AggregateQuery query = analyzed.get();
+        // Only numeric columns get partial aggregates; any other aggregated column has to be grouped on
+        TreeSet<String> dimensions = new TreeSet<>(query.dimensions());
+        Set<String> measures = new HashSet<>();
+        Set<String> numeric = source.numeric().getOrDefault(query.table(), Set.of());
+        for (String measure : query.measures()) {
+            (numeric.contains(measure) ? measures : dimensions).add(measure);
+        }
+
+        Optional<Rollup> rollup = rollupManager.find(query.table(), dimensions, measures);
+        if (rollup.isEmpty()) {
+            notCovered.increment();
+            rollupManager.observe(new RollupShape(query.table(), dimensions));
+            return new Route(sql, null);
+        }
+
+        routed.increment();
+        String rewritten = rewrite(sql, query, rollup.get(), schema);
+        log.debug("Routed query to rollup {}: {}", rollup.get().name(), rewritten);
+        return new Route(rewritten, rollup.get().name());
+    }
+
+    static String rewrite(String sql, AggregateQuery query, Rollup rollup, String schema) {
+        List<Edit> edits = new ArrayList<>();
+        String target = schema + "." + rollup.name() + (query.alias() == null ? " AS " + query.table() : "");
+        edits.add(new Edit(query.tableStart(), query.tableEnd(), target));
+        for (AggregateCall call : query.calls()) {
+            String replacement = replacement(call, rollup);
+            if (replacement != null) {
+                edits.add(new Edit(call.start(), call.end(), replacement));
+            }
+        }
+
+        edits.sort(Comparator.comparingInt(Edit::start).reversed());
+        StringBuilder rewritten = new StringBuilder(sql);
+        for (Edit edit : edits) {
+            rewritten.replace(edit.start(), edit.end(), edit.replacement());
+        }
+        return rewritten.toString();
+    }
+
+    /**
+     * The aggregate recomputed from the rollup's partial aggregates, or null when it can run unchanged.
+     */
+    private static String replacement(AggregateCall call, Rollup rollup) {
+        String rows = RollupManager.ROWS_COLUMN;
+        return switch (call.kind()) {
+            case COUNT_STAR -> "COALESCE(SUM(" + rows + "), 0)::bigint";
+            case MEASURE -> rollup.measures().contains(call.column())
+                    ? measureReplacement(call)
+                    : expressionReplacement(call.function(), call.argument());
+            case EXPRESSION -> call.distinct() ? null : expressionReplacement(call.function(), call.argument());
+        };
+    }
+
+    private static String measureReplacement(AggregateCall call) {
+        String cast = call.cast() == null ? "" : "::" + call.cast();
+        String sum = "SUM(" + RollupManager.measureColumn("sum", call.column()) + ")";
+        String count = "SUM(" + RollupManager.measureColumn("count", call.column()) + ")";
+        return switch (call.function()) {
+            case "count" -> "COALESCE(" + count + ", 0)::bigint";
+            case "sum" -> sum + cast;
+            case "avg" -> "(" + sum + cast + " / NULLIF(" + count + ", 0))";
+            case "min" -> "MIN(" + RollupManager.measureColumn("min", call.column()) + ")" + cast;
+            case "max" -> "MAX(" + RollupManager.measureColumn("max", call.column()) + ")" + cast;
+            default -> throw new IllegalArgumentException("Unsupported aggregate: " + call.function());
+        };
+    }
+
+    /**
+     * An aggregate over an expression of grouped columns: each rollup row stands for
+     * {@code rollup_rows} source rows with the same value.
+     */
+    private static String expressionReplacement(String function, String argument) {
+        String rows = RollupManager.ROWS_COLUMN;
+        String weightedSum = "SUM((" + argument + ") * " + rows + ")";
+        String nonNullCount = "SUM(CASE WHEN (" + argument + ") IS NOT NULL THEN " + rows + " END)";
+        return switch (function) {
+            case "count" -> "COALESCE(" + nonNullCount + ", 0)::bigint";
+            case "sum" -> weightedSum;
+            case "avg" -> "(" + weightedSum + "::numeric / NULLIF(" + nonNullCount + ", 0))";
+            case "min", "max" -> null;
+            default -> throw new IllegalArgumentException("Unsupported aggregate: " + function);
+        };
+    }
+
+    private SourceColumns sourceColumns() {
+        SchemaCatalog.Snapshot snapshot = schemaCatalog.current();
+        SourceColumns current = sourceColumns;
+        if (current != null && current.snapshotVersion().equals(snapshot.version())) {
+            return current;
+        }
+
+        Map<String, Set<String>> columns = new HashMap<>();
+        Map<String, Set<String>> numeric = new HashMap<>();
+        for (SchemaCatalog.Table table : snapshot.tables()) {
+            if (!sourceTables.contains(table.name())) {
+                continue;
+            }
+            Set<String> names = new HashSet<>();
+            Set<String> numericNames = new HashSet<>();
+            for (SchemaCatalog.Column column : table.columns()) {
+                names.add(column.name());
+                if (RollupManager.isNumeric(column.type())) {
+                    numericNames.add(column.name());
+                }
+            }
+            columns.put(table.name(), Set.copyOf(names));
+            numeric.put(table.name(), Set.copyOf(numericNames));
+        }
+        current = new SourceColumns(snapshot.version(), columns, numeric);
+        sourceColumns = current;
+        return current;
+    }
+}
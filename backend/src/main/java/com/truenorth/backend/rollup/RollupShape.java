@@ -0,0 +1,9 @@
+package com.truenorth.backend.rollup;
+
+import java.util.SortedSet;
+
+/**
+ * The grouping a rollup is built for: a source table and the columns it is grouped by.
+ */
+public record RollupShape(String table, SortedSet<String> dimensions) {
+}
@@ -0,0 +1,204 @@
+package com.truenorth.backend.schema;
+
+import com.truenorth.backend.cache.ChatResponseCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Snapshot of the analytics tables as the database describes them: columns and types from
+ * information_schema, keys and comments from pg_catalog, and the values of low-cardinality
+ * text columns from pg_stats. Refreshed on a schedule so the prompt follows schema changes.
+ */
+@Slf4j
+@Component
+public class SchemaCatalog {
+
+    public record Column(String name, String type, boolean primaryKey, String references, String comment,
+                         List<String> sampleValues) {
+    }
+
+    public record Table(String name, List<Column> columns) {
+    }
+
+    public record Snapshot(List<Table> tables, String version) {
+        public boolean isEmpty() {
+            return tables.isEmpty();
+        }
+    }
+
+    private static final Snapshot EMPTY = new Snapshot(List.of(), "none");
+    private static final Set<String> SAMPLED_TYPES = Set.of("text", "varchar", "bpchar");
+
+    private static final String COLUMNS_SQL = """
+            SELECT c.table_name, c.column_name, c.udt_name,
+                   col_description(format('%I.%I', c.table_schema, c.table_name)::regclass, c.ordinal_position) AS column_comment
+            FROM information_schema.columns c
+            WHERE c.table_schema = ?
+            ORDER BY c.table_name, c.ordinal_position
+            """;
+
+    private static final String KEYS_SQL = """
+            SELECT con.contype, rel.relname AS table_name, att.attname AS column_name,
+                   frel.relname AS ref_table, fatt.attname AS ref_column
+            FROM pg_constraint con
+            JOIN pg_class rel ON rel.oid = con.conrelid
+            JOIN pg_namespace nsp ON nsp.oid = rel.relnamespace
+            CROSS JOIN LATERAL unnest(con.conkey) WITH ORDINALITY AS k(attnum, ord)
+            JOIN pg_attribute att ON att.attrelid = con.conrelid AND att.attnum = k.attnum
+            LEFT JOIN pg_class frel ON frel.oid = con.confrelid
+            LEFT JOIN pg_attribute fatt ON fatt.attrelid = con.confrelid AND fatt.attnum = con.confkey[k.ord]
+            WHERE nsp.nspname = ? AND con.contype IN ('p', 'f')
+            """;
+
+    private static final String STATS_SQL = """
+            SELECT tablename, attname, n_distinct, most_common_vals::text AS common_values
+            FROM pg_stats
+            WHERE schemaname = ? AND NOT inherited
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String schema;
+    private final List<String> tableNames;
+    private final int maxSampleValues;
+    private final ReentrantLock refreshLock = new ReentrantLock();
+    private volatile Snapshot snapshot;
+
+    public SchemaCatalog(JdbcTemplate jdbcTemplate,
+                         @Value("${db.schema.name}") String schema,
+                         @Value("${chat.schema.tables:address,autoinsurance,demographic,termination,customer}") List<String> tableNames,
+                         @Value("${chat.schema.max-sample-values:60}") int maxSampleValues) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.schema = schema;
+        this.tableNames = tableNames;
+        this.maxSampleValues = maxSampleValues;
+    }
+
+    /**
+     * The latest snapshot, loading it on first use. Empty if the catalog could not be read yet.
+     */
+    public Snapshot current() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            refresh();
+            current = snapshot;
+        }
+        return current != null ? current : EMPTY;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${chat.schema.refresh-interval:PT15M}", initialDelayString = "${chat.schema.refresh-interval:PT15M}")
+    public void refresh() {
+        if (!refreshLock.tryLock()) {
+            return;
+        }
+        try {
+            Snapshot loaded = load();
+            Snapshot previous = snapshot;
+            if (previous == null || !previous.version().equals(loaded.version())) {
+                log.info("Loaded schema catalog for {}: {} tables (version {})", schema, loaded.tables().size(), loaded.version());
+            }
+            snapshot = loaded;
+        } catch (Exception e) {
+            log.error("Failed to read schema catalog for {}, keeping the previous snapshot", schema, e);
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    private Snapshot load() {
+        Map<String, String> primaryKeys = new HashMap<>();
+        Map<String, String> references = new HashMap<>();
+        jdbcTemplate.query(KEYS_SQL, rs -> {
+            String key = rs.getString("table_name") + "." + rs.getString("column_name");
+            if ("p".equals(rs.getString("contype"))) {
+                primaryKeys.put(key, key);
+            } else if (rs.getString("ref_table") != null) {
+                references.put(key, rs.getString("ref_table") + "." + rs.getString("ref_column"));
+            }
+        }, schema);
+
+        Map<String, List<String>> samples = new HashMap<>();
+        jdbcTemplate.query(STATS_SQL, rs -> {
+            float distinct = rs.getFloat("n_distinct");
+            String commonValues = rs.getString("common_values");
+            // Negative n_distinct is a fraction of the row count, i.e. not low-cardinality
+            if (distinct > 0 && distinct <= maxSampleValues && commonValues != null) {
+                samples.put(rs.getString("tablename") + "." + rs.getString("attname"), parseArray(commonValues));
+            }
+        }, schema);
+
+        Map<String, List<Column>> columnsByTable = new LinkedHashMap<>();
+        jdbcTemplate.query(COLUMNS_SQL, rs -> {
+            String table = rs.getString("table_name");
+            if (!tableNames.contains(table)) {
+                return;
+            }
+            String name = rs.getString("column_name");
+            String type = rs.getString("udt_name");
+            String key = table + "." + name;
+            List<String> values = SAMPLED_TYPES.contains(type) ? samples.getOrDefault(key, List.of()) : List.of();
+            columnsByTable.computeIfAbsent(table, t -> new ArrayList<>())
+                    .add(new Column(name, type, primaryKeys.containsKey(key), references.get(key),
+                            rs.getString("column_comment"), values));
+        }, schema);
+
+        // Keep the configured order, which puts the main tables first in the prompt
+        List<Table> tables = new ArrayList<>();
+        StringBuilder fingerprint = new StringBuilder();
+        for (String tableName : tableNames) {
+            List<Column> columns = columnsByTable.get(tableName);
+            if (columns == null) {
+                continue;
+            }
+            tables.add(new Table(tableName, Collections.unmodifiableList(columns)));
+            fingerprint.append(tableName).append(columns).append('\n');
+        }
+        return new Snapshot(Collections.unmodifiableList(tables), ChatResponseCache.hash(fingerprint.toString()));
+    }
+
+    /**
+     * Parses a Postgres array literal such as {@code {CA,"New York",NULL}}, dropping NULLs.
+     */
+    static List<String> parseArray(String literal) {
+        List<String> values = new ArrayList<>();
+        int i = literal.indexOf('{') + 1;
+        int end = literal.lastIndexOf('}');
+        while (i > 0 && i < end) {
+            StringBuilder value = new StringBuilder();
+            boolean quoted = literal.charAt(i) == '"';
+            if (quoted) {
+                i++;
+                while (i < end && literal.charAt(i) != '"') {
+                    if (literal.charAt(i) == '\\' && i + 1 < end) {
+                        i++;
+                    }
+                    value.append(literal.charAt(i++));
+                }
+                i++;
+            } else {
+                while (i < end && literal.charAt(i) != ',') {
+                    value.append(literal.charAt(i++));
+                }
+            }
+            if (quoted || !value.toString().equals("NULL")) {
+                values.add(value.toString());
+            }
+            i++;
+        }
+        return values;
+    }
+}
@@ -0,0 +1,359 @@
+package com.truenorth.backend.schema;
+
+import com.truenorth.backend.cache.ChatResponseCache;
+import com.truenorth.backend.cache.LruTtlCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import org.springframework.util.FileCopyUtils;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Builds the system prompt from the prompt template and the {@link SchemaCatalog}, including only
+ * the tables a question needs. Each table and column is rendered once per catalog snapshot into a
+ * fragment with its match terms and token estimate; a request just picks fragments and joins them.
+ */
+@Slf4j
+@Component
+public class SchemaPromptAssembler {
+
+    public record SystemPrompt(String text, String version) {
+    }
+
+    private record ColumnFragment(String name, String line, String samples, Set<String> terms) {
+    }
+
+    private record TableFragment(String name, String header, List<ColumnFragment> columns, Set<String> terms,
+                                 int tokens) {
+    }
+
+    private record Fragments(String snapshotVersion, Map<String, TableFragment> tables) {
+    }
+
+    private static final String SCHEMA_PLACEHOLDER = "{{schema}}";
+    private static final int CHARS_PER_TOKEN = 4;
+    private static final int MIN_TERM_LENGTH = 3;
+    private static final Pattern WORD_SPLIT = Pattern.compile("[^\\p{L}\\p{N}]+");
+    // Identifier parts too generic to say anything about which table is meant
+    private static final Set<String> GENERIC_TERMS = Set.of("has", "the", "and", "date", "value", "min", "max",
+            "amt", "years", "number", "length", "home", "curr");
+
+    private final SchemaCatalog schemaCatalog;
+    private final String promptFileName;
+    private final Set<String> coreTables;
+    private final int contextMessages;
+    private final LruTtlCache<String, SystemPrompt> assembled;
+
+    private String templatePrefix;
+    private String templateSuffix;
+    private SystemPrompt fallbackPrompt;
+    private Properties notes;
+    private volatile Fragments fragments;
+
+    public SchemaPromptAssembler(SchemaCatalog schemaCatalog,
+                                 @Value("${ai.prompt.md.name}") String promptFileName,
+                                 @Value("${chat.schema.core-tables:autoinsurance}") List<String> coreTables,
+                                 @Value("${chat.schema.context-messages:4}") int contextMessages,
+                                 @Value("${chat.schema.prompt-cache.max-entries:256}") long maxCachedPrompts) throws IOException {
+        this.schemaCatalog = schemaCatalog;
+        this.promptFileName = promptFileName;
+        this.coreTables = Set.copyOf(coreTables);
+        this.contextMessages = contextMessages;
+        this.assembled = new LruTtlCache<>(maxCachedPrompts, Long.MAX_VALUE);
+        loadResources();
+    }
+
+    private void loadResources() throws IOException {
+        String template = read(new ClassPathResource("prompts/" + promptFileName + ".md"));
+        int placeholder = template.indexOf(SCHEMA_PLACEHOLDER);
+        if (placeholder < 0) {
+            this.templatePrefix = template;
+            this.templateSuffix = "";
+        } else {
+            this.templatePrefix = template.substring(0, placeholder);
+            this.templateSuffix = template.substring(placeholder + SCHEMA_PLACEHOLDER.length());
+        }
+
+        this.fallbackPrompt = withSchema(read(new ClassPathResource("prompts/schema-fallback.md")));
+        this.notes = new Properties();
+        try (Reader reader = new InputStreamReader(new ClassPathResource("prompts/schema-notes.properties").getInputStream(),
+                StandardCharsets.UTF_8)) {
+            notes.load(reader);
+        }
+        log.info("Loaded prompt template: {} ({} schema placeholder)", promptFileName, placeholder < 0 ? "without" : "with");
+    }
+
+    private static String read(Resource resource) throws IOException {
+        try (Reader reader = new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8)) {
+            return FileCopyUtils.copyToString(reader);
+        }
+    }
+
+    /**
+     * The prompt for the next turn of {@code history}: core tables, plus any table the recent
+     * messages refer to, with value samples only for the columns they mention.
+     */
+    public SystemPrompt forConversation(List<Message> history) {
+        Fragments current = fragments();
+        if (current.tables().isEmpty()) {
+            return fallbackPrompt;
+        }
+
+        Set<String> words = recentWords(history);
+        List<String> selectedTables = new ArrayList<>();
+        for (TableFragment table : current.tables().values()) {
+            if (coreTables.contains(table.name()) || intersects(table.terms(), words)) {
+                selectedTables.add(table.name());
+            }
+        }
+        if (selectedTables.isEmpty()) {
+            selectedTables.addAll(current.tables().keySet());
+        }
+
+        StringBuilder key = new StringBuilder(current.snapshotVersion());
+        List<String> sampledColumns = new ArrayList<>();
+        for (String tableName : selectedTables) {
+            key.append('|').append(tableName);
+            for (ColumnFragment column : current.tables().get(tableName).columns()) {
+                if (column.samples() != null && intersects(column.terms(), words)) {
+                    sampledColumns.add(tableName + "." + column.name());
+                    key.append(',').append(column.name());
+                }
+            }
+        }
+
+        return assemble(current, key.toString(), selectedTables, sampledColumns);
+    }
+
+    /**
+     * The prompt with every table and every sample, for retries after the model used a table or
+     * column the sliced prompt did not show.
+     */
+    public SystemPrompt full() {
+        Fragments current = fragments();
+        if (current.tables().isEmpty()) {
+            return fallbackPrompt;
+        }
+        List<String> sampledColumns = new ArrayList<>();
+        for (TableFragment table : current.tables().values()) {
+            for (ColumnFragment column : table.columns()) {
+                if (column.samples() != null) {
+                    sampledColumns.add(table.name() + "." + column.name());
+                }
+            }
+        }
+        return assemble(current, current.snapshotVersion() + "|*", new ArrayList<>(current.tables().keySet()), sampledColumns);
+    }
+
+    private SystemPrompt assemble(Fragments current, String key, List<String> tableNames, List<String> sampledColumns) {
+        SystemPrompt cached = assembled.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        StringBuilder schema = new StringBuilder();
+        int tokens = 0;
+        int index = 1;
+        for (String tableName : tableNames) {
+            TableFragment table = current.tables().get(tableName);
+            schema.append("### ").append(index++).append(". ").append(table.header());
+            for (ColumnFragment column : table.columns()) {
+                schema.append(column.line());
+                if (column.samples() != null && sampledColumns.contains(tableName + "." + column.name())) {
+                    schema.append(column.samples());
+                }
+                schema.append('\n');
+            }
+            schema.append('\n');
+            tokens += table.tokens();
+        }
+        String joins = joinHints(current, tableNames);
+        schema.append(joins);
+
+        SystemPrompt prompt = withSchema(schema.toString());
+        log.debug("Assembled system prompt with tables {} (~{} schema tokens)", tableNames,
+                tokens + joins.length() / CHARS_PER_TOKEN);
+        assembled.put(key, prompt, prompt.text().length() * 2L, Duration.ofDays(1));
+        return prompt;
+    }
+
+    private SystemPrompt withSchema(String schema) {
+        String text = templatePrefix + schema + templateSuffix;
+        return new SystemPrompt(text, ChatResponseCache.hash(text));
+    }
+
+    /**
+     * Declared foreign keys, or otherwise {@code *_id} columns shared between the selected tables,
+     * which is how this schema links its tables.
+     */
+    private static String joinHints(Fragments current, List<String> tableNames) {
+        if (tableNames.size() < 2) {
+            return "";
+        }
+        Map<String, List<String>> tablesByKey = new LinkedHashMap<>();
+        for (String tableName : tableNames) {
+            for (ColumnFragment column : current.tables().get(tableName).columns()) {
+                if (column.name().endsWith("_id")) {
+                    tablesByKey.computeIfAbsent(column.name(), k -> new ArrayList<>()).add(tableName);
+                }
+            }
+        }
+
+        StringBuilder hints = new StringBuilder();
+        for (Map.Entry<String, List<String>> entry : tablesByKey.entrySet()) {
+            List<String> tables = entry.getValue();
+            for (int i = 1; i < tables.size(); i++) {
+                hints.append("- `").append(tables.get(0)).append('.').append(entry.getKey()).append("` = `")
+                        .append(tables.get(i)).append('.').append(entry.getKey()).append("`\n");
+            }
+        }
+        return hints.isEmpty() ? "" : "### Join keys\n" + hints + "\n";
+    }
+
+    private Set<String> recentWords(List<Message> history) {
+        Set<String> words = new HashSet<>();
+        for (int i = history.size() - 1, seen = 0; i >= 0 && seen < contextMessages; i--) {
+            Message message = history.get(i);
+            if (message.getMessageType() == MessageType.SYSTEM || message.getText() == null) {
+                continue;
+            }
+            words.addAll(Arrays.asList(WORD_SPLIT.split(message.getText().toLowerCase(Locale.ROOT))));
+            seen++;
+        }
+        return words;
+    }
+
+    private static boolean intersects(Set<String> terms, Set<String> words) {
+        for (String term : terms) {
+            if (words.contains(term)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Fragments fragments() {
+        SchemaCatalog.Snapshot snapshot = schemaCatalog.current();
+        Fragments current = fragments;
+        if (current == null || !current.snapshotVersion().equals(snapshot.version())) {
+            current = build(snapshot);
+            fragments = current;
+        }
+        return current;
+    }
+
+    private Fragments build(SchemaCatalog.Snapshot snapshot) {
+        List<TableFragment> rendered = new ArrayList<>(snapshot.tables().size());
+        Set<String> coreTerms = new HashSet<>();
+        for (SchemaCatalog.Table table : snapshot.tables()) {
+            List<ColumnFragment> columns = new ArrayList<>(table.columns().size());
+            Set<String> columnTerms = new HashSet<>();
+            int chars = 0;
+            for (SchemaCatalog.Column column : table.columns()) {
+                ColumnFragment fragment = columnFragment(table.name(), column);
+                columns.add(fragment);
+                columnTerms.addAll(fragment.terms());
+                chars += fragment.line().length() + 1;
+            }
+            if (coreTables.contains(table.name())) {
+                coreTerms.addAll(columnTerms);
+            }
+
+            String note = notes.getProperty(table.name());
+            String header = table.name() + " table" + (note != null ? " (" + note + ")" : "") + "\n";
+            rendered.add(new TableFragment(table.name(), header, List.copyOf(columns), columnTerms,
+                    (header.length() + chars) / CHARS_PER_TOKEN));
+        }
+
+        // Other tables are only pulled in by their name, their keywords, or columns the core tables lack
+        Map<String, TableFragment> tables = new LinkedHashMap<>();
+        for (TableFragment table : rendered) {
+            Set<String> triggers = new HashSet<>(table.terms());
+            triggers.removeAll(coreTerms);
+            triggers.addAll(terms(table.name()));
+            triggers.add(table.name() + "s");
+            triggers.addAll(keywords(table.name()));
+            tables.put(table.name(), new TableFragment(table.name(), table.header(), table.columns(),
+                    Set.copyOf(triggers), table.tokens()));
+        }
+        return new Fragments(snapshot.version(), tables);
+    }
+
+    private ColumnFragment columnFragment(String tableName, SchemaCatalog.Column column) {
+        StringBuilder line = new StringBuilder("- `").append(column.name()).append("` (").append(column.type());
+        if (column.primaryKey()) {
+            line.append(", PRIMARY KEY");
+        }
+        if (column.references() != null) {
+            line.append(", references ").append(column.references());
+        }
+        line.append(')');
+        String description = column.comment() != null ? column.comment() : notes.getProperty(tableName + "." + column.name());
+        if (description != null) {
+            line.append(": ").append(description);
+        }
+
+        Set<String> terms = new HashSet<>(terms(column.name()));
+        terms.addAll(keywords(tableName + "." + column.name()));
+
+        String samples = null;
+        if (!column.sampleValues().isEmpty()) {
+            StringBuilder sb = new StringBuilder(" -- values: ");
+            for (int i = 0; i < column.sampleValues().size(); i++) {
+                String value = column.sampleValues().get(i);
+                sb.append(i > 0 ? ", " : "").append('\'').append(value.replace("'", "''")).append('\'');
+                String lower = value.toLowerCase(Locale.ROOT);
+                if (lower.length() >= MIN_TERM_LENGTH) {
+                    terms.add(lower);
+                }
+            }
+            samples = sb.toString();
+        }
+        return new ColumnFragment(column.name(), line.toString(), samples, Set.copyOf(terms));
+    }
+
+    private static Set<String> terms(String identifier) {
+        Set<String> terms = new HashSet<>();
+        String lower = identifier.toLowerCase(Locale.ROOT);
+        terms.add(lower);
+        for (String part : lower.split("_")) {
+            if (part.length() >= MIN_TERM_LENGTH && !GENERIC_TERMS.contains(part)) {
+                terms.add(part);
+            }
+        }
+        return terms;
+    }
+
+    private Set<String> keywords(String key) {
+        String value = notes.getProperty(key + ".keywords");
+        if (value == null || value.isBlank()) {
+            return Set.of();
+        }
+        Set<String> keywords = new HashSet<>();
+        for (String keyword : value.split(",")) {
+            if (!keyword.isBlank()) {
+                keywords.add(keyword.strip().toLowerCase(Locale.ROOT));
+            }
+        }
+        return keywords;
+    }
+}
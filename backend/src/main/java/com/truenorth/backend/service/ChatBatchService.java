@@ -0,0 +1,11 @@
+package com.truenorth.backend.service;
+
+import com.truenorth.backend.dto.ResultFormat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+public interface ChatBatchService {
+    void streamBatch(List<String> questions, ResultFormat resultFormat, OutputStream outputStream, QueryCancellation cancellation) throws IOException;
+}
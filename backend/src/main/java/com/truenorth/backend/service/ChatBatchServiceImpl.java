@@ -0,0 +1,160 @@
+package com.truenorth.backend.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.truenorth.backend.dto.ChatResponseDTO;
+import com.truenorth.backend.dto.ResultFormat;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Answers a batch of independent questions, each in its own new conversation. Identical
+ * questions are answered once, at most {@code max-parallel} questions run at a time, and every
+ * answer is written as a "result" event tagged with its position as soon as it is ready, so
+ * the batch takes about as long as its slowest question. A cancelled batch ends with an "error"
+ * event instead of "end". Identical generated SQL is shared
+ * by {@link ChatExecutorService}, which runs concurrent copies of a query once.
+ */
+@Slf4j
+@Service
+public class ChatBatchServiceImpl implements ChatBatchService {
+
+    private static final long CANCELLATION_POLL_MILLIS = 250;
+
+    private final ChatService chatService;
+    private final ObjectMapper objectMapper;
+    private final int maxParallel;
+
+    public ChatBatchServiceImpl(ChatService chatService, ObjectMapper objectMapper,
+                                @Value("${chat.batch.max-parallel:8}") int maxParallel) {
+        this.chatService = chatService;
+        this.objectMapper = objectMapper;
+        this.maxParallel = maxParallel;
+    }
+
+    private record Answer(String key, ChatResponseDTO response) {
+    }
+
+    @Override
+    public void streamBatch(List<String> questions, ResultFormat resultFormat, OutputStream outputStream,
+                            QueryCancellation cancellation) throws IOException {
+        long start = System.nanoTime();
+        ResultFormat format = resultFormat != null ? resultFormat : ResultFormat.ROWS;
+
+        Map<String, List<Integer>> positions = new LinkedHashMap<>();
+        for (int i = 0; i < questions.size(); i++) {
+            positions.computeIfAbsent(normalize(questions.get(i)), key -> new ArrayList<>()).add(i);
+        }
+        log.info("Processing batch of {} questions ({} distinct)", questions.size(), positions.size());
+
+        JsonGenerator generator = objectMapper.createGenerator(outputStream);
+        generator.setRootValueSeparator(null);
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(maxParallel, positions.size()),
+                Thread.ofVirtual().name("chat-batch-", 0).factory());
+        try {
+            ExecutorCompletionService<Answer> completion = new ExecutorCompletionService<>(executor);
+            for (Map.Entry<String, List<Integer>> entry : positions.entrySet()) {
+                String question = questions.get(entry.getValue().get(0));
+                completion.submit(() -> new Answer(entry.getKey(), answer(question, format)));
+            }
+
+            int remaining = positions.size();
+            while (remaining > 0) {
+                Future<Answer> done = completion.poll(CANCELLATION_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (done == null) {
+                    if (cancellation.getReason() != null) {
+                        log.info("Batch cancelled ({}) with {} questions outstanding", cancellation.getReason(), remaining);
+                        // Without this the client cannot tell a cancelled batch from a dropped connection
+                        writeCancelled(generator, cancellation.getReason(), remaining);
+                        return;
+                    }
+                    continue;
+                }
+                remaining--;
+                Answer answer = done.get();
+                for (int index : positions.get(answer.key())) {
+                    writeResult(generator, index, questions.get(index), answer.response());
+                }
+                generator.flush();
+            }
+
+            generator.writeStartObject();
+            generator.writeStringField("type", "end");
+            generator.writeNumberField("questions", questions.size());
+            generator.writeNumberField("distinct", positions.size());
+            generator.writeNumberField("elapsedMillis", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+            generator.flush();
+
+        } catch (IOException e) {
+            log.info("Client stopped reading the batch stream: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // answer() never throws, so this is a bug rather than a failed question
+            throw new IllegalStateException("Batch question failed unexpectedly", e.getCause());
+        } finally {
+            // Abandoned questions are interrupted so they give up their bulkhead permits
+            executor.shutdownNow();
+        }
+    }
+
+    private ChatResponseDTO answer(String question, ResultFormat format) {
+        try {
+            return chatService.processMessage(null, question, format);
+        } catch (Exception e) {
+            log.error("Batch question failed: {}", question, e);
+            ChatResponseDTO dto = new ChatResponseDTO();
+            dto.setValid(false);
+            dto.setErrorMessage("An unexpected error occurred. Please try again.");
+            return dto;
+        }
+    }
+
+    private static void writeResult(JsonGenerator generator, int index, String question, ChatResponseDTO response)
+            throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("type", "result");
+        generator.writeNumberField("index", index);
+        generator.writeStringField("question", question);
+        generator.writeObjectField("response", response);
+        if (response.getTimings() != null) {
+            generator.writeObjectField("timings", response.getTimings());
+        }
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    private static void writeCancelled(JsonGenerator generator, QueryCancellation.Reason reason, int unanswered)
+            throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("type", "error");
+        generator.writeStringField("cancelled", reason.name().toLowerCase(Locale.ROOT));
+        generator.writeNumberField("unanswered", unanswered);
+        generator.writeStringField("errorMessage", "The batch was cancelled before every question was answered.");
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+        generator.flush();
+    }
+
+    private static String normalize(String question) {
+        return question.strip().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+}
@@ -3,7 +3,9 @@ package com.truenorth.backend.service;
 import org.springframework.ai.chat.messages.Message;
 
 import java.util.List;
+import java.util.Optional;
 
 public interface ChatConversationService {
     List<Message> getConversationHistoryById(String conversationId);
+    Optional<String> findLastQuery(String conversationId);
 }
@@ -1,22 +1,55 @@
 package com.truenorth.backend.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.truenorth.backend.model.ChatResponse;
+import com.truenorth.backend.model.StoredChatResponse;
 import lombok.AllArgsConstructor;
-import org.springframework.ai.chat.memory.ChatMemory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.messages.AssistantMessage;
 import org.springframework.ai.chat.messages.Message;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.Optional;
 
+@Slf4j
 @Service
 @AllArgsConstructor
 public class ChatConversationServiceImpl implements ChatConversationService {
 
-    private final ChatMemory chatMemory;
+    private final ChatMemoryRepository chatMemoryRepository;
     private final ObjectMapper objectMapper;
 
 
     public List<Message> getConversationHistoryById(String conversationId) {
-        return chatMemory.get(conversationId);
+        // The full stored history; ChatMemory.get only returns the budgeted view sent to the model
+        return chatMemoryRepository.findByConversationId(conversationId);
+    }
+
+    /**
+     * The SQL of the most recent valid assistant response as the model wrote it, before the
+     * guard's rewrites. Assistant turns are stored as a {@link StoredChatResponse}; turns
+     * stored before the model's query was kept only have the guarded query, which is returned as is.
+     */
+    @Override
+    public Optional<String> findLastQuery(String conversationId) {
+        List<Message> messages = chatMemoryRepository.findByConversationId(conversationId);
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            if (!(messages.get(i) instanceof AssistantMessage assistantMessage) || assistantMessage.getText() == null) {
+                continue;
+            }
+            try {
+                ChatResponse response = objectMapper.readValue(assistantMessage.getText(), StoredChatResponse.class).toChatResponse();
+                if (response.isValid() && response.getQuery() != null && !response.getQuery().isBlank()) {
+                    String generated = response.getGeneratedQuery();
+                    return Optional.of(generated != null && !generated.isBlank() ? generated : response.getQuery());
+                }
+            } catch (JsonProcessingException e) {
+                log.debug("Skipping assistant message that is not a chat response in conversation {}", conversationId);
+            }
+        }
+        return Optional.empty();
     }
 }
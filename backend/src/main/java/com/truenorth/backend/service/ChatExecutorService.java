@@ -1,35 +1,448 @@
 package com.truenorth.backend.service;
 
+import com.truenorth.backend.cache.QueryResultCache;
+import com.truenorth.backend.concurrency.Bulkhead;
+import com.truenorth.backend.datasource.AnalyticsDatabase;
+import com.truenorth.backend.dto.ColumnarResultDTO;
+import com.truenorth.backend.exception.BulkheadFullException;
+import com.truenorth.backend.exception.QueryCancelledException;
+import com.truenorth.backend.exception.SqlQueryTimeoutException;
+import com.truenorth.backend.rollup.RollupRouter;
+import com.truenorth.backend.sql.SqlStatementStats;
+import com.truenorth.backend.summary.DataSummaryAccumulator;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.ColumnMapRowMapper;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 @Slf4j
 @Service
 public class ChatExecutorService {
 
+    private static final String QUERY_CANCELED_SQL_STATE = "57014";
+    private static final String SYNTAX_ERROR_OR_ACCESS_RULE_CLASS = "42";
+    // Client-side backstop in case the server-side statement_timeout never fires (e.g. a stuck network)
+    private static final Duration DEADLINE_GRACE = Duration.ofSeconds(5);
+    private static final String ROWS_FLIGHT = "rows:";
+    private static final String COLUMNAR_FLIGHT = "columnar:";
+    // Recorded as the statement's source in the SQL stats
+    private static final String EXPORT_MODEL = "export";
+
     private final JdbcTemplate jdbcTemplate;
+    private final QueryResultCache queryResultCache;
+    private final RollupRouter rollupRouter;
+    private final SqlStatementStats sqlStatementStats;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+    private final Bulkhead queryBulkhead;
+    private final Bulkhead exportBulkhead;
+    private final ScheduledThreadPoolExecutor cancelScheduler;
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final int streamFetchSize;
+    private final int maxDictionarySize;
+    private final int maxRows;
+    private final Duration statementTimeout;
+    private final Duration streamDeadline;
+    private final int exportFetchSize;
+    private final int exportMaxRows;
+    private final Duration exportDeadline;
+
+    public ChatExecutorService(AnalyticsDatabase analyticsDatabase, QueryResultCache queryResultCache, RollupRouter rollupRouter,
+                               SqlStatementStats sqlStatementStats,
+                               @Qualifier("queryBulkhead") Bulkhead queryBulkhead,
+                               @Qualifier("exportBulkhead") Bulkhead exportBulkhead,
+                               @Value("${chat.query.stream.fetch-size:200}") int streamFetchSize,
+                               @Value("${chat.query.columnar.max-dictionary-size:1024}") int maxDictionarySize,
+                               @Value("${chat.query.max-rows:10000}") int maxRows,
+                               @Value("${chat.query.timeout.statement:30s}") Duration statementTimeout,
+                               @Value("${chat.query.timeout.stream:170s}") Duration streamDeadline,
+                               @Value("${chat.export.fetch-size:2000}") int exportFetchSize,
+                               @Value("${chat.export.max-rows:0}") int exportMaxRows,
+                               @Value("${chat.export.timeout:15m}") Duration exportDeadline) {
+        this.jdbcTemplate = analyticsDatabase.getJdbcTemplate();
+        this.queryResultCache = queryResultCache;
+        this.rollupRouter = rollupRouter;
+        this.sqlStatementStats = sqlStatementStats;
+        this.readOnlyTransactionTemplate = new TransactionTemplate(analyticsDatabase.getTransactionManager());
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.queryBulkhead = queryBulkhead;
+        this.exportBulkhead = exportBulkhead;
+        this.streamFetchSize = streamFetchSize;
+        this.maxDictionarySize = maxDictionarySize;
+        this.maxRows = maxRows;
+        this.statementTimeout = statementTimeout;
+        this.streamDeadline = streamDeadline;
+        this.exportFetchSize = exportFetchSize;
+        this.exportMaxRows = exportMaxRows;
+        this.exportDeadline = exportDeadline;
+
+        this.cancelScheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "query-deadline");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.cancelScheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        cancelScheduler.shutdownNow();
+    }
 
-    public ChatExecutorService(JdbcTemplate jdbcTemplate) {
-        this.jdbcTemplate = jdbcTemplate;
+    /**
+     * {@code model} names the model that generated the query, for the statement statistics.
+     */
+    public List<Map<String, Object>> executeQuery(String query, String model, DataSummaryAccumulator summaryAccumulator) {
+        return executeQuery(query, model, summaryAccumulator, QueryCancellation.create());
     }
 
-    public List<Map<String, Object>> executeQuery(String query) {
+    /**
+     * As {@link #executeQuery(String, String, DataSummaryAccumulator)}, running the statement
+     * under the caller's {@code cancellation} so the caller can stop it.
+     */
+    public List<Map<String, Object>> executeQuery(String query, String model, DataSummaryAccumulator summaryAccumulator,
+                                                  QueryCancellation cancellation) {
+        List<Map<String, Object>> cached = queryResultCache.get(query);
+        if (cached != null) {
+            log.info("Query cache hit: {}", query);
+            log.info("Result count: {}", cached.size());
+            sqlStatementStats.recordCacheHit(query);
+            summaryAccumulator.acceptRows(cached);
+            return cached;
+        }
+
+        Flight<List<Map<String, Object>>> flight = singleFlight(ROWS_FLIGHT + queryResultCache.key(query),
+                () -> runQuery(query, model, summaryAccumulator, cancellation));
+        if (flight.shared()) {
+            log.info("Shared result of an identical running query: {}", query);
+            sqlStatementStats.recordCacheHit(query);
+            summaryAccumulator.acceptRows(flight.result());
+        }
+        return flight.result();
+    }
+
+    private List<Map<String, Object>> runQuery(String query, String model, DataSummaryAccumulator summaryAccumulator,
+                                               QueryCancellation cancellation) {
+        AtomicLong executionNanos = new AtomicLong();
         try {
 
-            List<Map<String, Object>> results = jdbcTemplate.queryForList(query);
+            List<Map<String, Object>> results = routed(query, sql -> executeReadOnly(sql, 0,
+                    statementTimeout.plus(DEADLINE_GRACE), cancellation, executionNanos, rs -> {
+                        ColumnMapRowMapper rowMapper = new ColumnMapRowMapper();
+                        List<Map<String, Object>> rows = new ArrayList<>();
+                        int rowNum = 0;
+                        while (rs.next()) {
+                            Map<String, Object> row = rowMapper.mapRow(rs, rowNum++);
+                            summaryAccumulator.accept(row);
+                            rows.add(row);
+                        }
+                        return rows;
+                    }));
 
             log.info("Executed query: {}", query);
             log.info("Result count: {}", results.size());
+            sqlStatementStats.recordExecution(query, model, executionNanos.get(), results.size(),
+                    SqlStatementStats.estimateJsonBytes(results));
+
+            return queryResultCache.put(query, results);
+
+        } catch (Exception e) {
+            log.error("Error executing query: {}", query, e);
+            recordFailure(query, model, executionNanos, e);
+            throw translate(query, e, cancellation);
+        }
+    }
+
+    public ColumnarResultDTO executeColumnarQuery(String query, String model, DataSummaryAccumulator summaryAccumulator) {
+        return executeColumnarQuery(query, model, summaryAccumulator, QueryCancellation.create());
+    }
 
-            return results;
+    public ColumnarResultDTO executeColumnarQuery(String query, String model, DataSummaryAccumulator summaryAccumulator,
+                                                  QueryCancellation cancellation) {
+        ColumnarResultDTO cached = queryResultCache.getColumnar(query);
+        if (cached != null) {
+            log.info("Query cache hit: {}", query);
+            log.info("Result count: {}", cached.getRowCount());
+            sqlStatementStats.recordCacheHit(query);
+            summaryAccumulator.acceptColumnar(cached);
+            return cached;
+        }
+
+        Flight<ColumnarResultDTO> flight = singleFlight(COLUMNAR_FLIGHT + queryResultCache.key(query),
+                () -> runColumnarQuery(query, model, summaryAccumulator, cancellation));
+        if (flight.shared()) {
+            log.info("Shared result of an identical running query: {}", query);
+            sqlStatementStats.recordCacheHit(query);
+            summaryAccumulator.acceptColumnar(flight.result());
+        }
+        return flight.result();
+    }
+
+    private ColumnarResultDTO runColumnarQuery(String query, String model, DataSummaryAccumulator summaryAccumulator,
+                                               QueryCancellation cancellation) {
+        AtomicLong executionNanos = new AtomicLong();
+        try {
+
+            ColumnarResultDTO result = routed(query, sql -> executeReadOnly(sql, 0, statementTimeout.plus(DEADLINE_GRACE),
+                    cancellation, executionNanos, new ColumnarResultExtractor(maxDictionarySize, summaryAccumulator)));
+
+            log.info("Executed query: {}", query);
+            log.info("Result count: {}", result.getRowCount());
+            sqlStatementStats.recordExecution(query, model, executionNanos.get(), result.getRowCount(),
+                    SqlStatementStats.estimateJsonBytes(result));
+
+            return queryResultCache.putColumnar(query, result);
 
         } catch (Exception e) {
             log.error("Error executing query: {}", query, e);
-            throw new RuntimeException("Query execution failed: " + e.getMessage());
+            recordFailure(query, model, executionNanos, e);
+            throw translate(query, e, cancellation);
+        }
+    }
+
+    /**
+     * Streams rows to the callback through a server-side cursor, holding only {@code fetch-size}
+     * rows at a time. {@code statement_timeout} only bounds each fetch, so the whole stream is
+     * also bounded by the stream deadline, and the caller can cancel it early.
+     */
+    public void streamQuery(String query, String model, RowCallbackHandler rowCallbackHandler,
+                            QueryCancellation cancellation) {
+        AtomicLong executionNanos = new AtomicLong();
+        long bytesBefore = rowCallbackHandler instanceof ChatStreamWriter writer ? writer.getBytesWritten() : 0;
+        try {
+            long rows = routed(query, sql -> executeReadOnly(sql, streamFetchSize, streamDeadline, cancellation,
+                    executionNanos, rs -> {
+                        long count = 0;
+                        while (rs.next()) {
+                            rowCallbackHandler.processRow(rs);
+                            count++;
+                        }
+                        return count;
+                    }));
+
+            log.info("Streamed query: {}", query);
+            long bytes = rowCallbackHandler instanceof ChatStreamWriter writer ? writer.getBytesWritten() - bytesBefore : 0;
+            sqlStatementStats.recordExecution(query, model, executionNanos.get(), rows, bytes);
+
+        } catch (UncheckedIOException e) {
+            log.info("Client disconnected while streaming query: {}", query);
+            throw e;
+        } catch (Exception e) {
+            log.error("Error streaming query: {}", query, e);
+            recordFailure(query, model, executionNanos, e);
+            throw translate(query, e, cancellation);
+        }
+    }
+
+    /**
+     * Returns the {@code EXPLAIN (FORMAT JSON)} output for a query. It is planned on the
+     * analytic pool, so estimates come from the statistics it will run against, and in the same
+     * read-only, time-limited transaction and bulkhead as an execution.
+     */
+    public String explain(String query) {
+        return executeReadOnly(queryBulkhead, 1, "EXPLAIN (FORMAT JSON) " + query, 0,
+                statementTimeout.plus(DEADLINE_GRACE), QueryCancellation.create(), new AtomicLong(),
+                rs -> rs.next() ? rs.getString(1) : null);
+    }
+
+    private record Flight<T>(T result, boolean shared) {
+    }
+
+    /**
+     * Runs {@code execute} unless an identical query is already running, in which case this
+     * waits for that one and shares its result. Joins only happen while the first query runs;
+     * once it finishes, later callers find its result in the query cache. A failure is not
+     * shared, since it may belong to the first caller alone (its client went away, its thread
+     * was interrupted): the waiting callers try again, and one of them runs the query for the rest.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> Flight<T> singleFlight(String key, Supplier<T> execute) {
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            try {
+                return new Flight<>((T) running.join(), true);
+            } catch (CompletionException e) {
+                log.info("Identical running query failed ({}), running it again", e.getCause().getMessage());
+                // The leader may not have removed its entry yet
+                inFlight.remove(key, running);
+                return singleFlight(key, execute);
+            }
+        }
+        try {
+            T result = execute.get();
+            mine.complete(result);
+            return new Flight<>(result, false);
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * Runs a query for export through a server-side cursor without the chat row cap (only
+     * {@code chat.export.max-rows}, when set), so the extractor must write rows out as it reads
+     * them. Exports take their own bulkhead, so a long export never holds a chat query slot.
+     */
+    public long exportQuery(String query, ResultSetExtractor<Long> extractor, QueryCancellation cancellation) {
+        AtomicLong executionNanos = new AtomicLong();
+        try {
+            long rows = routed(query, sql -> executeReadOnly(exportBulkhead, exportMaxRows, sql, exportFetchSize,
+                    exportDeadline, cancellation, executionNanos, extractor));
+
+            log.info("Exported {} rows for query: {}", rows, query);
+            long bytes = extractor instanceof CsvExportWriter writer ? writer.getBytesWritten() : 0;
+            sqlStatementStats.recordExecution(query, EXPORT_MODEL, executionNanos.get(), rows, bytes);
+            return rows;
+
+        } catch (UncheckedIOException e) {
+            log.info("Client disconnected during export of query: {}", query);
+            throw e;
+        } catch (Exception e) {
+            log.error("Error exporting query: {}", query, e);
+            recordFailure(query, EXPORT_MODEL, executionNanos, e);
+            throw translate(query, e, cancellation);
+        }
+    }
+
+    /**
+     * Queries rejected by the bulkhead never ran, so they are not counted against their statement.
+     */
+    private void recordFailure(String query, String model, AtomicLong executionNanos, Exception e) {
+        if (!(e instanceof BulkheadFullException)) {
+            sqlStatementStats.recordFailure(query, model, executionNanos.get(), e);
+        }
+    }
+
+    /**
+     * Runs the query against a rollup when one can answer it. If the rollup is gone or no longer
+     * matches (the statement fails to resolve), the original query runs instead; that failure
+     * happens before any row is produced.
+     */
+    private <T> T routed(String query, Function<String, T> execute) {
+        RollupRouter.Route route = rollupRouter.route(query);
+        if (!route.isRewritten()) {
+            return execute.apply(query);
+        }
+        try {
+            T result = execute.apply(route.sql());
+            log.info("Answered from rollup {}", route.rollup());
+            return result;
+        } catch (RuntimeException e) {
+            if (!hasSqlStateClass(e, SYNTAX_ERROR_OR_ACCESS_RULE_CLASS)) {
+                throw e;
+            }
+            log.warn("Rollup {} could not answer the query, using the source table: {}", route.rollup(), e.getMessage());
+            return execute.apply(query);
+        }
+    }
+
+    /**
+     * Runs a generated query in its own read-only transaction with a transaction-scoped
+     * statement_timeout and a row cap. The statement is registered with the cancellation
+     * handle and cancelled if it is still running when the deadline passes, so a hung
+     * query never keeps a pooled connection. The bulkhead is taken before the
+     * deadline starts, so time spent queueing does not count against the query; the time
+     * spent after it is added to {@code executionNanos}.
+     */
+    private <T> T executeReadOnly(String query, int fetchSize, Duration deadline, QueryCancellation cancellation,
+                                  AtomicLong executionNanos, ResultSetExtractor<T> extractor) {
+        return executeReadOnly(queryBulkhead, maxRows, query, fetchSize, deadline, cancellation, executionNanos, extractor);
+    }
+
+    private <T> T executeReadOnly(Bulkhead bulkhead, int rowLimit, String query, int fetchSize, Duration deadline,
+                                  QueryCancellation cancellation, AtomicLong executionNanos,
+                                  ResultSetExtractor<T> extractor) {
+        return bulkhead.call(() -> {
+            long start = System.nanoTime();
+            ScheduledFuture<?> deadlineTask = cancelScheduler.schedule(
+                    () -> cancellation.cancel(QueryCancellation.Reason.DEADLINE), deadline.toMillis(), TimeUnit.MILLISECONDS);
+            try {
+                return readOnlyTransactionTemplate.execute(status -> {
+                    jdbcTemplate.execute("SET LOCAL statement_timeout = " + statementTimeout.toMillis());
+                    return jdbcTemplate.query(connection -> {
+                        PreparedStatement statement = connection.prepareStatement(query,
+                                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                        statement.setMaxRows(rowLimit);
+                        if (fetchSize > 0) {
+                            statement.setFetchSize(fetchSize);
+                        }
+                        cancellation.attach(statement);
+                        return statement;
+                    }, extractor);
+                });
+            } finally {
+                deadlineTask.cancel(false);
+                cancellation.detach();
+                executionNanos.addAndGet(System.nanoTime() - start);
+            }
+        });
+    }
+
+    private RuntimeException translate(String query, Exception e, QueryCancellation cancellation) {
+        if (e instanceof BulkheadFullException bulkheadFull) {
+            return bulkheadFull;
+        }
+        QueryCancellation.Reason reason = cancellation.getReason();
+        if (reason == QueryCancellation.Reason.CLIENT_GONE) {
+            return new QueryCancelledException("Query cancelled because the client disconnected");
+        }
+        if (reason == QueryCancellation.Reason.SUPERSEDED) {
+            return new QueryCancelledException("Query cancelled because its result is no longer needed");
+        }
+        if (reason == QueryCancellation.Reason.DEADLINE || isTimeout(e)) {
+            return new SqlQueryTimeoutException(String.format(
+                    "Query was cancelled because it ran longer than the %d second limit.",
+                    statementTimeout.toSeconds()), e, query);
+        }
+        return new RuntimeException("Query execution failed: " + e.getMessage());
+    }
+
+    private static boolean hasSqlStateClass(Throwable e, String sqlStateClass) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLException sqlException && sqlException.getSQLState() != null
+                    && sqlException.getSQLState().startsWith(sqlStateClass)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isTimeout(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof QueryTimeoutException) {
+                return true;
+            }
+            if (t instanceof SQLException sqlException && QUERY_CANCELED_SQL_STATE.equals(sqlException.getSQLState())) {
+                return true;
+            }
         }
+        return false;
     }
-}
\ No newline at end of file
+}
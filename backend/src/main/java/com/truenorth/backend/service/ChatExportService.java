@@ -0,0 +1,8 @@
+package com.truenorth.backend.service;
+
+import java.io.OutputStream;
+
+public interface ChatExportService {
+    String prepareQuery(String conversationId);
+    void exportCsv(String query, OutputStream outputStream, QueryCancellation cancellation);
+}
@@ -0,0 +1,37 @@
+package com.truenorth.backend.service;
+
+import com.truenorth.backend.sql.SqlGuard;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.OutputStream;
+import java.util.NoSuchElementException;
+
+@Slf4j
+@Service
+@AllArgsConstructor
+public class ChatExportServiceImpl implements ChatExportService {
+
+    private final ChatConversationService chatConversationService;
+    private final ChatExecutorService chatExecutorService;
+    private final SqlGuard sqlGuard;
+
+    /**
+     * The conversation's last query as the model wrote it, re-checked by the guard with the
+     * LIMIT caps lifted, so a LIMIT the model chose stays and one the guard added does not.
+     * Throws {@link NoSuchElementException} when the conversation has no query.
+     */
+    @Override
+    public String prepareQuery(String conversationId) {
+        String query = chatConversationService.findLastQuery(conversationId)
+                .orElseThrow(() -> new NoSuchElementException("Conversation has no generated query to export."));
+        return sqlGuard.checkForExport(query);
+    }
+
+    @Override
+    public void exportCsv(String query, OutputStream outputStream, QueryCancellation cancellation) {
+        long rows = chatExecutorService.exportQuery(query, new CsvExportWriter(outputStream), cancellation);
+        log.info("CSV export finished with {} rows", rows);
+    }
+}
@@ -1,11 +1,13 @@
 package com.truenorth.backend.service;
 
 import com.truenorth.backend.dto.ChatHistoryDTO;
+import com.truenorth.backend.dto.CursorPage;
 import com.truenorth.backend.model.ChatHistory;
 import org.springframework.data.domain.Page;
 
 public interface ChatHistoryService {
 
     Page<ChatHistoryDTO> getAllChatHistory(Integer page, Integer limit);
+    CursorPage<ChatHistoryDTO> getChatHistory(String cursor, int limit);
     ChatHistory saveChatHistory(String conversationId, String title);
 }
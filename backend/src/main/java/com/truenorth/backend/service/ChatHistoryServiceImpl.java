@@ -1,14 +1,17 @@
 package com.truenorth.backend.service;
 
 import com.truenorth.backend.dto.ChatHistoryDTO;
+import com.truenorth.backend.dto.CursorPage;
 import com.truenorth.backend.model.ChatHistory;
 import com.truenorth.backend.repository.ChatHistoryRepository;
 import lombok.AllArgsConstructor;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Service
 @AllArgsConstructor
@@ -22,6 +25,26 @@ public class ChatHistoryServiceImpl implements ChatHistoryService {
                 .map(chatHistory -> new ChatHistoryDTO(chatHistory.getConversationId(), chatHistory.getTitle()));
     }
 
+    @Override
+    public CursorPage<ChatHistoryDTO> getChatHistory(String cursor, int limit) {
+        // One extra row tells whether there is a next page without a COUNT
+        Limit fetch = Limit.of(limit + 1);
+        List<ChatHistoryDTO> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = chatHistoryRepository.findNewest(fetch);
+        } else {
+            HistoryCursor position = HistoryCursor.decode(cursor);
+            rows = chatHistoryRepository.findOlderThan(position.createdAt(), position.conversationId(), fetch);
+        }
+
+        if (rows.size() <= limit) {
+            return new CursorPage<>(rows, null);
+        }
+        List<ChatHistoryDTO> items = rows.subList(0, limit);
+        ChatHistoryDTO last = items.get(limit - 1);
+        return new CursorPage<>(items, new HistoryCursor(last.getCreatedAt(), last.getConversationId()).encode());
+    }
+
     @Override
     public ChatHistory saveChatHistory(String conversationId, String title) {
         ChatHistory chatHistory = new ChatHistory(conversationId, title, LocalDateTime.now());
@@ -0,0 +1,89 @@
+package com.truenorth.backend.service;
+
+import com.truenorth.backend.chart.ChartDownsampler;
+import com.truenorth.backend.dto.ChatResponseDTO;
+import com.truenorth.backend.dto.ColumnarResultDTO;
+import com.truenorth.backend.model.ChatResponse;
+import com.truenorth.backend.summary.DataSummaryAccumulator;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the response once the query has returned: the result, the summary of what the
+ * accumulator was fed while the rows were read, and the chart config, reduced for line and
+ * scatter charts. Kept apart from {@link ChatServiceImpl} so the benchmark measures the same code.
+ */
+@Component
+public class ChatResponseAssembler {
+
+    private final ChartDownsampler chartDownsampler;
+
+    public ChatResponseAssembler(ChartDownsampler chartDownsampler) {
+        this.chartDownsampler = chartDownsampler;
+    }
+
+    /**
+     * Either {@code rows} or {@code columnar} holds the result, or neither when the model
+     * answered without a query; {@code summaryAccumulator} is null in that case too.
+     */
+    public ChatResponseDTO assemble(ChatResponse aiResponse, List<Map<String, Object>> rows, ColumnarResultDTO columnar,
+                                    DataSummaryAccumulator summaryAccumulator, ChatStageTimings timings) {
+        ChatResponseDTO dto = new ChatResponseDTO();
+        dto.setData(rows);
+        dto.setColumnar(columnar);
+        if (summaryAccumulator != null) {
+            try (var stage = timings.stage("summary")) {
+                dto.setSummary(summaryAccumulator.toSummary(aiResponse.getChartConfig()));
+            }
+        }
+
+        dto.setVisualizationType(aiResponse.getVisualizationType());
+        dto.setExplanation(aiResponse.getExplanation());
+        dto.setValid(true);
+        try (var stage = timings.stage("chart")) {
+            dto.setChartConfig(convertChartConfig(aiResponse.getChartConfig()));
+            chartDownsampler.reduce(dto);
+        }
+        return dto;
+    }
+
+    public static ChatResponseDTO.ChartConfigDTO convertChartConfig(ChatResponse.ChartConfig config) {
+        if (config == null) return null;
+
+        ChatResponseDTO.ChartConfigDTO configDTO = new ChatResponseDTO.ChartConfigDTO();
+
+        configDTO.setTitle(config.getTitle());
+        configDTO.setSubtitle(config.getSubtitle());
+
+        if (config.getColumns() != null) {
+            configDTO.setColumns(List.of(config.getColumns()));
+        }
+        configDTO.setColumnLabels(config.getColumnLabels());
+
+        configDTO.setXAxisLabel(config.getXAxisLabel());
+        configDTO.setYAxisLabel(config.getYAxisLabel());
+        configDTO.setXAxisField(config.getXAxisField());
+        configDTO.setYAxisField(config.getYAxisField());
+
+        if (config.getSeriesFields() != null) {
+            configDTO.setSeriesFields(List.of(config.getSeriesFields()));
+        }
+
+        configDTO.setLabelField(config.getLabelField());
+        configDTO.setValueField(config.getValueField());
+
+        configDTO.setXField(config.getXField());
+        configDTO.setYField(config.getYField());
+        configDTO.setSizeField(config.getSizeField());
+        configDTO.setCategoryField(config.getCategoryField());
+
+        configDTO.setShowLegend(config.isShowLegend());
+        configDTO.setShowDataLabels(config.isShowDataLabels());
+        configDTO.setLegendPosition(config.getLegendPosition());
+        configDTO.setAdditionalOptions(config.getAdditionalOptions());
+
+        return configDTO;
+    }
+}
@@ -2,7 +2,13 @@ package com.truenorth.backend.service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.truenorth.backend.dto.ChatResponseDTO;
+import com.truenorth.backend.dto.ResultFormat;
+
+import java.io.IOException;
+import java.io.OutputStream;
 
 public interface ChatService {
     ChatResponseDTO processMessage(String conversationId, String userMessage) throws JsonProcessingException;
+    ChatResponseDTO processMessage(String conversationId, String userMessage, ResultFormat resultFormat) throws JsonProcessingException;
+    void streamMessage(String conversationId, String userMessage, OutputStream outputStream, QueryCancellation cancellation) throws IOException;
 }
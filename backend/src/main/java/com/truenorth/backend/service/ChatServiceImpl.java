@@ -2,12 +2,27 @@ package com.truenorth.backend.service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.truenorth.backend.cache.ChatResponseCache;
+import com.truenorth.backend.concurrency.Bulkhead;
 import com.truenorth.backend.dto.ChatResponseDTO;
+import com.truenorth.backend.dto.ColumnarResultDTO;
+import com.truenorth.backend.dto.ResultFormat;
+import com.truenorth.backend.exception.BulkheadFullException;
+import com.truenorth.backend.exception.QueryCancelledException;
 import com.truenorth.backend.exception.SqlQueryFailedException;
-import com.truenorth.backend.model.ChatHistory;
+import com.truenorth.backend.exception.SqlQueryPlanRejectedException;
+import com.truenorth.backend.exception.SqlQueryTimeoutException;
+import com.truenorth.backend.exception.StreamAbortedException;
+import com.truenorth.backend.memory.ChatWriteBehindWriter;
 import com.truenorth.backend.model.ChatResponse;
-import com.truenorth.backend.repository.ChatHistoryRepository;
-import jakarta.annotation.PostConstruct;
+import com.truenorth.backend.model.StoredChatResponse;
+import com.truenorth.backend.schema.SchemaPromptAssembler;
+import com.truenorth.backend.schema.SchemaPromptAssembler.SystemPrompt;
+import com.truenorth.backend.sql.SqlGuard;
+import com.truenorth.backend.sql.SqlPlanValidator;
+import com.truenorth.backend.summary.DataSummaryAccumulator;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.advisor.SimpleLoggerAdvisor;
@@ -15,108 +30,324 @@ import org.springframework.ai.chat.memory.ChatMemory;
 import org.springframework.ai.chat.messages.AssistantMessage;
 import org.springframework.ai.chat.messages.Message;
 import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.converter.BeanOutputConverter;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.ClassPathResource;
-import org.springframework.core.io.Resource;
 import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.BadSqlGrammarException;
 import org.springframework.stereotype.Service;
-import org.springframework.util.FileCopyUtils;
 
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.Reader;
-import java.nio.charset.StandardCharsets;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Slf4j
 @Service
 public class ChatServiceImpl implements ChatService {
 
     private static final int MAX_RETRY_ATTEMPTS = 4;
+    private static final String CACHED_RESPONSE_MODEL = "cache";
+    private static final String SQL_QUERY_FIELD = "sqlQuery";
 
     private final ChatClient chatClient;
     private final ChatClient fallbackChatClient;
     private final ChatMemory chatMemory;
     private final ObjectMapper objectMapper;
     private final ChatExecutorService chatExecutorService;
-    private final ChatHistoryRepository chatHistoryRepository;
-
-    @Value("${ai.prompt.md.name}")
-    private String promptFileName;
-
-    private String systemPromptString;
-
-    @PostConstruct
-    public void init() throws IOException {
-        Resource systemPromptResource = new ClassPathResource("prompts/" + promptFileName + ".md");
-        try (Reader reader = new InputStreamReader(systemPromptResource.getInputStream(), StandardCharsets.UTF_8)) {
-            this.systemPromptString = FileCopyUtils.copyToString(reader);
-        }
-        log.info("Loaded prompt file: {}", promptFileName);
-    }
+    private final ChatWriteBehindWriter chatWriteBehindWriter;
+    private final ChatResponseCache chatResponseCache;
+    private final SqlGuard sqlGuard;
+    private final SqlPlanValidator sqlPlanValidator;
+    private final HedgedResponseGenerator hedgedResponseGenerator;
+    private final Bulkhead modelBulkhead;
+    private final SchemaPromptAssembler schemaPromptAssembler;
+    private final ChatResponseAssembler chatResponseAssembler;
+    private final ObservationRegistry observationRegistry;
+    private final BeanOutputConverter<ChatResponse> outputConverter = new BeanOutputConverter<>(ChatResponse.class);
+    private final ExecutorService pipelineExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @Value("${chat.hedge.enabled:false}")
+    private boolean hedgeEnabled;
+
+    @Value("${chat.model.streaming.enabled:false}")
+    private boolean streamingEnabled;
+
+    @Value("${spring.ai.mistralai.chat.options.model}")
+    private String primaryModel;
+
+    @Value("${spring.ai.mistralai.chat.options.fallback-model}")
+    private String fallbackModel;
 
     public ChatServiceImpl(ChatMemory chatMemory, ChatExecutorService chatExecutorService,
-                           ObjectMapper objectMapper, ChatHistoryRepository chatHistoryRepository,
+                           ObjectMapper objectMapper, ChatWriteBehindWriter chatWriteBehindWriter,
+                           ChatResponseCache chatResponseCache, SqlGuard sqlGuard, SqlPlanValidator sqlPlanValidator,
+                           HedgedResponseGenerator hedgedResponseGenerator, SchemaPromptAssembler schemaPromptAssembler,
+                           ChatResponseAssembler chatResponseAssembler,
+                           @Qualifier("modelBulkhead") Bulkhead modelBulkhead, ObservationRegistry observationRegistry,
                            ChatClient chatClient, @Qualifier("fallbackChatClient") ChatClient fallbackChatClient) {
         this.chatMemory = chatMemory;
         this.objectMapper = objectMapper;
         this.chatExecutorService = chatExecutorService;
-        this.chatHistoryRepository = chatHistoryRepository;
+        this.chatWriteBehindWriter = chatWriteBehindWriter;
+        this.chatResponseCache = chatResponseCache;
+        this.sqlGuard = sqlGuard;
+        this.sqlPlanValidator = sqlPlanValidator;
+        this.hedgedResponseGenerator = hedgedResponseGenerator;
+        this.modelBulkhead = modelBulkhead;
+        this.schemaPromptAssembler = schemaPromptAssembler;
+        this.chatResponseAssembler = chatResponseAssembler;
+        this.observationRegistry = observationRegistry;
         this.chatClient = chatClient;
         this.fallbackChatClient = fallbackChatClient;
     }
 
+    @PreDestroy
+    public void shutdown() {
+        pipelineExecutor.shutdownNow();
+    }
+
+    /**
+     * {@code pipelined} is the response's query already started during generation, or null.
+     */
+    @FunctionalInterface
+    private interface ResponseHandler {
+        ChatResponseDTO handle(ChatResponse aiResponse, PipelinedQuery pipelined)
+                throws SqlQueryFailedException, JsonProcessingException;
+    }
+
     @Override
     public ChatResponseDTO processMessage(String conversationId, String userMessage) {
+        return processMessage(conversationId, userMessage, ResultFormat.ROWS);
+    }
+
+    @Override
+    public ChatResponseDTO processMessage(String conversationId, String userMessage, ResultFormat resultFormat) {
+        String resolvedConversationId = resolveConversationId(conversationId, userMessage);
+        ResultFormat format = resultFormat != null ? resultFormat : ResultFormat.ROWS;
+        ChatStageTimings timings = new ChatStageTimings(observationRegistry);
+        ChatResponseDTO dto = process(resolvedConversationId, userMessage, timings, format,
+                (aiResponse, pipelined) -> convertToDTO(aiResponse, format, pipelined, timings));
+        dto.setTimings(timings.toMillis());
+        return dto;
+    }
+
+    @Override
+    public void streamMessage(String conversationId, String userMessage, OutputStream outputStream,
+                              QueryCancellation cancellation) throws IOException {
+        String resolvedConversationId = resolveConversationId(conversationId, userMessage);
+        ChatStreamWriter writer = new ChatStreamWriter(objectMapper, outputStream);
+        ChatStageTimings timings = new ChatStageTimings(observationRegistry);
+
+        // Rows are streamed from a cursor after the response is complete, so nothing is pipelined
+        ChatResponseDTO result = process(resolvedConversationId, userMessage, timings, null,
+                (aiResponse, pipelined) -> streamToWriter(aiResponse, resolvedConversationId, writer, cancellation, timings));
+        result.setConversationId(resolvedConversationId);
+        result.setTimings(timings.toMillis());
+        writer.complete(result);
+    }
+
+    private String resolveConversationId(String conversationId, String userMessage) {
         if (conversationId == null || conversationId.isBlank()) {
             conversationId = UUID.randomUUID().toString();
 
-            ChatHistory chatHistory = new ChatHistory();
-            chatHistory.setConversationId(conversationId);
-            chatHistory.setTitle(userMessage);
-            chatHistoryRepository.save(chatHistory);
+            chatWriteBehindWriter.enqueueHistory(conversationId, userMessage);
 
             log.info("Generated new conversation ID: {}", conversationId);
         }
+        return conversationId;
+    }
 
-        chatMemory.add(conversationId, new UserMessage(userMessage));
-        List<Message> fullHistory = chatMemory.get(conversationId);
+    /**
+     * {@code pipelineFormat} is the format the handler will execute the query in; when set and
+     * streaming generation is enabled, the query is started as soon as the model has written it.
+     */
+    private ChatResponseDTO process(String conversationId, String userMessage, ChatStageTimings timings,
+                                    ResultFormat pipelineFormat, ResponseHandler handler) {
+        List<Message> fullHistory;
+        try (var stage = timings.stage("memory.write")) {
+            chatMemory.add(conversationId, new UserMessage(userMessage));
+        } catch (BulkheadFullException e) {
+            log.warn("Rejected message for conversation {}: {}", conversationId, e.getMessage());
+            return createErrorResponse("The service is busy right now. Please try again in a moment.");
+        }
+        try (var stage = timings.stage("memory.read")) {
+            fullHistory = chatMemory.get(conversationId);
+        }
+        SystemPrompt systemPrompt;
+        String responseCacheKey;
+        try (var stage = timings.stage("prompt")) {
+            systemPrompt = schemaPromptAssembler.forConversation(fullHistory);
+            responseCacheKey = chatResponseCache.key(systemPrompt.version(), fullHistory);
+        }
 
-        // Try primary client first
+        // Try cached response, then primary client
+        AtomicReference<PipelinedQuery> pipelined = new AtomicReference<>();
         try {
-            log.info("Processing message with primary client for conversation: {}", conversationId);
-            ChatResponse aiResponse = chatClient.prompt()
-                    .system(this.systemPromptString)
-                    .messages(fullHistory)
-                    .advisors(new SimpleLoggerAdvisor())
-                    .call()
-                    .entity(ChatResponse.class);
+            ChatResponse aiResponse;
+            try (var stage = timings.stage("cache.read")) {
+                aiResponse = chatResponseCache.get(responseCacheKey);
+            }
+            if (aiResponse != null) {
+                log.info("Response cache hit for conversation: {}", conversationId);
+                aiResponse.setModel(CACHED_RESPONSE_MODEL);
+            } else if (streamingEnabled && pipelineFormat != null) {
+                aiResponse = generateStreaming(conversationId, systemPrompt, fullHistory, pipelineFormat, pipelined,
+                        timings);
+            } else {
+                aiResponse = generate(conversationId, systemPrompt, fullHistory, timings);
+            }
+            timings.setModel(aiResponse != null ? aiResponse.getModel() : null);
+            timings.setVisualizationType(aiResponse != null ? aiResponse.getVisualizationType() : null);
 
-            ChatResponseDTO dto = convertToDTO(aiResponse);
-            chatMemory.add(conversationId, new AssistantMessage(objectMapper.writeValueAsString(aiResponse)));
+            ChatResponseDTO dto = handler.handle(aiResponse, pipelined.get());
+            remember(conversationId, aiResponse, timings);
+            try (var stage = timings.stage("cache.write")) {
+                chatResponseCache.put(responseCacheKey, aiResponse);
+            }
             dto.setConversationId(conversationId);
             return dto;
 
         } catch (SqlQueryFailedException e) {
+            chatResponseCache.invalidate(responseCacheKey);
             log.warn("Primary AI generated invalid SQL. Attempting fallback with retry logic. Query: '{}'. Error: '{}'",
                     e.getFailedQuery(), e.getMessage());
 
-            return attemptFallbackWithRetry(conversationId, fullHistory, e.getFailedQuery(), e.getMessage(), 1);
+            return attemptFallbackWithRetry(conversationId, fullHistory, systemPrompt, e.getFailedQuery(), e.getMessage(), e,
+                    1, timings, handler);
+
+        } catch (QueryCancelledException e) {
+            log.info("Request cancelled for conversation {}: {}", conversationId, e.getMessage());
+            return createErrorResponse("The request was cancelled.");
+
+        } catch (BulkheadFullException e) {
+            log.warn("Rejected message for conversation {}: {}", conversationId, e.getMessage());
+            return createErrorResponse("The service is busy right now. Please try again in a moment.");
+
+        } catch (StreamAbortedException e) {
+            // Not remembered or cached, so asking again runs a fresh query
+            return createErrorResponse("Streaming was interrupted: " + e.getMessage());
 
         } catch (Exception e) {
             log.error("An unexpected error occurred while processing message: ", e);
             return createErrorResponse("An unexpected error occurred. Please try again.");
+
+        } finally {
+            PipelinedQuery started = pipelined.get();
+            if (started != null) {
+                started.cancel();
+            }
+        }
+    }
+
+    private ChatResponse generate(String conversationId, SystemPrompt systemPrompt, List<Message> fullHistory,
+                                  ChatStageTimings timings) {
+        // Structured output is parsed inside entity(); on the direct path the model client's own
+        // observation nests under this stage and times the request alone
+        try (var stage = timings.stage("model")) {
+            ChatResponse aiResponse;
+            if (hedgeEnabled) {
+                log.info("Processing message with hedged primary/fallback clients for conversation: {}", conversationId);
+                timings.setModel("hedged");
+                aiResponse = hedgedResponseGenerator.generate(systemPrompt.text(), fullHistory, this::preflight);
+            } else {
+                log.info("Processing message with primary client for conversation: {}", conversationId);
+                timings.setModel(primaryModel);
+                aiResponse = modelBulkhead.call(() -> chatClient.prompt()
+                        .system(systemPrompt.text())
+                        .messages(fullHistory)
+                        .advisors(new SimpleLoggerAdvisor())
+                        .call()
+                        .entity(ChatResponse.class));
+                if (aiResponse != null) {
+                    aiResponse.setModel(primaryModel);
+                }
+            }
+            if (aiResponse != null) {
+                timings.setModel(aiResponse.getModel());
+                timings.setVisualizationType(aiResponse.getVisualizationType());
+            }
+            return aiResponse;
+        }
+    }
+
+    /**
+     * Streams the primary model's response and starts its SQL (validation, then execution) on
+     * another thread as soon as {@code sqlQuery}, the first field, has been written, so the
+     * query runs while the model is still writing the chart config and explanation. Hedging
+     * does not apply on this path.
+     */
+    private ChatResponse generateStreaming(String conversationId, SystemPrompt systemPrompt, List<Message> fullHistory,
+                                           ResultFormat format, AtomicReference<PipelinedQuery> pipelined,
+                                           ChatStageTimings timings) throws IOException {
+        log.info("Streaming message from primary client for conversation: {}", conversationId);
+        StreamingJsonFieldReader reader = new StreamingJsonFieldReader(objectMapper.getFactory(), SQL_QUERY_FIELD);
+        StringBuilder text = new StringBuilder();
+
+        try (var stage = timings.stage("model")) {
+            timings.setModel(primaryModel);
+            // entity() adds the format instructions itself; a streamed call has to ask for them
+            modelBulkhead.run(() -> chatClient.prompt()
+                    .system(systemPrompt.text() + "\n\n" + outputConverter.getFormat())
+                    .messages(fullHistory)
+                    .advisors(new SimpleLoggerAdvisor())
+                    .stream()
+                    .content()
+                    .doOnNext(chunk -> {
+                        text.append(chunk);
+                        String query = pipelined.get() == null ? reader.feed(chunk) : null;
+                        if (query != null && !query.isBlank()) {
+                            log.info("Starting query while the model is still responding: {}", query);
+                            QueryCancellation cancellation = QueryCancellation.create();
+                            pipelined.set(new PipelinedQuery(query, cancellation,
+                                    pipelineExecutor.submit(() -> runPipelined(query, format, cancellation))));
+                        }
+                    })
+                    .blockLast());
+
+            ChatResponse aiResponse = outputConverter.convert(text.toString());
+            if (aiResponse != null) {
+                aiResponse.setModel(primaryModel);
+                timings.setVisualizationType(aiResponse.getVisualizationType());
+            }
+            return aiResponse;
+        }
+    }
+
+    private PipelinedQuery.Result runPipelined(String query, ResultFormat format, QueryCancellation cancellation) {
+        ChatResponse probe = new ChatResponse();
+        probe.setQuery(query);
+        probe.setValid(true);
+        preflight(probe);
+
+        DataSummaryAccumulator summaryAccumulator = new DataSummaryAccumulator();
+        if (format == ResultFormat.COLUMNAR) {
+            return new PipelinedQuery.Result(probe.getQuery(), null,
+                    chatExecutorService.executeColumnarQuery(probe.getQuery(), primaryModel, summaryAccumulator,
+                            cancellation),
+                    summaryAccumulator);
+        }
+        return new PipelinedQuery.Result(probe.getQuery(),
+                chatExecutorService.executeQuery(probe.getQuery(), primaryModel, summaryAccumulator, cancellation), null,
+                summaryAccumulator);
+    }
+
+    private void remember(String conversationId, ChatResponse aiResponse, ChatStageTimings timings)
+            throws JsonProcessingException {
+        try (var stage = timings.stage("memory.write")) {
+            chatMemory.add(conversationId, new AssistantMessage(objectMapper.writeValueAsString(StoredChatResponse.of(aiResponse))));
         }
     }
 
     private ChatResponseDTO attemptFallbackWithRetry(String conversationId, List<Message> fullHistory,
-                                                     String failedQuery, String errorMessage, int attemptNumber) {
+                                                     SystemPrompt systemPrompt, String failedQuery, String errorMessage,
+                                                     SqlQueryFailedException failure, int attemptNumber,
+                                                     ChatStageTimings timings, ResponseHandler handler) {
 
         if (attemptNumber > MAX_RETRY_ATTEMPTS) {
             log.error("Maximum retry attempts ({}) exceeded. Unable to generate valid SQL query.", MAX_RETRY_ATTEMPTS);
@@ -124,23 +355,43 @@ public class ChatServiceImpl implements ChatService {
         }
 
         log.info("Fallback attempt {} for conversation: {}", attemptNumber, conversationId);
+        timings.setAttempt(attemptNumber);
+        timings.setModel(fallbackModel);
+        timings.setVisualizationType(null);
+
+        String recoveryInstruction;
+        String retrySystemPrompt;
+        try (var stage = timings.stage("prompt")) {
+            recoveryInstruction = buildRecoveryInstruction(failedQuery, errorMessage, failure, attemptNumber);
 
-        String recoveryInstruction = buildRecoveryInstruction(failedQuery, errorMessage, attemptNumber);
+            // The sliced schema may have left out what the model reached for; show it everything
+            retrySystemPrompt = isSchemaError(errorMessage) ? schemaPromptAssembler.full().text() : systemPrompt.text();
+        }
 
         // Create a mutable copy to avoid modifying the original
         List<Message> retryHistory = new ArrayList<>(fullHistory);
         retryHistory.add(new UserMessage(recoveryInstruction));
 
         try {
-            ChatResponse fallbackAiResponse = fallbackChatClient.prompt()
-                    .system(this.systemPromptString)
-                    .messages(retryHistory)
-                    .advisors(new SimpleLoggerAdvisor())
-                    .call()
-                    .entity(ChatResponse.class);
+            ChatResponse fallbackAiResponse;
+            try (var stage = timings.stage("model")) {
+                fallbackAiResponse = modelBulkhead.call(() -> fallbackChatClient.prompt()
+                        .system(retrySystemPrompt)
+                        .messages(retryHistory)
+                        .advisors(new SimpleLoggerAdvisor())
+                        .call()
+                        .entity(ChatResponse.class));
+                if (fallbackAiResponse != null) {
+                    fallbackAiResponse.setModel(fallbackModel);
+                    timings.setVisualizationType(fallbackAiResponse.getVisualizationType());
+                }
+            }
 
-            ChatResponseDTO dto = convertToDTO(fallbackAiResponse);
-            chatMemory.add(conversationId, new AssistantMessage(objectMapper.writeValueAsString(fallbackAiResponse)));
+            ChatResponseDTO dto = handler.handle(fallbackAiResponse, null);
+            remember(conversationId, fallbackAiResponse, timings);
+            try (var stage = timings.stage("cache.write")) {
+                chatResponseCache.put(chatResponseCache.key(systemPrompt.version(), fullHistory), fallbackAiResponse);
+            }
             dto.setConversationId(conversationId);
             return dto;
 
@@ -149,23 +400,40 @@ public class ChatServiceImpl implements ChatService {
                     attemptNumber, retryException.getFailedQuery(), retryException.getMessage());
 
             // Recursive retry with incremented attempt number
-            return attemptFallbackWithRetry(conversationId, fullHistory,
-                    retryException.getFailedQuery(), retryException.getMessage(), attemptNumber + 1);
+            return attemptFallbackWithRetry(conversationId, fullHistory, systemPrompt,
+                    retryException.getFailedQuery(), retryException.getMessage(), retryException,
+                    attemptNumber + 1, timings, handler);
+
+        } catch (QueryCancelledException cancelled) {
+            log.info("Request cancelled during fallback attempt {}: {}", attemptNumber, cancelled.getMessage());
+            return createErrorResponse("The request was cancelled.");
+
+        } catch (BulkheadFullException busy) {
+            log.warn("Fallback attempt {} rejected: {}", attemptNumber, busy.getMessage());
+            return createErrorResponse("The service is busy right now. Please try again in a moment.");
+
+        } catch (StreamAbortedException aborted) {
+            return createErrorResponse("Streaming was interrupted: " + aborted.getMessage());
 
         } catch (Exception fallbackException) {
             log.error("Fallback attempt {} failed with unexpected error.", attemptNumber, fallbackException);
 
             // If it's not the last attempt, try again
             if (attemptNumber < MAX_RETRY_ATTEMPTS) {
-                return attemptFallbackWithRetry(conversationId, fullHistory, failedQuery,
-                        "Unexpected error: " + fallbackException.getMessage(), attemptNumber + 1);
+                return attemptFallbackWithRetry(conversationId, fullHistory, systemPrompt, failedQuery,
+                        "Unexpected error: " + fallbackException.getMessage(), null, attemptNumber + 1, timings, handler);
             } else {
                 return createErrorResponse("We tried multiple times to process your request but encountered technical difficulties. Please try again later.");
             }
         }
     }
 
-    private String buildRecoveryInstruction(String failedQuery, String errorMessage, int attemptNumber) {
+    private static boolean isSchemaError(String errorMessage) {
+        return errorMessage != null && errorMessage.contains("does not exist");
+    }
+
+    private String buildRecoveryInstruction(String failedQuery, String errorMessage, SqlQueryFailedException failure,
+                                            int attemptNumber) {
         StringBuilder instruction = new StringBuilder();
 
         if (attemptNumber == 1) {
@@ -180,6 +448,22 @@ public class ChatServiceImpl implements ChatService {
         instruction.append("**DATABASE ERROR:**\n");
         instruction.append("'").append(errorMessage).append("'\n\n");
 
+        if (failure instanceof SqlQueryPlanRejectedException planRejection) {
+            instruction.append("**ESTIMATED QUERY PLAN (the query was NOT executed because it is too expensive):**\n");
+            instruction.append("```\n").append(planRejection.getPlanOutline()).append("```\n\n");
+            instruction.append("The query is valid SQL but would scan or produce far too many rows. Rewrite it to be cheaper:\n");
+            instruction.append("   - Every JOIN must have an ON condition on matching key columns (e.g. individual_id, address_id)\n");
+            instruction.append("   - Filter rows in WHERE as early as possible, before joining\n");
+            instruction.append("   - Aggregate (GROUP BY) inside a subquery or CTE first, then join the smaller result\n");
+            instruction.append("   - Avoid correlated subqueries that run once per row of a large table\n\n");
+        } else if (failure instanceof SqlQueryTimeoutException) {
+            instruction.append("**THE QUERY TIMED OUT.** It is valid SQL but too slow to run. Write a cheaper query:\n");
+            instruction.append("   - Join only the tables the question needs, always on key columns\n");
+            instruction.append("   - Add selective WHERE conditions and aggregate before joining\n");
+            instruction.append("   - Replace correlated subqueries and DISTINCT over large joins with GROUP BY\n");
+            instruction.append("   - Avoid functions or casts on filtered columns where a plain comparison works\n\n");
+        }
+
         instruction.append("**INSTRUCTIONS FOR CORRECTION:**\n");
         instruction.append("1. **REFLECT ON DATABASE SCHEMA**: Carefully review the available tables, columns, and their exact names. Common issues include:\n");
         instruction.append("   - Incorrect table names (check spelling and case sensitivity)\n");
@@ -211,107 +495,130 @@ public class ChatServiceImpl implements ChatService {
         return instruction.toString();
     }
 
-    private ChatResponseDTO convertToDTO(ChatResponse aiResponse) throws SqlQueryFailedException, JsonProcessingException {
-        ChatResponseDTO dto = new ChatResponseDTO();
+    /**
+     * Static guard and EXPLAIN checks; rewrites the query in place. Safe to run more than once.
+     */
+    private void preflight(ChatResponse aiResponse) throws SqlQueryFailedException {
+        if (aiResponse == null || !aiResponse.isValid() || aiResponse.getQuery() == null || aiResponse.getQuery().isBlank()) {
+            return;
+        }
+        if (aiResponse.getGeneratedQuery() == null) {
+            aiResponse.setGeneratedQuery(aiResponse.getQuery());
+        }
+        aiResponse.setQuery(sqlGuard.check(aiResponse.getQuery()));
+        sqlPlanValidator.validate(aiResponse.getQuery());
+    }
+
+    private ChatResponseDTO convertToDTO(ChatResponse aiResponse, ChatStageTimings timings)
+            throws SqlQueryFailedException, JsonProcessingException {
+        return convertToDTO(aiResponse, ResultFormat.ROWS, null, timings);
+    }
 
+    private ChatResponseDTO convertToDTO(ChatResponse aiResponse, ResultFormat format, PipelinedQuery pipelined,
+                                         ChatStageTimings timings)
+            throws SqlQueryFailedException, JsonProcessingException {
         if (aiResponse == null || !aiResponse.isValid()) {
-            dto.setValid(false);
-            dto.setErrorMessage(aiResponse != null ? aiResponse.getErrorMessage() :
+            return createErrorResponse(aiResponse != null ? aiResponse.getErrorMessage() :
                     "Unable to process your request. Please ask about customer data, demographics, or insurance information.");
-            return dto;
         }
 
         try {
-            if (aiResponse.getQuery() != null && !aiResponse.getQuery().isBlank()) {
-                List<Map<String, Object>> queryResults = chatExecutorService.executeQuery(aiResponse.getQuery());
-                dto.setData(queryResults);
-
-                if (shouldCalculateSummary(aiResponse.getVisualizationType())) {
-                    dto.setSummary(calculateDataSummary(queryResults, aiResponse.getChartConfig()));
+            List<Map<String, Object>> rows = null;
+            ColumnarResultDTO columnar = null;
+            DataSummaryAccumulator summaryAccumulator = null;
+
+            boolean usePipelined = pipelined != null && pipelined.matches(aiResponse.getQuery());
+            if (pipelined != null && !usePipelined) {
+                // The model settled on another query; stop the early one before running it
+                pipelined.cancel();
+            }
+            if (usePipelined) {
+                // Already validated and running; this only waits for what the model did not overlap
+                PipelinedQuery.Result result;
+                try (var stage = timings.stage("sql.pipelined")) {
+                    result = pipelined.await();
+                }
+                if (aiResponse.getGeneratedQuery() == null) {
+                    aiResponse.setGeneratedQuery(aiResponse.getQuery());
+                }
+                aiResponse.setQuery(result.checkedQuery());
+                rows = result.rows();
+                columnar = result.columnar();
+                summaryAccumulator = result.summaryAccumulator();
+            } else if (aiResponse.getQuery() != null && !aiResponse.getQuery().isBlank()) {
+                try (var stage = timings.stage("sql.validate")) {
+                    preflight(aiResponse);
+                }
+                summaryAccumulator = new DataSummaryAccumulator();
+
+                try (var stage = timings.stage("sql.execute")) {
+                    if (format == ResultFormat.COLUMNAR) {
+                        columnar = chatExecutorService.executeColumnarQuery(aiResponse.getQuery(), aiResponse.getModel(),
+                                summaryAccumulator);
+                    } else {
+                        rows = chatExecutorService.executeQuery(aiResponse.getQuery(), aiResponse.getModel(), summaryAccumulator);
+                    }
                 }
             }
 
-            dto.setVisualizationType(aiResponse.getVisualizationType());
-            dto.setExplanation(aiResponse.getExplanation());
-            dto.setValid(true);
-            dto.setChartConfig(convertChartConfig(aiResponse.getChartConfig()));
-
+            return chatResponseAssembler.assemble(aiResponse, rows, columnar, summaryAccumulator, timings);
+        } catch (QueryCancelledException | BulkheadFullException e) {
+            throw e;
+        } catch (SqlQueryFailedException e) {
+            log.warn("SQL query rejected or timed out. Query: [{}], Reason: [{}]", e.getFailedQuery(), e.getMessage());
+            throw e;
         } catch (Exception e) {
             String errorMessage = e.getMessage();
             log.warn("SQL query execution failed. Query: [{}], Error: [{}]", aiResponse.getQuery(), errorMessage);
             throw new SqlQueryFailedException(errorMessage, e, aiResponse.getQuery());
         }
-        return dto;
     }
 
-    private ChatResponseDTO.ChartConfigDTO convertChartConfig(ChatResponse.ChartConfig config) {
-        if (config == null) return null;
-
-        ChatResponseDTO.ChartConfigDTO configDTO = new ChatResponseDTO.ChartConfigDTO();
-
-        configDTO.setTitle(config.getTitle());
-        configDTO.setSubtitle(config.getSubtitle());
-
-        if (config.getColumns() != null) {
-            configDTO.setColumns(List.of(config.getColumns()));
+    private ChatResponseDTO streamToWriter(ChatResponse aiResponse, String conversationId, ChatStreamWriter writer,
+                                           QueryCancellation cancellation, ChatStageTimings timings)
+            throws SqlQueryFailedException, JsonProcessingException {
+        if (aiResponse == null || !aiResponse.isValid() || aiResponse.getQuery() == null || aiResponse.getQuery().isBlank()) {
+            return convertToDTO(aiResponse, timings);
         }
-        configDTO.setColumnLabels(config.getColumnLabels());
 
-        configDTO.setXAxisLabel(config.getXAxisLabel());
-        configDTO.setYAxisLabel(config.getYAxisLabel());
-        configDTO.setXAxisField(config.getXAxisField());
-        configDTO.setYAxisField(config.getYAxisField());
-
-        if (config.getSeriesFields() != null) {
-            configDTO.setSeriesFields(List.of(config.getSeriesFields()));
+        try (var stage = timings.stage("sql.validate")) {
+            preflight(aiResponse);
         }
 
-        configDTO.setLabelField(config.getLabelField());
-        configDTO.setValueField(config.getValueField());
-
-        configDTO.setXField(config.getXField());
-        configDTO.setYField(config.getYField());
-        configDTO.setSizeField(config.getSizeField());
-        configDTO.setCategoryField(config.getCategoryField());
-
-        configDTO.setShowLegend(config.isShowLegend());
-        configDTO.setShowDataLabels(config.isShowDataLabels());
-        configDTO.setLegendPosition(config.getLegendPosition());
-        configDTO.setAdditionalOptions(config.getAdditionalOptions());
-
-        return configDTO;
-    }
-
-    private ChatResponseDTO.DataSummary calculateDataSummary(List<Map<String, Object>> data,
-                                                             ChatResponse.ChartConfig config) {
-        if (data == null || data.isEmpty()) return null;
-
-        ChatResponseDTO.DataSummary summary = new ChatResponseDTO.DataSummary();
-        summary.setTotalRecords((long) data.size());
-
-        if (config != null && config.getValueField() != null) {
-            String valueField = config.getValueField();
-
-            List<Double> values = data.stream()
-                    .map(row -> row.get(valueField))
-                    .filter(val -> val instanceof Number)
-                    .map(val -> ((Number) val).doubleValue())
-                    .collect(Collectors.toList());
+        ChatResponseDTO meta = new ChatResponseDTO();
+        meta.setVisualizationType(aiResponse.getVisualizationType());
+        meta.setExplanation(aiResponse.getExplanation());
+        meta.setValid(true);
+        try (var stage = timings.stage("chart")) {
+            meta.setChartConfig(ChatResponseAssembler.convertChartConfig(aiResponse.getChartConfig()));
+        }
+        meta.setConversationId(conversationId);
+        DataSummaryAccumulator summaryAccumulator = new DataSummaryAccumulator();
+        writer.prepare(meta, summaryAccumulator);
 
-            if (!values.isEmpty()) {
-                summary.setTotal(values.stream().mapToDouble(Double::doubleValue).sum());
-                summary.setAverage(values.stream().mapToDouble(Double::doubleValue).average().orElse(0.0));
-                summary.setMin(values.stream().mapToDouble(Double::doubleValue).min().orElse(0.0));
-                summary.setMax(values.stream().mapToDouble(Double::doubleValue).max().orElse(0.0));
+        try {
+            // Rows are written to the client as they are read, so this includes serialization
+            try (var stage = timings.stage("sql.execute")) {
+                chatExecutorService.streamQuery(aiResponse.getQuery(), aiResponse.getModel(), writer, cancellation);
+            }
+            try (var stage = timings.stage("summary")) {
+                meta.setSummary(summaryAccumulator.toSummary(aiResponse.getChartConfig()));
             }
+        } catch (QueryCancelledException | BulkheadFullException e) {
+            throw e;
+        } catch (Exception e) {
+            if (!writer.isCommitted()) {
+                if (e instanceof SqlQueryFailedException failed) {
+                    throw failed;
+                }
+                log.warn("SQL query execution failed. Query: [{}], Error: [{}]", aiResponse.getQuery(), e.getMessage());
+                throw new SqlQueryFailedException(e.getMessage(), e, aiResponse.getQuery());
+            }
+            log.warn("Streaming aborted after rows were sent. Query: [{}], Error: [{}]", aiResponse.getQuery(), e.getMessage());
+            writer.fail("Streaming was interrupted: " + e.getMessage());
+            throw new StreamAbortedException(e.getMessage(), e);
         }
-
-        return summary;
-    }
-
-    private boolean shouldCalculateSummary(String visualizationType) {
-        return "number".equals(visualizationType) ||
-                "table".equals(visualizationType);
+        return meta;
     }
 
     private ChatResponseDTO createErrorResponse(String errorMessage) {
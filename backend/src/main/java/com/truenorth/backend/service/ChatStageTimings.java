@@ -0,0 +1,107 @@
+package com.truenorth.backend.service;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+
+/**
+ * Times the stages of one chat request. Each stage is a {@code chat.stage} observation tagged
+ * with the stage, the model, the retry attempt and the visualization type as they stand when the
+ * stage ends, so the meter handler turns it into a timer and a tracer into a span. The summed
+ * duration per stage is kept for the response's timing breakdown. Not thread-safe: one request,
+ * one thread.
+ */
+public class ChatStageTimings {
+
+    public static final String OBSERVATION_NAME = "chat.stage";
+    public static final String SERVER_TIMING_HEADER = "Server-Timing";
+
+    private static final Set<String> VISUALIZATION_TYPES = Set.of(
+            "table", "bar", "line", "pie", "scatter", "number", "doughnut", "radar", "polararea");
+
+    private final ObservationRegistry observationRegistry;
+    private final long startNanos = System.nanoTime();
+    private final Map<String, Long> stageNanos = new LinkedHashMap<>();
+    private String model = "none";
+    private int attempt;
+    private String visualizationType = "none";
+
+    public ChatStageTimings(ObservationRegistry observationRegistry) {
+        this.observationRegistry = observationRegistry;
+    }
+
+    public final class Stage implements AutoCloseable {
+        private final String name;
+        private final Observation observation;
+        private final Observation.Scope scope;
+        private final long start = System.nanoTime();
+
+        private Stage(String name) {
+            this.name = name;
+            this.observation = Observation.createNotStarted(OBSERVATION_NAME, observationRegistry)
+                    .contextualName(OBSERVATION_NAME + " " + name)
+                    .lowCardinalityKeyValue("stage", name)
+                    .start();
+            this.scope = observation.openScope();
+        }
+
+        @Override
+        public void close() {
+            stageNanos.merge(name, System.nanoTime() - start, Long::sum);
+            scope.close();
+            observation.lowCardinalityKeyValue("model", model)
+                    .lowCardinalityKeyValue("attempt", String.valueOf(attempt))
+                    .lowCardinalityKeyValue("visualization", visualizationType)
+                    .stop();
+        }
+    }
+
+    public Stage stage(String name) {
+        return new Stage(name);
+    }
+
+    public void setModel(String model) {
+        this.model = model != null ? model : "none";
+    }
+
+    public void setAttempt(int attempt) {
+        this.attempt = attempt;
+    }
+
+    /**
+     * The model's visualization type, limited to the known ones so it stays a low-cardinality tag.
+     */
+    public void setVisualizationType(String visualizationType) {
+        if (visualizationType == null || visualizationType.isBlank()) {
+            this.visualizationType = "none";
+            return;
+        }
+        String normalized = visualizationType.trim().toLowerCase(Locale.ROOT);
+        this.visualizationType = VISUALIZATION_TYPES.contains(normalized) ? normalized : "other";
+    }
+
+    /**
+     * Milliseconds per stage in the order the stages first ran, followed by the request total.
+     */
+    public Map<String, Double> toMillis() {
+        Map<String, Double> millis = new LinkedHashMap<>();
+        stageNanos.forEach((stage, nanos) -> millis.put(stage, toMillis(nanos)));
+        millis.put("total", toMillis(System.nanoTime() - startNanos));
+        return millis;
+    }
+
+    public static String serverTiming(Map<String, Double> millis) {
+        StringJoiner header = new StringJoiner(", ");
+        millis.forEach((stage, duration) -> header.add(stage + ";dur=" + duration));
+        return header.toString();
+    }
+
+    private static double toMillis(long nanos) {
+        return Math.round(nanos / 10_000.0) / 100.0;
+    }
+}
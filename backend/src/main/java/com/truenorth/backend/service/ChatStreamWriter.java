@@ -0,0 +1,150 @@
+package com.truenorth.backend.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.truenorth.backend.dto.ChatResponseDTO;
+import com.truenorth.backend.summary.DataSummaryAccumulator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+/**
+ * Writes a chat response as newline-delimited JSON: one "meta" event with the chart
+ * metadata, one "row" event per result row as it comes off the cursor, then "end".
+ * The meta event is held back until the first row so a query that fails before
+ * producing rows can still be retried without the client seeing anything. A stream
+ * that fails after that ends with an "error" event instead of "end".
+ */
+public class ChatStreamWriter implements RowCallbackHandler {
+
+    private static final int FLUSH_EVERY_ROWS = 100;
+
+    private final CountingOutputStream countingStream;
+    private final JsonGenerator generator;
+
+    private ChatResponseDTO pendingMeta;
+    private DataSummaryAccumulator summaryAccumulator;
+    private String[] columnLabels;
+    private long rowCount;
+    private boolean committed;
+    private boolean broken;
+    private boolean failed;
+
+    public ChatStreamWriter(ObjectMapper objectMapper, OutputStream outputStream) throws IOException {
+        this.countingStream = new CountingOutputStream(outputStream);
+        this.generator = objectMapper.createGenerator(countingStream);
+        this.generator.setRootValueSeparator(null);
+    }
+
+    public void prepare(ChatResponseDTO meta, DataSummaryAccumulator summaryAccumulator) {
+        this.pendingMeta = meta;
+        this.summaryAccumulator = summaryAccumulator;
+        this.columnLabels = null;
+        this.rowCount = 0;
+    }
+
+    public boolean isCommitted() {
+        return committed;
+    }
+
+    /**
+     * Bytes serialized so far, including what the generator still buffers.
+     */
+    public long getBytesWritten() {
+        return countingStream.getCount() + Math.max(generator.getOutputBuffered(), 0);
+    }
+
+    @Override
+    public void processRow(ResultSet rs) throws SQLException {
+        if (columnLabels == null) {
+            ResultSetMetaData metaData = rs.getMetaData();
+            columnLabels = new String[metaData.getColumnCount()];
+            for (int i = 0; i < columnLabels.length; i++) {
+                columnLabels[i] = JdbcUtils.lookupColumnName(metaData, i + 1);
+            }
+            summaryAccumulator.bind(metaData);
+        }
+
+        try {
+            commitMeta();
+            generator.writeStartObject();
+            generator.writeStringField("type", "row");
+            generator.writeObjectFieldStart("data");
+            for (int i = 0; i < columnLabels.length; i++) {
+                Object value = JdbcUtils.getResultSetValue(rs, i + 1);
+                generator.writeFieldName(columnLabels[i]);
+                generator.writeObject(value);
+                summaryAccumulator.acceptValue(i, value);
+            }
+            summaryAccumulator.rowCompleted();
+            generator.writeEndObject();
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+
+            if (++rowCount % FLUSH_EVERY_ROWS == 0) {
+                generator.flush();
+            }
+        } catch (IOException e) {
+            broken = true;
+            throw new UncheckedIOException("Client stopped reading the stream", e);
+        }
+    }
+
+    public void complete(ChatResponseDTO result) throws IOException {
+        if (broken || failed) {
+            return;
+        }
+        if (!committed) {
+            pendingMeta = result;
+            commitMeta();
+        }
+        generator.writeStartObject();
+        generator.writeStringField("type", "end");
+        generator.writeNumberField("rowCount", rowCount);
+        if (result != null && result.getSummary() != null) {
+            generator.writeObjectField("summary", result.getSummary());
+        }
+        if (result != null && result.getTimings() != null) {
+            generator.writeObjectField("timings", result.getTimings());
+        }
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+        generator.flush();
+    }
+
+    public void fail(String errorMessage) {
+        if (broken || failed) {
+            return;
+        }
+        failed = true;
+        try {
+            generator.writeStartObject();
+            generator.writeStringField("type", "error");
+            generator.writeStringField("errorMessage", errorMessage);
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+            generator.flush();
+        } catch (IOException e) {
+            broken = true;
+        }
+    }
+
+    private void commitMeta() throws IOException {
+        if (committed) {
+            return;
+        }
+        committed = true;
+        generator.writeStartObject();
+        generator.writeStringField("type", "meta");
+        generator.writeObjectField("response", pendingMeta);
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+        generator.flush();
+    }
+}
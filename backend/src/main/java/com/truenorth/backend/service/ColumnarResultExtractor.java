@@ -0,0 +1,227 @@
+package com.truenorth.backend.service;
+
+import com.truenorth.backend.dto.ColumnarResultDTO;
+import com.truenorth.backend.dto.ColumnarResultDTO.Encoding;
+import com.truenorth.backend.summary.DataSummaryAccumulator;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads a result set column by column into primitive arrays, so column names and types
+ * are stored once and numbers are never boxed. Text columns are dictionary encoded
+ * until they exceed {@code maxDictionarySize} distinct values. NUMERIC and DECIMAL columns are
+ * kept as {@link BigDecimal} so they serialize exactly as in the rows format. Numeric values
+ * are fed to the summary accumulator as they are read.
+ */
+public class ColumnarResultExtractor implements ResultSetExtractor<ColumnarResultDTO> {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final int maxDictionarySize;
+    private final DataSummaryAccumulator summaryAccumulator;
+
+    public ColumnarResultExtractor(int maxDictionarySize, DataSummaryAccumulator summaryAccumulator) {
+        this.maxDictionarySize = maxDictionarySize;
+        this.summaryAccumulator = summaryAccumulator;
+    }
+
+    @Override
+    public ColumnarResultDTO extractData(ResultSet rs) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        int columnCount = metaData.getColumnCount();
+        summaryAccumulator.bind(metaData);
+
+        ColumnBuffer[] buffers = new ColumnBuffer[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            buffers[i] = new ColumnBuffer(JdbcUtils.lookupColumnName(metaData, i + 1),
+                    metaData.getColumnTypeName(i + 1), encodingFor(metaData.getColumnType(i + 1)));
+        }
+
+        int rowCount = 0;
+        while (rs.next()) {
+            for (int i = 0; i < columnCount; i++) {
+                buffers[i].read(rs, i + 1, rowCount);
+            }
+            summaryAccumulator.rowCompleted();
+            rowCount++;
+        }
+
+        List<ColumnarResultDTO.Column> columns = new ArrayList<>(columnCount);
+        for (ColumnBuffer buffer : buffers) {
+            columns.add(buffer.toColumn(rowCount));
+        }
+        return new ColumnarResultDTO(rowCount, columns);
+    }
+
+    private static Encoding encodingFor(int sqlType) {
+        return switch (sqlType) {
+            case Types.BIGINT, Types.INTEGER, Types.SMALLINT, Types.TINYINT -> Encoding.INT64;
+            case Types.DOUBLE, Types.FLOAT, Types.REAL -> Encoding.FLOAT64;
+            case Types.NUMERIC, Types.DECIMAL -> Encoding.DECIMAL;
+            case Types.BOOLEAN, Types.BIT -> Encoding.BOOL;
+            case Types.CHAR, Types.VARCHAR, Types.LONGVARCHAR, Types.NCHAR, Types.NVARCHAR, Types.LONGNVARCHAR ->
+                    Encoding.DICTIONARY;
+            default -> Encoding.OBJECT;
+        };
+    }
+
+    private final class ColumnBuffer {
+        private final String name;
+        private final String sqlType;
+        private Encoding encoding;
+
+        private long[] longs;
+        private double[] doubles;
+        private boolean[] booleans;
+        private int[] codes;
+        private Object[] objects;
+
+        private Map<String, Integer> dictionaryIndex;
+        private List<String> dictionary;
+
+        private int[] nulls = new int[0];
+        private int nullCount;
+
+        ColumnBuffer(String name, String sqlType, Encoding encoding) {
+            this.name = name;
+            this.sqlType = sqlType;
+            this.encoding = encoding;
+            switch (encoding) {
+                case INT64 -> longs = new long[INITIAL_CAPACITY];
+                case FLOAT64 -> doubles = new double[INITIAL_CAPACITY];
+                case BOOL -> booleans = new boolean[INITIAL_CAPACITY];
+                case DICTIONARY -> {
+                    codes = new int[INITIAL_CAPACITY];
+                    dictionaryIndex = new HashMap<>();
+                    dictionary = new ArrayList<>();
+                }
+                default -> objects = new Object[INITIAL_CAPACITY];
+            }
+        }
+
+        void read(ResultSet rs, int index, int row) throws SQLException {
+            switch (encoding) {
+                case INT64 -> {
+                    longs = ensureCapacity(longs, row);
+                    longs[row] = rs.getLong(index);
+                    if (!markNull(rs.wasNull(), row)) {
+                        summaryAccumulator.accept(index - 1, longs[row]);
+                    }
+                }
+                case FLOAT64 -> {
+                    doubles = ensureCapacity(doubles, row);
+                    doubles[row] = rs.getDouble(index);
+                    if (!markNull(rs.wasNull(), row)) {
+                        summaryAccumulator.accept(index - 1, doubles[row]);
+                    }
+                }
+                case BOOL -> {
+                    booleans = ensureCapacity(booleans, row);
+                    booleans[row] = rs.getBoolean(index);
+                    markNull(rs.wasNull(), row);
+                }
+                case DICTIONARY -> readDictionary(rs.getString(index), row);
+                case DECIMAL -> {
+                    objects = ensureCapacity(objects, row);
+                    BigDecimal value = rs.getBigDecimal(index);
+                    objects[row] = value;
+                    if (value != null) {
+                        summaryAccumulator.accept(index - 1, value.doubleValue());
+                    }
+                }
+                default -> {
+                    objects = ensureCapacity(objects, row);
+                    objects[row] = encoding == Encoding.STRING ? rs.getString(index) : JdbcUtils.getResultSetValue(rs, index);
+                }
+            }
+        }
+
+        private void readDictionary(String value, int row) {
+            codes = ensureCapacity(codes, row);
+            if (value == null) {
+                codes[row] = -1;
+                return;
+            }
+
+            Integer code = dictionaryIndex.get(value);
+            if (code == null) {
+                if (dictionary.size() >= maxDictionarySize) {
+                    convertToPlainStrings(row);
+                    objects[row] = value;
+                    return;
+                }
+                code = dictionary.size();
+                dictionary.add(value);
+                dictionaryIndex.put(value, code);
+            }
+            codes[row] = code;
+        }
+
+        private void convertToPlainStrings(int rowsSoFar) {
+            objects = new Object[Math.max(INITIAL_CAPACITY, codes.length)];
+            for (int i = 0; i < rowsSoFar; i++) {
+                objects[i] = codes[i] < 0 ? null : dictionary.get(codes[i]);
+            }
+            codes = null;
+            dictionary = null;
+            dictionaryIndex = null;
+            encoding = Encoding.STRING;
+        }
+
+        private boolean markNull(boolean isNull, int row) {
+            if (!isNull) {
+                return false;
+            }
+            if (nullCount == nulls.length) {
+                nulls = Arrays.copyOf(nulls, Math.max(8, nulls.length * 2));
+            }
+            nulls[nullCount++] = row;
+            return true;
+        }
+
+        ColumnarResultDTO.Column toColumn(int rowCount) {
+            Object values = switch (encoding) {
+                case INT64 -> Arrays.copyOf(longs, rowCount);
+                case FLOAT64 -> Arrays.copyOf(doubles, rowCount);
+                case BOOL -> Arrays.copyOf(booleans, rowCount);
+                case DICTIONARY -> Arrays.copyOf(codes, rowCount);
+                case STRING -> Arrays.copyOf(objects, rowCount, String[].class);
+                case DECIMAL -> Arrays.copyOf(objects, rowCount, BigDecimal[].class);
+                default -> Arrays.copyOf(objects, rowCount);
+            };
+            int[] nullRows = nullCount == 0 ? null : Arrays.copyOf(nulls, nullCount);
+            return new ColumnarResultDTO.Column(name, sqlType, encoding, values, dictionary, nullRows);
+        }
+    }
+
+    private static long[] ensureCapacity(long[] array, int row) {
+        return row < array.length ? array : Arrays.copyOf(array, array.length * 2);
+    }
+
+    private static double[] ensureCapacity(double[] array, int row) {
+        return row < array.length ? array : Arrays.copyOf(array, array.length * 2);
+    }
+
+    private static boolean[] ensureCapacity(boolean[] array, int row) {
+        return row < array.length ? array : Arrays.copyOf(array, array.length * 2);
+    }
+
+    private static int[] ensureCapacity(int[] array, int row) {
+        return row < array.length ? array : Arrays.copyOf(array, array.length * 2);
+    }
+
+    private static Object[] ensureCapacity(Object[] array, int row) {
+        return row < array.length ? array : Arrays.copyOf(array, array.length * 2);
+    }
+}
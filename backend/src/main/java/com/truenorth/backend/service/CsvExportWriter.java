@@ -0,0 +1,90 @@
+package com.truenorth.backend.service;
+
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+/**
+ * Writes a result set as RFC 4180 CSV with a header row, one row at a time as the cursor
+ * advances, so only the writer's buffer and the driver's current fetch are held in memory.
+ */
+public class CsvExportWriter implements ResultSetExtractor<Long> {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int FLUSH_EVERY_ROWS = 5000;
+
+    private final CountingOutputStream countingStream;
+    private final Writer writer;
+
+    public CsvExportWriter(OutputStream outputStream) {
+        this.countingStream = new CountingOutputStream(outputStream);
+        this.writer = new BufferedWriter(new OutputStreamWriter(countingStream, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    public long getBytesWritten() {
+        return countingStream.getCount();
+    }
+
+    @Override
+    public Long extractData(ResultSet rs) throws SQLException {
+        try {
+            ResultSetMetaData metaData = rs.getMetaData();
+            int columnCount = metaData.getColumnCount();
+            for (int i = 1; i <= columnCount; i++) {
+                if (i > 1) {
+                    writer.write(',');
+                }
+                writeField(JdbcUtils.lookupColumnName(metaData, i));
+            }
+            writer.write("\r\n");
+
+            long rows = 0;
+            while (rs.next()) {
+                for (int i = 1; i <= columnCount; i++) {
+                    if (i > 1) {
+                        writer.write(',');
+                    }
+                    Object value = JdbcUtils.getResultSetValue(rs, i);
+                    if (value != null) {
+                        writeField(value instanceof Timestamp timestamp ? timestamp.toLocalDateTime().toString()
+                                : value.toString());
+                    }
+                }
+                writer.write("\r\n");
+                if (++rows % FLUSH_EVERY_ROWS == 0) {
+                    writer.flush();
+                }
+            }
+            writer.flush();
+            return rows;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Client stopped reading the export", e);
+        }
+    }
+
+    private void writeField(String value) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
@@ -0,0 +1,248 @@
+package com.truenorth.backend.service;
+
+import com.truenorth.backend.concurrency.Bulkhead;
+import com.truenorth.backend.exception.SqlQueryFailedException;
+import com.truenorth.backend.model.ChatResponse;
+import com.truenorth.backend.summary.P2QuantileEstimator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.client.advisor.SimpleLoggerAdvisor;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Asks the primary model first and, if it is slower than the configured percentile of its own
+ * latency or its SQL fails validation, asks the fallback model in parallel. The first response
+ * that passes validation wins and the other call is cancelled. A primary call cancelled that
+ * way still contributes its elapsed time as a latency sample, a lower bound on what it would
+ * have taken; dropping it would leave only fast primaries in the estimate and make hedging
+ * ever more frequent.
+ */
+@Slf4j
+@Component
+public class HedgedResponseGenerator {
+
+    @FunctionalInterface
+    public interface ResponseValidator {
+        void validate(ChatResponse response) throws SqlQueryFailedException;
+    }
+
+    private enum Path {
+        PRIMARY,
+        FALLBACK
+    }
+
+    private record Attempt(Path path, ChatResponse response, RuntimeException failure) {
+        boolean isAccepted() {
+            return failure == null;
+        }
+    }
+
+    private final ChatClient chatClient;
+    private final ChatClient fallbackChatClient;
+    private final Bulkhead modelBulkhead;
+    private final String primaryModel;
+    private final String fallbackModel;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final P2QuantileEstimator primaryLatency;
+    private final int minSamples;
+    private final Duration initialDelay;
+    private long primarySamples;
+
+    private final Counter primaryWins;
+    private final Counter primaryWinsHedged;
+    private final Counter fallbackWinsHedged;
+    private final Counter fallbackWinsAfterInvalid;
+    private final Counter noWinner;
+
+    public HedgedResponseGenerator(ChatClient chatClient,
+                                   @Qualifier("fallbackChatClient") ChatClient fallbackChatClient,
+                                   @Qualifier("modelBulkhead") Bulkhead modelBulkhead,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${spring.ai.mistralai.chat.options.model}") String primaryModel,
+                                   @Value("${spring.ai.mistralai.chat.options.fallback-model}") String fallbackModel,
+                                   @Value("${chat.hedge.percentile:0.9}") double percentile,
+                                   @Value("${chat.hedge.min-samples:20}") int minSamples,
+                                   @Value("${chat.hedge.initial-delay:10s}") Duration initialDelay) {
+        this.chatClient = chatClient;
+        this.fallbackChatClient = fallbackChatClient;
+        this.modelBulkhead = modelBulkhead;
+        this.primaryModel = primaryModel;
+        this.fallbackModel = fallbackModel;
+        this.primaryLatency = new P2QuantileEstimator(percentile);
+        this.minSamples = minSamples;
+        this.initialDelay = initialDelay;
+
+        this.primaryWins = winCounter(meterRegistry, "primary", "false");
+        this.primaryWinsHedged = winCounter(meterRegistry, "primary", "true");
+        this.fallbackWinsHedged = winCounter(meterRegistry, "fallback", "true");
+        this.fallbackWinsAfterInvalid = winCounter(meterRegistry, "fallback", "after_invalid");
+        this.noWinner = winCounter(meterRegistry, "none", "any");
+    }
+
+    private static Counter winCounter(MeterRegistry registry, String path, String hedged) {
+        return Counter.builder("chat.model.hedge.wins")
+                .description("Which model produced the response that was used")
+                .tag("path", path)
+                .tag("hedged", hedged)
+                .register(registry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Returns the first response that passes {@code validator}. If neither does, rethrows a
+     * validation failure so the caller's retry loop can take over.
+     */
+    public ChatResponse generate(String systemPrompt, List<Message> history, ResponseValidator validator) {
+        CompletionService<Attempt> completionService = new ExecutorCompletionService<>(executor);
+        List<Future<Attempt>> running = new ArrayList<>(2);
+        AtomicBoolean primaryTimed = new AtomicBoolean();
+        long primaryStart = System.nanoTime();
+        Future<Attempt> primaryCall = completionService.submit(
+                () -> attempt(Path.PRIMARY, systemPrompt, history, validator, primaryTimed));
+        running.add(primaryCall);
+
+        boolean hedged = false;
+        RuntimeException failure = null;
+        try {
+            long delayMillis = hedgeDelay().toMillis();
+            Future<Attempt> first = completionService.poll(delayMillis, TimeUnit.MILLISECONDS);
+            if (first == null) {
+                log.info("Primary model slower than {} ms, hedging with fallback model", delayMillis);
+                hedged = true;
+            } else {
+                Attempt primary = result(first);
+                if (primary.isAccepted()) {
+                    primaryWins.increment();
+                    return primary.response();
+                }
+                log.info("Primary response failed validation, asking fallback model: {}", primary.failure().getMessage());
+                failure = primary.failure();
+            }
+            running.add(completionService.submit(
+                    () -> attempt(Path.FALLBACK, systemPrompt, history, validator, new AtomicBoolean())));
+
+            for (int pending = hedged ? 2 : 1; pending > 0; pending--) {
+                Attempt attempt = result(completionService.take());
+                if (attempt.isAccepted()) {
+                    recordWin(attempt.path(), hedged);
+                    return attempt.response();
+                }
+                log.info("{} response failed: {}", attempt.path(), attempt.failure().getMessage());
+                failure = preferredFailure(failure, attempt);
+            }
+
+            noWinner.increment();
+            throw failure;
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for model response", e);
+        } finally {
+            if (!primaryCall.isDone() && primaryTimed.compareAndSet(false, true)) {
+                recordPrimaryLatency(System.nanoTime() - primaryStart);
+            }
+            for (Future<Attempt> future : running) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * A SQL failure is worth more than a transport error since the retry loop can act on it;
+     * between two of the same kind the primary's wins.
+     */
+    private static RuntimeException preferredFailure(RuntimeException current, Attempt attempt) {
+        if (current == null) {
+            return attempt.failure();
+        }
+        boolean currentIsSql = current instanceof SqlQueryFailedException;
+        boolean candidateIsSql = attempt.failure() instanceof SqlQueryFailedException;
+        if (candidateIsSql && !currentIsSql) {
+            return attempt.failure();
+        }
+        if (candidateIsSql == currentIsSql && attempt.path() == Path.PRIMARY) {
+            return attempt.failure();
+        }
+        return current;
+    }
+
+    private void recordWin(Path path, boolean hedged) {
+        if (path == Path.PRIMARY) {
+            primaryWinsHedged.increment();
+        } else if (hedged) {
+            fallbackWinsHedged.increment();
+        } else {
+            fallbackWinsAfterInvalid.increment();
+        }
+    }
+
+    /**
+     * {@code timed} is set by whichever of this call and {@link #generate} records its latency first.
+     */
+    private Attempt attempt(Path path, String systemPrompt, List<Message> history, ResponseValidator validator,
+                            AtomicBoolean timed) {
+        long start = System.nanoTime();
+        try {
+            ChatClient client = path == Path.PRIMARY ? chatClient : fallbackChatClient;
+            ChatResponse response = modelBulkhead.call(() -> client.prompt()
+                    .system(systemPrompt)
+                    .messages(history)
+                    .advisors(new SimpleLoggerAdvisor())
+                    .call()
+                    .entity(ChatResponse.class));
+            if (path == Path.PRIMARY && timed.compareAndSet(false, true)) {
+                recordPrimaryLatency(System.nanoTime() - start);
+            }
+            if (response != null) {
+                response.setModel(path == Path.PRIMARY ? primaryModel : fallbackModel);
+            }
+
+            validator.validate(response);
+            return new Attempt(path, response, null);
+        } catch (RuntimeException e) {
+            return new Attempt(path, null, e);
+        }
+    }
+
+    private Attempt result(Future<Attempt> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Model call failed", e.getCause());
+        }
+    }
+
+    private synchronized void recordPrimaryLatency(long nanos) {
+        primaryLatency.add(nanos / 1_000_000.0);
+        primarySamples++;
+    }
+
+    private synchronized Duration hedgeDelay() {
+        if (primarySamples < minSamples) {
+            return initialDelay;
+        }
+        return Duration.ofMillis(Math.round(primaryLatency.quantile()));
+    }
+}
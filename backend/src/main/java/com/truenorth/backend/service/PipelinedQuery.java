@@ -0,0 +1,65 @@
+package com.truenorth.backend.service;
+
+import com.truenorth.backend.dto.ColumnarResultDTO;
+import com.truenorth.backend.exception.QueryCancelledException;
+import com.truenorth.backend.summary.DataSummaryAccumulator;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * A generated query that was validated and started while the model was still writing the rest
+ * of its response. Its result is only used if the finished response carries the same query.
+ */
+final class PipelinedQuery {
+
+    record Result(String checkedQuery, List<Map<String, Object>> rows, ColumnarResultDTO columnar,
+                  DataSummaryAccumulator summaryAccumulator) {
+    }
+
+    private final String query;
+    private final QueryCancellation cancellation;
+    private final Future<Result> result;
+
+    PipelinedQuery(String query, QueryCancellation cancellation, Future<Result> result) {
+        this.query = query;
+        this.cancellation = cancellation;
+        this.result = result;
+    }
+
+    boolean matches(String finalQuery) {
+        return query.equals(finalQuery);
+    }
+
+    /**
+     * Waits for the query, rethrowing its failure as it would have been thrown inline.
+     */
+    Result await() {
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException failure) {
+                throw failure;
+            }
+            throw new IllegalStateException("Pipelined query failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new QueryCancelledException("Interrupted while waiting for the query");
+        }
+    }
+
+    /**
+     * Abandons the query if it has not finished, cancelling its statement on the server, since
+     * interrupting the thread alone leaves it running in the database; a no-op once it has been
+     * awaited.
+     */
+    void cancel() {
+        if (result.isDone()) {
+            return;
+        }
+        cancellation.cancel(QueryCancellation.Reason.SUPERSEDED);
+        result.cancel(true);
+    }
+}
@@ -0,0 +1,87 @@
+package com.truenorth.backend.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Handle to the statement a request is currently running, so it can be cancelled from
+ * another thread when the client disconnects or the request deadline passes.
+ */
+@Slf4j
+public class QueryCancellation {
+
+    public static final String REQUEST_ATTRIBUTE = QueryCancellation.class.getName();
+
+    public enum Reason {
+        DEADLINE,
+        CLIENT_GONE,
+        // The request no longer needs the result, e.g. a pipelined query the model did not keep
+        SUPERSEDED
+    }
+
+    // Not synchronized: Statement.cancel() opens a socket and would pin a virtual thread's carrier
+    private final ReentrantLock lock = new ReentrantLock();
+    private Statement statement;
+    private Reason reason;
+
+    public static QueryCancellation create() {
+        return new QueryCancellation();
+    }
+
+    public void attach(Statement statement) throws SQLException {
+        lock.lock();
+        try {
+            this.statement = statement;
+            if (reason == null) {
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        statement.cancel();
+    }
+
+    public void detach() {
+        lock.lock();
+        try {
+            this.statement = null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void cancel(Reason reason) {
+        Statement running;
+        lock.lock();
+        try {
+            if (this.reason != null) {
+                return;
+            }
+            this.reason = reason;
+            running = statement;
+        } finally {
+            lock.unlock();
+        }
+
+        if (running != null) {
+            try {
+                running.cancel();
+                log.info("Cancelled running query ({})", reason);
+            } catch (SQLException e) {
+                log.warn("Failed to cancel running query", e);
+            }
+        }
+    }
+
+    public Reason getReason() {
+        lock.lock();
+        try {
+            return reason;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
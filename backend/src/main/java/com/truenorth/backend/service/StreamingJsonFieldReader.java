@@ -0,0 +1,85 @@
+package com.truenorth.backend.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads a JSON object as it arrives in chunks and reports one top-level string field as soon as
+ * its closing quote has been read, without waiting for the rest of the object. Text before the
+ * opening brace, such as a code fence, is skipped. Malformed input just means the field is
+ * never reported; the complete text is parsed properly once it has all arrived.
+ */
+final class StreamingJsonFieldReader {
+
+    private final String field;
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+
+    private boolean started;
+    private boolean done;
+    private int depth;
+    private boolean atField;
+    private String value;
+
+    StreamingJsonFieldReader(JsonFactory jsonFactory, String field) throws IOException {
+        this.field = field;
+        this.parser = jsonFactory.createNonBlockingByteArrayParser();
+        this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+    }
+
+    /**
+     * Returns the field's value once it has been read, or null until then.
+     */
+    String feed(String chunk) {
+        if (done || chunk == null || chunk.isEmpty()) {
+            return value;
+        }
+        if (!started) {
+            int brace = chunk.indexOf('{');
+            if (brace < 0) {
+                return null;
+            }
+            chunk = chunk.substring(brace);
+            started = true;
+        }
+
+        try {
+            byte[] bytes = chunk.getBytes(StandardCharsets.UTF_8);
+            feeder.feedInput(bytes, 0, bytes.length);
+            JsonToken token;
+            while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+                switch (token) {
+                    case FIELD_NAME -> {
+                        atField = depth == 1 && field.equals(parser.currentName());
+                        continue;
+                    }
+                    case VALUE_STRING -> {
+                        if (atField) {
+                            value = parser.getText();
+                            done = true;
+                            return value;
+                        }
+                    }
+                    case START_OBJECT, START_ARRAY -> depth++;
+                    case END_OBJECT, END_ARRAY -> {
+                        if (--depth == 0) {
+                            done = true;
+                            return value;
+                        }
+                    }
+                    default -> {
+                    }
+                }
+                atField = false;
+            }
+        } catch (IOException e) {
+            done = true;
+        }
+        return value;
+    }
+}
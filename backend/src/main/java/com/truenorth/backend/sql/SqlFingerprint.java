@@ -0,0 +1,148 @@
+package com.truenorth.backend.sql;
+
+import com.truenorth.backend.sql.SqlTokenizer.Token;
+import com.truenorth.backend.sql.SqlTokenizer.TokenType;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+
+public final class SqlFingerprint {
+
+    private static final Token PLACEHOLDER = new Token(TokenType.SYMBOL, "?");
+
+    private SqlFingerprint() {
+    }
+
+    /**
+     * Canonical form of a query that keeps literal values, so two queries with the same
+     * canonical form return the same rows. Whitespace, comments, keyword/identifier case,
+     * the schema prefix and the order of literal IN lists are normalized away.
+     */
+    public static String normalize(String sql, String schema) {
+        List<Token> tokens = canonicalTokens(sql, schema);
+        sortInListLiterals(tokens);
+        return SqlTokenizer.join(tokens);
+    }
+
+    /**
+     * Canonical form with every literal replaced by {@code ?} and literal IN lists collapsed to
+     * {@code in (?)}, so queries that differ only in their constants share one shape.
+     */
+    public static String shape(String sql, String schema) {
+        List<Token> tokens = canonicalTokens(sql, schema);
+        List<Token> shaped = new ArrayList<>(tokens.size());
+        for (int i = 0; i < tokens.size(); i++) {
+            Token token = tokens.get(i);
+            if (token.isWord("in") && i + 2 < tokens.size() && tokens.get(i + 1).isSymbol("(") && tokens.get(i + 2).isLiteral()) {
+                int j = i + 2;
+                while (j + 2 < tokens.size() && tokens.get(j + 1).isSymbol(",") && tokens.get(j + 2).isLiteral()) {
+                    j += 2;
+                }
+                if (j + 1 < tokens.size() && tokens.get(j + 1).isSymbol(")")) {
+                    shaped.add(token);
+                    shaped.add(tokens.get(i + 1));
+                    shaped.add(PLACEHOLDER);
+                    shaped.add(tokens.get(j + 1));
+                    i = j + 1;
+                    continue;
+                }
+            }
+            shaped.add(token.isLiteral() ? PLACEHOLDER : token);
+        }
+        return SqlTokenizer.join(shaped);
+    }
+
+    public static String hash(String normalizedSql) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] bytes = digest.digest(normalizedSql.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(bytes, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    static List<Token> canonicalTokens(String sql, String schema) {
+        List<Token> raw = SqlTokenizer.tokenize(sql);
+        List<Token> tokens = new ArrayList<>(raw.size());
+
+        for (int i = 0; i < raw.size(); i++) {
+            Token token = raw.get(i);
+            boolean followedByDot = i + 1 < raw.size() && raw.get(i + 1).isSymbol(".");
+            boolean precededByDot = i > 0 && raw.get(i - 1).isSymbol(".");
+
+            if (schema != null && followedByDot && !precededByDot && isSchemaReference(token, schema)) {
+                i++;
+                continue;
+            }
+
+            tokens.add(switch (token.type()) {
+                case WORD -> new Token(TokenType.WORD, token.text().toLowerCase(Locale.ROOT));
+                case QUOTED_IDENTIFIER -> unquoteIfPlain(token);
+                default -> token;
+            });
+        }
+
+        while (!tokens.isEmpty() && tokens.get(tokens.size() - 1).isSymbol(";")) {
+            tokens.remove(tokens.size() - 1);
+        }
+        return tokens;
+    }
+
+    private static boolean isSchemaReference(Token token, String schema) {
+        return switch (token.type()) {
+            case WORD -> token.text().equalsIgnoreCase(schema);
+            case QUOTED_IDENTIFIER -> token.text().equals("\"" + schema + "\"");
+            default -> false;
+        };
+    }
+
+    private static Token unquoteIfPlain(Token token) {
+        String inner = token.text().substring(1, token.text().length() - 1);
+        if (inner.matches("[a-z_][a-z0-9_]*")) {
+            return new Token(TokenType.WORD, inner);
+        }
+        return token;
+    }
+
+    private static void sortInListLiterals(List<Token> tokens) {
+        for (int i = 0; i + 1 < tokens.size(); i++) {
+            if (!tokens.get(i).isWord("in") || !tokens.get(i + 1).isSymbol("(")) {
+                continue;
+            }
+
+            int start = i + 2;
+            List<Token> literals = new ArrayList<>();
+            int j = start;
+            boolean literalList = true;
+            while (j < tokens.size() && !tokens.get(j).isSymbol(")")) {
+                Token item = tokens.get(j);
+                boolean expectLiteral = (j - start) % 2 == 0;
+                if (expectLiteral ? !item.isLiteral() : !item.isSymbol(",")) {
+                    literalList = false;
+                    break;
+                }
+                if (expectLiteral) {
+                    literals.add(item);
+                }
+                j++;
+            }
+
+            if (!literalList || j >= tokens.size() || literals.size() < 2) {
+                continue;
+            }
+
+            literals.sort(Comparator.comparing(Token::text));
+            for (int k = 0; k < literals.size(); k++) {
+                tokens.set(start + k * 2, literals.get(k));
+            }
+            i = j;
+        }
+    }
+}
@@ -0,0 +1,760 @@
+package com.truenorth.backend.sql;
+
+import com.truenorth.backend.exception.SqlQueryRejectedException;
+import com.truenorth.backend.schema.SchemaCatalog;
+import com.truenorth.backend.sql.SqlTokenizer.Token;
+import com.truenorth.backend.sql.SqlTokenizer.TokenType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Static checks and rewrites applied to model-generated SQL before it reaches the database.
+ * Rejections are thrown as {@link SqlQueryRejectedException} so they go through the same
+ * fallback retry loop as database errors.
+ */
+@Slf4j
+@Component
+public class SqlGuard {
+
+    private static final Set<String> FORBIDDEN_KEYWORDS = Set.of(
+            "insert", "update", "delete", "merge", "upsert", "drop", "alter", "create", "truncate", "grant",
+            "revoke", "copy", "vacuum", "call", "do", "lock", "reindex", "cluster", "comment", "refresh",
+            "execute", "prepare", "deallocate", "listen", "notify", "set", "reset", "discard", "import", "into");
+
+    private static final Set<String> FORBIDDEN_FUNCTIONS = Set.of(
+            "pg_sleep", "pg_sleep_for", "pg_sleep_until", "pg_terminate_backend", "pg_cancel_backend",
+            "pg_read_file", "pg_read_binary_file", "pg_ls_dir", "pg_stat_file", "lo_import", "lo_export",
+            "dblink", "dblink_exec", "set_config", "pg_reload_conf", "pg_rotate_logfile");
+
+    private static final Set<String> CLAUSE_KEYWORDS = Set.of(
+            "where", "group", "having", "order", "limit", "offset", "fetch", "union", "intersect", "except",
+            "window", "for", "join", "cross", "inner", "left", "right", "full", "natural", "on", "using");
+
+    private static final Set<String> TEXT_TYPES = Set.of("text", "varchar", "bpchar");
+    private static final Set<String> FROM_ITEM_KEYWORDS = Set.of("lateral", "only", "rows", "unnest");
+    private static final Set<String> COMPARISON_OPERATORS = Set.of("=", "<", "<=", ">", ">=", "<>", "!=");
+    private static final Set<String> AGGREGATE_FUNCTIONS = Set.of("count", "sum", "avg", "min", "max");
+    private static final Pattern ISO_DATE_LITERAL = Pattern.compile("'\\d{4}-\\d{2}-\\d{2}'");
+
+    private final int defaultLimit;
+    private final int aggregateLimit;
+    private final int maxLimit;
+    private final boolean rejectCartesianJoins;
+    private final Set<String> textDateColumns;
+    private final Supplier<SchemaCatalog.Snapshot> schema;
+
+    @Autowired
+    public SqlGuard(@Value("${chat.sql.guard.default-limit:100}") int defaultLimit,
+                    @Value("${chat.sql.guard.aggregate-limit:20}") int aggregateLimit,
+                    @Value("${chat.sql.guard.max-limit:500}") int maxLimit,
+                    @Value("${chat.sql.guard.reject-cartesian-joins:true}") boolean rejectCartesianJoins,
+                    @Value("${chat.sql.guard.text-date-columns:cust_orig_date,acct_suspd_date,date_of_birth}")
+                    List<String> textDateColumns,
+                    SchemaCatalog schemaCatalog) {
+        this(defaultLimit, aggregateLimit, maxLimit, rejectCartesianJoins, textDateColumns, schemaCatalog::current);
+    }
+
+    SqlGuard(int defaultLimit, int aggregateLimit, int maxLimit, boolean rejectCartesianJoins,
+             List<String> textDateColumns, Supplier<SchemaCatalog.Snapshot> schema) {
+        this.defaultLimit = defaultLimit;
+        this.aggregateLimit = aggregateLimit;
+        this.maxLimit = maxLimit;
+        this.rejectCartesianJoins = rejectCartesianJoins;
+        this.textDateColumns = textDateColumns.stream()
+                .map(column -> column.trim().toLowerCase(Locale.ROOT))
+                .collect(Collectors.toUnmodifiableSet());
+        this.schema = schema;
+    }
+
+    private record Edit(int start, int end, String replacement) {
+    }
+
+    private record CteDefinition(String name, int bodyStart, int bodyEnd) {
+    }
+
+    /**
+     * The tables a query reads, by the alias or name that qualifies their columns. A qualifier
+     * bound to different tables in different parts of the query maps to null. {@code opaque}
+     * is set when something other than a plain table (a CTE, a subquery, a function) is read,
+     * since an unqualified column could then come from it.
+     */
+    private record TableScope(Map<String, String> tablesByQualifier, Set<String> tables, boolean opaque) {
+
+        /**
+         * The table an unqualified column belongs to, when the query reads exactly one.
+         */
+        String soleTable() {
+            return !opaque && tables.size() == 1 ? tables.iterator().next() : null;
+        }
+    }
+
+    /**
+     * Validates and rewrites a generated query, enforcing the configured LIMIT caps.
+     */
+    public String check(String sql) {
+        return check(sql, true);
+    }
+
+    public String check(String sql, boolean enforceLimit) {
+        if (sql == null || sql.isBlank()) {
+            throw new SqlQueryRejectedException("Query is empty.", sql);
+        }
+
+        List<Token> tokens = new ArrayList<>(SqlTokenizer.tokenize(sql));
+        while (!tokens.isEmpty() && tokens.get(tokens.size() - 1).isSymbol(";")) {
+            tokens.remove(tokens.size() - 1);
+        }
+        if (tokens.isEmpty()) {
+            throw new SqlQueryRejectedException("Query is empty.", sql);
+        }
+
+        int[] depth = computeDepth(tokens, sql);
+        checkReadOnly(tokens, sql);
+
+        Map<String, CteDefinition> ctes = parseCtes(tokens, depth, sql);
+        checkJoins(tokens, depth, ctes, sql);
+
+        List<Edit> edits = new ArrayList<>();
+        rewriteTextDateComparisons(tokens, sql, tableScope(tokens, depth, ctes), edits);
+        if (enforceLimit) {
+            enforceLimit(tokens, depth, sql, edits);
+        }
+
+        String statement = sql.substring(0, tokens.get(tokens.size() - 1).end());
+        String rewritten = applyEdits(statement, edits);
+        if (!edits.isEmpty()) {
+            log.info("SQL guard rewrote query: {}", rewritten);
+        }
+        return rewritten;
+    }
+
+    /**
+     * Validates a query for export: the same read-only checks and rewrites without the LIMIT
+     * caps. Pass the model's query rather than the guarded one, or the caps come along.
+     */
+    public String checkForExport(String sql) {
+        return check(sql, false);
+    }
+
+    private int[] computeDepth(List<Token> tokens, String sql) {
+        int[] depth = new int[tokens.size()];
+        int current = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            Token token = tokens.get(i);
+            if (token.isSymbol(")")) {
+                current--;
+                if (current < 0) {
+                    throw new SqlQueryRejectedException("Query has unbalanced parentheses.", sql);
+                }
+            }
+            depth[i] = current;
+            if (token.isSymbol("(")) {
+                current++;
+            }
+        }
+        if (current != 0) {
+            throw new SqlQueryRejectedException("Query has unbalanced parentheses.", sql);
+        }
+        return depth;
+    }
+
+    private void checkReadOnly(List<Token> tokens, String sql) {
+        Token first = tokens.stream().filter(token -> !token.isSymbol("(")).findFirst().orElse(tokens.get(0));
+        if (!first.isWord("select") && !first.isWord("with")) {
+            throw new SqlQueryRejectedException("Only a single read-only SELECT statement is allowed, but the query starts with '"
+                    + first.text() + "'.", sql);
+        }
+
+        for (int i = 0; i < tokens.size(); i++) {
+            Token token = tokens.get(i);
+            if (token.isSymbol(";")) {
+                throw new SqlQueryRejectedException("Only a single SQL statement is allowed; remove the extra statements after ';'.", sql);
+            }
+            if (token.type() != TokenType.WORD) {
+                continue;
+            }
+            String word = token.text().toLowerCase(Locale.ROOT);
+            if (FORBIDDEN_KEYWORDS.contains(word)) {
+                throw new SqlQueryRejectedException("Query contains the forbidden keyword '" + token.text()
+                        + "'. Only read-only SELECT queries are allowed.", sql);
+            }
+            if (FORBIDDEN_FUNCTIONS.contains(word) && i + 1 < tokens.size() && tokens.get(i + 1).isSymbol("(")) {
+                throw new SqlQueryRejectedException("Query calls the forbidden function '" + token.text() + "'.", sql);
+            }
+        }
+
+        if (tokens.get(0).isWord("with") && tokens.size() > 1 && tokens.get(1).isWord("recursive")) {
+            throw new SqlQueryRejectedException("Recursive CTEs are unbounded and not allowed. Use a plain query or subquery instead.", sql);
+        }
+    }
+
+    private Map<String, CteDefinition> parseCtes(List<Token> tokens, int[] depth, String sql) {
+        Map<String, CteDefinition> ctes = new HashMap<>();
+        if (!tokens.get(0).isWord("with")) {
+            return ctes;
+        }
+
+        int i = 1;
+        while (i < tokens.size()) {
+            String name = tokens.get(i).text().toLowerCase(Locale.ROOT);
+            i++;
+            if (i < tokens.size() && tokens.get(i).isSymbol("(")) {
+                i = matchingParenthesis(tokens, depth, i) + 1;
+            }
+            while (i < tokens.size() && !tokens.get(i).isSymbol("(")) {
+                i++;
+            }
+            if (i >= tokens.size()) {
+                break;
+            }
+            int close = matchingParenthesis(tokens, depth, i);
+            CteDefinition cte = new CteDefinition(name, i + 1, close);
+            ctes.put(name, cte);
+            warnIfUnfiltered(tokens, depth, cte, sql);
+
+            i = close + 1;
+            if (i < tokens.size() && tokens.get(i).isSymbol(",")) {
+                i++;
+            } else {
+                break;
+            }
+        }
+        return ctes;
+    }
+
+    private void warnIfUnfiltered(List<Token> tokens, int[] depth, CteDefinition cte, String sql) {
+        int bodyDepth = depth[cte.bodyStart()];
+        for (int i = cte.bodyStart(); i < cte.bodyEnd(); i++) {
+            Token token = tokens.get(i);
+            if (depth[i] == bodyDepth && (token.isWord("where") || token.isWord("group") || token.isWord("limit"))) {
+                return;
+            }
+        }
+        log.warn("SQL guard: CTE '{}' has no WHERE, GROUP BY or LIMIT and may materialize a whole table. Query: {}",
+                cte.name(), sql);
+    }
+
+    private void checkJoins(List<Token> tokens, int[] depth, Map<String, CteDefinition> ctes, String sql) {
+        List<String> problems = new ArrayList<>();
+
+        for (int i = 0; i < tokens.size(); i++) {
+            Token token = tokens.get(i);
+
+            if (token.isWord("cross") && i + 2 < tokens.size() && tokens.get(i + 1).isWord("join")) {
+                Token target = tokens.get(i + 2);
+                if (target.isSymbol("(")) {
+                    int close = matchingParenthesis(tokens, depth, i + 2);
+                    if (!isSingleRowAggregate(tokens, depth, i + 3, close)) {
+                        problems.add("CROSS JOIN with a multi-row subquery");
+                    }
+                } else {
+                    CteDefinition cte = ctes.get(target.text().toLowerCase(Locale.ROOT));
+                    if (cte == null || !isSingleRowAggregate(tokens, depth, cte.bodyStart(), cte.bodyEnd())) {
+                        problems.add("CROSS JOIN " + target.text());
+                    }
+                }
+            }
+
+            if (token.isWord("from") && hasImplicitCartesianJoin(tokens, depth, i)) {
+                problems.add("comma-separated FROM list without a WHERE clause");
+            }
+        }
+
+        if (problems.isEmpty()) {
+            return;
+        }
+
+        String message = "Query contains a Cartesian join (" + String.join(", ", problems)
+                + "), which multiplies row counts. Use an explicit JOIN ... ON condition or a scalar subquery instead.";
+        if (rejectCartesianJoins) {
+            throw new SqlQueryRejectedException(message, sql);
+        }
+        log.warn("SQL guard: {} Query: {}", message, sql);
+    }
+
+    private boolean hasImplicitCartesianJoin(List<Token> tokens, int[] depth, int fromIndex) {
+        int level = depth[fromIndex];
+        boolean commaJoin = false;
+        for (int i = fromIndex + 1; i < tokens.size(); i++) {
+            Token token = tokens.get(i);
+            if (depth[i] < level || (depth[i] == level && token.isSymbol(")"))) {
+                break;
+            }
+            if (depth[i] != level) {
+                continue;
+            }
+            if (token.isWord("where")) {
+                return false;
+            }
+            if (token.type() == TokenType.WORD && CLAUSE_KEYWORDS.contains(token.text().toLowerCase(Locale.ROOT))) {
+                break;
+            }
+            if (token.isSymbol(",")) {
+                commaJoin = true;
+            }
+        }
+        return commaJoin;
+    }
+
+    private boolean isSingleRowAggregate(List<Token> tokens, int[] depth, int start, int end) {
+        if (start >= end) {
+            return false;
+        }
+        int level = depth[start];
+        boolean aggregate = false;
+        for (int i = start; i < end; i++) {
+            Token token = tokens.get(i);
+            if (depth[i] != level) {
+                continue;
+            }
+            if (token.isWord("group") || token.isWord("union")) {
+                return false;
+            }
+            if (token.type() == TokenType.WORD && AGGREGATE_FUNCTIONS.contains(token.text().toLowerCase(Locale.ROOT))
+                    && i + 1 < end && tokens.get(i + 1).isSymbol("(")) {
+                aggregate = true;
+            }
+        }
+        return aggregate;
+    }
+
+    /**
+     * The TEXT date columns hold zero-padded 'YYYY-MM-DD' strings, which sort the same way as
+     * dates. Comparing them as text instead of casting every row keeps the predicate sargable.
+     * Only whole predicates are rewritten: a comparison that is an operand of arithmetic or a
+     * further cast is left alone, since the rewrite would change what it binds to. A column is
+     * only rewritten when it resolves to a table whose column the schema catalog reports as
+     * text; the same name is a timestamp elsewhere (customer), where dropping the cast would
+     * compare against midnight.
+     */
+    private void rewriteTextDateComparisons(List<Token> tokens, String sql, TableScope scope, List<Edit> edits) {
+        for (int i = 0; i < tokens.size(); i++) {
+            Token token = tokens.get(i);
+
+            if ((token.isWord("extract") || token.isWord("date_part")) && i + 1 < tokens.size() && tokens.get(i + 1).isSymbol("(")) {
+                i = rewriteYearExtraction(tokens, sql, scope, i, edits);
+                continue;
+            }
+
+            int[] cast = castedTextDateColumn(tokens, scope, i);
+            if (cast != null) {
+                int next = cast[2] + 1;
+                if (next + 1 < tokens.size() && isComparison(tokens.get(next)) && isDateLiteral(tokens.get(next + 1))) {
+                    int end = literalCastEnd(tokens, next + 1);
+                    if (isPredicateStart(tokens, cast[3]) && isPredicateEnd(tokens, end + 1)) {
+                        uncast(tokens, sql, cast, edits);
+                        stripLiteralCast(tokens, next + 1, edits);
+                    }
+                    i = end;
+                } else if (next + 3 < tokens.size() && tokens.get(next).isWord("between")
+                        && isDateLiteral(tokens.get(next + 1)) && tokens.get(next + 2).isWord("and")
+                        && isDateLiteral(tokens.get(next + 3))) {
+                    if (isPredicateStart(tokens, cast[3]) && isPredicateEnd(tokens, next + 4)) {
+                        uncast(tokens, sql, cast, edits);
+                    }
+                    i = next + 3;
+                }
+                continue;
+            }
+
+            if (isDateLiteral(token) && i + 2 < tokens.size() && isComparison(tokens.get(i + 1))) {
+                int[] reverseCast = castedTextDateColumn(tokens, scope, i + 2);
+                if (reverseCast != null) {
+                    if (isPredicateStart(tokens, i) && isPredicateEnd(tokens, reverseCast[2] + 1)) {
+                        uncast(tokens, sql, reverseCast, edits);
+                    }
+                    i = reverseCast[2];
+                }
+            }
+        }
+    }
+
+    /**
+     * Whether the expression starting at {@code index} begins a boolean operand: it follows an
+     * opening parenthesis, WHERE, ON, HAVING, NOT, OR, or an AND that is not part of a BETWEEN.
+     */
+    private static boolean isPredicateStart(List<Token> tokens, int index) {
+        if (index == 0) {
+            return false;
+        }
+        Token previous = tokens.get(index - 1);
+        if (previous.isSymbol("(") || previous.isWord("where") || previous.isWord("on") || previous.isWord("having")
+                || previous.isWord("not") || previous.isWord("or")) {
+            return true;
+        }
+        if (!previous.isWord("and")) {
+            return false;
+        }
+
+        // Walk back over this AND's left operand to tell a boolean AND from BETWEEN x AND y
+        int nesting = 0;
+        for (int i = index - 2; i >= 0; i--) {
+            Token token = tokens.get(i);
+            if (token.isSymbol(")")) {
+                nesting++;
+            } else if (token.isSymbol("(")) {
+                if (nesting == 0) {
+                    return true;
+                }
+                nesting--;
+            } else if (nesting == 0) {
+                if (token.isWord("between")) {
+                    return false;
+                }
+                if (token.isWord("and") || token.isWord("or") || token.isWord("where") || token.isWord("on")
+                        || token.isWord("having") || token.isWord("not")) {
+                    return true;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether the expression ending just before {@code index} ends a boolean operand: it is
+     * followed by a closing parenthesis, AND, OR, a clause keyword or the end of the query.
+     */
+    private static boolean isPredicateEnd(List<Token> tokens, int index) {
+        if (index >= tokens.size()) {
+            return true;
+        }
+        Token next = tokens.get(index);
+        return next.isSymbol(")") || next.isWord("and") || next.isWord("or")
+                || (next.type() == TokenType.WORD && CLAUSE_KEYWORDS.contains(next.text().toLowerCase(Locale.ROOT)));
+    }
+
+    /**
+     * Index of the last token of a date literal, including a trailing {@code ::date}.
+     */
+    private static int literalCastEnd(List<Token> tokens, int literalIndex) {
+        int cast = literalIndex + 1;
+        if (cast + 1 < tokens.size() && tokens.get(cast).isSymbol("::") && tokens.get(cast + 1).isWord("date")) {
+            return cast + 1;
+        }
+        return literalIndex;
+    }
+
+    private int rewriteYearExtraction(List<Token> tokens, String sql, TableScope scope, int start, List<Edit> edits) {
+        // EXTRACT(YEAR FROM col::date) op N  |  DATE_PART('year', col::date) op N
+        int i = start + 2;
+        if (i >= tokens.size()) {
+            return start;
+        }
+        boolean extract = tokens.get(start).isWord("extract");
+        if (extract ? !tokens.get(i).isWord("year") : !tokens.get(i).text().equalsIgnoreCase("'year'")) {
+            return start;
+        }
+        i++;
+        if (i >= tokens.size() || (extract ? !tokens.get(i).isWord("from") : !tokens.get(i).isSymbol(","))) {
+            return start;
+        }
+        int[] cast = castedTextDateColumn(tokens, scope, i + 1);
+        if (cast == null) {
+            return start;
+        }
+        int close = cast[2] + 1;
+        if (close + 2 >= tokens.size() || !tokens.get(close).isSymbol(")")
+                || !isComparison(tokens.get(close + 1)) || tokens.get(close + 2).type() != TokenType.NUMBER) {
+            return start;
+        }
+
+        if (!isPredicateStart(tokens, start) || !isPredicateEnd(tokens, close + 3)) {
+            return start;
+        }
+
+        int year;
+        try {
+            year = Integer.parseInt(tokens.get(close + 2).text());
+        } catch (NumberFormatException e) {
+            return start;
+        }
+
+        String column = sql.substring(tokens.get(cast[0]).start(), tokens.get(cast[1]).end());
+        String yearStart = "'" + String.format("%04d", year) + "-01-01'";
+        String nextYearStart = "'" + String.format("%04d", year + 1) + "-01-01'";
+        String predicate = switch (tokens.get(close + 1).text()) {
+            case "=" -> "(" + column + " >= " + yearStart + " AND " + column + " < " + nextYearStart + ")";
+            case ">=" -> column + " >= " + yearStart;
+            case ">" -> column + " >= " + nextYearStart;
+            case "<" -> column + " < " + yearStart;
+            case "<=" -> column + " < " + nextYearStart;
+            default -> null;
+        };
+        if (predicate == null) {
+            return start;
+        }
+
+        edits.add(new Edit(tokens.get(start).start(), tokens.get(close + 2).end(), predicate));
+        return close + 2;
+    }
+
+    /**
+     * Matches {@code [alias.]col::date} or {@code CAST([alias.]col AS date)} for a TEXT date column
+     * starting at {@code index}, returning {column start, column end, expression end, expression start}
+     * token indexes.
+     */
+    private int[] castedTextDateColumn(List<Token> tokens, TableScope scope, int index) {
+        if (index >= tokens.size()) {
+            return null;
+        }
+
+        if (tokens.get(index).isWord("cast") && index + 1 < tokens.size() && tokens.get(index + 1).isSymbol("(")) {
+            int[] column = columnReference(tokens, scope, index + 2);
+            if (column == null) {
+                return null;
+            }
+            int as = column[1] + 1;
+            if (as + 2 < tokens.size() && tokens.get(as).isWord("as") && tokens.get(as + 1).isWord("date")
+                    && tokens.get(as + 2).isSymbol(")")) {
+                return new int[]{column[0], column[1], as + 2, index};
+            }
+            return null;
+        }
+
+        int[] column = columnReference(tokens, scope, index);
+        if (column == null || column[0] != index) {
+            return null;
+        }
+        if (index > 0 && tokens.get(index - 1).isSymbol(".")) {
+            return null;
+        }
+        int cast = column[1] + 1;
+        if (cast + 1 < tokens.size() && tokens.get(cast).isSymbol("::") && tokens.get(cast + 1).isWord("date")) {
+            return new int[]{column[0], column[1], cast + 1, index};
+        }
+        return null;
+    }
+
+    private int[] columnReference(List<Token> tokens, TableScope scope, int index) {
+        if (index >= tokens.size() || tokens.get(index).type() != TokenType.WORD) {
+            return null;
+        }
+        int end = index;
+        if (index + 2 < tokens.size() && tokens.get(index + 1).isSymbol(".") && tokens.get(index + 2).type() == TokenType.WORD) {
+            end = index + 2;
+        }
+        String column = tokens.get(end).text().toLowerCase(Locale.ROOT);
+        if (!textDateColumns.contains(column)) {
+            return null;
+        }
+        String table = end == index ? scope.soleTable()
+                : scope.tablesByQualifier().get(tokens.get(index).text().toLowerCase(Locale.ROOT));
+        if (table == null || !isTextColumn(table, column)) {
+            return null;
+        }
+        return new int[]{index, end};
+    }
+
+    private boolean isTextColumn(String table, String column) {
+        for (SchemaCatalog.Table candidate : schema.get().tables()) {
+            if (candidate.name().equalsIgnoreCase(table)) {
+                return candidate.columns().stream()
+                        .anyMatch(c -> c.name().equalsIgnoreCase(column) && TEXT_TYPES.contains(c.type()));
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Collects the tables named after FROM (including comma-separated lists) and JOIN, with
+     * their aliases. Schema prefixes are dropped, as the catalog covers a single schema.
+     */
+    private TableScope tableScope(List<Token> tokens, int[] depth, Map<String, CteDefinition> ctes) {
+        Map<String, String> tablesByQualifier = new HashMap<>();
+        Set<String> tables = new HashSet<>();
+        boolean opaque = false;
+
+        for (int i = 0; i < tokens.size(); i++) {
+            boolean from = tokens.get(i).isWord("from") && isSelectFrom(tokens, depth, i);
+            if (!from && !tokens.get(i).isWord("join")) {
+                continue;
+            }
+            boolean list = from;
+            int j = i + 1;
+            while (j < tokens.size()) {
+                Token source = tokens.get(j);
+                String table = null;
+                int end;
+                if (source.isSymbol("(")) {
+                    end = matchingParenthesis(tokens, depth, j);
+                } else if (source.type() == TokenType.WORD
+                        && !FROM_ITEM_KEYWORDS.contains(source.text().toLowerCase(Locale.ROOT))) {
+                    end = j;
+                    if (j + 2 < tokens.size() && tokens.get(j + 1).isSymbol(".") && tokens.get(j + 2).type() == TokenType.WORD) {
+                        end = j + 2;
+                    }
+                    boolean call = end + 1 < tokens.size() && tokens.get(end + 1).isSymbol("(");
+                    String name = tokens.get(end).text().toLowerCase(Locale.ROOT);
+                    if (!call && (end > j || !ctes.containsKey(name))) {
+                        table = name;
+                    } else if (call) {
+                        end = matchingParenthesis(tokens, depth, end + 1);
+                    }
+                } else {
+                    // A quoted name or anything else this does not follow
+                    opaque = true;
+                    break;
+                }
+
+                int next = end + 1;
+                String alias = null;
+                if (next + 1 < tokens.size() && tokens.get(next).isWord("as") && tokens.get(next + 1).type() == TokenType.WORD) {
+                    alias = tokens.get(next + 1).text().toLowerCase(Locale.ROOT);
+                    next += 2;
+                } else if (next < tokens.size() && tokens.get(next).type() == TokenType.WORD && !isReserved(tokens.get(next))) {
+                    alias = tokens.get(next).text().toLowerCase(Locale.ROOT);
+                    next++;
+                }
+
+                if (table == null) {
+                    opaque = true;
+                } else {
+                    tables.add(table);
+                    bind(tablesByQualifier, table, table);
+                }
+                if (alias != null) {
+                    bind(tablesByQualifier, alias, table);
+                }
+
+                if (!list || next >= tokens.size() || !tokens.get(next).isSymbol(",")) {
+                    break;
+                }
+                j = next + 1;
+            }
+        }
+        return new TableScope(tablesByQualifier, tables, opaque);
+    }
+
+    /**
+     * Whether the FROM at {@code index} is a SELECT's, rather than part of EXTRACT(... FROM ...),
+     * SUBSTRING(... FROM ...) or IS DISTINCT FROM: a SELECT precedes it at the same depth.
+     */
+    private static boolean isSelectFrom(List<Token> tokens, int[] depth, int index) {
+        if (index > 0 && tokens.get(index - 1).isWord("distinct")) {
+            return false;
+        }
+        for (int i = index - 1; i >= 0 && depth[i] >= depth[index]; i--) {
+            if (depth[i] == depth[index] && tokens.get(i).isWord("select")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void bind(Map<String, String> tablesByQualifier, String qualifier, String table) {
+        if (tablesByQualifier.containsKey(qualifier) && !Objects.equals(tablesByQualifier.get(qualifier), table)) {
+            tablesByQualifier.put(qualifier, null);
+        } else {
+            tablesByQualifier.put(qualifier, table);
+        }
+    }
+
+    private static boolean isReserved(Token token) {
+        String word = token.text().toLowerCase(Locale.ROOT);
+        return CLAUSE_KEYWORDS.contains(word) || word.equals("select") || word.equals("and") || word.equals("or")
+                || word.equals("as") || word.equals("tablesample");
+    }
+
+    private void uncast(List<Token> tokens, String sql, int[] cast, List<Edit> edits) {
+        String column = sql.substring(tokens.get(cast[0]).start(), tokens.get(cast[1]).end());
+        edits.add(new Edit(tokens.get(cast[3]).start(), tokens.get(cast[2]).end(), column));
+    }
+
+    private void stripLiteralCast(List<Token> tokens, int literalIndex, List<Edit> edits) {
+        int cast = literalIndex + 1;
+        if (cast + 1 < tokens.size() && tokens.get(cast).isSymbol("::") && tokens.get(cast + 1).isWord("date")) {
+            edits.add(new Edit(tokens.get(cast).start(), tokens.get(cast + 1).end(), ""));
+        }
+    }
+
+    private void enforceLimit(List<Token> tokens, int[] depth, String sql, List<Edit> edits) {
+        boolean grouped = false;
+        for (int i = 0; i < tokens.size(); i++) {
+            Token token = tokens.get(i);
+            if (depth[i] != 0) {
+                continue;
+            }
+            if (token.isWord("group") && i + 1 < tokens.size() && tokens.get(i + 1).isWord("by")) {
+                grouped = true;
+            }
+            if (token.isWord("limit")) {
+                clampLimit(tokens, i + 1, sql, edits);
+                return;
+            }
+            if (token.isWord("fetch") && i + 2 < tokens.size()
+                    && (tokens.get(i + 1).isWord("first") || tokens.get(i + 1).isWord("next"))) {
+                if (tokens.get(i + 2).type() == TokenType.NUMBER) {
+                    clampLimit(tokens, i + 2, sql, edits);
+                }
+                return;
+            }
+        }
+
+        int end = tokens.get(tokens.size() - 1).end();
+        edits.add(new Edit(end, end, " LIMIT " + (grouped ? aggregateLimit : defaultLimit)));
+    }
+
+    private void clampLimit(List<Token> tokens, int valueIndex, String sql, List<Edit> edits) {
+        if (valueIndex >= tokens.size()) {
+            throw new SqlQueryRejectedException("LIMIT must be followed by a number.", sql);
+        }
+        Token value = tokens.get(valueIndex);
+        if (value.isWord("all") || value.isWord("null")) {
+            edits.add(new Edit(value.start(), value.end(), String.valueOf(maxLimit)));
+            return;
+        }
+        if (value.type() != TokenType.NUMBER) {
+            throw new SqlQueryRejectedException("LIMIT must be a numeric literal no larger than " + maxLimit + ".", sql);
+        }
+
+        double requested;
+        try {
+            requested = Double.parseDouble(value.text());
+        } catch (NumberFormatException e) {
+            throw new SqlQueryRejectedException("LIMIT must be a numeric literal no larger than " + maxLimit + ".", sql);
+        }
+        if (requested > maxLimit) {
+            edits.add(new Edit(value.start(), value.end(), String.valueOf(maxLimit)));
+        }
+    }
+
+    private int matchingParenthesis(List<Token> tokens, int[] depth, int open) {
+        for (int i = open + 1; i < tokens.size(); i++) {
+            if (tokens.get(i).isSymbol(")") && depth[i] == depth[open]) {
+                return i;
+            }
+        }
+        return tokens.size() - 1;
+    }
+
+    private static boolean isComparison(Token token) {
+        return token.type() == TokenType.SYMBOL && COMPARISON_OPERATORS.contains(token.text());
+    }
+
+    private static boolean isDateLiteral(Token token) {
+        return token.type() == TokenType.STRING && ISO_DATE_LITERAL.matcher(token.text()).matches();
+    }
+
+    private static String applyEdits(String sql, List<Edit> edits) {
+        StringBuilder sb = new StringBuilder(sql);
+        edits.stream()
+                .sorted(Comparator.comparingInt(Edit::start).reversed())
+                .forEach(edit -> sb.replace(edit.start(), edit.end(), edit.replacement()));
+        return sb.toString();
+    }
+}
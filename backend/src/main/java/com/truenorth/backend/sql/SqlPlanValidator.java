@@ -0,0 +1,159 @@
+package com.truenorth.backend.sql;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.truenorth.backend.cache.LruTtlCache;
+import com.truenorth.backend.exception.SqlQueryPlanRejectedException;
+import com.truenorth.backend.exception.SqlQueryRejectedException;
+import com.truenorth.backend.service.ChatExecutorService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * Dry-runs a query with {@code EXPLAIN (FORMAT JSON)} before it is executed. Syntax and
+ * unknown-column errors surface at planning cost, and plans whose estimated cost or
+ * intermediate row count exceed the configured limits are rejected without being run.
+ * EXPLAIN runs through {@link ChatExecutorService#explain(String)}, with the same read-only
+ * transaction, statement timeout and bulkhead as the query itself.
+ */
+@Slf4j
+@Component
+public class SqlPlanValidator {
+
+    private static final int MAX_OUTLINE_NODES = 12;
+    // The same query is often checked twice in a row (hedged generation, then execution)
+    private static final Duration ACCEPTED_PLAN_TTL = Duration.ofMinutes(1);
+
+    private final ChatExecutorService chatExecutorService;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final double maxCost;
+    private final double maxRows;
+    private final LruTtlCache<String, Boolean> acceptedPlans = new LruTtlCache<>(256, Long.MAX_VALUE);
+
+    public SqlPlanValidator(ChatExecutorService chatExecutorService, ObjectMapper objectMapper,
+                            @Value("${chat.sql.explain.enabled:true}") boolean enabled,
+                            @Value("${chat.sql.explain.max-cost:1000000}") double maxCost,
+                            @Value("${chat.sql.explain.max-rows:5000000}") double maxRows) {
+        this.chatExecutorService = chatExecutorService;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.maxCost = maxCost;
+        this.maxRows = maxRows;
+    }
+
+    public void validate(String sql) {
+        if (!enabled || acceptedPlans.get(sql) != null) {
+            return;
+        }
+
+        JsonNode plan = explain(sql);
+        double totalCost = plan.path("Total Cost").asDouble();
+        JsonNode widest = widestNode(plan, plan);
+        double widestRows = widest.path("Plan Rows").asDouble();
+
+        if (totalCost > maxCost) {
+            throw new SqlQueryPlanRejectedException(String.format(Locale.ROOT,
+                    "Query was not executed: the planner estimates a cost of %.0f, above the allowed %.0f. Most expensive step: %s.",
+                    totalCost, maxCost, describe(mostExpensiveLeaf(plan, plan))), sql, outline(plan));
+        }
+        if (widestRows > maxRows) {
+            throw new SqlQueryPlanRejectedException(String.format(Locale.ROOT,
+                    "Query was not executed: the planner estimates %.0f intermediate rows at step %s, above the allowed %.0f.",
+                    widestRows, describe(widest), maxRows), sql, outline(plan));
+        }
+
+        acceptedPlans.put(sql, Boolean.TRUE, sql.length(), ACCEPTED_PLAN_TTL);
+        log.debug("Plan accepted (cost={}, widest rows={}): {}", totalCost, widestRows, sql);
+    }
+
+    private JsonNode explain(String sql) {
+        // Concatenated after EXPLAIN, a second statement would run for real
+        if (SqlTokenizer.tokenize(sql).stream().anyMatch(token -> token.isSymbol(";"))) {
+            throw new SqlQueryRejectedException("Only a single SQL statement is allowed; remove the extra statements after ';'.", sql);
+        }
+
+        String planJson;
+        try {
+            planJson = chatExecutorService.explain(sql);
+        } catch (DataAccessException e) {
+            String reason = e.getMostSpecificCause().getMessage();
+            log.warn("Query failed planning: [{}], Error: [{}]", sql, reason);
+            throw new SqlQueryRejectedException(reason, sql);
+        }
+
+        try {
+            return objectMapper.readTree(planJson).path(0).path("Plan");
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable EXPLAIN output", e);
+        }
+    }
+
+    private static JsonNode widestNode(JsonNode node, JsonNode widest) {
+        if (node.path("Plan Rows").asDouble() > widest.path("Plan Rows").asDouble()) {
+            widest = node;
+        }
+        for (JsonNode child : node.path("Plans")) {
+            widest = widestNode(child, widest);
+        }
+        return widest;
+    }
+
+    /**
+     * The node whose own cost (total minus its children's) is largest, i.e. where the work happens.
+     */
+    private static JsonNode mostExpensiveLeaf(JsonNode node, JsonNode best) {
+        if (ownCost(node) > ownCost(best)) {
+            best = node;
+        }
+        for (JsonNode child : node.path("Plans")) {
+            best = mostExpensiveLeaf(child, best);
+        }
+        return best;
+    }
+
+    private static double ownCost(JsonNode node) {
+        double cost = node.path("Total Cost").asDouble();
+        for (JsonNode child : node.path("Plans")) {
+            cost -= child.path("Total Cost").asDouble();
+        }
+        return cost;
+    }
+
+    private static String outline(JsonNode plan) {
+        StringBuilder sb = new StringBuilder();
+        appendOutline(plan, 0, sb, new int[]{0});
+        return sb.toString();
+    }
+
+    private static void appendOutline(JsonNode node, int depth, StringBuilder sb, int[] written) {
+        if (written[0]++ >= MAX_OUTLINE_NODES) {
+            return;
+        }
+        sb.append("  ".repeat(depth)).append("-> ").append(describe(node)).append('\n');
+        for (JsonNode child : node.path("Plans")) {
+            appendOutline(child, depth + 1, sb, written);
+        }
+    }
+
+    private static String describe(JsonNode node) {
+        StringBuilder sb = new StringBuilder(node.path("Node Type").asText());
+        if (node.hasNonNull("Relation Name")) {
+            sb.append(" on ").append(node.get("Relation Name").asText());
+        }
+        for (String condition : new String[]{"Join Filter", "Hash Cond", "Merge Cond", "Filter"}) {
+            if (node.hasNonNull(condition)) {
+                sb.append(" [").append(condition).append(": ").append(node.get(condition).asText()).append(']');
+            }
+        }
+        sb.append(String.format(Locale.ROOT, " (cost=%.0f rows=%.0f)",
+                node.path("Total Cost").asDouble(), node.path("Plan Rows").asDouble()));
+        return sb.toString();
+    }
+}
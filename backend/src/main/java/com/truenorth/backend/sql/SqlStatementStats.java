@@ -0,0 +1,335 @@
+package com.truenorth.backend.sql;
+
+import com.truenorth.backend.dto.ColumnarResultDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-statement execution statistics in the spirit of pg_stat_statements, keyed by the
+ * literal-free shape of the generated SQL. Each shape tracks calls, a latency histogram,
+ * rows, result bytes, failures by SQLState and the models that produced it; the same numbers
+ * are published to Micrometer tagged by fingerprint. The least-called shape is evicted when
+ * the registry is full.
+ */
+@Component
+public class SqlStatementStats {
+
+    public static final double[] BUCKET_BOUNDS_MILLIS = {5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000};
+
+    public enum Order {
+        TOTAL_TIME,
+        MEAN_TIME,
+        MAX_TIME,
+        CALLS,
+        FAILURES,
+        ROWS,
+        BYTES
+    }
+
+    /**
+     * {@code histogram[i]} counts executions up to {@code BUCKET_BOUNDS_MILLIS[i]}; the last slot is everything slower.
+     */
+    public record Snapshot(String fingerprint, String shape, String lastQuery, long calls, long cacheHits,
+                           long failures, Map<String, Long> failuresBySqlState, Map<String, Long> callsByModel,
+                           double totalMillis, double meanMillis, double maxMillis, double p50Millis, double p95Millis,
+                           long[] histogram, long rows, long bytes, Instant firstSeen, Instant lastSeen) {
+    }
+
+    private final class Entry {
+        private final String fingerprint;
+        private final String shape;
+        private final Instant firstSeen = Instant.now();
+        private final long[] histogram = new long[BUCKET_BOUNDS_MILLIS.length + 1];
+        private final Map<String, Long> failuresBySqlState = new TreeMap<>();
+        private final Map<String, Long> callsByModel = new TreeMap<>();
+        private final Map<String, Counter> failureCounters = new HashMap<>();
+        private final List<Meter> meters = new ArrayList<>();
+        private final Timer timer;
+        private final DistributionSummary rowSummary;
+        private String lastQuery;
+        private Instant lastSeen = firstSeen;
+        private long calls;
+        private long cacheHits;
+        private long failures;
+        private double totalMillis;
+        private double maxMillis;
+        private long rows;
+        private long bytes;
+
+        private Entry(String fingerprint, String shape) {
+            this.fingerprint = fingerprint;
+            this.shape = shape;
+            this.timer = Timer.builder("chat.sql.statement")
+                    .description("Execution time of generated SQL by statement shape")
+                    .tag("fingerprint", fingerprint)
+                    .register(meterRegistry);
+            this.rowSummary = DistributionSummary.builder("chat.sql.statement.rows")
+                    .description("Rows returned by generated SQL by statement shape")
+                    .tag("fingerprint", fingerprint)
+                    .register(meterRegistry);
+            meters.add(timer);
+            meters.add(rowSummary);
+        }
+
+        private synchronized void executed(String query, String model, long nanos, long rowCount, long byteCount) {
+            double millis = nanos / 1_000_000.0;
+            calls++;
+            totalMillis += millis;
+            maxMillis = Math.max(maxMillis, millis);
+            histogram[bucket(millis)]++;
+            rows += rowCount;
+            bytes += byteCount;
+            callsByModel.merge(model, 1L, Long::sum);
+            seen(query);
+            timer.record(nanos, TimeUnit.NANOSECONDS);
+            rowSummary.record(rowCount);
+        }
+
+        private synchronized void failed(String query, String model, long nanos, String sqlState) {
+            double millis = nanos / 1_000_000.0;
+            calls++;
+            failures++;
+            totalMillis += millis;
+            maxMillis = Math.max(maxMillis, millis);
+            histogram[bucket(millis)]++;
+            callsByModel.merge(model, 1L, Long::sum);
+            failuresBySqlState.merge(sqlState, 1L, Long::sum);
+            failureCounters.computeIfAbsent(sqlState, state -> {
+                Counter counter = Counter.builder("chat.sql.statement.failures")
+                        .description("Failed executions of generated SQL by statement shape and SQLState")
+                        .tag("fingerprint", fingerprint)
+                        .tag("sqlstate", state)
+                        .register(meterRegistry);
+                meters.add(counter);
+                return counter;
+            }).increment();
+            seen(query);
+        }
+
+        private synchronized void cacheHit(String query) {
+            cacheHits++;
+            seen(query);
+        }
+
+        private void seen(String query) {
+            lastQuery = query;
+            lastSeen = Instant.now();
+        }
+
+        private synchronized long calls() {
+            return calls;
+        }
+
+        private synchronized Snapshot snapshot() {
+            return new Snapshot(fingerprint, shape, lastQuery, calls, cacheHits, failures,
+                    new LinkedHashMap<>(failuresBySqlState), new LinkedHashMap<>(callsByModel),
+                    totalMillis, calls == 0 ? 0 : totalMillis / calls, maxMillis,
+                    quantile(0.5), quantile(0.95), histogram.clone(), rows, bytes, firstSeen, lastSeen);
+        }
+
+        /**
+         * Upper bound of the bucket holding the quantile; the slowest bucket reports the max.
+         */
+        private double quantile(double q) {
+            long rank = (long) Math.ceil(q * calls);
+            long seen = 0;
+            for (int i = 0; i < histogram.length; i++) {
+                seen += histogram[i];
+                if (seen >= rank && seen > 0) {
+                    return i < BUCKET_BOUNDS_MILLIS.length ? Math.min(BUCKET_BOUNDS_MILLIS[i], maxMillis) : maxMillis;
+                }
+            }
+            return 0;
+        }
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final String schema;
+    private final int maxEntries;
+    private final int maxShapeLength;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public SqlStatementStats(MeterRegistry meterRegistry,
+                             @Value("${db.schema.name}") String schema,
+                             @Value("${chat.sql.stats.max-entries:500}") int maxEntries,
+                             @Value("${chat.sql.stats.max-shape-length:4000}") int maxShapeLength) {
+        this.meterRegistry = meterRegistry;
+        this.schema = schema;
+        this.maxEntries = maxEntries;
+        this.maxShapeLength = maxShapeLength;
+        Gauge.builder("chat.sql.statement.shapes", entries, Map::size)
+                .description("Distinct statement shapes being tracked")
+                .register(meterRegistry);
+    }
+
+    public void recordExecution(String sql, String model, long nanos, long rows, long bytes) {
+        entry(sql).executed(sql, label(model), nanos, rows, bytes);
+    }
+
+    public void recordFailure(String sql, String model, long nanos, Throwable error) {
+        entry(sql).failed(sql, label(model), nanos, sqlState(error));
+    }
+
+    public void recordCacheHit(String sql) {
+        entry(sql).cacheHit(sql);
+    }
+
+    public List<Snapshot> top(Order order, int limit) {
+        Comparator<Snapshot> comparator = switch (order) {
+            case TOTAL_TIME -> Comparator.comparingDouble(Snapshot::totalMillis);
+            case MEAN_TIME -> Comparator.comparingDouble(Snapshot::meanMillis);
+            case MAX_TIME -> Comparator.comparingDouble(Snapshot::maxMillis);
+            case CALLS -> Comparator.comparingLong(Snapshot::calls);
+            case FAILURES -> Comparator.comparingLong(Snapshot::failures);
+            case ROWS -> Comparator.comparingLong(Snapshot::rows);
+            case BYTES -> Comparator.comparingLong(Snapshot::bytes);
+        };
+        return entries.values().stream()
+                .map(Entry::snapshot)
+                .sorted(comparator.reversed())
+                .limit(limit)
+                .toList();
+    }
+
+    public Snapshot get(String fingerprint) {
+        Entry entry = entries.get(fingerprint);
+        return entry != null ? entry.snapshot() : null;
+    }
+
+    public void reset() {
+        for (String fingerprint : List.copyOf(entries.keySet())) {
+            remove(fingerprint);
+        }
+    }
+
+    private Entry entry(String sql) {
+        String shape = SqlFingerprint.shape(sql, schema);
+        String fingerprint = SqlFingerprint.hash(shape);
+        Entry entry = entries.get(fingerprint);
+        if (entry != null) {
+            return entry;
+        }
+        if (entries.size() >= maxEntries) {
+            evictLeastCalled();
+        }
+        String storedShape = shape.length() > maxShapeLength ? shape.substring(0, maxShapeLength) + "..." : shape;
+        return entries.computeIfAbsent(fingerprint, key -> new Entry(key, storedShape));
+    }
+
+    private synchronized void evictLeastCalled() {
+        if (entries.size() < maxEntries) {
+            return;
+        }
+        entries.values().stream()
+                .min(Comparator.comparingLong(Entry::calls))
+                .ifPresent(entry -> remove(entry.fingerprint));
+    }
+
+    private void remove(String fingerprint) {
+        Entry removed = entries.remove(fingerprint);
+        if (removed != null) {
+            synchronized (removed) {
+                removed.meters.forEach(meterRegistry::remove);
+            }
+        }
+    }
+
+    private static int bucket(double millis) {
+        for (int i = 0; i < BUCKET_BOUNDS_MILLIS.length; i++) {
+            if (millis <= BUCKET_BOUNDS_MILLIS[i]) {
+                return i;
+            }
+        }
+        return BUCKET_BOUNDS_MILLIS.length;
+    }
+
+    private static String label(String model) {
+        return model != null ? model : "unknown";
+    }
+
+    private static String sqlState(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof SQLException sqlException && sqlException.getSQLState() != null) {
+                return sqlException.getSQLState();
+            }
+            if (t instanceof QueryTimeoutException) {
+                return "57014";
+            }
+        }
+        return "unknown";
+    }
+
+    /**
+     * Approximate size of the rows as JSON, without serializing them.
+     */
+    public static long estimateJsonBytes(List<Map<String, Object>> rows) {
+        long bytes = 2;
+        for (Map<String, Object> row : rows) {
+            bytes += 3;
+            for (Map.Entry<String, Object> column : row.entrySet()) {
+                bytes += column.getKey().length() + 4 + estimateJsonBytes(column.getValue());
+            }
+        }
+        return bytes;
+    }
+
+    public static long estimateJsonBytes(ColumnarResultDTO result) {
+        long bytes = 32;
+        for (ColumnarResultDTO.Column column : result.getColumns()) {
+            bytes += 64 + column.getName().length();
+            Object values = column.getValues();
+            if (values instanceof long[] longs) {
+                for (long value : longs) {
+                    bytes += String.valueOf(value).length() + 1;
+                }
+            } else if (values instanceof double[] doubles) {
+                for (double value : doubles) {
+                    bytes += String.valueOf(value).length() + 1;
+                }
+            } else if (values instanceof int[] codes) {
+                bytes += 3L * codes.length;
+            } else if (values instanceof boolean[] booleans) {
+                bytes += 6L * booleans.length;
+            } else if (values instanceof Object[] objects) {
+                for (Object value : objects) {
+                    bytes += estimateJsonBytes(value) + 1;
+                }
+            }
+            if (column.getDictionary() != null) {
+                for (String entry : column.getDictionary()) {
+                    bytes += entry.length() + 3;
+                }
+            }
+        }
+        return bytes;
+    }
+
+    private static long estimateJsonBytes(Object value) {
+        if (value == null) {
+            return 4;
+        }
+        if (value instanceof CharSequence text) {
+            return text.length() + 2;
+        }
+        return String.valueOf(value).length();
+    }
+}
@@ -0,0 +1,219 @@
+package com.truenorth.backend.sql;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits SQL into tokens the way PostgreSQL's lexer would, so the guard sees every statement
+ * and keyword the server will. Comments are dropped; nested block comments, escape strings
+ * and dollar quotes are honoured because getting their extent wrong would hide text from
+ * the checks.
+ */
+public final class SqlTokenizer {
+
+    public enum TokenType {
+        WORD,
+        QUOTED_IDENTIFIER,
+        STRING,
+        NUMBER,
+        SYMBOL
+    }
+
+    public record Token(TokenType type, String text, int start, int end) {
+
+        public Token(TokenType type, String text) {
+            this(type, text, -1, -1);
+        }
+
+        public boolean isWord(String word) {
+            return type == TokenType.WORD && text.equalsIgnoreCase(word);
+        }
+
+        public boolean isSymbol(String symbol) {
+            return type == TokenType.SYMBOL && text.equals(symbol);
+        }
+
+        public boolean isLiteral() {
+            return type == TokenType.STRING || type == TokenType.NUMBER;
+        }
+    }
+
+    private static final String[] MULTI_CHAR_SYMBOLS = {"::", "<=", ">=", "<>", "!=", "||", "->>", "->", "~~*", "!~~"};
+
+    private SqlTokenizer() {
+    }
+
+    public static List<Token> tokenize(String sql) {
+        List<Token> tokens = new ArrayList<>();
+        if (sql == null) {
+            return tokens;
+        }
+
+        int length = sql.length();
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+                while (i < length && sql.charAt(i) != '\n') {
+                    i++;
+                }
+            } else if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+                i = skipBlockComment(sql, i);
+            } else if (c == '\'') {
+                int end = readQuoted(sql, i, '\'', false);
+                tokens.add(new Token(TokenType.STRING, sql.substring(i, end), i, end));
+                i = end;
+            } else if (c == '"') {
+                int end = readQuoted(sql, i, '"', false);
+                tokens.add(new Token(TokenType.QUOTED_IDENTIFIER, sql.substring(i, end), i, end));
+                i = end;
+            } else if (c == '$' && dollarTagEnd(sql, i) > 0) {
+                int tagEnd = dollarTagEnd(sql, i);
+                String tag = sql.substring(i, tagEnd + 1);
+                int close = sql.indexOf(tag, tagEnd + 1);
+                int end = close < 0 ? length : close + tag.length();
+                tokens.add(new Token(TokenType.STRING, sql.substring(i, end), i, end));
+                i = end;
+            } else if (isPrefixedString(sql, i)) {
+                // Only E'' strings treat a backslash as an escape; standard_conforming_strings is on
+                int end = readQuoted(sql, i + 1, '\'', Character.toUpperCase(c) == 'E');
+                tokens.add(new Token(TokenType.STRING, sql.substring(i, end), i, end));
+                i = end;
+            } else if (Character.isDigit(c) || (c == '.' && i + 1 < length && Character.isDigit(sql.charAt(i + 1)))) {
+                int end = i;
+                while (end < length && (Character.isDigit(sql.charAt(end)) || sql.charAt(end) == '.'
+                        || sql.charAt(end) == 'e' || sql.charAt(end) == 'E')) {
+                    end++;
+                }
+                tokens.add(new Token(TokenType.NUMBER, sql.substring(i, end), i, end));
+                i = end;
+            } else if (Character.isLetter(c) || c == '_') {
+                int end = i;
+                while (end < length && (Character.isLetterOrDigit(sql.charAt(end)) || sql.charAt(end) == '_' || sql.charAt(end) == '$')) {
+                    end++;
+                }
+                tokens.add(new Token(TokenType.WORD, sql.substring(i, end), i, end));
+                i = end;
+            } else {
+                String symbol = String.valueOf(c);
+                for (String candidate : MULTI_CHAR_SYMBOLS) {
+                    if (sql.startsWith(candidate, i)) {
+                        symbol = candidate;
+                        break;
+                    }
+                }
+                tokens.add(new Token(TokenType.SYMBOL, symbol, i, i + symbol.length()));
+                i += symbol.length();
+            }
+        }
+        return tokens;
+    }
+
+    public static String join(List<Token> tokens) {
+        StringBuilder sb = new StringBuilder();
+        Token previous = null;
+        for (Token token : tokens) {
+            if (previous != null && needsSpace(previous, token)) {
+                sb.append(' ');
+            }
+            sb.append(token.text());
+            previous = token;
+        }
+        return sb.toString();
+    }
+
+    private static boolean needsSpace(Token previous, Token current) {
+        if (previous.isSymbol(".") || current.isSymbol(".") || current.isSymbol(",")
+                || previous.isSymbol("(") || current.isSymbol(")")
+                || previous.isSymbol("::") || current.isSymbol("::")) {
+            return false;
+        }
+        if (current.isSymbol("(")) {
+            return previous.type() != TokenType.WORD || isKeywordBeforeParenthesis(previous.text());
+        }
+        return true;
+    }
+
+    private static boolean isKeywordBeforeParenthesis(String word) {
+        return switch (word.toLowerCase()) {
+            case "in", "from", "join", "as", "and", "or", "not", "exists", "select", "where", "on", "with", "over",
+                 "values", "any", "all", "some", "then", "else", "when", "by", "having", "union", "intersect", "except" -> true;
+            default -> false;
+        };
+    }
+
+    private static boolean isPrefixedString(String sql, int i) {
+        if (i + 1 >= sql.length() || sql.charAt(i + 1) != '\'') {
+            return false;
+        }
+        if (i > 0 && (Character.isLetterOrDigit(sql.charAt(i - 1)) || sql.charAt(i - 1) == '_')) {
+            return false;
+        }
+        char prefix = Character.toUpperCase(sql.charAt(i));
+        return prefix == 'E' || prefix == 'B' || prefix == 'X' || prefix == 'N';
+    }
+
+    /**
+     * Returns the index just past a block comment starting at {@code start}. PostgreSQL nests
+     * block comments, so the end of an inner comment does not end the outer one.
+     */
+    private static int skipBlockComment(String sql, int start) {
+        int depth = 0;
+        int i = start;
+        while (i + 1 < sql.length()) {
+            if (sql.charAt(i) == '/' && sql.charAt(i + 1) == '*') {
+                depth++;
+                i += 2;
+            } else if (sql.charAt(i) == '*' && sql.charAt(i + 1) == '/') {
+                depth--;
+                i += 2;
+                if (depth == 0) {
+                    return i;
+                }
+            } else {
+                i++;
+            }
+        }
+        return sql.length();
+    }
+
+    /**
+     * Returns the index of the closing {@code $} of a dollar-quote tag starting at {@code start},
+     * or -1 if there is none. A tag is {@code $$} or {@code $name$} with an identifier-like name.
+     */
+    private static int dollarTagEnd(String sql, int start) {
+        int i = start + 1;
+        if (i < sql.length() && sql.charAt(i) == '$') {
+            return i;
+        }
+        if (i >= sql.length() || !(Character.isLetter(sql.charAt(i)) || sql.charAt(i) == '_')) {
+            return -1;
+        }
+        while (i < sql.length() && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '_')) {
+            i++;
+        }
+        return i < sql.length() && sql.charAt(i) == '$' ? i : -1;
+    }
+
+    private static int readQuoted(String sql, int start, char quote, boolean backslashEscapes) {
+        int i = start + 1;
+        while (i < sql.length()) {
+            if (backslashEscapes && sql.charAt(i) == '\\') {
+                i += 2;
+                continue;
+            }
+            if (sql.charAt(i) == quote) {
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                    continue;
+                }
+                return i + 1;
+            }
+            i++;
+        }
+        return sql.length();
+    }
+}
@@ -0,0 +1,88 @@
+package com.truenorth.backend.summary;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public final class ColumnStatistics {
+
+    private final String name;
+
+    private long count;
+    private double sum;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private double mean;
+    private double m2;
+
+    private final P2QuantileEstimator p50 = new P2QuantileEstimator(0.50);
+    private final P2QuantileEstimator p90 = new P2QuantileEstimator(0.90);
+    private final P2QuantileEstimator p99 = new P2QuantileEstimator(0.99);
+
+    public ColumnStatistics(String name) {
+        this.name = name;
+    }
+
+    public void accept(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        count++;
+        sum += value;
+        if (value < min) min = value;
+        if (value > max) max = value;
+
+        // Welford's online variance
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+
+        p50.add(value);
+        p90.add(value);
+        p99.add(value);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public double getStandardDeviation() {
+        return count > 1 ? Math.sqrt(m2 / (count - 1)) : 0.0;
+    }
+
+    public Map<String, Object> toMap(long rowCount) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("count", count);
+        stats.put("nullCount", rowCount - count);
+        if (count > 0) {
+            stats.put("sum", sum);
+            stats.put("mean", mean);
+            stats.put("min", min);
+            stats.put("max", max);
+            stats.put("stddev", getStandardDeviation());
+            stats.put("p50", p50.quantile());
+            stats.put("p90", p90.quantile());
+            stats.put("p99", p99.quantile());
+        }
+        return stats;
+    }
+}
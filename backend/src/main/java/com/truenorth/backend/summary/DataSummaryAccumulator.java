@@ -0,0 +1,172 @@
+package com.truenorth.backend.summary;
+
+import com.truenorth.backend.dto.ChatResponseDTO;
+import com.truenorth.backend.dto.ColumnarResultDTO;
+import com.truenorth.backend.model.ChatResponse;
+
+import java.math.BigDecimal;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects per-column statistics for every numeric column in a single pass, fed either
+ * while rows are read from the ResultSet or, on a cache hit, from already materialized rows.
+ */
+public class DataSummaryAccumulator {
+
+    private final Map<String, ColumnStatistics> columns = new LinkedHashMap<>();
+    private ColumnStatistics[] byIndex;
+    private long rowCount;
+
+    public void accept(Map<String, Object> row) {
+        for (Map.Entry<String, Object> entry : row.entrySet()) {
+            if (entry.getValue() instanceof Number number) {
+                column(entry.getKey()).accept(number.doubleValue());
+            }
+        }
+        rowCount++;
+    }
+
+    public void acceptRows(List<Map<String, Object>> rows) {
+        for (Map<String, Object> row : rows) {
+            accept(row);
+        }
+    }
+
+    /**
+     * Binds numeric result set columns by index so {@link #accept(int, double)} needs no lookups.
+     */
+    public void bind(ResultSetMetaData metaData) throws SQLException {
+        byIndex = new ColumnStatistics[metaData.getColumnCount()];
+        for (int i = 0; i < byIndex.length; i++) {
+            if (isNumeric(metaData.getColumnType(i + 1))) {
+                byIndex[i] = column(metaData.getColumnLabel(i + 1));
+            }
+        }
+    }
+
+    public void accept(int columnIndex, double value) {
+        if (byIndex[columnIndex] != null) {
+            byIndex[columnIndex].accept(value);
+        }
+    }
+
+    public void acceptValue(int columnIndex, Object value) {
+        if (value instanceof Number number) {
+            accept(columnIndex, number.doubleValue());
+        }
+    }
+
+    public void rowCompleted() {
+        rowCount++;
+    }
+
+    public void acceptColumnar(ColumnarResultDTO result) {
+        for (ColumnarResultDTO.Column column : result.getColumns()) {
+            boolean[] isNull = new boolean[result.getRowCount()];
+            if (column.getNulls() != null) {
+                for (int row : column.getNulls()) {
+                    isNull[row] = true;
+                }
+            }
+
+            if (column.getValues() instanceof long[] longs) {
+                ColumnStatistics statistics = column(column.getName());
+                for (int row = 0; row < result.getRowCount(); row++) {
+                    if (!isNull[row]) statistics.accept(longs[row]);
+                }
+            } else if (column.getValues() instanceof double[] doubles) {
+                ColumnStatistics statistics = column(column.getName());
+                for (int row = 0; row < result.getRowCount(); row++) {
+                    if (!isNull[row]) statistics.accept(doubles[row]);
+                }
+            } else if (column.getValues() instanceof BigDecimal[] decimals) {
+                ColumnStatistics statistics = column(column.getName());
+                for (BigDecimal value : decimals) {
+                    if (value != null) statistics.accept(value.doubleValue());
+                }
+            }
+        }
+        rowCount += result.getRowCount();
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public ChatResponseDTO.DataSummary toSummary(ChatResponse.ChartConfig config) {
+        if (rowCount == 0) return null;
+
+        ChatResponseDTO.DataSummary summary = new ChatResponseDTO.DataSummary();
+        summary.setTotalRecords(rowCount);
+
+        ColumnStatistics primary = primaryColumn(config);
+        if (primary != null && primary.getCount() > 0) {
+            summary.setTotal(primary.getSum());
+            summary.setAverage(primary.getMean());
+            summary.setMin(primary.getMin());
+            summary.setMax(primary.getMax());
+        }
+
+        if (!columns.isEmpty()) {
+            Map<String, Object> columnStats = new LinkedHashMap<>();
+            for (ColumnStatistics statistics : columns.values()) {
+                columnStats.put(statistics.getName(), statistics.toMap(rowCount));
+            }
+
+            Map<String, Object> additionalStats = new LinkedHashMap<>();
+            if (primary != null) {
+                additionalStats.put("valueField", primary.getName());
+            }
+            additionalStats.put("columns", columnStats);
+            summary.setAdditionalStats(additionalStats);
+        }
+        return summary;
+    }
+
+    /**
+     * The column the chart plots as its value. Without one the top-level figures stay empty rather
+     * than describing whichever numeric column came first, such as an id or a year.
+     */
+    private ColumnStatistics primaryColumn(ChatResponse.ChartConfig config) {
+        if (config == null) {
+            return null;
+        }
+        for (String field : new String[]{config.getValueField(), config.getYAxisField(), config.getYField()}) {
+            ColumnStatistics statistics = field != null ? find(field) : null;
+            if (statistics != null) {
+                return statistics;
+            }
+        }
+        return null;
+    }
+
+    private ColumnStatistics find(String name) {
+        ColumnStatistics statistics = columns.get(name);
+        if (statistics != null) {
+            return statistics;
+        }
+        for (ColumnStatistics candidate : columns.values()) {
+            if (candidate.getName().equalsIgnoreCase(name)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private ColumnStatistics column(String name) {
+        return columns.computeIfAbsent(name, ColumnStatistics::new);
+    }
+
+    private static boolean isNumeric(int sqlType) {
+        return switch (sqlType) {
+            case Types.BIGINT, Types.INTEGER, Types.SMALLINT, Types.TINYINT,
+                 Types.DOUBLE, Types.FLOAT, Types.REAL, Types.NUMERIC, Types.DECIMAL -> true;
+            default -> false;
+        };
+    }
+}
@@ -0,0 +1,162 @@
+-- Chat memory, partitioned by month on "timestamp" so old conversations can be dropped a partition at a time.
+-- An existing unpartitioned table is renamed, copied into the new layout and dropped at the end.
+
+DO $$
+BEGIN
+    IF EXISTS (SELECT 1
+               FROM pg_class c
+                        JOIN pg_namespace n ON n.oid = c.relnamespace
+               WHERE n.nspname = '${schema}'
+                 AND c.relname = 'spring_ai_chat_memory'
+                 AND c.relkind = 'r') THEN
+        ALTER TABLE ${schema}.spring_ai_chat_memory RENAME TO spring_ai_chat_memory_legacy;
+    END IF;
+END
+$$;
+
+CREATE TABLE ${schema}.spring_ai_chat_memory
+(
+    conversation_id VARCHAR(36) NOT NULL,
+    content         TEXT        NOT NULL,
+    type            VARCHAR(10) NOT NULL CHECK (type IN ('USER', 'ASSISTANT', 'SYSTEM', 'TOOL')),
+    "timestamp"     TIMESTAMP   NOT NULL
+) PARTITION BY RANGE ("timestamp");
+
+-- Catches rows outside the prepared months if maintenance has not run; they are moved out when their month is created
+CREATE TABLE ${schema}.spring_ai_chat_memory_default PARTITION OF ${schema}.spring_ai_chat_memory DEFAULT;
+
+-- Serves both "WHERE conversation_id = ? ORDER BY timestamp" and the newest-K keyset read
+CREATE INDEX spring_ai_chat_memory_conversation_ts_idx
+    ON ${schema}.spring_ai_chat_memory (conversation_id, "timestamp");
+
+-- One row per conversation, replacing SELECT DISTINCT over the whole message table
+CREATE TABLE ${schema}.chat_conversation
+(
+    conversation_id VARCHAR(36) PRIMARY KEY,
+    last_message_at TIMESTAMP NOT NULL
+);
+
+CREATE INDEX chat_conversation_last_message_idx ON ${schema}.chat_conversation (last_message_at);
+
+-- Creates the partition for one month, moving any rows for that month out of the default partition first
+-- (a default partition holding rows of the new range blocks ATTACH)
+CREATE OR REPLACE FUNCTION ${schema}.ensure_chat_memory_partition(month_start DATE) RETURNS VOID AS $$
+DECLARE
+    partition_name TEXT := 'spring_ai_chat_memory_' || to_char(month_start, 'YYYY_MM');
+    month_end      DATE := (month_start + INTERVAL '1 month')::DATE;
+BEGIN
+    IF to_regclass(format('%I.%I', '${schema}', partition_name)) IS NOT NULL THEN
+        RETURN;
+    END IF;
+
+    EXECUTE format('CREATE TABLE %I.%I (LIKE %I.spring_ai_chat_memory INCLUDING DEFAULTS INCLUDING CONSTRAINTS)',
+                   '${schema}', partition_name, '${schema}');
+    EXECUTE format('WITH moved AS (DELETE FROM %I.spring_ai_chat_memory_default WHERE "timestamp" >= %L AND "timestamp" < %L RETURNING *) '
+                       || 'INSERT INTO %I.%I SELECT * FROM moved',
+                   '${schema}', month_start, month_end, '${schema}', partition_name);
+    EXECUTE format('ALTER TABLE %I.spring_ai_chat_memory ATTACH PARTITION %I.%I FOR VALUES FROM (%L) TO (%L)',
+                   '${schema}', '${schema}', partition_name, month_start, month_end);
+    -- The DELETE above fired the conversation trigger while the moved rows were not visible through the parent,
+    -- dropping conversations whose messages were all in this month, and ATTACH fires no INSERT trigger
+    EXECUTE format('INSERT INTO %I.chat_conversation AS c (conversation_id, last_message_at) '
+                       || 'SELECT conversation_id, max("timestamp") FROM %I.%I GROUP BY conversation_id '
+                       || 'ON CONFLICT (conversation_id) DO UPDATE SET last_message_at = greatest(c.last_message_at, EXCLUDED.last_message_at)',
+                   '${schema}', '${schema}', partition_name);
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION ${schema}.ensure_chat_memory_partitions(months_ahead INT) RETURNS VOID AS $$
+BEGIN
+    FOR i IN 0..months_ahead LOOP
+        PERFORM ${schema}.ensure_chat_memory_partition((date_trunc('month', now()) + make_interval(months => i))::DATE);
+    END LOOP;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Drops monthly partitions that ended before the retention cutoff, with their conversations and history entries
+CREATE OR REPLACE FUNCTION ${schema}.drop_chat_memory_partitions(retention_months INT) RETURNS INT AS $$
+DECLARE
+    cutoff  DATE := (date_trunc('month', now()) - make_interval(months => retention_months))::DATE;
+    part    RECORD;
+    dropped INT  := 0;
+BEGIN
+    FOR part IN
+        SELECT c.relname
+        FROM pg_inherits i
+                 JOIN pg_class c ON c.oid = i.inhrelid
+                 JOIN pg_class p ON p.oid = i.inhparent
+                 JOIN pg_namespace n ON n.oid = p.relnamespace
+        WHERE n.nspname = '${schema}'
+          AND p.relname = 'spring_ai_chat_memory'
+          AND c.relname ~ '^spring_ai_chat_memory_\d{4}_\d{2}$'
+    LOOP
+        IF (to_date(right(part.relname, 7), 'YYYY_MM') + INTERVAL '1 month')::DATE <= cutoff THEN
+            EXECUTE format('DROP TABLE %I.%I', '${schema}', part.relname);
+            dropped := dropped + 1;
+        END IF;
+    END LOOP;
+
+    DELETE FROM ${schema}.spring_ai_chat_memory_default WHERE "timestamp" < cutoff;
+    DELETE FROM ${schema}.chat_conversation WHERE last_message_at < cutoff;
+    IF to_regclass('${schema}.chat_history') IS NOT NULL THEN
+        DELETE FROM ${schema}.chat_history h
+        WHERE h.created_at < cutoff
+          AND NOT EXISTS (SELECT 1 FROM ${schema}.chat_conversation c WHERE c.conversation_id = h.conversation_id);
+    END IF;
+    RETURN dropped;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Copy existing messages, creating a partition for every month they cover
+DO $$
+DECLARE
+    first_month DATE;
+BEGIN
+    IF to_regclass('${schema}.spring_ai_chat_memory_legacy') IS NULL THEN
+        RETURN;
+    END IF;
+
+    SELECT date_trunc('month', min("timestamp"))::DATE INTO first_month FROM ${schema}.spring_ai_chat_memory_legacy;
+    WHILE first_month IS NOT NULL AND first_month <= date_trunc('month', now())::DATE LOOP
+        PERFORM ${schema}.ensure_chat_memory_partition(first_month);
+        first_month := (first_month + INTERVAL '1 month')::DATE;
+    END LOOP;
+
+    INSERT INTO ${schema}.spring_ai_chat_memory (conversation_id, content, type, "timestamp")
+    SELECT conversation_id, content, type, "timestamp"
+    FROM ${schema}.spring_ai_chat_memory_legacy;
+
+    DROP TABLE ${schema}.spring_ai_chat_memory_legacy;
+END
+$$;
+
+SELECT ${schema}.ensure_chat_memory_partitions(2);
+
+INSERT INTO ${schema}.chat_conversation (conversation_id, last_message_at)
+SELECT conversation_id, max("timestamp")
+FROM ${schema}.spring_ai_chat_memory
+GROUP BY conversation_id;
+
+-- Keep chat_conversation in step with every write path, including the JDBC repository's delete-and-reinsert
+CREATE OR REPLACE FUNCTION ${schema}.track_chat_conversation() RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        INSERT INTO ${schema}.chat_conversation (conversation_id, last_message_at)
+        VALUES (NEW.conversation_id, NEW."timestamp")
+        ON CONFLICT (conversation_id)
+            DO UPDATE SET last_message_at = greatest(${schema}.chat_conversation.last_message_at, EXCLUDED.last_message_at);
+        RETURN NEW;
+    END IF;
+
+    DELETE FROM ${schema}.chat_conversation c
+    WHERE c.conversation_id = OLD.conversation_id
+      AND NOT EXISTS (SELECT 1 FROM ${schema}.spring_ai_chat_memory m WHERE m.conversation_id = OLD.conversation_id);
+    RETURN OLD;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER spring_ai_chat_memory_track_conversation
+    AFTER INSERT OR DELETE
+    ON ${schema}.spring_ai_chat_memory
+    FOR EACH ROW
+EXECUTE FUNCTION ${schema}.track_chat_conversation();
@@ -0,0 +1,11 @@
+-- chat_history was created by Hibernate's ddl-auto; create it here too so a fresh database can be indexed before JPA starts
+CREATE TABLE IF NOT EXISTS ${schema}.chat_history
+(
+    conversation_id VARCHAR(255) PRIMARY KEY,
+    title           VARCHAR(500),
+    created_at      TIMESTAMP(6) NOT NULL
+);
+
+-- Keyset pagination for the history listing: ORDER BY created_at DESC, conversation_id DESC
+CREATE INDEX IF NOT EXISTS chat_history_created_at_conversation_idx
+    ON ${schema}.chat_history (created_at DESC, conversation_id DESC);
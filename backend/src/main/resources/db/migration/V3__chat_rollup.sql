@@ -0,0 +1,11 @@
+-- Registry of the rollup materialized views built from recurring aggregate queries
+CREATE TABLE IF NOT EXISTS ${schema}.chat_rollup
+(
+    name         VARCHAR(63) PRIMARY KEY,
+    source_table VARCHAR(255) NOT NULL,
+    dimensions   TEXT         NOT NULL,
+    measures     TEXT         NOT NULL,
+    row_count    BIGINT       NOT NULL DEFAULT 0,
+    created_at   TIMESTAMP    NOT NULL DEFAULT now(),
+    refreshed_at TIMESTAMP    NOT NULL DEFAULT now()
+);
@@ -0,0 +1,117 @@
+package com.truenorth.backend.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LruTtlCacheTest {
+
+    private static final Duration HOUR = Duration.ofHours(1);
+
+    @Test
+    void evictsLeastRecentlyUsedWhenOverCount() {
+        LruTtlCache<String, String> cache = new LruTtlCache<>(2, 1000);
+        cache.put("a", "A", 1, HOUR);
+        cache.put("b", "B", 1, HOUR);
+        cache.get("a");
+
+        cache.put("c", "C", 1, HOUR);
+
+        assertEquals("A", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals("C", cache.get("c"));
+        assertEquals(1, cache.stats().evictions());
+    }
+
+    @Test
+    void evictsOldestUntilWeightFits() {
+        LruTtlCache<String, String> cache = new LruTtlCache<>(10, 100);
+        cache.put("a", "A", 40, HOUR);
+        cache.put("b", "B", 40, HOUR);
+        cache.put("c", "C", 40, HOUR);
+
+        assertNull(cache.get("a"));
+        assertEquals("B", cache.get("b"));
+        assertEquals("C", cache.get("c"));
+        assertEquals(80, cache.stats().weightBytes());
+
+        cache.put("d", "D", 90, HOUR);
+
+        assertNull(cache.get("b"));
+        assertNull(cache.get("c"));
+        assertEquals("D", cache.get("d"));
+        assertEquals(90, cache.stats().weightBytes());
+        assertEquals(3, cache.stats().evictions());
+    }
+
+    @Test
+    void refusesEntryHeavierThanTheWholeCache() {
+        LruTtlCache<String, String> cache = new LruTtlCache<>(10, 100);
+        cache.put("a", "A", 40, HOUR);
+
+        assertFalse(cache.put("b", "B", 101, HOUR));
+        assertEquals("A", cache.get("a"));
+        assertEquals(40, cache.stats().weightBytes());
+    }
+
+    @Test
+    void replacingAnEntryReplacesItsWeight() {
+        LruTtlCache<String, String> cache = new LruTtlCache<>(10, 100);
+        cache.put("a", "A", 40, HOUR);
+        cache.put("a", "A2", 10, HOUR);
+
+        assertEquals("A2", cache.get("a"));
+        assertEquals(1, cache.stats().entries());
+        assertEquals(10, cache.stats().weightBytes());
+    }
+
+    @Test
+    void expiresEntriesAfterTheirTtl() {
+        LruTtlCache<String, String> cache = new LruTtlCache<>(10, 100);
+        cache.put("short", "S", 10, Duration.ofNanos(1));
+        cache.put("long", "L", 10, HOUR);
+
+        assertNull(cache.get("short"));
+        assertEquals("L", cache.get("long"));
+        LruTtlCache.Stats stats = cache.stats();
+        assertEquals(1, stats.expirations());
+        assertEquals(1, stats.misses());
+        assertEquals(1, stats.hits());
+        assertEquals(1, stats.entries());
+        assertEquals(10, stats.weightBytes());
+    }
+
+    @Test
+    void refusesNonPositiveTtl() {
+        LruTtlCache<String, String> cache = new LruTtlCache<>(10, 100);
+
+        assertFalse(cache.put("a", "A", 1, Duration.ZERO));
+        assertFalse(cache.put("a", "A", 1, Duration.ofSeconds(-1)));
+        assertEquals(0, cache.stats().entries());
+    }
+
+    @Test
+    void invalidatesMatchingKeys() {
+        LruTtlCache<String, String> cache = new LruTtlCache<>(10, 100);
+        cache.put("columnar:a", "A", 10, HOUR);
+        cache.put("columnar:b", "B", 10, HOUR);
+        cache.put("c", "C", 10, HOUR);
+
+        assertEquals(2, cache.invalidateIf(key -> key.startsWith("columnar:")));
+        assertTrue(cache.invalidate("c"));
+        assertFalse(cache.invalidate("c"));
+        assertEquals(0, cache.stats().weightBytes());
+    }
+
+    @Test
+    void rejectsNonPositiveBounds() {
+        assertThrows(IllegalArgumentException.class, () -> new LruTtlCache<String, String>(0, 100));
+        assertThrows(IllegalArgumentException.class, () -> new LruTtlCache<String, String>(10, 0));
+    }
+}
@@ -0,0 +1,104 @@
+package com.truenorth.backend.cache;
+
+import com.truenorth.backend.dto.ColumnarResultDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QueryResultCacheTest {
+
+    private static final List<Map<String, Object>> ROWS = List.of(Map.of("state", "CA", "policies", 12L));
+
+    private final QueryResultCache cache = cache(true, Duration.ofMinutes(5));
+
+    @Test
+    void reformattedQueryHitsTheSameEntry() {
+        List<Map<String, Object>> cached = cache.put("SELECT state, COUNT(*) AS policies FROM insurance.autoinsurance "
+                + "WHERE state IN ('CA', 'NY') GROUP BY state", ROWS);
+
+        assertSame(cached, cache.get("select state, count(*) as policies\nfrom autoinsurance\n"
+                + "where state in ('NY','CA') group by state;"));
+    }
+
+    @Test
+    void differentLiteralMisses() {
+        cache.put("SELECT * FROM autoinsurance WHERE state = 'CA'", ROWS);
+
+        assertNull(cache.get("SELECT * FROM autoinsurance WHERE state = 'ca'"));
+        assertNull(cache.get("SELECT * FROM autoinsurance WHERE state = 'NY'"));
+    }
+
+    @Test
+    void cachedRowsAreReadOnly() {
+        List<Map<String, Object>> cached = cache.put("SELECT * FROM autoinsurance", new ArrayList<>(ROWS));
+
+        assertThrows(UnsupportedOperationException.class, () -> cached.add(Map.of()));
+    }
+
+    @Test
+    void keepsColumnarResultsApartFromRows() {
+        String sql = "SELECT state FROM autoinsurance";
+        ColumnarResultDTO columnar = new ColumnarResultDTO(1, List.of(new ColumnarResultDTO.Column(
+                "state", "text", ColumnarResultDTO.Encoding.STRING, new String[]{"CA"}, null, null)));
+
+        cache.putColumnar(sql, columnar);
+
+        assertNull(cache.get(sql));
+        assertSame(columnar, cache.getColumnar(sql));
+        cache.put(sql, ROWS);
+        assertTrue(cache.invalidate(sql));
+        assertNull(cache.get(sql));
+        assertNull(cache.getColumnar(sql));
+    }
+
+    @Test
+    void aggregateResultsOutliveTheDefaultTtl() {
+        QueryResultCache shortLived = cache(true, Duration.ofNanos(1));
+        shortLived.put("SELECT * FROM autoinsurance", ROWS);
+        shortLived.put("SELECT state, COUNT(*) FROM autoinsurance GROUP BY state", ROWS);
+
+        assertNull(shortLived.get("SELECT * FROM autoinsurance"));
+        assertNotNull(shortLived.get("SELECT state, COUNT(*) FROM autoinsurance GROUP BY state"));
+    }
+
+    @Test
+    void disabledCacheStoresNothing() {
+        QueryResultCache disabled = cache(false, Duration.ofMinutes(5));
+        disabled.put("SELECT * FROM autoinsurance", ROWS);
+
+        assertNull(disabled.get("SELECT * FROM autoinsurance"));
+        assertEquals(0, disabled.stats().entries());
+    }
+
+    @Test
+    void evictsByEstimatedSize() {
+        QueryResultCache small = new QueryResultCache(true, 100, 2_000, Duration.ofMinutes(5), Duration.ofMinutes(30),
+                "insurance", new SimpleMeterRegistry());
+        small.put("SELECT * FROM autoinsurance WHERE state = 'CA'", ROWS);
+        small.put("SELECT * FROM autoinsurance WHERE state = 'NY'", ROWS);
+        List<Map<String, Object>> large = Collections.nCopies(6, ROWS.get(0));
+
+        small.put("SELECT * FROM autoinsurance WHERE state = 'TX'", large);
+
+        assertNull(small.get("SELECT * FROM autoinsurance WHERE state = 'CA'"));
+        assertNotNull(small.get("SELECT * FROM autoinsurance WHERE state = 'NY'"));
+        assertNotNull(small.get("SELECT * FROM autoinsurance WHERE state = 'TX'"));
+        assertTrue(small.stats().weightBytes() <= 2_000);
+    }
+
+    private static QueryResultCache cache(boolean enabled, Duration ttl) {
+        return new QueryResultCache(enabled, 100, 1 << 20, ttl, Duration.ofMinutes(30), "insurance", new SimpleMeterRegistry());
+    }
+}
@@ -0,0 +1,114 @@
+package com.truenorth.backend.chart;
+
+import com.truenorth.backend.dto.ChatResponseDTO;
+import com.truenorth.backend.dto.ChatResponseDTO.ChartConfigDTO;
+import com.truenorth.backend.dto.ColumnarResultDTO;
+import com.truenorth.backend.sql.SqlGuard;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Parameter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChartDownsamplerTest {
+
+    // The defaults the application runs with, read from the constructors' @Value annotations
+    private static final int MAX_POINTS = Integer.parseInt(defaultOf(ChartDownsampler.class, "chat.chart.downsample.max-points"));
+    private static final int GUARD_MAX_LIMIT = Integer.parseInt(defaultOf(SqlGuard.class, "chat.sql.guard.max-limit"));
+
+    private final ChartDownsampler downsampler = new ChartDownsampler(true, MAX_POINTS);
+
+    @Test
+    void reducesALineChartOfAsManyRowsAsTheGuardAllows() {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < GUARD_MAX_LIMIT; i++) {
+            rows.add(Map.of("day", i, "premium", Math.sin(i / 10.0)));
+        }
+        ChatResponseDTO dto = response("line", chart("day", "premium"));
+        dto.setData(rows);
+
+        downsampler.reduce(dto);
+
+        assertNotNull(dto.getReduction());
+        assertEquals(ChartDownsampler.LINE_METHOD, dto.getReduction().getMethod());
+        assertEquals(GUARD_MAX_LIMIT, dto.getReduction().getOriginalRows());
+        assertEquals(dto.getData().size(), dto.getReduction().getReturnedRows());
+        assertTrue(dto.getData().size() <= MAX_POINTS);
+        assertSame(rows.get(0), dto.getData().get(0));
+        assertSame(rows.get(rows.size() - 1), dto.getData().get(dto.getData().size() - 1));
+    }
+
+    @Test
+    void reducesAColumnarScatterOfAsManyRowsAsTheGuardAllows() {
+        Random random = new Random(3);
+        double[] xs = random.doubles(GUARD_MAX_LIMIT).toArray();
+        double[] ys = random.doubles(GUARD_MAX_LIMIT).toArray();
+        ChartConfigDTO config = new ChartConfigDTO();
+        config.setXField("age");
+        config.setYField("claims");
+        ChatResponseDTO dto = response("scatter", config);
+        dto.setColumnar(new ColumnarResultDTO(GUARD_MAX_LIMIT, List.of(
+                new ColumnarResultDTO.Column("age", "float8", ColumnarResultDTO.Encoding.FLOAT64, xs, null, null),
+                new ColumnarResultDTO.Column("claims", "float8", ColumnarResultDTO.Encoding.FLOAT64, ys, null, null))));
+
+        downsampler.reduce(dto);
+
+        assertNotNull(dto.getReduction());
+        assertEquals(ChartDownsampler.SCATTER_METHOD, dto.getReduction().getMethod());
+        int returned = dto.getColumnar().getRowCount();
+        assertTrue(returned <= MAX_POINTS);
+        assertEquals(returned, ((double[]) dto.getColumnar().getColumns().get(0).getValues()).length);
+        assertEquals(returned, ((double[]) dto.getColumnar().getColumns().get(1).getValues()).length);
+    }
+
+    @Test
+    void leavesBarChartsAlone() {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < GUARD_MAX_LIMIT; i++) {
+            rows.add(Map.of("state", "S" + i, "policies", i));
+        }
+        ChatResponseDTO dto = response("bar", chart("state", "policies"));
+        dto.setData(rows);
+
+        downsampler.reduce(dto);
+
+        assertNull(dto.getReduction());
+        assertSame(rows, dto.getData());
+    }
+
+    private static ChatResponseDTO response(String visualizationType, ChartConfigDTO config) {
+        ChatResponseDTO dto = new ChatResponseDTO();
+        dto.setVisualizationType(visualizationType);
+        dto.setChartConfig(config);
+        return dto;
+    }
+
+    private static ChartConfigDTO chart(String xAxisField, String yAxisField) {
+        ChartConfigDTO config = new ChartConfigDTO();
+        config.setXAxisField(xAxisField);
+        config.setYAxisField(yAxisField);
+        return config;
+    }
+
+    private static String defaultOf(Class<?> type, String key) {
+        for (Constructor<?> constructor : type.getConstructors()) {
+            for (Parameter parameter : constructor.getParameters()) {
+                Value value = parameter.getAnnotation(Value.class);
+                if (value != null && value.value().startsWith("${" + key + ":")) {
+                    return value.value().substring(key.length() + 3, value.value().length() - 1);
+                }
+            }
+        }
+        throw new IllegalArgumentException("No @Value default for " + key + " on " + type.getSimpleName());
+    }
+}
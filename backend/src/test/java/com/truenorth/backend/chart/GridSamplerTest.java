@@ -0,0 +1,43 @@
+package com.truenorth.backend.chart;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GridSamplerTest {
+
+    @Test
+    void keepsEveryPointWithinBudget() {
+        assertArrayEquals(new int[]{0, 1, 2}, GridSampler.select(new double[]{5, 1, 3}, new double[]{2, 2, 9}, 3));
+    }
+
+    @Test
+    void keepsOutlierOfADenseCloud() {
+        int n = 5000;
+        Random random = new Random(11);
+        double[] xs = random.doubles(n).toArray();
+        double[] ys = random.doubles(n).toArray();
+        xs[n / 2] = 100;
+        ys[n / 2] = -100;
+
+        int[] selected = GridSampler.select(xs, ys, 100);
+
+        assertTrue(selected.length <= 100);
+        assertTrue(Arrays.binarySearch(selected, n / 2) >= 0);
+        for (int i = 1; i < selected.length; i++) {
+            assertTrue(selected[i - 1] < selected[i]);
+        }
+    }
+
+    @Test
+    void identicalPointsCollapseToTheFirst() {
+        double[] same = new double[10];
+        Arrays.fill(same, 4);
+
+        assertArrayEquals(new int[]{0}, GridSampler.select(same, same, 4));
+    }
+}
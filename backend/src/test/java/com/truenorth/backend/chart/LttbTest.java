@@ -0,0 +1,68 @@
+package com.truenorth.backend.chart;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LttbTest {
+
+    @Test
+    void keepsEveryPointWhenThresholdIsNotBelowSize() {
+        double[] xs = xs(5);
+        double[] ys = {3, 1, 4, 1, 5};
+
+        assertArrayEquals(new int[]{0, 1, 2, 3, 4}, Lttb.select(xs, ys, 5));
+        assertArrayEquals(new int[]{0, 1, 2, 3, 4}, Lttb.select(xs, ys, 50));
+        assertArrayEquals(new int[]{0, 1, 2, 3, 4}, Lttb.select(xs, ys, 2));
+    }
+
+    @Test
+    void keepsEndpointsAndOnePointFromEachBucket() {
+        int n = 1003;
+        int threshold = 17;
+        Random random = new Random(7);
+        double[] ys = random.doubles(n).toArray();
+
+        int[] selected = Lttb.select(xs(n), ys, threshold);
+
+        assertEquals(threshold, selected.length);
+        assertEquals(0, selected[0]);
+        assertEquals(n - 1, selected[threshold - 1]);
+        double bucketSize = (double) (n - 2) / (threshold - 2);
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            int start = (int) Math.floor(bucket * bucketSize) + 1;
+            int end = (int) Math.floor((bucket + 1) * bucketSize) + 1;
+            int chosen = selected[bucket + 1];
+            assertTrue(chosen >= start && chosen < end, "bucket " + bucket + " chose " + chosen);
+        }
+    }
+
+    @Test
+    void keepsTheSpikeInItsBucket() {
+        double[] ys = new double[11];
+        ys[5] = 100;
+
+        // Buckets of three between the endpoints: [1, 4), [4, 7), [7, 10)
+        int[] selected = Lttb.select(xs(11), ys, 5);
+
+        assertEquals(5, selected.length);
+        assertEquals(5, selected[2]);
+    }
+
+    @Test
+    void tiesKeepTheFirstPointOfTheBucket() {
+        double[] ys = new double[11];
+
+        assertArrayEquals(new int[]{0, 1, 4, 7, 10}, Lttb.select(xs(11), ys, 5));
+        assertArrayEquals(Lttb.select(xs(11), ys, 5), Lttb.select(xs(11), ys, 5));
+    }
+
+    private static double[] xs(int n) {
+        return IntStream.range(0, n).asDoubleStream().toArray();
+    }
+}
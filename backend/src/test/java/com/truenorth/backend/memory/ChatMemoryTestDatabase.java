@@ -0,0 +1,146 @@
+package com.truenorth.backend.memory;
+
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The chat memory and chat_history tables in memory, behind a JdbcTemplate and a transaction
+ * manager that understand just the statements of {@link com.truenorth.backend.config.ChatRepositoryDialect}.
+ * Like Postgres, a message containing a NUL byte is rejected with SQLSTATE 22021.
+ */
+class ChatMemoryTestDatabase {
+
+    record Row(String conversationId, String content, String type, Instant timestamp) {
+    }
+
+    private record Snapshot(List<Row> messages, Map<String, String> histories) {
+    }
+
+    final List<Row> messages = new ArrayList<>();
+    final Map<String, String> histories = new LinkedHashMap<>();
+    private final Deque<Snapshot> transactions = new ArrayDeque<>();
+
+    final JdbcTemplate jdbcTemplate = new JdbcTemplate() {
+
+        @Override
+        public <T> int[][] batchUpdate(String sql, Collection<T> batchArgs, int batchSize,
+                                       ParameterizedPreparedStatementSetter<T> setter) {
+            for (T arg : batchArgs) {
+                Object[] parameters = new Object[7];
+                try {
+                    setter.setValues(statement(parameters), arg);
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+                execute(sql, parameters);
+            }
+            return new int[0][];
+        }
+
+        @Override
+        public void query(String sql, RowCallbackHandler handler, Object... args) {
+            List<Row> rows = messages.stream()
+                    .filter(row -> row.conversationId().equals(args[0]))
+                    .sorted(Comparator.comparing(Row::timestamp))
+                    .toList();
+            if (sql.contains("LIMIT")) {
+                rows = rows.subList(Math.max(0, rows.size() - (Integer) args[1]), rows.size());
+            }
+            for (Row row : rows) {
+                try {
+                    handler.processRow(resultSet(row));
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+    };
+
+    final PlatformTransactionManager transactionManager = new PlatformTransactionManager() {
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            transactions.push(new Snapshot(new ArrayList<>(messages), new LinkedHashMap<>(histories)));
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+            transactions.pop();
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+            Snapshot before = transactions.pop();
+            messages.clear();
+            messages.addAll(before.messages());
+            histories.clear();
+            histories.putAll(before.histories());
+        }
+    };
+
+    List<String> contents(String conversationId) {
+        return messages.stream()
+                .filter(row -> row.conversationId().equals(conversationId))
+                .map(Row::content)
+                .toList();
+    }
+
+    private void execute(String sql, Object[] parameters) {
+        if (sql.contains("chat_history")) {
+            histories.putIfAbsent((String) parameters[1], (String) parameters[2]);
+            return;
+        }
+        Row row = new Row((String) parameters[1], (String) parameters[2], (String) parameters[3],
+                ((Timestamp) parameters[4]).toInstant());
+        if (row.content() != null && row.content().indexOf('\0') >= 0) {
+            throw new DataIntegrityViolationException("Batch entry rejected",
+                    new SQLException("invalid byte sequence for encoding \"UTF8\": 0x00", "22021"));
+        }
+        boolean exists = messages.stream().anyMatch(existing -> existing.conversationId().equals(row.conversationId())
+                && existing.timestamp().equals(row.timestamp()));
+        if (!sql.contains("NOT EXISTS") || !exists) {
+            messages.add(row);
+        }
+    }
+
+    private static PreparedStatement statement(Object[] parameters) {
+        return (PreparedStatement) Proxy.newProxyInstance(ChatMemoryTestDatabase.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> {
+                    if (method.getName().startsWith("set") && args != null && args.length == 2) {
+                        parameters[(Integer) args[0]] = args[1];
+                    }
+                    return null;
+                });
+    }
+
+    private static ResultSet resultSet(Row row) {
+        return (ResultSet) Proxy.newProxyInstance(ChatMemoryTestDatabase.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "getString" -> (Integer) args[0] == 1 ? row.content() : row.type();
+                    case "getTimestamp" -> Timestamp.from(row.timestamp());
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
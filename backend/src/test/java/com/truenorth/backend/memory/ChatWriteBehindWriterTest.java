@@ -0,0 +1,144 @@
+package com.truenorth.backend.memory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatWriteBehindWriterTest {
+
+    private static final Instant T0 = Instant.parse("2026-03-01T10:00:00Z");
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final ChatMemoryTestDatabase database = new ChatMemoryTestDatabase();
+
+    @TempDir
+    Path journalDir;
+
+    private ChatWriteBehindWriter writer;
+
+    @AfterEach
+    void stopWriter() {
+        if (writer != null) {
+            writer.stop();
+        }
+    }
+
+    @Test
+    void replaysLeftoverSegmentsExactlyOnce() throws IOException {
+        // The first message committed before the crash, the segment was never deleted
+        database.messages.add(new ChatMemoryTestDatabase.Row("c1", "first", "USER", T0));
+        Files.write(journalDir.resolve("flushing-0000000000001-000000.jsonl"), List.of(
+                message("c1", "first", "USER", T0),
+                history("c1", "Policies by state"),
+                message("c1", "second", "ASSISTANT", T0.plusMillis(1))));
+        Files.write(journalDir.resolve("active.jsonl"), List.of(
+                message("c1", "third", "USER", T0.plusMillis(2)),
+                "{\"message\":{\"conversationId\":\"c1\",\"type\":\"US"));
+
+        writer = start();
+
+        assertEquals(List.of("first", "second", "third"), database.contents("c1"));
+        assertEquals("Policies by state", database.histories.get("c1"));
+        assertEquals(List.of("active.jsonl"), journalFiles());
+
+        writer.stop();
+        writer = start();
+
+        assertEquals(List.of("first", "second", "third"), database.contents("c1"));
+    }
+
+    @Test
+    void deadLettersPoisonRecordAndWritesTheRestOfTheBatch() throws IOException {
+        writer = start();
+        writer.enqueueHistory("c1", "Claims");
+        writer.enqueueMessages("c1", List.of(new UserMessage("before"), new UserMessage("bad\0byte"),
+                new AssistantMessage("after")));
+        writer.enqueueMessages("c2", List.of(new UserMessage("other")));
+
+        writer.flush();
+
+        assertEquals(List.of("before", "after"), database.contents("c1"));
+        assertEquals(List.of("other"), database.contents("c2"));
+        assertEquals("Claims", database.histories.get("c1"));
+        List<String> deadLetters = Files.readAllLines(journalDir.resolve("dead-letter.ndjson"));
+        assertEquals(1, deadLetters.size());
+        assertTrue(deadLetters.get(0).contains("bad\\u0000byte"), deadLetters.get(0));
+        assertTrue(writer.unflushedMessages("c1").isEmpty());
+        assertFalse(journalFiles().stream().anyMatch(file -> file.startsWith("flushing-")));
+    }
+
+    @Test
+    void deadLetterFileIsNotReplayed() throws IOException {
+        writer = start();
+        writer.enqueueMessages("c1", List.of(new UserMessage("bad\0byte")));
+        writer.flush();
+        writer.stop();
+
+        writer = start();
+
+        assertTrue(database.contents("c1").isEmpty());
+        assertTrue(Files.exists(journalDir.resolve("dead-letter.ndjson")));
+    }
+
+    @Test
+    void unflushedMessagesAreVisibleInOrderUntilFlushed() {
+        writer = start();
+        writer.enqueueMessages("c1", List.of(new UserMessage("q1"), new AssistantMessage("a1")));
+        writer.enqueueMessages("c2", List.of(new UserMessage("other")));
+
+        List<ChatWriteBehindWriter.PendingMessage> pending = writer.unflushedMessages("c1");
+
+        assertEquals(List.of("q1", "a1"), pending.stream().map(ChatWriteBehindWriter.PendingMessage::content).toList());
+        assertTrue(pending.get(0).timestamp().isBefore(pending.get(1).timestamp()));
+        assertEquals(2, writer.unflushedConversationIds().size());
+
+        writer.flush();
+
+        assertTrue(writer.unflushedMessages("c1").isEmpty());
+        assertEquals(List.of("q1", "a1"), database.contents("c1"));
+    }
+
+    private ChatWriteBehindWriter start() {
+        ChatWriteBehindWriter started = new ChatWriteBehindWriter(database.jdbcTemplate, database.transactionManager,
+                objectMapper, "insurance", journalDir, Duration.ofHours(1), 500, 1000, Duration.ofSeconds(1));
+        try {
+            started.start();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return started;
+    }
+
+    private List<String> journalFiles() throws IOException {
+        try (Stream<Path> files = Files.list(journalDir)) {
+            return files.map(file -> file.getFileName().toString()).sorted().toList();
+        }
+    }
+
+    private String message(String conversationId, String content, String type, Instant timestamp) throws IOException {
+        return objectMapper.writeValueAsString(Map.of("message", new ChatWriteBehindWriter.PendingMessage(
+                conversationId, type, content, timestamp)));
+    }
+
+    private String history(String conversationId, String title) throws IOException {
+        return objectMapper.writeValueAsString(Map.of("history", new ChatWriteBehindWriter.PendingHistory(
+                conversationId, title, LocalDateTime.parse("2026-03-01T10:00:00"))));
+    }
+}
@@ -0,0 +1,82 @@
+package com.truenorth.backend.memory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.truenorth.backend.config.ChatRepositoryDialect;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class WriteBehindChatMemoryRepositoryTest {
+
+    private final ChatMemoryTestDatabase database = new ChatMemoryTestDatabase();
+
+    @TempDir
+    Path journalDir;
+
+    private ChatWriteBehindWriter writer;
+    private WriteBehindChatMemoryRepository repository;
+
+    @BeforeEach
+    void start() throws IOException {
+        writer = new ChatWriteBehindWriter(database.jdbcTemplate, database.transactionManager,
+                new ObjectMapper().findAndRegisterModules(), "insurance", journalDir, Duration.ofHours(1), 500, 1000,
+                Duration.ofSeconds(1));
+        writer.start();
+        repository = new WriteBehindChatMemoryRepository(null, writer, database.jdbcTemplate,
+                new ChatRepositoryDialect("insurance"), 100, 1 << 20, Duration.ofMinutes(5));
+    }
+
+    @AfterEach
+    void stop() {
+        writer.stop();
+    }
+
+    @Test
+    void loadsFlushedThenUnflushedMessagesInTimestampOrder() {
+        repository.append("c1", List.of(new UserMessage("q1"), new AssistantMessage("a1")));
+        writer.flush();
+        repository.append("c1", List.of(new UserMessage("q2"), new AssistantMessage("a2")));
+
+        assertEquals(List.of("q1", "a1", "q2", "a2"), texts(repository.findByConversationId("c1")));
+        assertEquals(List.of("a1", "q2", "a2"), texts(repository.findRecentByConversationId("c1", 3)));
+    }
+
+    @Test
+    void messageCommittedWhileLoadingIsReturnedOnce() {
+        repository.append("c1", List.of(new UserMessage("q1")));
+        writer.flush();
+        repository.append("c1", List.of(new AssistantMessage("a1")));
+        // The batch holding a1 commits between reading the unflushed messages and the table
+        ChatWriteBehindWriter.PendingMessage a1 = writer.unflushedMessages("c1").get(0);
+        database.messages.add(new ChatMemoryTestDatabase.Row("c1", a1.content(), a1.type(), a1.timestamp()));
+
+        assertEquals(List.of("q1", "a1"), texts(repository.findByConversationId("c1")));
+    }
+
+    @Test
+    void appendExtendsACachedConversation() {
+        repository.append("c1", List.of(new UserMessage("q1")));
+        writer.flush();
+        assertEquals(List.of("q1"), texts(repository.findByConversationId("c1")));
+
+        repository.append("c1", List.of(new AssistantMessage("a1")));
+
+        assertEquals(List.of("q1", "a1"), texts(repository.findByConversationId("c1")));
+        assertEquals(List.of("a1"), texts(repository.findRecentByConversationId("c1", 1)));
+    }
+
+    private static List<String> texts(List<Message> messages) {
+        return messages.stream().map(Message::getText).toList();
+    }
+}
@@ -0,0 +1,66 @@
+package com.truenorth.backend.model;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StoredChatResponseTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    @Test
+    void generatedQueryIsNotPartOfTheResponse() throws Exception {
+        ChatResponse response = response();
+
+        JsonNode json = objectMapper.readTree(objectMapper.writeValueAsString(response));
+
+        assertFalse(json.has("generatedQuery"));
+        assertNull(objectMapper.readValue("{\"sqlQuery\":\"SELECT 1\",\"generatedQuery\":\"SELECT 2\"}",
+                ChatResponse.class).getGeneratedQuery());
+    }
+
+    @Test
+    void storesGeneratedQueryNextToTheResponseFields() throws Exception {
+        String json = objectMapper.writeValueAsString(StoredChatResponse.of(response()));
+
+        JsonNode node = objectMapper.readTree(json);
+        assertEquals("SELECT state FROM insurance.autoinsurance LIMIT 1000", node.get("sqlQuery").asText());
+        assertEquals("SELECT state FROM autoinsurance", node.get("generatedQuery").asText());
+
+        ChatResponse read = objectMapper.readValue(json, StoredChatResponse.class).toChatResponse();
+        assertEquals("SELECT state FROM insurance.autoinsurance LIMIT 1000", read.getQuery());
+        assertEquals("SELECT state FROM autoinsurance", read.getGeneratedQuery());
+        assertEquals("bar", read.getVisualizationType());
+        assertEquals("state", read.getChartConfig().getXAxisField());
+        assertTrue(read.isValid());
+    }
+
+    @Test
+    void readsResponsesStoredWithoutGeneratedQuery() throws Exception {
+        ChatResponse read = objectMapper.readValue("{\"sqlQuery\":\"SELECT 1\",\"isValid\":true}",
+                StoredChatResponse.class).toChatResponse();
+
+        assertEquals("SELECT 1", read.getQuery());
+        assertTrue(read.isValid());
+        assertNull(read.getGeneratedQuery());
+    }
+
+    private static ChatResponse response() {
+        ChatResponse response = new ChatResponse();
+        response.setQuery("SELECT state FROM insurance.autoinsurance LIMIT 1000");
+        response.setGeneratedQuery("SELECT state FROM autoinsurance");
+        response.setVisualizationType("bar");
+        ChatResponse.ChartConfig chartConfig = new ChatResponse.ChartConfig();
+        chartConfig.setXAxisField("state");
+        response.setChartConfig(chartConfig);
+        response.setValid(true);
+        return response;
+    }
+}
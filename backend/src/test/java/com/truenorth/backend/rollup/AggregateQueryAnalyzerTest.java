@@ -0,0 +1,126 @@
+package com.truenorth.backend.rollup;
+
+import com.truenorth.backend.rollup.AggregateQueryAnalyzer.AggregateCall;
+import com.truenorth.backend.rollup.AggregateQueryAnalyzer.AggregateQuery;
+import com.truenorth.backend.rollup.AggregateQueryAnalyzer.Kind;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AggregateQueryAnalyzerTest {
+
+    static final String SCHEMA = "insurance";
+    static final Map<String, Set<String>> COLUMNS = Map.of(
+            "autoinsurance", Set.of("state", "gender", "income", "premium", "claims"));
+
+    @Test
+    void readsUnaliasedTable() {
+        AggregateQuery query = analyze("SELECT state, SUM(premium) FROM autoinsurance GROUP BY state");
+
+        assertEquals("autoinsurance", query.table());
+        assertNull(query.alias());
+        assertEquals(Set.of("state"), query.dimensions());
+        assertEquals(Set.of("premium"), query.measures());
+        AggregateCall call = query.calls().get(0);
+        assertEquals(Kind.MEASURE, call.kind());
+        assertEquals("premium", call.column());
+        assertNull(call.cast());
+    }
+
+    @Test
+    void readsSchemaQualifiedAliasedTable() {
+        AggregateQuery query = analyze("SELECT a.state, AVG(a.premium) FROM insurance.autoinsurance AS a GROUP BY a.state");
+
+        assertEquals("a", query.alias());
+        assertEquals("insurance.autoinsurance", "SELECT a.state, AVG(a.premium) FROM insurance.autoinsurance AS a GROUP BY a.state"
+                .substring(query.tableStart(), query.tableEnd()));
+        assertEquals(Set.of("state"), query.dimensions());
+        assertEquals(Set.of("premium"), query.measures());
+    }
+
+    @Test
+    void classifiesCountStarDistinctAndExpressions() {
+        List<AggregateCall> calls = analyze("SELECT state, COUNT(*), COUNT(DISTINCT gender), AVG(premium * 2) "
+                + "FROM autoinsurance GROUP BY state").calls();
+
+        assertEquals(Kind.COUNT_STAR, calls.get(0).kind());
+        assertEquals(Kind.EXPRESSION, calls.get(1).kind());
+        assertTrue(calls.get(1).distinct());
+        assertEquals("gender", calls.get(1).argument());
+        assertEquals(Kind.EXPRESSION, calls.get(2).kind());
+        assertEquals("premium * 2", calls.get(2).argument());
+    }
+
+    @Test
+    void columnsInsideExpressionsAreDimensions() {
+        AggregateQuery query = analyze("SELECT state, COUNT(DISTINCT gender), AVG(premium * 2) FROM autoinsurance GROUP BY state");
+
+        assertEquals(Set.of("gender", "premium", "state"), query.dimensions());
+        assertEquals(Set.of(), query.measures());
+    }
+
+    @Test
+    void aggregateInHavingIsAMeasure() {
+        AggregateQuery query = analyze("SELECT state FROM autoinsurance GROUP BY state HAVING SUM(premium) > 1000");
+
+        assertEquals(Set.of("state"), query.dimensions());
+        assertEquals(Set.of("premium"), query.measures());
+        assertEquals(1, query.calls().size());
+    }
+
+    @Test
+    void filteredColumnIsADimension() {
+        AggregateQuery query = analyze("SELECT state, SUM(premium) FROM autoinsurance WHERE gender = 'F' GROUP BY state");
+
+        assertEquals(Set.of("gender", "state"), query.dimensions());
+        assertEquals(Set.of("premium"), query.measures());
+    }
+
+    @Test
+    void widelyCastColumnStaysAMeasure() {
+        List<AggregateCall> calls = analyze("SELECT SUM(claims::numeric), AVG(income::DOUBLE  PRECISION) FROM autoinsurance").calls();
+
+        assertEquals(Kind.MEASURE, calls.get(0).kind());
+        assertEquals("numeric", calls.get(0).cast());
+        assertEquals(Kind.MEASURE, calls.get(1).kind());
+        assertEquals("double precision", calls.get(1).cast());
+    }
+
+    @Test
+    void narrowlyCastColumnIsAnExpression() {
+        AggregateQuery query = analyze("SELECT state, SUM(premium::int), AVG(income::numeric(10,2)) FROM autoinsurance GROUP BY state");
+
+        assertEquals(Kind.EXPRESSION, query.calls().get(0).kind());
+        assertEquals(Kind.EXPRESSION, query.calls().get(1).kind());
+        assertEquals(Set.of("income", "premium", "state"), query.dimensions());
+        assertEquals(Set.of(), query.measures());
+    }
+
+    @Test
+    void rejectsQueriesItCannotRecompute() {
+        for (String sql : List.of(
+                "SELECT state FROM autoinsurance GROUP BY state",
+                "SELECT state, SUM(premium) FROM autoinsurance a JOIN customer c ON a.id = c.id GROUP BY state",
+                "SELECT state, SUM(premium) FROM other_table GROUP BY state",
+                "SELECT state, SUM(premium) FROM public.autoinsurance GROUP BY state",
+                "SELECT DISTINCT state, SUM(premium) FROM autoinsurance GROUP BY state",
+                "SELECT state, SUM(premium) OVER () FROM autoinsurance",
+                "SELECT * FROM autoinsurance",
+                "SELECT state, SUM(premium) FROM (SELECT * FROM autoinsurance) t GROUP BY state")) {
+            assertTrue(AggregateQueryAnalyzer.analyze(sql, SCHEMA, COLUMNS).isEmpty(), sql);
+        }
+    }
+
+    static AggregateQuery analyze(String sql) {
+        Optional<AggregateQuery> query = AggregateQueryAnalyzer.analyze(sql, SCHEMA, COLUMNS);
+        assertTrue(query.isPresent(), sql);
+        return query.get();
+    }
+}
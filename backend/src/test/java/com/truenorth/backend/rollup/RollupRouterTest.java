@@ -0,0 +1,93 @@
+package com.truenorth.backend.rollup;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RollupRouterTest {
+
+    private static final Rollup BY_STATE_AND_GENDER = rollup("rollup_autoinsurance_1", "gender", "state");
+
+    @Test
+    void aliasesRollupAsTheUnaliasedTable() {
+        assertEquals("SELECT state, SUM(rollup_sum_premium) FROM insurance.rollup_autoinsurance_1 AS autoinsurance GROUP BY state",
+                rewrite("SELECT state, SUM(premium) FROM autoinsurance GROUP BY state", BY_STATE_AND_GENDER));
+    }
+
+    @Test
+    void keepsTheQuerysOwnAlias() {
+        assertEquals("SELECT a.state, COALESCE(SUM(rollup_rows), 0)::bigint FROM insurance.rollup_autoinsurance_1 AS a GROUP BY a.state",
+                rewrite("SELECT a.state, COUNT(*) FROM insurance.autoinsurance AS a GROUP BY a.state", BY_STATE_AND_GENDER));
+    }
+
+    @Test
+    void recomputesCountAndAverageOfAMeasure() {
+        assertEquals("SELECT state, COALESCE(SUM(rollup_count_premium), 0)::bigint, "
+                        + "(SUM(rollup_sum_premium) / NULLIF(SUM(rollup_count_premium), 0)) "
+                        + "FROM insurance.rollup_autoinsurance_1 AS autoinsurance GROUP BY state",
+                rewrite("SELECT state, COUNT(premium), AVG(premium) FROM autoinsurance GROUP BY state", BY_STATE_AND_GENDER));
+    }
+
+    @Test
+    void leavesCountDistinctOfADimensionAlone() {
+        assertEquals("SELECT state, COUNT(DISTINCT gender) FROM insurance.rollup_autoinsurance_1 AS autoinsurance GROUP BY state",
+                rewrite("SELECT state, COUNT(DISTINCT gender) FROM autoinsurance GROUP BY state", BY_STATE_AND_GENDER));
+    }
+
+    @Test
+    void weighsAnAverageOverAnExpressionByRowCount() {
+        assertEquals("SELECT state, (SUM((CASE WHEN gender = 'F' THEN 1 ELSE 0 END) * rollup_rows)::numeric "
+                        + "/ NULLIF(SUM(CASE WHEN (CASE WHEN gender = 'F' THEN 1 ELSE 0 END) IS NOT NULL THEN rollup_rows END), 0)) "
+                        + "FROM insurance.rollup_autoinsurance_1 AS autoinsurance GROUP BY state",
+                rewrite("SELECT state, AVG(CASE WHEN gender = 'F' THEN 1 ELSE 0 END) FROM autoinsurance GROUP BY state",
+                        BY_STATE_AND_GENDER));
+    }
+
+    @Test
+    void rewritesAggregatesInHaving() {
+        assertEquals("SELECT state FROM insurance.rollup_autoinsurance_1 AS autoinsurance GROUP BY state "
+                        + "HAVING SUM(rollup_sum_premium) > 1000",
+                rewrite("SELECT state FROM autoinsurance GROUP BY state HAVING SUM(premium) > 1000", BY_STATE_AND_GENDER));
+    }
+
+    @Test
+    void keepsFilterOnAnUngroupedDimension() {
+        assertEquals("SELECT state, SUM(rollup_sum_premium) FROM insurance.rollup_autoinsurance_1 AS autoinsurance "
+                        + "WHERE gender = 'F' GROUP BY state",
+                rewrite("SELECT state, SUM(premium) FROM autoinsurance WHERE gender = 'F' GROUP BY state", BY_STATE_AND_GENDER));
+    }
+
+    @Test
+    void appliesAWideningCastAfterReaggregating() {
+        assertEquals("SELECT state, SUM(rollup_sum_premium)::numeric, "
+                        + "(SUM(rollup_sum_premium)::float8 / NULLIF(SUM(rollup_count_premium), 0)) "
+                        + "FROM insurance.rollup_autoinsurance_1 AS autoinsurance GROUP BY state",
+                rewrite("SELECT state, SUM(premium::numeric), AVG(premium::float8) FROM autoinsurance GROUP BY state",
+                        BY_STATE_AND_GENDER));
+    }
+
+    @Test
+    void castsEachGroupedValueForANarrowingCast() {
+        // premium::int rounds every source value, so premium has to be grouped on rather than summed
+        Rollup byPremium = rollup("rollup_autoinsurance_2", "premium", "state");
+
+        assertEquals("SELECT state, SUM((premium::int) * rollup_rows) "
+                        + "FROM insurance.rollup_autoinsurance_2 AS autoinsurance GROUP BY state",
+                rewrite("SELECT state, SUM(premium::int) FROM autoinsurance GROUP BY state", byPremium));
+    }
+
+    private static String rewrite(String sql, Rollup rollup) {
+        return RollupRouter.rewrite(sql, AggregateQueryAnalyzerTest.analyze(sql), rollup, AggregateQueryAnalyzerTest.SCHEMA);
+    }
+
+    private static Rollup rollup(String name, String... dimensions) {
+        TreeSet<String> grouped = new TreeSet<>(Set.of(dimensions));
+        Set<String> measures = new TreeSet<>(Set.of("claims", "income", "premium"));
+        measures.removeAll(grouped);
+        return new Rollup(name, "autoinsurance", grouped, measures, 10, Instant.EPOCH);
+    }
+}
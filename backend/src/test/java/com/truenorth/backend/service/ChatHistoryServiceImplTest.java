@@ -0,0 +1,136 @@
+package com.truenorth.backend.service;
+
+import com.truenorth.backend.dto.ChatHistoryDTO;
+import com.truenorth.backend.dto.CursorPage;
+import com.truenorth.backend.repository.ChatHistoryRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatHistoryServiceImplTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2026, 3, 1, 10, 0);
+    private static final Comparator<ChatHistoryDTO> NEWEST_FIRST = Comparator
+            .comparing(ChatHistoryDTO::getCreatedAt).thenComparing(ChatHistoryDTO::getConversationId).reversed();
+
+    private final List<ChatHistoryDTO> table = new ArrayList<>();
+    private final List<Integer> fetchedLimits = new ArrayList<>();
+    private final ChatHistoryServiceImpl service = new ChatHistoryServiceImpl(repository());
+
+    @Test
+    void firstPageFetchesOneExtraRowToFindTheNextPage() {
+        for (int i = 0; i < 5; i++) {
+            table.add(history("c" + i, T0.plusMinutes(i)));
+        }
+
+        CursorPage<ChatHistoryDTO> page = service.getChatHistory(null, 2);
+
+        assertEquals(List.of("c4", "c3"), ids(page.getItems()));
+        assertNotNull(page.getNextCursor());
+        assertEquals(List.of(3), fetchedLimits);
+    }
+
+    @Test
+    void pageThatExactlyFillsTheLimitIsTheLast() {
+        for (int i = 0; i < 4; i++) {
+            table.add(history("c" + i, T0.plusMinutes(i)));
+        }
+
+        CursorPage<ChatHistoryDTO> first = service.getChatHistory("", 2);
+        CursorPage<ChatHistoryDTO> second = service.getChatHistory(first.getNextCursor(), 2);
+
+        assertEquals(List.of("c3", "c2"), ids(first.getItems()));
+        assertEquals(List.of("c1", "c0"), ids(second.getItems()));
+        assertNull(second.getNextCursor());
+    }
+
+    @Test
+    void walksRowsSharingATimestampWithoutSkippingOrRepeating() {
+        Random random = new Random(23);
+        for (int i = 0; i < 40; i++) {
+            // Eight rows per timestamp, with ids in no particular order
+            table.add(history(Integer.toHexString(random.nextInt(1 << 20)) + "-" + i,
+                    T0.plusSeconds(i / 8).plusNanos(i / 8 * 1_000)));
+        }
+        Collections.shuffle(table, random);
+
+        for (int limit : new int[]{1, 3, 8, 9, 40, 41}) {
+            List<String> seen = new ArrayList<>();
+            String cursor = null;
+            int pages = 0;
+            do {
+                CursorPage<ChatHistoryDTO> page = service.getChatHistory(cursor, limit);
+                assertTrue(page.getItems().size() <= limit);
+                seen.addAll(ids(page.getItems()));
+                cursor = page.getNextCursor();
+                assertTrue(++pages <= table.size() + 1, "cursor does not advance");
+            } while (cursor != null);
+
+            assertEquals(ids(table.stream().sorted(NEWEST_FIRST).toList()), seen, "limit " + limit);
+            Set<String> distinct = new HashSet<>(seen);
+            assertEquals(table.size(), distinct.size());
+        }
+    }
+
+    @Test
+    void emptyHistoryHasNoNextPage() {
+        CursorPage<ChatHistoryDTO> page = service.getChatHistory(null, 10);
+
+        assertEquals(List.of(), page.getItems());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void rejectsMalformedCursor() {
+        assertThrows(IllegalArgumentException.class, () -> service.getChatHistory("bm90LWEtY3Vyc29y", 10));
+    }
+
+    /**
+     * The repository's two keyset queries over {@link #table}, with the same ordering and tie-breaking.
+     */
+    private ChatHistoryRepository repository() {
+        return (ChatHistoryRepository) Proxy.newProxyInstance(ChatHistoryRepository.class.getClassLoader(),
+                new Class<?>[]{ChatHistoryRepository.class}, (proxy, method, args) -> {
+                    int limit = ((Limit) args[args.length - 1]).max();
+                    fetchedLimits.add(limit);
+                    return switch (method.getName()) {
+                        case "findNewest" -> table.stream().sorted(NEWEST_FIRST).limit(limit).toList();
+                        case "findOlderThan" -> {
+                            LocalDateTime createdAt = (LocalDateTime) args[0];
+                            String conversationId = (String) args[1];
+                            yield table.stream()
+                                    .filter(row -> !row.getCreatedAt().isAfter(createdAt))
+                                    .filter(row -> row.getCreatedAt().isBefore(createdAt)
+                                            || row.getConversationId().compareTo(conversationId) < 0)
+                                    .sorted(NEWEST_FIRST)
+                                    .limit(limit)
+                                    .toList();
+                        }
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    };
+                });
+    }
+
+    private static ChatHistoryDTO history(String conversationId, LocalDateTime createdAt) {
+        return new ChatHistoryDTO(conversationId, "Title " + conversationId, createdAt);
+    }
+
+    private static List<String> ids(List<ChatHistoryDTO> rows) {
+        return rows.stream().map(ChatHistoryDTO::getConversationId).toList();
+    }
+}
@@ -0,0 +1,193 @@
+package com.truenorth.backend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.truenorth.backend.dto.ColumnarResultDTO;
+import com.truenorth.backend.dto.ColumnarResultDTO.Encoding;
+import com.truenorth.backend.summary.DataSummaryAccumulator;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ColumnarResultExtractorTest {
+
+    private static final int MAX_DICTIONARY_SIZE = 1024;
+
+    private final DataSummaryAccumulator summaryAccumulator = new DataSummaryAccumulator();
+    private final ColumnarResultExtractor extractor = new ColumnarResultExtractor(MAX_DICTIONARY_SIZE, summaryAccumulator);
+
+    @Test
+    void dictionaryOverflowsToPlainStringsMidResult() throws SQLException {
+        int rows = 1500;
+        List<Object[]> data = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            String policy = i == 3 ? null : "P-" + (i < 1200 ? i : i - 1200);
+            data.add(new Object[]{policy, i % 2 == 0 ? "CA" : "NY"});
+        }
+
+        ColumnarResultDTO result = extractor.extractData(resultSet(
+                new String[]{"policy", "state"}, new int[]{Types.VARCHAR, Types.VARCHAR}, data));
+
+        assertEquals(rows, result.getRowCount());
+        ColumnarResultDTO.Column policy = result.getColumns().get(0);
+        assertEquals(Encoding.STRING, policy.getEncoding());
+        assertNull(policy.getDictionary());
+        String[] policies = assertInstanceOf(String[].class, policy.getValues());
+        assertEquals(rows, policies.length);
+        for (int i = 0; i < rows; i++) {
+            assertEquals(data.get(i)[0], policies[i], "row " + i);
+        }
+
+        ColumnarResultDTO.Column state = result.getColumns().get(1);
+        assertEquals(Encoding.DICTIONARY, state.getEncoding());
+        assertEquals(List.of("CA", "NY"), state.getDictionary());
+        int[] codes = assertInstanceOf(int[].class, state.getValues());
+        assertEquals(rows, codes.length);
+        assertEquals(0, codes[0]);
+        assertEquals(1, codes[rows - 1]);
+    }
+
+    @Test
+    void dictionaryHoldsExactlyTheLimit() throws SQLException {
+        List<Object[]> data = new ArrayList<>();
+        for (int i = 0; i < MAX_DICTIONARY_SIZE * 2; i++) {
+            data.add(new Object[]{"V-" + (i % MAX_DICTIONARY_SIZE)});
+        }
+
+        ColumnarResultDTO.Column column = extractor.extractData(resultSet(
+                new String[]{"value"}, new int[]{Types.VARCHAR}, data)).getColumns().get(0);
+
+        assertEquals(Encoding.DICTIONARY, column.getEncoding());
+        assertEquals(MAX_DICTIONARY_SIZE, column.getDictionary().size());
+        assertEquals(MAX_DICTIONARY_SIZE - 1, ((int[]) column.getValues())[MAX_DICTIONARY_SIZE * 2 - 1]);
+    }
+
+    @Test
+    void allNullColumnsKeepTheirEncoding() throws SQLException {
+        List<Object[]> data = List.of(
+                new Object[]{null, null, null, null, null},
+                new Object[]{null, null, null, null, null},
+                new Object[]{null, null, null, null, null});
+
+        ColumnarResultDTO result = extractor.extractData(resultSet(
+                new String[]{"policies", "ratio", "active", "state", "premium"},
+                new int[]{Types.BIGINT, Types.DOUBLE, Types.BOOLEAN, Types.VARCHAR, Types.NUMERIC}, data));
+
+        List<ColumnarResultDTO.Column> columns = result.getColumns();
+        assertEquals(Encoding.INT64, columns.get(0).getEncoding());
+        assertArrayEquals(new int[]{0, 1, 2}, columns.get(0).getNulls());
+        assertEquals(Encoding.FLOAT64, columns.get(1).getEncoding());
+        assertArrayEquals(new int[]{0, 1, 2}, columns.get(1).getNulls());
+        assertEquals(Encoding.BOOL, columns.get(2).getEncoding());
+        assertArrayEquals(new int[]{0, 1, 2}, columns.get(2).getNulls());
+        assertEquals(Encoding.DICTIONARY, columns.get(3).getEncoding());
+        assertArrayEquals(new int[]{-1, -1, -1}, (int[]) columns.get(3).getValues());
+        assertEquals(List.of(), columns.get(3).getDictionary());
+        assertEquals(Encoding.DECIMAL, columns.get(4).getEncoding());
+        assertArrayEquals(new BigDecimal[3], (BigDecimal[]) columns.get(4).getValues());
+
+        Map<String, Object> stats = columnStats("policies");
+        assertEquals(0L, stats.get("count"));
+        assertEquals(3L, stats.get("nullCount"));
+    }
+
+    @Test
+    void readsPrimitiveColumnsWithNulls() throws SQLException {
+        List<Object[]> data = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            data.add(new Object[]{i % 10 == 0 ? null : (long) i, i / 4.0, i % 3 == 0});
+        }
+
+        ColumnarResultDTO result = extractor.extractData(resultSet(
+                new String[]{"policies", "ratio", "active"}, new int[]{Types.INTEGER, Types.REAL, Types.BIT}, data));
+
+        long[] policies = (long[]) result.getColumns().get(0).getValues();
+        assertEquals(100, policies.length);
+        assertEquals(99L, policies[99]);
+        assertArrayEquals(new int[]{0, 10, 20, 30, 40, 50, 60, 70, 80, 90}, result.getColumns().get(0).getNulls());
+        assertEquals(24.75, ((double[]) result.getColumns().get(1).getValues())[99]);
+        assertNull(result.getColumns().get(1).getNulls());
+        assertEquals(true, ((boolean[]) result.getColumns().get(2).getValues())[99]);
+        assertEquals(90L, columnStats("policies").get("count"));
+    }
+
+    @Test
+    void keepsNumericPrecisionAndScale() throws Exception {
+        BigDecimal large = new BigDecimal("12345678901234567890.123456789");
+        BigDecimal tenCents = new BigDecimal("0.10");
+        List<Object[]> data = List.of(new Object[]{large}, new Object[]{tenCents}, new Object[]{null});
+
+        ColumnarResultDTO.Column column = extractor.extractData(resultSet(
+                new String[]{"premium"}, new int[]{Types.NUMERIC}, data)).getColumns().get(0);
+
+        BigDecimal[] values = assertInstanceOf(BigDecimal[].class, column.getValues());
+        assertArrayEquals(new BigDecimal[]{large, tenCents, null}, values);
+        assertEquals("[12345678901234567890.123456789,0.10,null]", new ObjectMapper().writeValueAsString(values));
+        assertEquals(2L, columnStats("premium").get("count"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> columnStats(String column) {
+        Map<String, Object> columns = (Map<String, Object>) summaryAccumulator.toSummary(null).getAdditionalStats().get("columns");
+        return (Map<String, Object>) columns.get(column);
+    }
+
+    /**
+     * A forward-only result set over {@code rows}, with the getters and null tracking of a JDBC driver.
+     */
+    private static ResultSet resultSet(String[] names, int[] types, List<Object[]> rows) {
+        ResultSetMetaData metaData = (ResultSetMetaData) Proxy.newProxyInstance(ResultSetMetaData.class.getClassLoader(),
+                new Class<?>[]{ResultSetMetaData.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "getColumnCount" -> names.length;
+                    case "getColumnLabel", "getColumnName" -> names[(Integer) args[0] - 1];
+                    case "getColumnType" -> types[(Integer) args[0] - 1];
+                    case "getColumnTypeName" -> switch (types[(Integer) args[0] - 1]) {
+                        case Types.BIGINT -> "int8";
+                        case Types.INTEGER -> "int4";
+                        case Types.DOUBLE -> "float8";
+                        case Types.REAL -> "float4";
+                        case Types.NUMERIC -> "numeric";
+                        case Types.BOOLEAN, Types.BIT -> "bool";
+                        default -> "text";
+                    };
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+
+        int[] row = {-1};
+        boolean[] wasNull = {false};
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getMetaData":
+                            return metaData;
+                        case "next":
+                            return ++row[0] < rows.size();
+                        case "wasNull":
+                            return wasNull[0];
+                        default:
+                            break;
+                    }
+                    Object value = rows.get(row[0])[(Integer) args[0] - 1];
+                    wasNull[0] = value == null;
+                    return switch (method.getName()) {
+                        case "getLong" -> value == null ? 0L : ((Number) value).longValue();
+                        case "getDouble" -> value == null ? 0.0 : ((Number) value).doubleValue();
+                        case "getBoolean" -> value != null && (Boolean) value;
+                        case "getString", "getBigDecimal", "getObject" -> value;
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    };
+                });
+    }
+}
@@ -0,0 +1,57 @@
+package com.truenorth.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HistoryCursorTest {
+
+    @Test
+    void roundTripsTimestampToTheNanosecond() {
+        HistoryCursor cursor = new HistoryCursor(LocalDateTime.of(2026, 3, 1, 10, 15, 30, 123_456_789),
+                "7f3c2a9e-0b1d-4c55-9a8e-2f1e6d4b3a21");
+
+        assertEquals(cursor, HistoryCursor.decode(cursor.encode()));
+    }
+
+    @Test
+    void roundTripsWholeMinutesAndSeparatorsInTheId() {
+        HistoryCursor cursor = new HistoryCursor(LocalDateTime.of(2026, 3, 1, 10, 15), "a|b");
+
+        assertEquals(cursor, HistoryCursor.decode(cursor.encode()));
+    }
+
+    @Test
+    void encodesUrlSafely() {
+        String token = new HistoryCursor(LocalDateTime.of(2026, 3, 1, 10, 15, 30), "conversation?id=1&x").encode();
+
+        assertTrue(token.matches("[A-Za-z0-9_-]+"), token);
+    }
+
+    @Test
+    void rejectsMalformedOrTamperedCursors() {
+        List<String> tokens = List.of(
+                "",
+                "not a cursor!",
+                encode("garbage"),
+                encode("2026-03-01T10:15:30"),
+                encode("2026-03-01T10:15:30|"),
+                encode("2026-13-01T10:15:30|id"),
+                encode("|id"));
+        for (String token : tokens) {
+            assertThrows(IllegalArgumentException.class, () -> HistoryCursor.decode(token), token);
+        }
+        assertThrows(IllegalArgumentException.class, () -> HistoryCursor.decode(null));
+    }
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
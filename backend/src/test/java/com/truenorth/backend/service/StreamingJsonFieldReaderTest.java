@@ -0,0 +1,110 @@
+package com.truenorth.backend.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class StreamingJsonFieldReaderTest {
+
+    private static final String FIELD = "sqlQuery";
+
+    @Test
+    void reportsFieldOnTheChunkThatClosesIt() throws IOException {
+        String json = "{\"sqlQuery\":\"SELECT state FROM autoinsurance\",\"visualizationType\":\"bar\"}";
+        int closingQuote = json.indexOf("\",\"visualizationType");
+        StreamingJsonFieldReader reader = reader();
+
+        for (int i = 0; i < json.length(); i++) {
+            String value = reader.feed(json.substring(i, i + 1));
+            if (i < closingQuote) {
+                assertNull(value, "after " + json.substring(0, i + 1));
+            } else {
+                assertEquals("SELECT state FROM autoinsurance", value);
+            }
+        }
+    }
+
+    @Test
+    void readsFieldNameAndValueSplitAcrossChunks() throws IOException {
+        StreamingJsonFieldReader reader = reader();
+
+        assertNull(reader.feed("{\"sql"));
+        assertNull(reader.feed("Query\"  :  \"SELECT"));
+        assertNull(reader.feed(" 1"));
+        assertEquals("SELECT 1", reader.feed("\""));
+    }
+
+    @Test
+    void unescapesQuotesAndUnicodeSplitMidEscape() throws IOException {
+        String json = "{\"sqlQuery\":\"SELECT \\\"State\\\" FROM autoinsurance WHERE city = 'Caf\\u00e9' AND note <> '\\\\n'\"}";
+        String expected = "SELECT \"State\" FROM autoinsurance WHERE city = 'Café' AND note <> '\\n'";
+
+        // Cut inside \" and inside é
+        int quoteEscape = json.indexOf("\\\"State") + 1;
+        int unicodeEscape = json.indexOf("\\u00e9") + 3;
+        StreamingJsonFieldReader reader = reader();
+
+        assertNull(reader.feed(json.substring(0, quoteEscape)));
+        assertNull(reader.feed(json.substring(quoteEscape, unicodeEscape)));
+        assertEquals(expected, reader.feed(json.substring(unicodeEscape)));
+    }
+
+    @Test
+    void findsFieldAfterOtherFieldsAndIgnoresNestedOnes() throws IOException {
+        StreamingJsonFieldReader reader = reader();
+
+        assertNull(reader.feed("{\"visualizationType\":\"bar\",\"chartConfig\":{\"sqlQuery\":\"nested\","));
+        assertNull(reader.feed("\"columns\":[\"sqlQuery\",{\"sqlQuery\":\"deeper\"}]},\"explanation\":\"sqlQuery\","));
+        assertEquals("SELECT 1", reader.feed("\"sqlQuery\":\"SELECT 1\"}"));
+    }
+
+    @Test
+    void skipsTextBeforeTheObject() throws IOException {
+        StreamingJsonFieldReader reader = reader();
+
+        assertNull(reader.feed("```json\n"));
+        assertNull(reader.feed("Here it is: {\"sqlQuery\":"));
+        assertEquals("SELECT 1", reader.feed("\"SELECT 1\"}\n```"));
+    }
+
+    @Test
+    void staysUnreportedWhenTheStreamEndsInsideTheField() throws IOException {
+        StreamingJsonFieldReader reader = reader();
+
+        assertNull(reader.feed("{\"sqlQuery\":\"SELECT * FROM autoinsurance WHERE state = \\\""));
+        assertNull(reader.feed(""));
+        assertNull(reader.feed(null));
+    }
+
+    @Test
+    void staysUnreportedWhenTheObjectClosesWithoutTheField() throws IOException {
+        StreamingJsonFieldReader reader = reader();
+
+        assertNull(reader.feed("{\"isValid\":false,\"sqlQuery\":null}"));
+        assertNull(reader.feed("{\"sqlQuery\":\"SELECT 1\"}"));
+    }
+
+    @Test
+    void givesUpQuietlyOnMalformedInput() throws IOException {
+        StreamingJsonFieldReader reader = reader();
+
+        assertNull(reader.feed("{\"isValid\": tru, \"sqlQuery\": \"SELECT 1\"}"));
+        assertNull(reader.feed("{\"sqlQuery\":\"SELECT 2\"}"));
+    }
+
+    @Test
+    void keepsReportingTheValueOnceRead() throws IOException {
+        StreamingJsonFieldReader reader = reader();
+
+        assertEquals("SELECT 1", reader.feed("{\"sqlQuery\":\"SELECT 1\","));
+        assertEquals("SELECT 1", reader.feed("\"explanation\":\"x\"}"));
+    }
+
+    private static StreamingJsonFieldReader reader() throws IOException {
+        return new StreamingJsonFieldReader(new JsonFactory(), FIELD);
+    }
+}
@@ -0,0 +1,75 @@
+package com.truenorth.backend.sql;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SqlFingerprintTest {
+
+    private static final String SCHEMA = "insurance";
+
+    @Test
+    void normalizesLayoutCommentsCaseAndSchema() {
+        assertEquals("select state from autoinsurance where income > 5000",
+                normalize("SELECT  State\n  FROM insurance.\"autoinsurance\" -- all rows\n WHERE Income > 5000;"));
+    }
+
+    @Test
+    void keepsCaseOfLiterals() {
+        assertEquals("select * from autoinsurance where state = 'CA'",
+                normalize("SELECT * FROM autoinsurance WHERE state = 'CA'"));
+        assertNotEquals(normalize("SELECT * FROM autoinsurance WHERE state = 'CA'"),
+                normalize("SELECT * FROM autoinsurance WHERE state = 'ca'"));
+    }
+
+    @Test
+    void keepsCaseOfQuotedIdentifiersThatNeedQuotes() {
+        assertNotEquals(normalize("SELECT \"State\" FROM autoinsurance"), normalize("SELECT state FROM autoinsurance"));
+    }
+
+    @Test
+    void ignoresOrderOfLiteralInList() {
+        assertEquals(normalize("SELECT * FROM autoinsurance WHERE state IN ('a', 'b')"),
+                normalize("SELECT * FROM autoinsurance WHERE state IN ('b','a')"));
+    }
+
+    @Test
+    void differentLiteralsDoNotCollide() {
+        String ab = normalize("SELECT * FROM autoinsurance WHERE state IN ('a', 'b')");
+
+        assertNotEquals(ab, normalize("SELECT * FROM autoinsurance WHERE state IN ('a', 'c')"));
+        assertNotEquals(ab, normalize("SELECT * FROM autoinsurance WHERE state IN ('a', 'b', 'c')"));
+        assertNotEquals(ab, normalize("SELECT * FROM autoinsurance WHERE state IN ('a,b')"));
+        assertNotEquals(normalize("SELECT * FROM autoinsurance WHERE income > 1"),
+                normalize("SELECT * FROM autoinsurance WHERE income > 10"));
+    }
+
+    @Test
+    void leavesOrderOfInListWithExpressionsAlone() {
+        assertNotEquals(normalize("SELECT * FROM autoinsurance WHERE state IN (lower('B'), 'a')"),
+                normalize("SELECT * FROM autoinsurance WHERE state IN ('a', lower('B'))"));
+    }
+
+    @Test
+    void shapeReplacesLiteralsAndCollapsesInLists() {
+        String shape = SqlFingerprint.shape("SELECT * FROM autoinsurance WHERE state IN ('CA', 'NY', 'TX') AND income > 5000", SCHEMA);
+
+        assertEquals("select * from autoinsurance where state in (?) and income > ?", shape);
+        assertEquals(shape, SqlFingerprint.shape("select * from insurance.autoinsurance where state in ('WA') and income > 1", SCHEMA));
+    }
+
+    @Test
+    void hashIsStableAndShort() {
+        String hash = SqlFingerprint.hash(normalize("SELECT 1"));
+
+        assertEquals(hash, SqlFingerprint.hash(normalize("select   1;")));
+        assertTrue(hash.matches("[0-9a-f]{16}"), hash);
+        assertNotEquals(hash, SqlFingerprint.hash(normalize("SELECT 2")));
+    }
+
+    private static String normalize(String sql) {
+        return SqlFingerprint.normalize(sql, SCHEMA);
+    }
+}
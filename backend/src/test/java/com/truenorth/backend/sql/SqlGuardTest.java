@@ -0,0 +1,133 @@
+package com.truenorth.backend.sql;
+
+import com.truenorth.backend.exception.SqlQueryRejectedException;
+import com.truenorth.backend.schema.SchemaCatalog;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SqlGuardTest {
+
+    // As in the database: the date columns are text in autoinsurance but timestamps in customer
+    private static final SchemaCatalog.Snapshot SCHEMA = new SchemaCatalog.Snapshot(List.of(
+            table("autoinsurance", "individual_id", "int8", "cust_orig_date", "text", "date_of_birth", "text",
+                    "acct_suspd_date", "text", "state", "text", "flag", "int4"),
+            table("customer", "individual_id", "int8", "cust_orig_date", "timestamp", "date_of_birth", "timestamp",
+                    "state", "text")), "test");
+
+    private final SqlGuard guard = new SqlGuard(100, 20, 500, true,
+            List.of("cust_orig_date", "acct_suspd_date", "date_of_birth"), () -> SCHEMA);
+
+    @Test
+    void rejectsStatementHiddenBehindEscapeString() {
+        assertThrows(SqlQueryRejectedException.class,
+                () -> guard.check("SELECT E'\\'' ; DROP TABLE klupica.chat_history; SELECT ''"));
+    }
+
+    @Test
+    void rejectsStatementHiddenBehindNestedComment() {
+        assertThrows(SqlQueryRejectedException.class,
+                () -> guard.check("SELECT 1 /* /* */ ' */ ; DROP TABLE klupica.chat_history; -- '"));
+    }
+
+    @Test
+    void acceptsForbiddenWordsInsideLiteralsAndComments() {
+        assertEquals("SELECT 'drop; delete' AS a, $$insert$$ AS b, E'it\\'s' AS c FROM customer -- update\n LIMIT 10",
+                guard.check("SELECT 'drop; delete' AS a, $$insert$$ AS b, E'it\\'s' AS c FROM customer -- update\n LIMIT 10"));
+    }
+
+    @Test
+    void rejectsWritesAndMultipleStatements() {
+        assertThrows(SqlQueryRejectedException.class, () -> guard.check("DELETE FROM customer"));
+        assertThrows(SqlQueryRejectedException.class, () -> guard.check("SELECT 1; SELECT 2"));
+        assertThrows(SqlQueryRejectedException.class, () -> guard.check("SELECT pg_sleep(10)"));
+    }
+
+    @Test
+    void rewritesStandaloneDateComparison() {
+        assertEquals("SELECT * FROM autoinsurance WHERE cust_orig_date >= '2020-01-01' AND state = 'CA' LIMIT 100",
+                guard.check("SELECT * FROM autoinsurance WHERE cust_orig_date::date >= '2020-01-01'::date AND state = 'CA'"));
+    }
+
+    @Test
+    void rewritesStandaloneYearExtraction() {
+        assertEquals("SELECT * FROM autoinsurance WHERE (date_of_birth >= '1980-01-01' AND date_of_birth < '1981-01-01') LIMIT 100",
+                guard.check("SELECT * FROM autoinsurance WHERE EXTRACT(YEAR FROM date_of_birth::date) = 1980"));
+    }
+
+    @Test
+    void keepsCastOnTimestampColumnOfTheSameName() {
+        String unqualified = "SELECT * FROM customer WHERE cust_orig_date::date = '2020-01-01' LIMIT 10";
+        String aliased = "SELECT * FROM customer c WHERE c.date_of_birth::date BETWEEN '1980-01-01' AND '1980-12-31' LIMIT 10";
+
+        assertEquals(unqualified, guard.check(unqualified));
+        assertEquals(aliased, guard.check(aliased));
+    }
+
+    @Test
+    void resolvesQualifiedColumnThroughItsAlias() {
+        assertEquals("SELECT a.state FROM autoinsurance a JOIN customer c ON c.individual_id = a.individual_id "
+                        + "WHERE a.cust_orig_date >= '2020-01-01' AND c.cust_orig_date::date >= '2020-01-01' LIMIT 10",
+                guard.check("SELECT a.state FROM autoinsurance a JOIN customer c ON c.individual_id = a.individual_id "
+                        + "WHERE a.cust_orig_date::date >= '2020-01-01' AND c.cust_orig_date::date >= '2020-01-01' LIMIT 10"));
+    }
+
+    @Test
+    void leavesUnqualifiedColumnWhenSeveralTablesAreRead() {
+        String sql = "SELECT a.state FROM autoinsurance a JOIN customer c ON c.individual_id = a.individual_id "
+                + "WHERE cust_orig_date::date >= '2020-01-01' LIMIT 10";
+        assertEquals(sql, guard.check(sql));
+    }
+
+    @Test
+    void leavesColumnOfASubqueryOrUnknownTable() {
+        String subquery = "SELECT * FROM (SELECT * FROM autoinsurance) s WHERE s.cust_orig_date::date >= '2020-01-01' LIMIT 10";
+        String unknown = "SELECT * FROM policy WHERE cust_orig_date::date >= '2020-01-01' LIMIT 10";
+
+        assertEquals(subquery, guard.check(subquery));
+        assertEquals(unknown, guard.check(unknown));
+    }
+
+    @Test
+    void leavesYearExtractionInsideArithmetic() {
+        String sql = "SELECT * FROM autoinsurance WHERE 2024 - EXTRACT(YEAR FROM date_of_birth::date) > 30 LIMIT 10";
+        assertEquals(sql, guard.check(sql));
+    }
+
+    @Test
+    void leavesYearComparedWithExpression() {
+        String sql = "SELECT * FROM autoinsurance WHERE EXTRACT(YEAR FROM cust_orig_date::date) = 2020 + 1 LIMIT 10";
+        assertEquals(sql, guard.check(sql));
+    }
+
+    @Test
+    void leavesDateComparedWithIntervalArithmetic() {
+        String sql = "SELECT * FROM autoinsurance WHERE cust_orig_date::date > '2020-01-01'::date - interval '1 year' LIMIT 10";
+        assertEquals(sql, guard.check(sql));
+    }
+
+    @Test
+    void leavesComparisonThatIsABetweenBound() {
+        String sql = "SELECT * FROM autoinsurance WHERE flag BETWEEN 0 AND cust_orig_date::date > '2020-01-01' LIMIT 10";
+        assertEquals(sql, guard.check(sql));
+    }
+
+    @Test
+    void exportKeepsTheModelsLimitAndAddsNone() {
+        assertEquals("SELECT * FROM customer", guard.checkForExport("SELECT * FROM customer"));
+        assertEquals("SELECT state FROM customer LIMIT 100", guard.checkForExport("SELECT state FROM customer LIMIT 100"));
+        assertEquals("SELECT state FROM customer LIMIT 5000", guard.checkForExport("SELECT state FROM customer LIMIT 5000"));
+    }
+
+    private static SchemaCatalog.Table table(String name, String... columnsAndTypes) {
+        List<SchemaCatalog.Column> columns = new ArrayList<>();
+        for (int i = 0; i < columnsAndTypes.length; i += 2) {
+            columns.add(new SchemaCatalog.Column(columnsAndTypes[i], columnsAndTypes[i + 1], false, null, null, List.of()));
+        }
+        return new SchemaCatalog.Table(name, columns);
+    }
+}
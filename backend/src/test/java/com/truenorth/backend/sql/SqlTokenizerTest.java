@@ -0,0 +1,82 @@
+package com.truenorth.backend.sql;
+
+import com.truenorth.backend.sql.SqlTokenizer.Token;
+import com.truenorth.backend.sql.SqlTokenizer.TokenType;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SqlTokenizerTest {
+
+    @Test
+    void escapeStringHonoursBackslashEscapes() {
+        List<Token> tokens = SqlTokenizer.tokenize("SELECT E'\\'' ; DROP TABLE klupica.chat_history; SELECT ''");
+
+        assertEquals(TokenType.STRING, tokens.get(1).type());
+        assertEquals("E'\\''", tokens.get(1).text());
+        assertTrue(tokens.get(2).isSymbol(";"));
+        assertTrue(tokens.get(3).isWord("drop"));
+    }
+
+    @Test
+    void escapeStringWithEscapedBackslashEndsAtNextQuote() {
+        List<Token> tokens = SqlTokenizer.tokenize("SELECT e'a\\\\' AS x");
+
+        assertEquals("e'a\\\\'", tokens.get(1).text());
+        assertTrue(tokens.get(2).isWord("as"));
+    }
+
+    @Test
+    void plainStringTreatsBackslashLiterally() {
+        List<Token> tokens = SqlTokenizer.tokenize("SELECT 'a\\' ; DROP TABLE t");
+
+        assertEquals("'a\\'", tokens.get(1).text());
+        assertTrue(tokens.get(2).isSymbol(";"));
+    }
+
+    @Test
+    void doubledQuotesStayInsideString() {
+        List<Token> tokens = SqlTokenizer.tokenize("SELECT 'it''s; DROP' , \"a\"\"b\" FROM t");
+
+        assertEquals(TokenType.STRING, tokens.get(1).type());
+        assertEquals("'it''s; DROP'", tokens.get(1).text());
+        assertEquals(TokenType.QUOTED_IDENTIFIER, tokens.get(3).type());
+        assertEquals("\"a\"\"b\"", tokens.get(3).text());
+        assertTrue(tokens.get(4).isWord("from"));
+    }
+
+    @Test
+    void dollarQuotesAreOneString() {
+        List<Token> tokens = SqlTokenizer.tokenize("SELECT $$a; DROP$$, $tag$ $$ ; $tag$ FROM t");
+
+        assertEquals("$$a; DROP$$", tokens.get(1).text());
+        assertEquals("$tag$ $$ ; $tag$", tokens.get(3).text());
+        assertTrue(tokens.get(4).isWord("from"));
+    }
+
+    @Test
+    void positionalParameterIsNotADollarQuote() {
+        List<Token> tokens = SqlTokenizer.tokenize("SELECT $1 ; DROP TABLE t; SELECT $1");
+
+        assertTrue(tokens.get(1).isSymbol("$"));
+        assertTrue(tokens.get(3).isSymbol(";"));
+    }
+
+    @Test
+    void commentsAreDropped() {
+        List<Token> tokens = SqlTokenizer.tokenize("SELECT 1 -- ; DROP TABLE t\n/* ; DELETE */ FROM t");
+
+        assertEquals(List.of("SELECT", "1", "FROM", "t"), tokens.stream().map(Token::text).toList());
+    }
+
+    @Test
+    void nestedBlockCommentEndsAtItsOwnClose() {
+        List<Token> tokens = SqlTokenizer.tokenize("SELECT 1 /* /* */ ' */ ; DROP TABLE t; -- '");
+
+        assertTrue(tokens.get(2).isSymbol(";"));
+        assertTrue(tokens.get(3).isWord("drop"));
+    }
+}
@@ -0,0 +1,65 @@
+package com.truenorth.backend.summary;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class ColumnStatisticsTest {
+
+    @Test
+    void computesMomentsInOnePass() {
+        ColumnStatistics statistics = column(2, 4, 4, 4, 5, 5, 7, 9);
+
+        assertEquals(8, statistics.getCount());
+        assertEquals(40.0, statistics.getSum());
+        assertEquals(5.0, statistics.getMean(), 1e-12);
+        assertEquals(2.0, statistics.getMin());
+        assertEquals(9.0, statistics.getMax());
+        assertEquals(Math.sqrt(32.0 / 7), statistics.getStandardDeviation(), 1e-12);
+    }
+
+    @Test
+    void ignoresNaN() {
+        ColumnStatistics statistics = column(1, Double.NaN, 3);
+
+        assertEquals(2, statistics.getCount());
+        assertEquals(2.0, statistics.getMean());
+    }
+
+    @Test
+    void singleValueHasNoDeviation() {
+        assertEquals(0.0, column(42).getStandardDeviation());
+    }
+
+    @Test
+    void mapCountsRowsWithoutAValueAsNull() {
+        Map<String, Object> stats = column(10, 20, 30).toMap(5);
+
+        assertEquals(3L, stats.get("count"));
+        assertEquals(2L, stats.get("nullCount"));
+        assertEquals(60.0, stats.get("sum"));
+        assertEquals(20.0, stats.get("p50"));
+        assertEquals(30.0, stats.get("p99"));
+    }
+
+    @Test
+    void mapOfAnEmptyColumnHasOnlyCounts() {
+        Map<String, Object> stats = column().toMap(4);
+
+        assertEquals(0L, stats.get("count"));
+        assertEquals(4L, stats.get("nullCount"));
+        assertFalse(stats.containsKey("min"));
+        assertFalse(stats.containsKey("p50"));
+    }
+
+    private static ColumnStatistics column(double... values) {
+        ColumnStatistics statistics = new ColumnStatistics("premium");
+        for (double value : values) {
+            statistics.accept(value);
+        }
+        return statistics;
+    }
+}
@@ -0,0 +1,127 @@
+package com.truenorth.backend.summary;
+
+import com.truenorth.backend.dto.ChatResponseDTO;
+import com.truenorth.backend.dto.ColumnarResultDTO;
+import com.truenorth.backend.model.ChatResponse;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class DataSummaryAccumulatorTest {
+
+    @Test
+    void topLevelFiguresDescribeTheConfiguredValueField() {
+        DataSummaryAccumulator accumulator = new DataSummaryAccumulator();
+        accumulator.acceptRows(List.of(row("id", 1, "premium", 100.0), row("id", 2, "premium", 300.0)));
+
+        ChatResponseDTO.DataSummary summary = accumulator.toSummary(config("PREMIUM", null));
+
+        assertEquals(2L, summary.getTotalRecords());
+        assertEquals(400.0, summary.getTotal());
+        assertEquals(200.0, summary.getAverage());
+        assertEquals(100.0, summary.getMin());
+        assertEquals(300.0, summary.getMax());
+        assertEquals("premium", summary.getAdditionalStats().get("valueField"));
+    }
+
+    @Test
+    void fallsBackToTheYField() {
+        DataSummaryAccumulator accumulator = new DataSummaryAccumulator();
+        accumulator.acceptRows(List.of(row("year", 2024, "claims", 5), row("year", 2025, "claims", 7)));
+
+        ChatResponseDTO.DataSummary summary = accumulator.toSummary(config("missing", "claims"));
+
+        assertEquals(12.0, summary.getTotal());
+    }
+
+    @Test
+    void leavesTopLevelFiguresEmptyWithoutAConfiguredField() {
+        DataSummaryAccumulator accumulator = new DataSummaryAccumulator();
+        accumulator.acceptRows(List.of(row("id", 1, "premium", 100.0), row("id", 2, "premium", 300.0)));
+
+        for (ChatResponse.ChartConfig config : new ChatResponse.ChartConfig[]{null, config(null, null), config("state", null)}) {
+            ChatResponseDTO.DataSummary summary = accumulator.toSummary(config);
+
+            assertEquals(2L, summary.getTotalRecords());
+            assertNull(summary.getTotal());
+            assertNull(summary.getAverage());
+            assertNull(summary.getMin());
+            assertNull(summary.getMax());
+            assertFalse(summary.getAdditionalStats().containsKey("valueField"));
+            assertEquals(List.of("id", "premium"), List.copyOf(columns(summary).keySet()));
+        }
+    }
+
+    @Test
+    void countsNullsAndSkipsNonNumericValues() {
+        DataSummaryAccumulator accumulator = new DataSummaryAccumulator();
+        accumulator.acceptRows(List.of(row("state", "CA", "premium", 100.0), row("state", "NY", "premium", null)));
+
+        Map<String, Object> premium = column(accumulator.toSummary(config("premium", null)), "premium");
+
+        assertEquals(1L, premium.get("count"));
+        assertEquals(1L, premium.get("nullCount"));
+        assertFalse(columns(accumulator.toSummary(null)).containsKey("state"));
+    }
+
+    @Test
+    void readsColumnarResults() {
+        DataSummaryAccumulator accumulator = new DataSummaryAccumulator();
+        accumulator.acceptColumnar(new ColumnarResultDTO(3, List.of(
+                new ColumnarResultDTO.Column("state", "text", ColumnarResultDTO.Encoding.DICTIONARY,
+                        new int[]{0, 1, 0}, List.of("CA", "NY"), null),
+                new ColumnarResultDTO.Column("policies", "int8", ColumnarResultDTO.Encoding.INT64,
+                        new long[]{10, 0, 30}, null, new int[]{1}),
+                new ColumnarResultDTO.Column("ratio", "float8", ColumnarResultDTO.Encoding.FLOAT64,
+                        new double[]{0.5, 1.5, 1.0}, null, null),
+                new ColumnarResultDTO.Column("premium", "numeric", ColumnarResultDTO.Encoding.DECIMAL,
+                        new BigDecimal[]{new BigDecimal("100.25"), null, new BigDecimal("200.75")}, null, null))));
+
+        ChatResponseDTO.DataSummary summary = accumulator.toSummary(config("premium", null));
+
+        assertEquals(3L, summary.getTotalRecords());
+        assertEquals(301.0, summary.getTotal());
+        assertEquals(List.of("policies", "ratio", "premium"), List.copyOf(columns(summary).keySet()));
+        assertEquals(2L, column(summary, "policies").get("count"));
+        assertEquals(40.0, column(summary, "policies").get("sum"));
+        assertEquals(3L, column(summary, "ratio").get("count"));
+        assertEquals(1L, column(summary, "premium").get("nullCount"));
+    }
+
+    @Test
+    void hasNoSummaryWithoutRows() {
+        assertNull(new DataSummaryAccumulator().toSummary(config("premium", null)));
+    }
+
+    private static Map<String, Object> row(String firstKey, Object firstValue, String secondKey, Object secondValue) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put(firstKey, firstValue);
+        row.put(secondKey, secondValue);
+        return row;
+    }
+
+    private static ChatResponse.ChartConfig config(String valueField, String yField) {
+        ChatResponse.ChartConfig config = new ChatResponse.ChartConfig();
+        config.setValueField(valueField);
+        config.setYField(yField);
+        return config;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> columns(ChatResponseDTO.DataSummary summary) {
+        return (Map<String, Object>) summary.getAdditionalStats().get("columns");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> column(ChatResponseDTO.DataSummary summary, String name) {
+        return (Map<String, Object>) new HashMap<>(columns(summary)).get(name);
+    }
+}
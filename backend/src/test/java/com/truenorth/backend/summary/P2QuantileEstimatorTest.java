@@ -0,0 +1,94 @@
+package com.truenorth.backend.summary;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class P2QuantileEstimatorTest {
+
+    @Test
+    void tracksQuantilesOfAShuffledUniformSequence() {
+        int n = 10_000;
+        double[] values = new double[n];
+        for (int i = 0; i < n; i++) {
+            values[i] = i + 1;
+        }
+        shuffle(values, new Random(5));
+
+        for (double p : new double[]{0.50, 0.90, 0.99}) {
+            // Within 1% of the range of the exact order statistic
+            assertEquals(exact(values, p), estimate(values, p), n * 0.01, "p" + (int) (p * 100));
+        }
+    }
+
+    @Test
+    void tracksQuantilesOfANormalSample() {
+        Random random = new Random(17);
+        double[] values = new double[50_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 100 + 15 * random.nextGaussian();
+        }
+
+        for (double p : new double[]{0.50, 0.90, 0.99}) {
+            assertEquals(exact(values, p), estimate(values, p), 1.0, "p" + (int) (p * 100));
+        }
+    }
+
+    @Test
+    void isExactForUpToFiveSamples() {
+        assertEquals(2.0, estimate(new double[]{3, 1, 2}, 0.50));
+        assertEquals(3.0, estimate(new double[]{3, 1, 2}, 0.99));
+        assertEquals(1.0, estimate(new double[]{3, 1, 2}, 0.10));
+        assertEquals(7.0, estimate(new double[]{7}, 0.90));
+        assertEquals(50.0, estimate(new double[]{40, 10, 50, 20, 30}, 0.99));
+        assertEquals(30.0, estimate(new double[]{40, 10, 50, 20, 30}, 0.50));
+    }
+
+    @Test
+    void isNaNWithoutSamples() {
+        assertTrue(Double.isNaN(new P2QuantileEstimator(0.5).quantile()));
+    }
+
+    @Test
+    void staysWithinTheObservedRange() {
+        double[] values = {5, 5, 5, 5, 5, 5, 1000, 5, 5, 5, 5, 5};
+
+        double p99 = estimate(values, 0.99);
+
+        assertTrue(p99 >= 5 && p99 <= 1000, String.valueOf(p99));
+    }
+
+    @Test
+    void rejectsQuantilesOutsideTheOpenUnitInterval() {
+        assertThrows(IllegalArgumentException.class, () -> new P2QuantileEstimator(0));
+        assertThrows(IllegalArgumentException.class, () -> new P2QuantileEstimator(1));
+    }
+
+    private static double estimate(double[] values, double p) {
+        P2QuantileEstimator estimator = new P2QuantileEstimator(p);
+        for (double value : values) {
+            estimator.add(value);
+        }
+        return estimator.quantile();
+    }
+
+    private static double exact(double[] values, double p) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[(int) Math.ceil(p * sorted.length) - 1];
+    }
+
+    private static void shuffle(double[] values, Random random) {
+        for (int i = values.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            double swap = values[i];
+            values[i] = values[j];
+            values[j] = swap;
+        }
+    }
+}
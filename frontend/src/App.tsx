@@ -7,6 +7,7 @@ import { Chart } from "primereact/chart";
 import { Divider } from "primereact/divider";
 import { Card } from "primereact/card";
 import { ToastContainer, toast } from "react-toastify";
+import { columnarToRows, type ColumnarResult } from "./columnar";
 
 type VisualizationType = "pie" | "line" | "bar" | "table";
 
@@ -34,6 +35,7 @@ type DataRow = Record<string, string | number>;
 interface ApiResponse {
   visualizationType: VisualizationType | string;
   data: DataRow[];
+  columnar?: ColumnarResult;
   chartConfig: {
     title: string;
   };
@@ -66,7 +68,7 @@ export default function App() {
     fetch("http://localhost:8080/api/v1/chat/message", {
       method: "POST",
       headers: { "Content-Type": "application/json" },
-      body: JSON.stringify({ message: value }),
+      body: JSON.stringify({ message: value, resultFormat: "columnar" }),
     })
       .then((res) => res.json())
       .then((data: ApiResponse) => {
@@ -78,7 +80,9 @@ export default function App() {
           setShowTitle(true);
           return;
         }
-        const rows = data.data;
+        const rows = data.columnar
+          ? (columnarToRows(data.columnar) as DataRow[])
+          : data.data;
         setChartTitle(data.chartConfig.title);
 
         if (!rows || rows.length === 0) {
@@ -164,11 +168,13 @@ export default function App() {
     fetch("http://localhost:8080/api/v1/chat/message", {
       method: "POST",
       headers: { "Content-Type": "application/json" },
-      body: JSON.stringify({ message: inputValue }),
+      body: JSON.stringify({ message: inputValue, resultFormat: "columnar" }),
     })
       .then((res) => res.json())
       .then((data: ApiResponse) => {
-        const rows = data.data;
+        const rows = data.columnar
+          ? (columnarToRows(data.columnar) as DataRow[])
+          : data.data;
         setChartTitle(data.chartConfig.title);
 
         if (!rows || rows.length === 0) {
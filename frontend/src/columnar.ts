@@ -0,0 +1,52 @@
+export type ColumnEncoding =
+  | "INT64"
+  | "FLOAT64"
+  | "BOOL"
+  | "DICTIONARY"
+  | "DECIMAL"
+  | "STRING"
+  | "OBJECT";
+
+export interface ColumnarColumn {
+  name: string;
+  sqlType: string;
+  encoding: ColumnEncoding;
+  values: unknown[];
+  dictionary?: string[];
+  nulls?: number[];
+}
+
+export interface ColumnarResult {
+  rowCount: number;
+  columns: ColumnarColumn[];
+}
+
+type CellValue = string | number | boolean | null;
+
+export const columnarToRows = (
+  result: ColumnarResult
+): Record<string, CellValue>[] => {
+  const rows: Record<string, CellValue>[] = Array.from(
+    { length: result.rowCount },
+    () => ({})
+  );
+
+  result.columns.forEach((column) => {
+    const nullRows = new Set(column.nulls ?? []);
+
+    for (let i = 0; i < result.rowCount; i++) {
+      let value: CellValue;
+      if (column.encoding === "DICTIONARY") {
+        const code = column.values[i] as number;
+        value = code < 0 ? null : column.dictionary![code];
+      } else if (nullRows.has(i)) {
+        value = null;
+      } else {
+        value = column.values[i] as CellValue;
+      }
+      rows[i][column.name] = value;
+    }
+  });
+
+  return rows;
+};
@@ -0,0 +1,223 @@
+package com.truenorth.loadtest;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Creates the analytics tables (address, autoinsurance, demographic, termination, customer) in
+ * the backend's schema and fills them with deterministic synthetic customers, loaded with COPY.
+ * Finishes with ANALYZE so the planner and the prompt's column samples see realistic statistics.
+ *
+ * <pre>
+ * DataGenerator --url jdbc:postgresql://localhost:5432/insurance --user tim2 --password secret \
+ *               --schema klupica --customers 100000 --seed 42 --drop
+ * </pre>
+ */
+public class DataGenerator {
+
+    private static final int BATCH_ROWS = 10_000;
+
+    private static final String[][] PLACES = {
+            {"Dallas", "Dallas", "TX"}, {"Houston", "Harris", "TX"}, {"Austin", "Travis", "TX"},
+            {"Los Angeles", "Los Angeles", "CA"}, {"San Diego", "San Diego", "CA"}, {"Fresno", "Fresno", "CA"},
+            {"Miami", "Miami-Dade", "FL"}, {"Tampa", "Hillsborough", "FL"}, {"Orlando", "Orange", "FL"},
+            {"New York", "Kings", "NY"}, {"Buffalo", "Erie", "NY"}, {"Chicago", "Cook", "IL"},
+            {"Philadelphia", "Philadelphia", "PA"}, {"Pittsburgh", "Allegheny", "PA"}, {"Columbus", "Franklin", "OH"},
+            {"Atlanta", "Fulton", "GA"}, {"Charlotte", "Mecklenburg", "NC"}, {"Detroit", "Wayne", "MI"}};
+    private static final String[] STREETS = {"Main St", "Oak Ave", "Maple Dr", "Cedar Ln", "Elm St", "Park Blvd",
+            "Lake Rd", "Hill St", "Pine Ct", "River Way"};
+    private static final String[] MARITAL_STATUSES = {"Married", "Single"};
+    private static final LocalDate FIRST_CUSTOMER = LocalDate.of(1995, 1, 1);
+    private static final LocalDate TODAY = LocalDate.of(2024, 6, 30);
+
+    public static void main(String[] args) throws SQLException, IOException {
+        Map<String, String> options = Options.parse(args);
+        String url = options.getOrDefault("url", "jdbc:postgresql://localhost:5432/insurance");
+        String user = options.getOrDefault("user", "tim2");
+        String password = options.getOrDefault("password", "loadtest");
+        String schema = options.getOrDefault("schema", "klupica");
+        int customers = Integer.parseInt(options.getOrDefault("customers", "100000"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        boolean drop = options.containsKey("drop");
+
+        try (Connection connection = DriverManager.getConnection(url, user, password)) {
+            long start = System.nanoTime();
+            createTables(connection, schema, drop);
+            CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+            load(copyManager, schema, customers, new Random(seed));
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("ANALYZE " + schema + ".address, " + schema + ".autoinsurance, "
+                        + schema + ".demographic, " + schema + ".termination, " + schema + ".customer");
+            }
+            System.out.printf("Loaded %d customers into %s in %.1f s%n",
+                    customers, schema, (System.nanoTime() - start) / 1e9);
+        }
+    }
+
+    private static void createTables(Connection connection, String schema, boolean drop) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE SCHEMA IF NOT EXISTS " + schema);
+            if (drop) {
+                statement.execute("DROP TABLE IF EXISTS " + schema + ".termination, " + schema + ".demographic, "
+                        + schema + ".customer, " + schema + ".autoinsurance, " + schema + ".address");
+            }
+            statement.execute("""
+                    CREATE TABLE IF NOT EXISTS %1$s.address (
+                        address_id int8 PRIMARY KEY,
+                        latitude float8,
+                        longitude float8,
+                        street_address text,
+                        city text,
+                        state text,
+                        county text
+                    )""".formatted(schema));
+            statement.execute("""
+                    CREATE TABLE IF NOT EXISTS %1$s.autoinsurance (
+                        individual_id int8,
+                        address_id int8,
+                        curr_ann_amt float8,
+                        days_tenure int4,
+                        cust_orig_date text,
+                        age_in_years int8,
+                        date_of_birth text,
+                        latitude float8,
+                        longitude float8,
+                        city text,
+                        state text,
+                        county text,
+                        income int4,
+                        has_children bool,
+                        length_of_residence int4,
+                        marital_status text,
+                        home_market_value text,
+                        home_owner bool,
+                        college_degree bool,
+                        good_credit bool,
+                        acct_suspd_date text,
+                        churn bool,
+                        home_value_min int4,
+                        home_value_max float8
+                    )""".formatted(schema));
+            statement.execute("""
+                    CREATE TABLE IF NOT EXISTS %1$s.demographic (
+                        individual_id int8 PRIMARY KEY,
+                        income float8,
+                        has_children bool,
+                        length_of_residence float8,
+                        marital_status text,
+                        home_market_val text,
+                        home_owner bool,
+                        college_degree bool,
+                        good_credit bool,
+                        home_value_min float8,
+                        home_value_max float8
+                    )""".formatted(schema));
+            statement.execute("""
+                    CREATE TABLE IF NOT EXISTS %1$s.termination (
+                        individual_id int8,
+                        acct_suspd_date date
+                    )""".formatted(schema));
+            statement.execute("""
+                    CREATE TABLE IF NOT EXISTS %1$s.customer (
+                        individual_id int8,
+                        address_id int8,
+                        curr_ann_amt float8,
+                        days_tenure int4,
+                        cust_orig_date timestamp,
+                        age_in_years int8,
+                        date_of_birth timestamp,
+                        social_security_number text
+                    )""".formatted(schema));
+        }
+    }
+
+    private static void load(CopyManager copyManager, String schema, int customers, Random random)
+            throws SQLException, IOException {
+        StringBuilder address = new StringBuilder();
+        StringBuilder autoinsurance = new StringBuilder();
+        StringBuilder demographic = new StringBuilder();
+        StringBuilder termination = new StringBuilder();
+        StringBuilder customer = new StringBuilder();
+
+        for (int i = 0; i < customers; i++) {
+            long individualId = 221300000000L + i;
+            long addressId = 521300000000L + i;
+            String[] place = PLACES[random.nextInt(PLACES.length)];
+            double latitude = 25 + random.nextDouble() * 20;
+            double longitude = -122 + random.nextDouble() * 45;
+            int age = 18 + random.nextInt(72);
+            LocalDate birth = TODAY.minusYears(age).minusDays(random.nextInt(365));
+            LocalDate since = FIRST_CUSTOMER.plusDays(random.nextInt((int) (TODAY.toEpochDay() - FIRST_CUSTOMER.toEpochDay())));
+            int tenure = (int) (TODAY.toEpochDay() - since.toEpochDay());
+            double premium = Math.max(100, Math.round((950 + random.nextGaussian() * 220) * 100) / 100.0);
+            int income = 10_000 + random.nextInt(30) * 5_000;
+            boolean children = random.nextInt(100) < 45;
+            int residence = random.nextInt(16);
+            String marital = MARITAL_STATUSES[random.nextInt(MARITAL_STATUSES.length)];
+            int homeBand = random.nextInt(12);
+            int homeMin = homeBand * 25_000 + 1_000;
+            double homeMax = homeBand * 25_000 + 24_999;
+            String homeValue = homeMin + " - " + (int) homeMax;
+            boolean owner = random.nextInt(100) < 70;
+            boolean college = random.nextInt(100) < 30;
+            boolean credit = random.nextInt(100) < 80;
+            boolean churn = random.nextInt(100) < 12;
+            LocalDate suspended = churn ? since.plusDays(random.nextInt(Math.max(tenure, 1))) : null;
+
+            row(address, addressId, latitude, longitude,
+                    (100 + random.nextInt(9900)) + " " + STREETS[random.nextInt(STREETS.length)],
+                    place[0], place[2], place[1]);
+            row(autoinsurance, individualId, addressId, premium, tenure, since, age, birth, latitude, longitude,
+                    place[0], place[2], place[1], income, children, residence, marital, homeValue, owner, college,
+                    credit, suspended, churn, homeMin, homeMax);
+            row(demographic, individualId, (double) income, children, (double) residence, marital, homeValue, owner,
+                    college, credit, (double) homeMin, homeMax);
+            if (churn) {
+                row(termination, individualId, suspended);
+            }
+            row(customer, individualId, addressId, premium, tenure, since + " 00:00:00", age, birth + " 00:00:00",
+                    String.format("000-%02d-%04d", random.nextInt(100), random.nextInt(10_000)));
+
+            if ((i + 1) % BATCH_ROWS == 0 || i == customers - 1) {
+                copy(copyManager, schema + ".address", address);
+                copy(copyManager, schema + ".autoinsurance", autoinsurance);
+                copy(copyManager, schema + ".demographic", demographic);
+                copy(copyManager, schema + ".termination", termination);
+                copy(copyManager, schema + ".customer", customer);
+                System.out.printf("  %d / %d%n", i + 1, customers);
+            }
+        }
+    }
+
+    private static void row(StringBuilder csv, Object... values) {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                csv.append(',');
+            }
+            Object value = values[i];
+            if (value instanceof String text && (text.indexOf(',') >= 0 || text.indexOf('"') >= 0)) {
+                csv.append('"').append(text.replace("\"", "\"\"")).append('"');
+            } else if (value != null) {
+                csv.append(value);
+            }
+        }
+        csv.append('\n');
+    }
+
+    private static void copy(CopyManager copyManager, String table, StringBuilder csv) throws SQLException, IOException {
+        if (!csv.isEmpty()) {
+            copyManager.copyIn("COPY " + table + " FROM STDIN WITH (FORMAT csv)", new StringReader(csv.toString()));
+            csv.setLength(0);
+        }
+    }
+}
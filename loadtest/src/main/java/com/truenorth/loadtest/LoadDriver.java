@@ -0,0 +1,243 @@
+package com.truenorth.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop load against {@code POST /api/v1/chat/message}: {@code --concurrency} workers
+ * each send the next question as soon as the previous answer arrives. Samples from the warmup
+ * are dropped. Reports throughput, latency percentiles, outcomes, the mean of each stage in the
+ * backend's Server-Timing header and, given {@code --stub}, model calls and retry prompts per
+ * request from the Mistral stub's counters.
+ *
+ * <pre>
+ * LoadDriver --url http://localhost:8080 --concurrency 16 --duration 120 --warmup 15 \
+ *            --questions questions.txt --stub http://localhost:8089 --cache-busting --report report-16.json
+ * </pre>
+ */
+public class LoadDriver {
+
+    private enum Outcome {
+        OK,
+        ERROR_RESPONSE,
+        HTTP_ERROR,
+        TRANSPORT_ERROR
+    }
+
+    private record Sample(long latencyNanos, Outcome outcome, Map<String, Double> stages) {
+    }
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = Options.parse(args);
+        URI target = URI.create(options.getOrDefault("url", "http://localhost:8080") + "/api/v1/chat/message");
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "8"));
+        Duration duration = Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration", "60")));
+        Duration warmup = Duration.ofSeconds(Long.parseLong(options.getOrDefault("warmup", "10")));
+        Duration timeout = Duration.ofSeconds(Long.parseLong(options.getOrDefault("timeout", "180")));
+        String format = options.getOrDefault("format", "rows");
+        boolean cacheBusting = options.containsKey("cache-busting");
+        String stub = options.get("stub");
+        List<String> questions = Files.readAllLines(Path.of(options.getOrDefault("questions", "questions.txt"))).stream()
+                .map(String::strip)
+                .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                .toList();
+
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+
+        System.out.printf("Driving %s with %d workers for %ds after %ds warmup%n",
+                target, concurrency, duration.toSeconds(), warmup.toSeconds());
+
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long stopAt = measureFrom + duration.toNanos();
+        AtomicLong sequence = new AtomicLong();
+        Map<String, Map<String, Long>> stubBefore = null;
+
+        List<List<Sample>> perWorker = new ArrayList<>();
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<List<Sample>>> futures = new ArrayList<>();
+            for (int w = 0; w < concurrency; w++) {
+                futures.add(workers.submit(() -> {
+                    List<Sample> samples = new ArrayList<>();
+                    while (System.nanoTime() < stopAt) {
+                        String question = questions.get(ThreadLocalRandom.current().nextInt(questions.size()));
+                        if (cacheBusting) {
+                            question = question + " (run " + sequence.incrementAndGet() + ")";
+                        }
+                        long sent = System.nanoTime();
+                        Sample sample = send(client, target, timeout, question, format);
+                        if (sent >= measureFrom) {
+                            samples.add(sample);
+                        }
+                    }
+                    return samples;
+                }));
+            }
+
+            if (stub != null) {
+                Thread.sleep(Math.max(0, (measureFrom - System.nanoTime()) / 1_000_000));
+                stubBefore = stubStats(client, stub);
+            }
+            for (Future<List<Sample>> future : futures) {
+                perWorker.add(future.get());
+            }
+        }
+        double measuredSeconds = (System.nanoTime() - measureFrom) / 1e9;
+        Map<String, Map<String, Long>> stubAfter = stub != null ? stubStats(client, stub) : null;
+
+        Map<String, Object> report = report(perWorker, measuredSeconds, concurrency, stubBefore, stubAfter);
+        System.out.println(OBJECT_MAPPER.writeValueAsString(report));
+        if (options.containsKey("report")) {
+            OBJECT_MAPPER.writeValue(Path.of(options.get("report")).toFile(), report);
+        }
+    }
+
+    private static Sample send(HttpClient client, URI target, Duration timeout, String question, String format) {
+        long start = System.nanoTime();
+        try {
+            String body = OBJECT_MAPPER.writeValueAsString(Map.of("message", question, "resultFormat", format));
+            HttpRequest request = HttpRequest.newBuilder(target)
+                    .timeout(timeout)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+            HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            long latency = System.nanoTime() - start;
+            Map<String, Double> stages = serverTiming(response.headers().firstValue("Server-Timing").orElse(null));
+            if (response.statusCode() != 200) {
+                return new Sample(latency, Outcome.HTTP_ERROR, stages);
+            }
+            JsonNode json = OBJECT_MAPPER.readTree(response.body());
+            boolean failed = json.hasNonNull("errorMessage") && !json.path("errorMessage").asText().isEmpty();
+            return new Sample(latency, failed ? Outcome.ERROR_RESPONSE : Outcome.OK, stages);
+        } catch (IOException e) {
+            return new Sample(System.nanoTime() - start, Outcome.TRANSPORT_ERROR, Map.of());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Sample(System.nanoTime() - start, Outcome.TRANSPORT_ERROR, Map.of());
+        }
+    }
+
+    private static Map<String, Double> serverTiming(String header) {
+        if (header == null || header.isBlank()) {
+            return Map.of();
+        }
+        Map<String, Double> stages = new LinkedHashMap<>();
+        for (String metric : header.split(",")) {
+            String[] parts = metric.strip().split(";");
+            for (int i = 1; i < parts.length; i++) {
+                if (parts[i].strip().startsWith("dur=")) {
+                    stages.put(parts[0].strip(), Double.parseDouble(parts[i].strip().substring(4)));
+                }
+            }
+        }
+        return stages;
+    }
+
+    private static Map<String, Map<String, Long>> stubStats(HttpClient client, String stub) throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(stub + "/stats")).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        Map<String, Map<String, Long>> stats = new TreeMap<>();
+        OBJECT_MAPPER.readTree(response.body()).properties().forEach(model -> {
+            Map<String, Long> outcomes = new TreeMap<>();
+            model.getValue().properties().forEach(outcome -> outcomes.put(outcome.getKey(), outcome.getValue().asLong()));
+            stats.put(model.getKey(), outcomes);
+        });
+        return stats;
+    }
+
+    private static Map<String, Object> report(List<List<Sample>> perWorker, double seconds, int concurrency,
+                                              Map<String, Map<String, Long>> stubBefore,
+                                              Map<String, Map<String, Long>> stubAfter) {
+        List<Sample> samples = perWorker.stream().flatMap(List::stream).toList();
+        long[] latencies = samples.stream().mapToLong(Sample::latencyNanos).sorted().toArray();
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("concurrency", concurrency);
+        report.put("requests", samples.size());
+        report.put("seconds", round(seconds));
+        report.put("throughputPerSecond", round(samples.size() / seconds));
+
+        Map<String, Double> latency = new LinkedHashMap<>();
+        latency.put("p50", percentileMillis(latencies, 0.50));
+        latency.put("p90", percentileMillis(latencies, 0.90));
+        latency.put("p99", percentileMillis(latencies, 0.99));
+        latency.put("max", latencies.length == 0 ? 0 : round(latencies[latencies.length - 1] / 1e6));
+        report.put("latencyMillis", latency);
+
+        Map<String, Long> outcomes = new LinkedHashMap<>();
+        for (Outcome outcome : Outcome.values()) {
+            outcomes.put(outcome.name().toLowerCase(), samples.stream().filter(s -> s.outcome() == outcome).count());
+        }
+        report.put("outcomes", outcomes);
+
+        Map<String, double[]> stageTotals = new LinkedHashMap<>();
+        for (Sample sample : samples) {
+            sample.stages().forEach((stage, millis) -> {
+                double[] total = stageTotals.computeIfAbsent(stage, key -> new double[2]);
+                total[0] += millis;
+                total[1]++;
+            });
+        }
+        Map<String, Double> stageMeans = new LinkedHashMap<>();
+        stageTotals.forEach((stage, total) -> stageMeans.put(stage, round(total[0] / total[1])));
+        report.put("meanStageMillis", stageMeans);
+
+        if (stubBefore != null && stubAfter != null && !samples.isEmpty()) {
+            Map<String, Map<String, Double>> perRequest = new TreeMap<>();
+            long retryPrompts = 0;
+            for (var model : stubAfter.entrySet()) {
+                Map<String, Long> before = stubBefore.getOrDefault(model.getKey(), Map.of());
+                Map<String, Double> rates = new TreeMap<>();
+                for (var outcome : model.getValue().entrySet()) {
+                    long delta = outcome.getValue() - before.getOrDefault(outcome.getKey(), 0L);
+                    rates.put(outcome.getKey(), round(delta / (double) samples.size()));
+                    if (outcome.getKey().equals("retry_prompts")) {
+                        retryPrompts += delta;
+                    }
+                }
+                perRequest.put(model.getKey(), rates);
+            }
+            report.put("modelCallsPerRequest", perRequest);
+            report.put("retryRate", round(retryPrompts / (double) samples.size()));
+        }
+        return report;
+    }
+
+    private static double percentileMillis(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return round(sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
@@ -0,0 +1,224 @@
+package com.truenorth.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Stands in for the Mistral chat completions API. Every call sleeps for a log-normal latency,
+ * then fails with a 500 or 429, or answers with a recorded {@code ChatResponse}: one from
+ * {@code recordings/invalid} (SQL that fails against the database, to drive the fallback path)
+ * or one from {@code recordings/valid}. Latency and outcome rates are set per model in the
+ * properties file, falling back to the {@code default.*} keys. {@code GET /stats} returns call
+ * counts per model and outcome.
+ */
+public class MistralStub {
+
+    private static final String RETRY_MARKER = "FAILED SQL QUERY";
+
+    record ModelProfile(double medianMillis, double sigma, double maxMillis, double errorRate, double rateLimitRate,
+                        double invalidSqlRate) {
+
+        static ModelProfile from(Properties properties, String prefix, ModelProfile defaults) {
+            return new ModelProfile(
+                    number(properties, prefix + "latency.median-ms", defaults.medianMillis()),
+                    number(properties, prefix + "latency.sigma", defaults.sigma()),
+                    number(properties, prefix + "latency.max-ms", defaults.maxMillis()),
+                    number(properties, prefix + "error-rate", defaults.errorRate()),
+                    number(properties, prefix + "rate-limit-rate", defaults.rateLimitRate()),
+                    number(properties, prefix + "invalid-sql-rate", defaults.invalidSqlRate()));
+        }
+
+        long sampleLatencyMillis() {
+            double latency = medianMillis * Math.exp(sigma * ThreadLocalRandom.current().nextGaussian());
+            return Math.round(Math.min(latency, maxMillis));
+        }
+    }
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ModelProfile defaultProfile;
+    private final Map<String, ModelProfile> profiles = new ConcurrentHashMap<>();
+    private final Properties properties;
+    private final List<String> validRecordings;
+    private final List<String> invalidRecordings;
+    private final Map<String, Map<String, LongAdder>> counts = new ConcurrentHashMap<>();
+
+    MistralStub(Properties properties) throws IOException {
+        this.properties = properties;
+        this.defaultProfile = ModelProfile.from(properties, "default.",
+                new ModelProfile(800, 0.5, 60_000, 0, 0, 0));
+        Path recordings = Path.of(properties.getProperty("recordings", "recordings"));
+        this.validRecordings = readRecordings(recordings.resolve("valid"));
+        this.invalidRecordings = readRecordings(recordings.resolve("invalid"));
+        if (validRecordings.isEmpty()) {
+            throw new IllegalStateException("No recordings in " + recordings.resolve("valid").toAbsolutePath());
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Properties properties = new Properties();
+        try (var reader = Files.newBufferedReader(Path.of(args.length > 0 ? args[0] : "stub.properties"))) {
+            properties.load(reader);
+        }
+        MistralStub stub = new MistralStub(properties);
+        int port = Integer.parseInt(properties.getProperty("port", "8089"));
+
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 512);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/v1/chat/completions", stub::complete);
+        server.createContext("/stats", stub::stats);
+        server.start();
+        System.out.printf("Mistral stub listening on http://localhost:%d with %d valid and %d invalid recordings%n",
+                port, stub.validRecordings.size(), stub.invalidRecordings.size());
+    }
+
+    private void complete(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                send(exchange, 405, "{\"message\":\"POST only\"}");
+                return;
+            }
+            JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+            String model = request.path("model").asText("unknown");
+            ModelProfile profile = profiles.computeIfAbsent(model,
+                    name -> ModelProfile.from(properties, name + ".", defaultProfile));
+            if (isRetry(request.path("messages"))) {
+                count(model, "retry_prompts");
+            }
+
+            Thread.sleep(profile.sampleLatencyMillis());
+
+            double roll = ThreadLocalRandom.current().nextDouble();
+            if (roll < profile.errorRate()) {
+                count(model, "error");
+                send(exchange, 500, "{\"message\":\"Stubbed server error\"}");
+                return;
+            }
+            roll -= profile.errorRate();
+            if (roll < profile.rateLimitRate()) {
+                count(model, "rate_limited");
+                send(exchange, 429, "{\"message\":\"Stubbed rate limit\"}");
+                return;
+            }
+            roll -= profile.rateLimitRate();
+
+            boolean invalid = roll < profile.invalidSqlRate() && !invalidRecordings.isEmpty();
+            count(model, invalid ? "invalid_sql" : "ok");
+            String content = pick(invalid ? invalidRecordings : validRecordings);
+            send(exchange, 200, objectMapper.writeValueAsString(completion(model, content, request)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void stats(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            Map<String, Map<String, Long>> snapshot = new TreeMap<>();
+            counts.forEach((model, outcomes) -> {
+                Map<String, Long> byOutcome = new TreeMap<>();
+                outcomes.forEach((outcome, count) -> byOutcome.put(outcome, count.sum()));
+                snapshot.put(model, byOutcome);
+            });
+            send(exchange, 200, objectMapper.writeValueAsString(snapshot));
+        }
+    }
+
+    private ObjectNode completion(String model, String content, JsonNode request) {
+        ObjectNode response = objectMapper.createObjectNode();
+        response.put("id", UUID.randomUUID().toString().replace("-", ""));
+        response.put("object", "chat.completion");
+        response.put("created", System.currentTimeMillis() / 1000);
+        response.put("model", model);
+
+        ArrayNode choices = response.putArray("choices");
+        ObjectNode choice = choices.addObject();
+        choice.put("index", 0);
+        ObjectNode message = choice.putObject("message");
+        message.put("role", "assistant");
+        message.put("content", content);
+        choice.put("finish_reason", "stop");
+
+        // Rough token counts, enough for usage metrics to move
+        int promptTokens = request.toString().length() / 4;
+        int completionTokens = content.length() / 4;
+        ObjectNode usage = response.putObject("usage");
+        usage.put("prompt_tokens", promptTokens);
+        usage.put("completion_tokens", completionTokens);
+        usage.put("total_tokens", promptTokens + completionTokens);
+        return response;
+    }
+
+    private static boolean isRetry(JsonNode messages) {
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            JsonNode message = messages.get(i);
+            if ("user".equals(message.path("role").asText())) {
+                return message.path("content").asText().contains(RETRY_MARKER);
+            }
+        }
+        return false;
+    }
+
+    private void count(String model, String outcome) {
+        counts.computeIfAbsent(model, key -> new ConcurrentHashMap<>())
+                .computeIfAbsent(outcome, key -> new LongAdder())
+                .increment();
+    }
+
+    private static String pick(List<String> recordings) {
+        return recordings.get(ThreadLocalRandom.current().nextInt(recordings.size()));
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static List<String> readRecordings(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.toString().endsWith(".json"))
+                    .sorted()
+                    .map(MistralStub::read)
+                    .toList();
+        }
+    }
+
+    private static String read(Path file) {
+        try {
+            return Files.readString(file);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read recording " + file, e);
+        }
+    }
+
+    private static double number(Properties properties, String key, double defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null ? defaultValue : Double.parseDouble(value.trim());
+    }
+}